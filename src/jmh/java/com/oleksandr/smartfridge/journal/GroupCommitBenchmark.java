@@ -0,0 +1,218 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Durable events per second of a {@link GroupCommitLog}, with and without
+ * a batching delay, against forcing the file after every event, for
+ * several force latencies. The latency of a real disk is added to every
+ * force by parking the forcing thread, so the results don't depend on the
+ * disk the benchmark runs on.
+ *
+ * @author oleksandr
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+@Threads(8)
+public class GroupCommitBenchmark {
+
+	@Param({ "per-event", "group", "group-delayed" })
+	String mode;
+
+	@Param({ "0", "100", "1000" })
+	long forceMicros;
+
+	Path path;
+
+	FileChannel channel;
+
+	EventLogEncoder encoder;
+
+	GroupCommitLog log;
+
+	@Setup
+	public void setUp() throws IOException {
+		path = Files.createTempFile("group-commit", ".log");
+		channel = new SlowForceChannel(
+				FileChannel.open(path, StandardOpenOption.WRITE),
+				TimeUnit.MICROSECONDS.toNanos(forceMicros));
+		if ("group".equals(mode)) {
+			log = new GroupCommitLog(channel, GroupCommitPolicy.defaults());
+		} else if ("group-delayed".equals(mode)) {
+			// a batch waits up to 100us for all writers
+			log = new GroupCommitLog(channel, GroupCommitPolicy.builder()
+					.maxDelay(100, TimeUnit.MICROSECONDS).batchEvents(8)
+					.build());
+		} else {
+			encoder = new EventLogEncoder(1024);
+			encoder.header();
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		if (log != null) {
+			log.close();
+		} else {
+			channel.close();
+		}
+		Files.delete(path);
+	}
+
+	@Benchmark
+	public void itemAdded() throws IOException {
+		long id = ThreadLocalRandom.current().nextLong();
+		if (log != null) {
+			log.itemAdded(id, id & 63, Long.toHexString(id), "Milk", 0.25);
+			return;
+		}
+		synchronized (this) {
+			encoder.add(id, id & 63, Long.toHexString(id), "Milk", 0.25);
+			encoder.writeTo(channel);
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * File channel which takes longer to force
+	 */
+	static final class SlowForceChannel extends FileChannel {
+
+		private final FileChannel channel;
+
+		private final long forceNanos;
+
+		SlowForceChannel(FileChannel channel, long forceNanos) {
+			this.channel = channel;
+			this.forceNanos = forceNanos;
+		}
+
+		@Override
+		public void force(boolean metaData) throws IOException {
+			channel.force(metaData);
+			if (forceNanos > 0) {
+				LockSupport.parkNanos(forceNanos);
+			}
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			return channel.write(src);
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length)
+				throws IOException {
+			return channel.write(srcs, offset, length);
+		}
+
+		@Override
+		public int write(ByteBuffer src, long position) throws IOException {
+			return channel.write(src, position);
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			return channel.read(dst);
+		}
+
+		@Override
+		public long read(ByteBuffer[] dsts, int offset, int length)
+				throws IOException {
+			return channel.read(dsts, offset, length);
+		}
+
+		@Override
+		public int read(ByteBuffer dst, long position) throws IOException {
+			return channel.read(dst, position);
+		}
+
+		@Override
+		public long position() throws IOException {
+			return channel.position();
+		}
+
+		@Override
+		public FileChannel position(long newPosition) throws IOException {
+			channel.position(newPosition);
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			return channel.size();
+		}
+
+		@Override
+		public FileChannel truncate(long size) throws IOException {
+			channel.truncate(size);
+			return this;
+		}
+
+		@Override
+		public long transferTo(long position, long count,
+				WritableByteChannel target) throws IOException {
+			return channel.transferTo(position, count, target);
+		}
+
+		@Override
+		public long transferFrom(ReadableByteChannel src, long position,
+				long count) throws IOException {
+			return channel.transferFrom(src, position, count);
+		}
+
+		@Override
+		public MappedByteBuffer map(MapMode mode, long position, long size)
+				throws IOException {
+			return channel.map(mode, position, size);
+		}
+
+		@Override
+		public FileLock lock(long position, long size, boolean shared)
+				throws IOException {
+			return channel.lock(position, size, shared);
+		}
+
+		@Override
+		public FileLock tryLock(long position, long size, boolean shared)
+				throws IOException {
+			return channel.tryLock(position, size, shared);
+		}
+
+		@Override
+		protected void implCloseChannel() throws IOException {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+
+/**
+ * Read throughput of {@link StampedLockStorage} against
+ * {@link SynchronizedStorage}: reads alone on several threads, and reads
+ * next to a writer which keeps moving one item between two types
+ * 
+ * @author oleksandr
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageReadBenchmark {
+
+	static final int TYPES = 200;
+
+	@Param({ "synchronized", "stamped" })
+	String mode;
+
+	Storage storage;
+
+	@Setup
+	public void setUp() throws Exception {
+		storage = "stamped".equals(mode) ? new StampedLockStorage()
+				: new SynchronizedStorage(new InMemoryStorage());
+		for (int t = 0; t < TYPES; t++) {
+			storage.addItem(t, "itemUUID" + t, "Item", 0.1 + t % 8 * 0.1);
+		}
+		storage.addItem(0, "movingUUID", "Item", 0.05);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Double fillFactor() {
+		return storage.getFillFactor(
+				ThreadLocalRandom.current().nextInt(TYPES));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Map<Long, Double> lowItems() {
+		return storage.getItems(0.3);
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(3)
+	public Double mixedRead() {
+		return storage.getFillFactor(
+				ThreadLocalRandom.current().nextInt(TYPES));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(1)
+	public Item mixedWrite() throws WrongBinException, BinOverflowException,
+			DoublicateItemException {
+		Item item = storage.removeItem("movingUUID");
+		long type = (item.getType() + 1) % TYPES;
+		return storage.addItem(type, "movingUUID", "Item", 0.05);
+	}
+}
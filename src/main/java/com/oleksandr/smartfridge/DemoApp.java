@@ -1,13 +1,13 @@
 package com.oleksandr.smartfridge;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.CatalogStorage;
 import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.ItemTypeCatalog;
 import com.oleksandr.smartfridge.storage.Storage;
 
 /**
@@ -16,14 +16,14 @@ import com.oleksandr.smartfridge.storage.Storage;
  */
 public class DemoApp {
 
-	static HashMap<Long, String> itemTypes = new HashMap<>();
+	static ItemTypeCatalog itemTypes = new ItemTypeCatalog();
 
 	public static void main(String[] args) {
 
-		itemTypes.put(1L, "Dairy");
-		itemTypes.put(2L, "Vegetables");
-		itemTypes.put(3L, "Meat");
-		itemTypes.put(4L, "Charcuterie");
+		itemTypes.register(1L, "Dairy");
+		itemTypes.register(2L, "Vegetables");
+		itemTypes.register(3L, "Meat");
+		itemTypes.register(4L, "Charcuterie");
 
 		// List of items in demo
 		ArrayList<Item> items = new ArrayList<>();
@@ -44,7 +44,7 @@ public class DemoApp {
 		final Logger logger = LoggerFactory.getLogger(DemoApp.class);
 
 		// Create a Smart Fridge Manafger
-		Storage storage = new InMemoryStorage();
+		Storage storage = new CatalogStorage(itemTypes);
 		SmartFridgeManager fManager = new SmartFridgeManagerImpl(storage,
 				logger);
 
@@ -53,7 +53,7 @@ public class DemoApp {
 		// Add items to the fridge
 		items.forEach(item -> {
 			String message = String.format("Adding %s: %s",
-					itemTypes.get(item.getType()), item.getName());
+					itemTypes.get(item.getType()).getName(), item.getName());
 			logger.info(message);
 			fManager.handleItemAdded(item.getType(), item.getUUID(),
 					item.getName(), item.getFillFactor());
@@ -101,10 +101,11 @@ public class DemoApp {
 	private static void printReport(Logger logger,
 			SmartFridgeManager fManager) {
 		logger.info("Fridge report:");
-		itemTypes.forEach((k, v) -> {
-			Double f1 = fManager.getFillFactor(k);
+		itemTypes.getTypes().forEach(type -> {
+			Double f1 = fManager.getFillFactor(type.getType());
 			double percent = f1.doubleValue() * 100.0;
-			logger.info(String.format("%s - %3.0f%%", v, percent));
+			logger.info(
+					String.format("%s - %3.0f%%", type.getName(), percent));
 		});
 	}
 
@@ -128,9 +129,10 @@ public class DemoApp {
 				double[] array = (double[]) items[i]; // array of two elements - [ itemType, fillFactor ]
 				long t = (long) array[0];
 				double p = array[1] * 100;
-				String typeName = itemTypes.get(t);
-				if (typeName != null) {
-					message = String.format("%s - %3.0f%%", typeName, p);
+				ItemTypeCatalog.ItemType type = itemTypes.get(t);
+				if (type != null) {
+					message = String.format("%s - %3.0f%%", type.getName(),
+							p);
 					logger.info(message);
 				}
 			}
@@ -6,6 +6,8 @@ import java.util.Objects;
 
 import org.slf4j.Logger;
 
+import com.oleksandr.smartfridge.management.ManagerStatistics;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
 import com.oleksandr.smartfridge.storage.Storage;
 
 /**
@@ -26,6 +28,11 @@ public class SmartFridgeManagerImpl implements SmartFridgeManager {
 	 */
 	private Logger logger;
 
+	/**
+	 * Event counters
+	 */
+	private final ManagerStatistics statistics = new ManagerStatistics();
+
 	/**
 	 * Constructor
 	 * 
@@ -45,7 +52,7 @@ public class SmartFridgeManagerImpl implements SmartFridgeManager {
 	 */
 	@Override
 	public void handleItemRemoved(String itemUUID) {
-		storage.removeItem(itemUUID);
+		statistics.itemRemoved(storage.removeItem(itemUUID) != null);
 	}
 
 	/**
@@ -56,14 +63,47 @@ public class SmartFridgeManagerImpl implements SmartFridgeManager {
 	@Override
 	public void handleItemAdded(long itemType, String itemUUID, String name,
 			Double fillFactor) {
+		addItem(itemType, itemUUID, name, fillFactor);
+	}
+
+	/**
+	 * Handles an add event like
+	 * {@link #handleItemAdded(long, String, String, Double)} and tells if the
+	 * storage took the item
+	 * 
+	 * @param itemType   item type
+	 * @param itemUUID   item UUID
+	 * @param name       item name
+	 * @param fillFactor item fill factor
+	 * @return false when the item was rejected
+	 */
+	public boolean addItem(long itemType, String itemUUID, String name,
+			Double fillFactor) {
 		try {
 			storage.addItem(itemType, itemUUID, name, fillFactor);
+			statistics.itemAdded();
+			return true;
 		} catch (Exception e) {
+			statistics.itemRejected(e);
 			logger.warn(String.format("Item wasn't added to the fridge: %s",
 					e.getMessage()));
+			return false;
 		}
 	}
 
+	/**
+	 * Creates an item type without items when the storage is an
+	 * {@link InMemoryStorage}, other storages only create types with their
+	 * first item
+	 * 
+	 * @param itemType item type
+	 * @return false when the type was not created
+	 */
+	public boolean addItemType(long itemType) {
+		return storage instanceof InMemoryStorage
+				&& ((InMemoryStorage) storage).addItemType(itemType);
+	}
+
 	/**
 	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getItems(java.lang.Double)
 	 */
@@ -97,6 +137,16 @@ public class SmartFridgeManagerImpl implements SmartFridgeManager {
 	@Override
 	public void forgetItem(long itemType) {
 		storage.forgetItem(itemType);
+		statistics.itemForgotten();
+	}
+
+	/**
+	 * Returns the event counters of the manager
+	 * 
+	 * @return {@link ManagerStatistics}
+	 */
+	public ManagerStatistics getStatistics() {
+		return statistics;
 	}
 
 }
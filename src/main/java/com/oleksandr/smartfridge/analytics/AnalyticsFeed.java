@@ -0,0 +1,100 @@
+package com.oleksandr.smartfridge.analytics;
+
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Feeds the fill changes of one fridge into a {@link FleetAnalytics} store.
+ * On creation the current fill of every item type is appended as a change
+ * from empty, so the levels computed by the store start from the content
+ * the fridge had. Forgetting a type is fed as a change the store doesn't
+ * count as consumption.
+ *
+ * @author oleksandr
+ *
+ */
+public class AnalyticsFeed implements StorageListener, AutoCloseable {
+
+	private final FleetAnalytics analytics;
+
+	private final int fridge;
+
+	private final InMemoryStorage storage;
+
+	private final LongSupplier clock;
+
+	/**
+	 * Constructor which timestamps the changes with the system clock
+	 *
+	 * @param analytics store to feed
+	 * @param fridge    id of the fridge
+	 * @param storage   storage of the fridge
+	 */
+	public AnalyticsFeed(FleetAnalytics analytics, int fridge,
+			InMemoryStorage storage) {
+		this(analytics, fridge, storage, System::currentTimeMillis);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param analytics store to feed
+	 * @param fridge    id of the fridge
+	 * @param storage   storage of the fridge
+	 * @param clock     current time in milliseconds
+	 */
+	public AnalyticsFeed(FleetAnalytics analytics, int fridge,
+			InMemoryStorage storage, LongSupplier clock) {
+		super();
+		this.analytics = Objects.requireNonNull(analytics,
+				"Analytics reference must be not null");
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+		this.clock = Objects.requireNonNull(clock,
+				"Clock reference must be not null");
+		if (fridge < 0) {
+			throw new IllegalArgumentException(
+					"Fridge id must be not negative");
+		}
+		this.fridge = fridge;
+		long now = clock.getAsLong();
+		storage.forEachType((type, fill) -> {
+			if (fill != 0.0) {
+				analytics.append(fridge, type, now, fill);
+			}
+		});
+		storage.addListener(this);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		double delta = event.getFillFactor()
+				- event.getPreviousFillFactor();
+		if (delta == 0.0) {
+			return;
+		}
+		if (event.getKind() == StorageEvent.Kind.FORGOTTEN) {
+			// the fill is gone but the items were not used up
+			analytics.appendForgotten(fridge, event.getItemType(),
+					clock.getAsLong(), delta);
+		} else {
+			analytics.append(fridge, event.getItemType(), clock.getAsLong(),
+					delta);
+		}
+	}
+
+	/**
+	 * Stops feeding the store
+	 */
+	@Override
+	public void close() {
+		storage.removeListener(this);
+	}
+}
@@ -0,0 +1,77 @@
+package com.oleksandr.smartfridge.analytics;
+
+/**
+ * Fixed size block of fill change events, one primitive array per column.
+ * A chunk is filled by one writer and published row by row through its
+ * volatile size; rows below the size never change again, so readers scan
+ * them without locking. Once full the chunk is sealed and is immutable.
+ *
+ * @author oleksandr
+ *
+ */
+final class Chunk {
+
+	final int[] fridges;
+
+	final int[] types;
+
+	final long[] times;
+
+	final float[] deltas;
+
+	/**
+	 * Rows which drop the fill of a forgotten item type, rather than record
+	 * items taken out
+	 */
+	final boolean[] forgotten;
+
+	/**
+	 * Earliest timestamp in the chunk, valid while the chunk is not empty
+	 */
+	long minTime = Long.MAX_VALUE;
+
+	/**
+	 * Latest timestamp in the chunk, valid while the chunk is not empty
+	 */
+	long maxTime = Long.MIN_VALUE;
+
+	/**
+	 * Number of published rows
+	 */
+	private volatile int size;
+
+	Chunk(int capacity) {
+		fridges = new int[capacity];
+		types = new int[capacity];
+		times = new long[capacity];
+		deltas = new float[capacity];
+		forgotten = new boolean[capacity];
+	}
+
+	/**
+	 * Appends a row and publishes it
+	 *
+	 * @return false when the chunk is full
+	 */
+	boolean append(int fridge, int type, long time, float delta,
+			boolean forget) {
+		int row = size;
+		if (row == times.length) {
+			return false;
+		}
+		fridges[row] = fridge;
+		types[row] = type;
+		times[row] = time;
+		deltas[row] = delta;
+		forgotten[row] = forget;
+		minTime = Math.min(minTime, time);
+		maxTime = Math.max(maxTime, time);
+		// the volatile write publishes the row and the time range
+		size = row + 1;
+		return true;
+	}
+
+	int size() {
+		return size;
+	}
+}
@@ -0,0 +1,178 @@
+package com.oleksandr.smartfridge.analytics;
+
+import java.util.Objects;
+
+/**
+ * Count-min sketch of how often keys occur in a stream. Every key is
+ * counted in one cell of each of the rows, picked by a hash of the key;
+ * its estimate is the smallest of those cells. Other keys sharing the
+ * cells can only add to them, so an estimate is never too low, and it is
+ * too high by at most e/width of the stream with a probability of
+ * 1 - e^-depth.
+ *
+ * Sketches of the same width and depth merge by adding their cells.
+ *
+ * The sketch is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class CountMinSketch {
+
+	/**
+	 * Cells per row by default
+	 */
+	public static final int DEFAULT_WIDTH = 1024;
+
+	/**
+	 * Rows by default
+	 */
+	public static final int DEFAULT_DEPTH = 4;
+
+	private final int width;
+
+	private final int depth;
+
+	/**
+	 * Cells, row after row
+	 */
+	private final long[] cells;
+
+	private long total;
+
+	/**
+	 * Constructs a sketch of {@link #DEFAULT_DEPTH} rows of
+	 * {@link #DEFAULT_WIDTH} cells
+	 */
+	public CountMinSketch() {
+		this(DEFAULT_WIDTH, DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param width cells per row, a power of two
+	 * @param depth number of rows
+	 */
+	public CountMinSketch(int width, int depth) {
+		super();
+		if (width <= 0 || Integer.bitCount(width) != 1) {
+			throw new IllegalArgumentException(
+					"Width must be a power of two");
+		}
+		if (depth <= 0) {
+			throw new IllegalArgumentException(
+					"Depth must be greater then 0");
+		}
+		this.width = width;
+		this.depth = depth;
+		cells = new long[width * depth];
+	}
+
+	/**
+	 * Counts occurrences of a key
+	 *
+	 * @param key   key
+	 * @param count number of occurrences, not negative
+	 * @return estimate of the key after counting
+	 */
+	public long add(String key, long count) {
+		Objects.requireNonNull(key, "Key reference must be not null");
+		if (count < 0) {
+			throw new IllegalArgumentException(
+					"Count must be not less then 0");
+		}
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			int cell = row * width + ((h1 + row * h2) & (width - 1));
+			cells[cell] += count;
+			estimate = Math.min(estimate, cells[cell]);
+		}
+		total += count;
+		return estimate;
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of a key
+	 *
+	 * @param key key
+	 * @return estimate, never below the true count
+	 */
+	public long estimate(String key) {
+		Objects.requireNonNull(key, "Key reference must be not null");
+		long hash = hash(key);
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			estimate = Math.min(estimate,
+					cells[row * width + ((h1 + row * h2) & (width - 1))]);
+		}
+		return estimate;
+	}
+
+	/**
+	 * Adds the counts of another sketch
+	 *
+	 * @param other sketch with the same width and depth
+	 */
+	public void merge(CountMinSketch other) {
+		if (other.width != width || other.depth != depth) {
+			throw new IllegalArgumentException(
+					"Sketches of different sizes can't be merged");
+		}
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] += other.cells[i];
+		}
+		total += other.total;
+	}
+
+	/**
+	 * Returns the number of occurrences counted
+	 *
+	 * @return long
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns the number of cells per row
+	 *
+	 * @return int
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the number of rows
+	 *
+	 * @return int
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * 64 bit FNV-1a over the chars, finished with the MurmurHash3 mixer.
+	 * The two halves serve as the two hashes the rows are derived from.
+	 */
+	private static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		// an even second hash would only reach half of the cells
+		return h | (1L << 32);
+	}
+}
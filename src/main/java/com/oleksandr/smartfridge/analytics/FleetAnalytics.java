@@ -0,0 +1,353 @@
+package com.oleksandr.smartfridge.analytics;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Columnar store of fill changes across a fleet of fridges, for aggregate
+ * questions such as "average dairy fill per region per hour".
+ *
+ * Every event is a row of five columns: fridge, item type, timestamp, fill
+ * delta and whether the type was forgotten. Rows are kept in fixed size
+ * {@link Chunk chunks} of primitive arrays, 21 bytes a row: item types are dictionary encoded into ints and
+ * deltas are floats, which is more than the two significant digits the
+ * storage keeps. Queries are single passes over the arrays, skipping the
+ * chunks outside of the queried time range.
+ *
+ * Appends are serialized, so several storages may feed one store from
+ * their own threads. Queries never lock and see every row appended before
+ * they started.
+ *
+ * @author oleksandr
+ *
+ */
+public class FleetAnalytics {
+
+	/**
+	 * Default number of rows per chunk
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+	private final int chunkSize;
+
+	/**
+	 * Dictionary of item types
+	 */
+	private final ConcurrentHashMap<Long, Integer> typeCodes =
+			new ConcurrentHashMap<>();
+
+	/**
+	 * Sealed chunks and the chunk being filled, replaced as a whole when a
+	 * chunk is sealed
+	 */
+	private volatile Chunks chunks;
+
+	/**
+	 * Constructs a store with the default chunk size
+	 */
+	public FleetAnalytics() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param chunkSize number of rows per chunk
+	 */
+	public FleetAnalytics(int chunkSize) {
+		super();
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException(
+					"Chunk size must be greater then 0");
+		}
+		this.chunkSize = chunkSize;
+		chunks = new Chunks(new Chunk[0], new Chunk(chunkSize));
+	}
+
+	/**
+	 * Appends a fill change
+	 *
+	 * @param fridge    fridge id, not negative
+	 * @param itemType  item type
+	 * @param timestamp time of the change in milliseconds
+	 * @param fillDelta change of the fill factor of the item type
+	 */
+	public void append(int fridge, long itemType, long timestamp,
+			double fillDelta) {
+		append(fridge, itemType, timestamp, fillDelta, false);
+	}
+
+	/**
+	 * Appends the fill an item type had when it was forgotten. It lowers the
+	 * fill levels like any change but is not consumption: the items were
+	 * not taken out.
+	 *
+	 * @param fridge    fridge id, not negative
+	 * @param itemType  item type
+	 * @param timestamp time the type was forgotten in milliseconds
+	 * @param fillDelta change of the fill factor of the item type
+	 */
+	public void appendForgotten(int fridge, long itemType, long timestamp,
+			double fillDelta) {
+		append(fridge, itemType, timestamp, fillDelta, true);
+	}
+
+	private synchronized void append(int fridge, long itemType,
+			long timestamp, double fillDelta, boolean forget) {
+		if (fridge < 0) {
+			throw new IllegalArgumentException(
+					"Fridge id must be not negative");
+		}
+		int type = typeCodes.computeIfAbsent(itemType, t -> typeCodes.size());
+		Chunks current = chunks;
+		if (!current.active.append(fridge, type, timestamp,
+				(float) fillDelta, forget)) {
+			Chunk[] sealed = Arrays.copyOf(current.sealed,
+					current.sealed.length + 1);
+			sealed[current.sealed.length] = current.active;
+			Chunk active = new Chunk(chunkSize);
+			active.append(fridge, type, timestamp, (float) fillDelta, forget);
+			chunks = new Chunks(sealed, active);
+		}
+	}
+
+	/**
+	 * Returns the number of rows
+	 *
+	 * @return long
+	 */
+	public long size() {
+		Chunks current = chunks;
+		return (long) current.sealed.length * chunkSize
+				+ current.active.size();
+	}
+
+	/**
+	 * Returns the sum of the fill changes of an item type in a time range,
+	 * over all fridges
+	 *
+	 * @param itemType item type
+	 * @param from     start of the range, inclusive
+	 * @param to       end of the range, exclusive
+	 * @return double
+	 */
+	public double sumDeltas(long itemType, long from, long to) {
+		Integer type = typeCodes.get(itemType);
+		if (type == null) {
+			return 0.0;
+		}
+		double sum = 0;
+		for (Chunk chunk : snapshot()) {
+			int size = chunk.size();
+			if (size == 0 || chunk.maxTime < from || chunk.minTime >= to) {
+				continue;
+			}
+			int[] types = chunk.types;
+			long[] times = chunk.times;
+			float[] deltas = chunk.deltas;
+			for (int i = 0; i < size; i++) {
+				long time = times[i];
+				if (types[i] == type && time >= from && time < to) {
+					sum += deltas[i];
+				}
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns the average fill factor of an item type per group of fridges
+	 * at the end of every time bucket. A fridge without the item type counts
+	 * as empty.
+	 *
+	 * @param itemType      item type
+	 * @param from          start of the first bucket
+	 * @param to            end of the last bucket, rounded up to a whole
+	 *                      bucket
+	 * @param bucketMillis  length of a bucket in milliseconds
+	 * @param groupOfFridge group of every fridge, indexed by fridge id;
+	 *                      fridges with a negative group or beyond the array
+	 *                      are left out
+	 * @param groupCount    number of groups
+	 * @return {@link GroupedSeries}
+	 */
+	public GroupedSeries fillLevels(long itemType, long from, long to,
+			long bucketMillis, int[] groupOfFridge, int groupCount) {
+		int buckets = buckets(from, to, bucketMillis, groupOfFridge,
+				groupCount);
+		int[] fridges = new int[groupCount];
+		for (int group : groupOfFridge) {
+			if (group >= groupCount) {
+				throw new IllegalArgumentException(String.format(
+						"Group %d is out of range", group));
+			}
+			if (group >= 0) {
+				fridges[group]++;
+			}
+		}
+		double[] base = new double[groupCount];
+		double[] values = new double[groupCount * buckets];
+		Integer type = typeCodes.get(itemType);
+		if (type != null) {
+			long end = from + buckets * bucketMillis;
+			for (Chunk chunk : snapshot()) {
+				if (chunk.size() > 0 && chunk.minTime < end) {
+					accumulate(chunk, type, from, end, bucketMillis,
+							groupOfFridge, base, values, buckets);
+				}
+			}
+		}
+		// running sums of the changes give the total fill at the end of
+		// every bucket
+		for (int group = 0; group < groupCount; group++) {
+			double level = base[group];
+			int row = group * buckets;
+			for (int b = 0; b < buckets; b++) {
+				level += values[row + b];
+				values[row + b] = fridges[group] == 0 ? 0.0
+						: level / fridges[group];
+			}
+		}
+		return new GroupedSeries(from, bucketMillis, groupCount, buckets,
+				values);
+	}
+
+	/**
+	 * Returns how much of an item type was taken out per group of fridges
+	 * and time bucket: the sum of the negative fill changes, as a positive
+	 * number. Forgotten item types are left out.
+	 *
+	 * @param itemType      item type
+	 * @param from          start of the first bucket
+	 * @param to            end of the last bucket, rounded up to a whole
+	 *                      bucket
+	 * @param bucketMillis  length of a bucket in milliseconds
+	 * @param groupOfFridge group of every fridge, indexed by fridge id;
+	 *                      fridges with a negative group or beyond the array
+	 *                      are left out
+	 * @param groupCount    number of groups
+	 * @return {@link GroupedSeries}
+	 */
+	public GroupedSeries consumption(long itemType, long from, long to,
+			long bucketMillis, int[] groupOfFridge, int groupCount) {
+		int buckets = buckets(from, to, bucketMillis, groupOfFridge,
+				groupCount);
+		double[] values = new double[groupCount * buckets];
+		Integer type = typeCodes.get(itemType);
+		if (type == null) {
+			return new GroupedSeries(from, bucketMillis, groupCount, buckets,
+					values);
+		}
+		long end = from + buckets * bucketMillis;
+		for (Chunk chunk : snapshot()) {
+			int size = chunk.size();
+			if (size == 0 || chunk.maxTime < from || chunk.minTime >= end) {
+				continue;
+			}
+			int[] fridges = chunk.fridges;
+			int[] types = chunk.types;
+			long[] times = chunk.times;
+			float[] deltas = chunk.deltas;
+			boolean[] forgotten = chunk.forgotten;
+			for (int i = 0; i < size; i++) {
+				long time = times[i];
+				float delta = deltas[i];
+				int fridge = fridges[i];
+				if (types[i] != type || delta >= 0 || forgotten[i]
+						|| time < from
+						|| time >= end || fridge >= groupOfFridge.length) {
+					continue;
+				}
+				int group = groupOfFridge[fridge];
+				if (group >= 0) {
+					values[group * buckets
+							+ (int) ((time - from) / bucketMillis)] -= delta;
+				}
+			}
+		}
+		return new GroupedSeries(from, bucketMillis, groupCount, buckets,
+				values);
+	}
+
+	/**
+	 * Adds the changes of the item type to the groups: changes before the
+	 * first bucket to the base level, the others to their bucket
+	 */
+	private static void accumulate(Chunk chunk, int type, long from,
+			long end, long bucketMillis, int[] groupOfFridge, double[] base,
+			double[] values, int buckets) {
+		int size = chunk.size();
+		int[] fridges = chunk.fridges;
+		int[] types = chunk.types;
+		long[] times = chunk.times;
+		float[] deltas = chunk.deltas;
+		for (int i = 0; i < size; i++) {
+			long time = times[i];
+			int fridge = fridges[i];
+			if (types[i] != type || time >= end
+					|| fridge >= groupOfFridge.length) {
+				continue;
+			}
+			int group = groupOfFridge[fridge];
+			if (group < 0) {
+				continue;
+			}
+			if (time < from) {
+				base[group] += deltas[i];
+			} else {
+				values[group * buckets
+						+ (int) ((time - from) / bucketMillis)] += deltas[i];
+			}
+		}
+	}
+
+	private static int buckets(long from, long to, long bucketMillis,
+			int[] groupOfFridge, int groupCount) {
+		Objects.requireNonNull(groupOfFridge,
+				"Groups reference must be not null");
+		if (bucketMillis <= 0) {
+			throw new IllegalArgumentException(
+					"Bucket length must be greater then 0");
+		}
+		if (groupCount < 0) {
+			throw new IllegalArgumentException(
+					"Group count must be not negative");
+		}
+		if (to <= from) {
+			throw new IllegalArgumentException(
+					"End of the range must be greater then its start");
+		}
+		long buckets = (to - from + bucketMillis - 1) / bucketMillis;
+		if (buckets * groupCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Too many buckets");
+		}
+		return (int) buckets;
+	}
+
+	/**
+	 * Returns the chunks which hold rows, the active one last
+	 */
+	private Chunk[] snapshot() {
+		Chunks current = chunks;
+		Chunk[] all = Arrays.copyOf(current.sealed,
+				current.sealed.length + 1);
+		all[current.sealed.length] = current.active;
+		return all;
+	}
+
+	/**
+	 * Immutable view of the chunks
+	 */
+	private static final class Chunks {
+
+		final Chunk[] sealed;
+
+		final Chunk active;
+
+		Chunks(Chunk[] sealed, Chunk active) {
+			this.sealed = sealed;
+			this.active = active;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.oleksandr.smartfridge.analytics;
+
+/**
+ * Result of a grouped time series query: one value per group and time
+ * bucket
+ *
+ * @author oleksandr
+ *
+ */
+public final class GroupedSeries {
+
+	private final long from;
+
+	private final long bucketMillis;
+
+	private final int groupCount;
+
+	private final int bucketCount;
+
+	/**
+	 * Values by group, then by bucket
+	 */
+	private final double[] values;
+
+	GroupedSeries(long from, long bucketMillis, int groupCount,
+			int bucketCount, double[] values) {
+		this.from = from;
+		this.bucketMillis = bucketMillis;
+		this.groupCount = groupCount;
+		this.bucketCount = bucketCount;
+		this.values = values;
+	}
+
+	/**
+	 * Returns the number of groups
+	 *
+	 * @return int
+	 */
+	public int getGroupCount() {
+		return groupCount;
+	}
+
+	/**
+	 * Returns the number of time buckets
+	 *
+	 * @return int
+	 */
+	public int getBucketCount() {
+		return bucketCount;
+	}
+
+	/**
+	 * Returns the start of a time bucket
+	 *
+	 * @param bucket bucket index
+	 * @return time in milliseconds
+	 */
+	public long getBucketStart(int bucket) {
+		return from + bucket * bucketMillis;
+	}
+
+	/**
+	 * Returns the value of a group in a time bucket
+	 *
+	 * @param group  group index
+	 * @param bucket bucket index
+	 * @return double
+	 */
+	public double get(int group, int bucket) {
+		if (group < 0 || group >= groupCount || bucket < 0
+				|| bucket >= bucketCount) {
+			throw new IndexOutOfBoundsException(String.format(
+					"No value for group %d and bucket %d", group, bucket));
+		}
+		return values[group * bucketCount + bucket];
+	}
+}
@@ -0,0 +1,196 @@
+package com.oleksandr.smartfridge.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The most frequent keys of a stream in fixed memory. Every key is counted
+ * in a {@link CountMinSketch}, and the keys with the highest estimates
+ * seen so far are kept as candidates: a new key replaces the weakest
+ * candidate once its estimate is higher. A key more frequent than
+ * 1/size of the stream is always among the candidates, give or take the
+ * error of the count-min sketch.
+ *
+ * Two summaries of the same sizes merge by merging their count-min
+ * sketches and keeping the strongest of both candidate sets, estimated on
+ * the merged sketch.
+ *
+ * The summary is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class HeavyHitters {
+
+	/**
+	 * Number of candidates by default
+	 */
+	public static final int DEFAULT_SIZE = 16;
+
+	private final int size;
+
+	private final CountMinSketch counts;
+
+	/**
+	 * Candidates and their estimates, by position
+	 */
+	private final String[] keys;
+
+	private final long[] estimates;
+
+	/**
+	 * Positions of the candidates
+	 */
+	private final HashMap<String, Integer> positions;
+
+	private int candidates;
+
+	/**
+	 * Constructs a summary of {@link #DEFAULT_SIZE} candidates over a
+	 * count-min sketch of the default size
+	 */
+	public HeavyHitters() {
+		this(DEFAULT_SIZE, CountMinSketch.DEFAULT_WIDTH,
+				CountMinSketch.DEFAULT_DEPTH);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param size  number of candidates
+	 * @param width cells per row of the count-min sketch, a power of two
+	 * @param depth rows of the count-min sketch
+	 */
+	public HeavyHitters(int size, int width, int depth) {
+		super();
+		if (size <= 0) {
+			throw new IllegalArgumentException(
+					"Size must be greater then 0");
+		}
+		this.size = size;
+		counts = new CountMinSketch(width, depth);
+		keys = new String[size];
+		estimates = new long[size];
+		positions = new HashMap<>(size * 2);
+	}
+
+	/**
+	 * Counts one occurrence of a key
+	 *
+	 * @param key key
+	 */
+	public void add(String key) {
+		offer(key, counts.add(key, 1));
+	}
+
+	/**
+	 * Returns the estimated number of occurrences of any key, candidate or
+	 * not
+	 *
+	 * @param key key
+	 * @return estimate, never below the true count
+	 */
+	public long estimate(String key) {
+		return counts.estimate(key);
+	}
+
+	/**
+	 * Adds the counts and candidates of another summary
+	 *
+	 * @param other summary with the same sizes
+	 */
+	public void merge(HeavyHitters other) {
+		if (other.size != size) {
+			throw new IllegalArgumentException(
+					"Summaries of different sizes can't be merged");
+		}
+		counts.merge(other.counts);
+		List<String> union = new ArrayList<>(candidates + other.candidates);
+		for (int i = 0; i < candidates; i++) {
+			union.add(keys[i]);
+		}
+		for (int i = 0; i < other.candidates; i++) {
+			if (!positions.containsKey(other.keys[i])) {
+				union.add(other.keys[i]);
+			}
+		}
+		positions.clear();
+		candidates = 0;
+		for (String key : union) {
+			offer(key, counts.estimate(key));
+		}
+	}
+
+	/**
+	 * Returns the candidates with their estimates, most frequent first
+	 *
+	 * @return map of key to estimate
+	 */
+	public Map<String, Long> getTop() {
+		Integer[] order = new Integer[candidates];
+		for (int i = 0; i < candidates; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order,
+				(a, b) -> Long.compare(estimates[b], estimates[a]));
+		Map<String, Long> top = new LinkedHashMap<>();
+		for (int i : order) {
+			top.put(keys[i], estimates[i]);
+		}
+		return top;
+	}
+
+	/**
+	 * Returns the number of occurrences counted
+	 *
+	 * @return long
+	 */
+	public long getTotal() {
+		return counts.getTotal();
+	}
+
+	/**
+	 * Returns the number of candidates kept
+	 *
+	 * @return int
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Makes a key a candidate when it is one already, when there is room,
+	 * or when it beats the weakest candidate
+	 */
+	private void offer(String key, long estimate) {
+		Objects.requireNonNull(key, "Key reference must be not null");
+		Integer position = positions.get(key);
+		if (position != null) {
+			estimates[position] = estimate;
+			return;
+		}
+		if (candidates < size) {
+			keys[candidates] = key;
+			estimates[candidates] = estimate;
+			positions.put(key, candidates++);
+			return;
+		}
+		int weakest = 0;
+		for (int i = 1; i < size; i++) {
+			if (estimates[i] < estimates[weakest]) {
+				weakest = i;
+			}
+		}
+		if (estimate > estimates[weakest]) {
+			positions.remove(keys[weakest]);
+			keys[weakest] = key;
+			estimates[weakest] = estimate;
+			positions.put(key, weakest);
+		}
+	}
+}
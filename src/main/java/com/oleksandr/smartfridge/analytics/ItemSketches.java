@@ -0,0 +1,226 @@
+package com.oleksandr.smartfridge.analytics;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Fixed-memory summaries of the items added to a fridge, per item type: a
+ * {@link KllSketch} of the item fill factors and the {@link HeavyHitters}
+ * among the item names. They answer "what is the median milk carton" or
+ * "which cheese is added most" without keeping any item.
+ *
+ * The summaries are updated on every add once they listen to a storage;
+ * items already in the storage are added with
+ * {@link com.oleksandr.smartfridge.storage.InMemoryStorage#forEachItem}.
+ *
+ * <pre>
+ * ItemSketches sketches = new ItemSketches();
+ * storage.forEachItem(sketches::add);
+ * storage.addListener(sketches);
+ * </pre>
+ *
+ * Removed items stay in the summaries, they describe what was added.
+ * Summaries of several fridges with the same sizes
+ * {@link #merge(ItemSketches) merge} into one fleet-level summary.
+ *
+ * The summaries are thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class ItemSketches implements StorageListener {
+
+	/**
+	 * Cells per row of the name counts. Names per type are few, so the
+	 * counts are smaller than the {@link CountMinSketch} default.
+	 */
+	public static final int NAME_COUNT_WIDTH = 256;
+
+	/**
+	 * Rows of the name counts
+	 */
+	public static final int NAME_COUNT_DEPTH = 4;
+
+	private final int k;
+
+	private final int topNames;
+
+	private final HashMap<Long, KllSketch> fillFactors = new HashMap<>();
+
+	private final HashMap<Long, HeavyHitters> names = new HashMap<>();
+
+	/**
+	 * Constructs summaries with {@link KllSketch#DEFAULT_K} and
+	 * {@link HeavyHitters#DEFAULT_SIZE} names per type
+	 */
+	public ItemSketches() {
+		this(KllSketch.DEFAULT_K, HeavyHitters.DEFAULT_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param k        accuracy of the fill factor quantiles, see
+	 *                 {@link KllSketch}
+	 * @param topNames number of most frequent names kept per type
+	 */
+	public ItemSketches(int k, int topNames) {
+		super();
+		if (k < KllSketch.MIN_K) {
+			throw new IllegalArgumentException(String.format(
+					"K must be not less then %d", KllSketch.MIN_K));
+		}
+		if (topNames <= 0) {
+			throw new IllegalArgumentException(
+					"Name count must be greater then 0");
+		}
+		this.k = k;
+		this.topNames = topNames;
+	}
+
+	/**
+	 * Adds an item to the summaries of its type
+	 *
+	 * @param item item
+	 */
+	public synchronized void add(Item item) {
+		Objects.requireNonNull(item, "Item reference must be not null");
+		fillFactors(item.getType()).update(item.getFillFactor());
+		names(item.getType()).add(item.getName());
+	}
+
+	/**
+	 * Adds the item of every add event
+	 *
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		if (event.getKind() == StorageEvent.Kind.ADDED) {
+			add(event.getItem());
+		}
+	}
+
+	/**
+	 * Adds the summaries of another fridge
+	 *
+	 * @param other summaries with the same sizes
+	 */
+	public void merge(ItemSketches other) {
+		if (other.k != k || other.topNames != topNames) {
+			throw new IllegalArgumentException(
+					"Summaries of different sizes can't be merged");
+		}
+		// copy first, so two summaries merging into each other can't
+		// deadlock
+		ItemSketches copy = other.copy();
+		synchronized (this) {
+			mergeCopy(copy);
+		}
+	}
+
+	/**
+	 * Returns a fill factor quantile of an item type
+	 *
+	 * @param itemType item type
+	 * @param fraction rank as a fraction, 0.5 for the median
+	 * @return fill factor or null when no item of the type was added
+	 */
+	public synchronized Double getFillFactorQuantile(long itemType,
+			double fraction) {
+		KllSketch sketch = fillFactors.get(itemType);
+		return sketch == null ? null : sketch.getQuantile(fraction);
+	}
+
+	/**
+	 * Returns the fraction of the items of a type with a fill factor not
+	 * greater than a value
+	 *
+	 * @param itemType   item type
+	 * @param fillFactor fill factor
+	 * @return fraction, 0 when no item of the type was added
+	 */
+	public synchronized double getFillFactorRank(long itemType,
+			double fillFactor) {
+		KllSketch sketch = fillFactors.get(itemType);
+		return sketch == null ? 0.0 : sketch.getRank(fillFactor);
+	}
+
+	/**
+	 * Returns the most frequent names of an item type
+	 *
+	 * @param itemType item type
+	 * @return map of name to estimated number of adds, most frequent
+	 *         first; empty when no item of the type was added
+	 */
+	public synchronized Map<String, Long> getTopNames(long itemType) {
+		HeavyHitters hitters = names.get(itemType);
+		return hitters == null ? Collections.emptyMap() : hitters.getTop();
+	}
+
+	/**
+	 * Returns the most frequent names over all item types
+	 *
+	 * @return map of name to estimated number of adds, most frequent first
+	 */
+	public synchronized Map<String, Long> getTopNames() {
+		HeavyHitters all = new HeavyHitters(topNames, NAME_COUNT_WIDTH,
+				NAME_COUNT_DEPTH);
+		names.values().forEach(all::merge);
+		return all.getTop();
+	}
+
+	/**
+	 * Returns the number of items of a type added
+	 *
+	 * @param itemType item type
+	 * @return long
+	 */
+	public synchronized long getCount(long itemType) {
+		KllSketch sketch = fillFactors.get(itemType);
+		return sketch == null ? 0 : sketch.getCount();
+	}
+
+	/**
+	 * Returns the item types with summaries
+	 *
+	 * @return sorted set of item types
+	 */
+	public synchronized Set<Long> getItemTypes() {
+		return Collections.unmodifiableSet(new TreeSet<>(fillFactors.keySet()));
+	}
+
+	private synchronized ItemSketches copy() {
+		ItemSketches copy = new ItemSketches(k, topNames);
+		copy.mergeCopy(this);
+		return copy;
+	}
+
+	/**
+	 * Merges summaries no other thread can reach. Called holding this.
+	 */
+	private void mergeCopy(ItemSketches other) {
+		other.fillFactors.forEach(
+				(itemType, sketch) -> fillFactors(itemType).merge(sketch));
+		other.names.forEach(
+				(itemType, hitters) -> names(itemType).merge(hitters));
+	}
+
+	private KllSketch fillFactors(long itemType) {
+		return fillFactors.computeIfAbsent(itemType, t -> new KllSketch(k));
+	}
+
+	private HeavyHitters names(long itemType) {
+		return names.computeIfAbsent(itemType,
+				t -> new HeavyHitters(topNames, NAME_COUNT_WIDTH,
+						NAME_COUNT_DEPTH));
+	}
+}
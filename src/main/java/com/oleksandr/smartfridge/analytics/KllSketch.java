@@ -0,0 +1,329 @@
+package com.oleksandr.smartfridge.analytics;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * KLL quantile sketch of a stream of numbers. The sketch keeps a stack of
+ * compactors: level h holds values which stand for 2^h values of the
+ * stream each. A level over its capacity is sorted and every other value,
+ * starting at a random offset, is promoted to the next level with twice
+ * the weight; the rest is dropped. Capacities shrink by 2/3 per level down
+ * from the top, so the sketch holds about 3k values however long the
+ * stream is, and a rank is off by about 1.7% of the stream for the
+ * default k of 200.
+ *
+ * Sketches with the same k merge into a sketch of both streams with the
+ * same error, so fridges can be summarized apart and combined later.
+ *
+ * The sketch is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class KllSketch {
+
+	/**
+	 * Capacity of the top level by default
+	 */
+	public static final int DEFAULT_K = 200;
+
+	/**
+	 * Smallest k, the capacity of a level never goes below it
+	 */
+	public static final int MIN_K = 8;
+
+	private final int k;
+
+	private final SplittableRandom random;
+
+	/**
+	 * Values of every level, by level
+	 */
+	private double[][] levels = { new double[MIN_K] };
+
+	private int[] sizes = new int[1];
+
+	private long count;
+
+	private double min = Double.NaN;
+
+	private double max = Double.NaN;
+
+	/**
+	 * Constructs a sketch with {@link #DEFAULT_K}
+	 */
+	public KllSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param k capacity of the top level, the error shrinks with 1/k
+	 */
+	public KllSketch(int k) {
+		this(k, 0x5DEECE66DL);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param k    capacity of the top level, the error shrinks with 1/k
+	 * @param seed seed of the compaction offsets
+	 */
+	public KllSketch(int k, long seed) {
+		super();
+		if (k < MIN_K) {
+			throw new IllegalArgumentException(String.format(
+					"K must be not less then %d", MIN_K));
+		}
+		this.k = k;
+		this.random = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Adds a value
+	 *
+	 * @param value value, not NaN
+	 */
+	public void update(double value) {
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("Value must be a number");
+		}
+		if (count == 0 || value < min) {
+			min = value;
+		}
+		if (count == 0 || value > max) {
+			max = value;
+		}
+		count++;
+		append(0, value);
+		compress();
+	}
+
+	/**
+	 * Adds the values of another sketch
+	 *
+	 * @param other sketch with the same k
+	 */
+	public void merge(KllSketch other) {
+		if (other.k != k) {
+			throw new IllegalArgumentException(
+					"Sketches with different k can't be merged");
+		}
+		if (other.count == 0) {
+			return;
+		}
+		min = count == 0 ? other.min : Math.min(min, other.min);
+		max = count == 0 ? other.max : Math.max(max, other.max);
+		count += other.count;
+		for (int h = 0; h < other.sizes.length; h++) {
+			for (int i = 0; i < other.sizes[h]; i++) {
+				append(h, other.levels[h][i]);
+			}
+		}
+		compress();
+	}
+
+	/**
+	 * Returns the value at a rank
+	 *
+	 * @param fraction rank as a fraction of the stream, 0 for the minimum
+	 *                 and 1 for the maximum
+	 * @return value or NaN when the sketch is empty
+	 */
+	public double getQuantile(double fraction) {
+		if (fraction < 0.0 || fraction > 1.0) {
+			throw new IllegalArgumentException(
+					"Fraction must be between 0 and 1");
+		}
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (fraction == 0.0) {
+			return min;
+		}
+		if (fraction == 1.0) {
+			return max;
+		}
+		int retained = getRetained();
+		double[] values = new double[retained];
+		long[] weights = new long[retained];
+		sorted(values, weights);
+		long total = 0;
+		for (long weight : weights) {
+			total += weight;
+		}
+		double target = fraction * total;
+		long cumulative = 0;
+		for (int i = 0; i < retained; i++) {
+			cumulative += weights[i];
+			if (cumulative >= target) {
+				return values[i];
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the fraction of the stream not greater than a value
+	 *
+	 * @param value value
+	 * @return fraction between 0 and 1, 0 when the sketch is empty
+	 */
+	public double getRank(double value) {
+		long total = 0;
+		long below = 0;
+		for (int h = 0; h < sizes.length; h++) {
+			long weight = 1L << h;
+			for (int i = 0; i < sizes[h]; i++) {
+				total += weight;
+				if (levels[h][i] <= value) {
+					below += weight;
+				}
+			}
+		}
+		return total == 0 ? 0.0 : (double) below / total;
+	}
+
+	/**
+	 * Returns the number of values added
+	 *
+	 * @return long
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the smallest value added
+	 *
+	 * @return value or NaN when the sketch is empty
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the largest value added
+	 *
+	 * @return value or NaN when the sketch is empty
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the number of values the sketch holds
+	 *
+	 * @return int
+	 */
+	public int getRetained() {
+		int retained = 0;
+		for (int size : sizes) {
+			retained += size;
+		}
+		return retained;
+	}
+
+	/**
+	 * Returns k
+	 *
+	 * @return int
+	 */
+	public int getK() {
+		return k;
+	}
+
+	private int capacity(int level) {
+		int depth = sizes.length - 1 - level;
+		return Math.max(MIN_K,
+				(int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+	}
+
+	private void append(int level, double value) {
+		if (level >= sizes.length) {
+			// a merged sketch may be several levels higher
+			int height = sizes.length;
+			levels = Arrays.copyOf(levels, level + 1);
+			for (int h = height; h <= level; h++) {
+				levels[h] = new double[MIN_K];
+			}
+			sizes = Arrays.copyOf(sizes, level + 1);
+		}
+		if (sizes[level] == levels[level].length) {
+			levels[level] = Arrays.copyOf(levels[level],
+					levels[level].length * 2);
+		}
+		levels[level][sizes[level]++] = value;
+	}
+
+	/**
+	 * Compacts the levels over their capacity, lowest first, until every
+	 * level fits
+	 */
+	private void compress() {
+		for (int h = 0; h < sizes.length; h++) {
+			if (sizes[h] >= capacity(h)) {
+				compact(h);
+				// a new top level shrinks the capacities below it
+				h = -1;
+			}
+		}
+	}
+
+	/**
+	 * Promotes every other value of a level to the next one. An odd value
+	 * out stays on the level.
+	 */
+	private void compact(int level) {
+		double[] values = levels[level];
+		int size = sizes[level];
+		Arrays.sort(values, 0, size);
+		int kept = size % 2;
+		double leftover = values[size - 1];
+		int offset = random.nextBoolean() ? 1 : 0;
+		for (int i = offset; i < size - kept; i += 2) {
+			append(level + 1, values[i]);
+		}
+		values = levels[level];
+		if (values.length > 2 * capacity(level)) {
+			// give back what a merge grew the level to
+			values = new double[capacity(level)];
+			levels[level] = values;
+		}
+		if (kept == 1) {
+			values[0] = leftover;
+		}
+		sizes[level] = kept;
+	}
+
+	/**
+	 * Fills the arrays with the held values sorted and their weights
+	 */
+	private void sorted(double[] values, long[] weights) {
+		int n = 0;
+		for (int h = 0; h < sizes.length; h++) {
+			for (int i = 0; i < sizes[h]; i++) {
+				values[n] = levels[h][i];
+				weights[n] = 1L << h;
+				n++;
+			}
+		}
+		// insertion order doesn't matter, sort the pairs by value
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+		double[] sortedValues = new double[n];
+		long[] sortedWeights = new long[n];
+		for (int i = 0; i < n; i++) {
+			sortedValues[i] = values[order[i]];
+			sortedWeights[i] = weights[order[i]];
+		}
+		System.arraycopy(sortedValues, 0, values, 0, n);
+		System.arraycopy(sortedWeights, 0, weights, 0, n);
+	}
+}
@@ -0,0 +1,20 @@
+package com.oleksandr.smartfridge.expiry;
+
+import com.oleksandr.smartfridge.storage.Item;
+
+/**
+ * Receives the items which expired while still in the storage
+ * 
+ * @author oleksandr
+ *
+ */
+@FunctionalInterface
+public interface ExpiryListener {
+
+	/**
+	 * Called once for every expired item
+	 * 
+	 * @param item the expired item, it stays in the storage
+	 */
+	void itemExpired(Item item);
+}
@@ -0,0 +1,196 @@
+package com.oleksandr.smartfridge.expiry;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Tracks the expiry of the perishable items of an {@link InMemoryStorage}.
+ *
+ * Every perishable item gets a timer in a {@link TimingWheel}. Removing or
+ * forgetting the item cancels its timer in O(1) time, so the tracker
+ * handles millions of items without the log n cost of a priority queue.
+ * {@link #advance()} fires the timers which are due and notifies the
+ * {@link ExpiryListener}s; the expired items stay in the storage.
+ *
+ * Like the storage, the tracker is not thread-safe: it must be advanced
+ * and queried by the thread which changes the storage.
+ *
+ * @author oleksandr
+ *
+ */
+public class ExpiryTracker implements StorageListener, AutoCloseable {
+
+	/**
+	 * Default timer resolution
+	 */
+	public static final long DEFAULT_TICK_MILLIS = 1000;
+
+	private final InMemoryStorage storage;
+
+	private final LongSupplier clock;
+
+	private final TimingWheel<Item> wheel;
+
+	/**
+	 * Pending timers by item type and UUID
+	 */
+	private final HashMap<Long, HashMap<String, TimingWheel.Timer<Item>>>
+			timers = new HashMap<>();
+
+	private final CopyOnWriteArrayList<ExpiryListener> listeners =
+			new CopyOnWriteArrayList<>();
+
+	/**
+	 * Constructor with the default resolution and the system clock
+	 *
+	 * @param storage tracked storage
+	 */
+	public ExpiryTracker(InMemoryStorage storage) {
+		this(storage, DEFAULT_TICK_MILLIS, System::currentTimeMillis);
+	}
+
+	/**
+	 * Constructor. Schedules the perishable items already in the storage and
+	 * registers the tracker as its listener.
+	 *
+	 * @param storage    tracked storage
+	 * @param tickMillis timer resolution in milliseconds
+	 * @param clock      current time in milliseconds
+	 */
+	public ExpiryTracker(InMemoryStorage storage, long tickMillis,
+			LongSupplier clock) {
+		super();
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+		this.clock = Objects.requireNonNull(clock,
+				"Clock reference must be not null");
+		wheel = new TimingWheel<>(tickMillis, clock.getAsLong());
+		storage.forEachItem(this::schedule);
+		storage.addListener(this);
+	}
+
+	/**
+	 * Registers an expiry listener
+	 *
+	 * @param listener {@link ExpiryListener}
+	 */
+	public void addListener(ExpiryListener listener) {
+		listeners.add(Objects.requireNonNull(listener,
+				"Listener reference must be not null"));
+	}
+
+	/**
+	 * Unregisters an expiry listener
+	 *
+	 * @param listener {@link ExpiryListener}
+	 */
+	public void removeListener(ExpiryListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Fires the timers which are due by now. Call it periodically, at
+	 * least once per tick for timely notifications.
+	 *
+	 * @return number of items which expired
+	 */
+	public int advance() {
+		return wheel.advance(clock.getAsLong(), this::expire);
+	}
+
+	/**
+	 * Returns the items which expire within the window from now, including
+	 * the items which already expired but were not reported by
+	 * {@link #advance()} yet, soonest first
+	 *
+	 * @param windowMillis window length in milliseconds
+	 * @return list of {@link Item}
+	 */
+	public List<Item> getExpiringItems(long windowMillis) {
+		if (windowMillis < 0) {
+			throw new IllegalArgumentException(
+					"Window must be not less then 0");
+		}
+		long now = clock.getAsLong();
+		long deadline = windowMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE
+				: now + windowMillis;
+		List<Item> result = new ArrayList<>();
+		wheel.forEachBefore(deadline, result::add);
+		result.sort(Comparator.comparingLong(Item::getExpiresAt));
+		return result;
+	}
+
+	/**
+	 * Returns the number of items waiting to expire
+	 *
+	 * @return int
+	 */
+	public int getPendingCount() {
+		return wheel.size();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		switch (event.getKind()) {
+		case ADDED:
+			schedule(event.getItem());
+			break;
+		case REMOVED:
+			Item item = event.getItem();
+			HashMap<String, TimingWheel.Timer<Item>> ofType = timers
+					.get(item.getType());
+			if (ofType != null) {
+				TimingWheel.Timer<Item> timer = ofType.remove(item.getUUID());
+				if (timer != null) {
+					wheel.cancel(timer);
+				}
+			}
+			break;
+		case FORGOTTEN:
+			HashMap<String, TimingWheel.Timer<Item>> forgotten = timers
+					.remove(event.getItemType());
+			if (forgotten != null) {
+				forgotten.values().forEach(wheel::cancel);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Unregisters the tracker from the storage
+	 */
+	@Override
+	public void close() {
+		storage.removeListener(this);
+	}
+
+	private void schedule(Item item) {
+		if (!item.isPerishable()) {
+			return;
+		}
+		timers.computeIfAbsent(item.getType(), t -> new HashMap<>())
+				.put(item.getUUID(), wheel.schedule(item, item.getExpiresAt()));
+	}
+
+	private void expire(Item item) {
+		HashMap<String, TimingWheel.Timer<Item>> ofType = timers
+				.get(item.getType());
+		if (ofType != null) {
+			ofType.remove(item.getUUID());
+		}
+		listeners.forEach(l -> l.itemExpired(item));
+	}
+}
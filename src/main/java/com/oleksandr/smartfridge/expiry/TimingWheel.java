@@ -0,0 +1,353 @@
+package com.oleksandr.smartfridge.expiry;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Time is cut into ticks; level 0 has one slot
+ * per tick for the next 64 ticks, every higher level has slots 64 times
+ * wider than the level below. A timer is put into the lowest level which
+ * covers its deadline and moves down a level each time the wheel below
+ * wraps around, until it expires from level 0.
+ *
+ * Slots are doubly linked lists, so scheduling and cancelling a timer take
+ * O(1) time no matter how many timers are pending. Five levels cover 2^30
+ * ticks; later deadlines wait in an overflow list which is revisited when
+ * the top level wraps.
+ *
+ * The wheel is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ * @param <T> payload of the timers
+ */
+public class TimingWheel<T> {
+
+	private static final int SLOT_BITS = 6;
+
+	private static final int SLOTS = 1 << SLOT_BITS;
+
+	private static final int SLOT_MASK = SLOTS - 1;
+
+	private static final int LEVELS = 5;
+
+	private final long tickMillis;
+
+	/**
+	 * Slot list heads, levels * SLOTS of them
+	 */
+	private final Timer<T>[][] wheels;
+
+	/**
+	 * Timers whose deadline has passed before they were scheduled
+	 */
+	private final Timer<T> due = new Timer<>(null, 0);
+
+	/**
+	 * Timers beyond the range of the top level
+	 */
+	private final Timer<T> overflow = new Timer<>(null, 0);
+
+	/**
+	 * Last tick which was processed
+	 */
+	private long currentTick;
+
+	private int size;
+
+	/**
+	 * Number of timers per level, the overflow list counts as the level
+	 * above the top one
+	 */
+	private final int[] levelSize = new int[LEVELS + 1];
+
+	/**
+	 * Constructor
+	 *
+	 * @param tickMillis length of a tick in milliseconds, the resolution of
+	 *                   the timers
+	 * @param startTime  current time in milliseconds
+	 */
+	@SuppressWarnings("unchecked")
+	public TimingWheel(long tickMillis, long startTime) {
+		super();
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException(
+					"Tick length must be greater then 0");
+		}
+		this.tickMillis = tickMillis;
+		this.currentTick = startTime / tickMillis;
+		wheels = new Timer[LEVELS][SLOTS];
+		for (Timer<T>[] wheel : wheels) {
+			for (int i = 0; i < SLOTS; i++) {
+				wheel[i] = new Timer<>(null, 0);
+			}
+		}
+	}
+
+	/**
+	 * Schedules a timer. It expires at the first tick which is not earlier
+	 * than the deadline.
+	 *
+	 * @param payload  payload handed out on expiry
+	 * @param deadline deadline in milliseconds
+	 * @return the timer, to cancel it
+	 */
+	public Timer<T> schedule(T payload, long deadline) {
+		Objects.requireNonNull(payload,
+				"Payload reference must be not null");
+		Timer<T> timer = new Timer<>(payload, deadline);
+		place(timer, false);
+		size++;
+		return timer;
+	}
+
+	/**
+	 * Cancels a pending timer. Cancelling a timer which already expired or
+	 * was cancelled does nothing.
+	 *
+	 * @param timer timer returned by {@link #schedule(Object, long)}
+	 */
+	public void cancel(Timer<T> timer) {
+		int level = timer.level;
+		if (timer.unlink()) {
+			size--;
+			if (level >= 0) {
+				levelSize[level]--;
+			}
+		}
+	}
+
+	/**
+	 * Moves the wheel forward and hands out every timer whose tick has come
+	 *
+	 * @param now     current time in milliseconds
+	 * @param expired receives the payload of the expired timers
+	 * @return number of expired timers
+	 */
+	public int advance(long now, Consumer<? super T> expired) {
+		int count = expire(due, expired);
+		long targetTick = now / tickMillis;
+		while (currentTick < targetTick) {
+			int empty = 0;
+			while (empty < LEVELS && levelSize[empty] == 0) {
+				empty++;
+			}
+			if (empty > 0) {
+				// nothing can expire or cascade before the next boundary of
+				// the lowest level which holds timers, skip to it
+				long span = 1L << (SLOT_BITS * empty);
+				long boundary = (Math.floorDiv(currentTick, span) + 1) * span;
+				if (boundary > targetTick) {
+					currentTick = targetTick;
+					break;
+				}
+				currentTick = boundary - 1;
+			}
+			currentTick++;
+			cascade(1);
+			count += expire(wheels[0][(int) (currentTick & SLOT_MASK)],
+					expired);
+		}
+		return count;
+	}
+
+	/**
+	 * Hands out the payload of every pending timer whose deadline is not
+	 * later than the given time. Only the slots which can hold such timers
+	 * are visited.
+	 *
+	 * @param deadline time in milliseconds
+	 * @param action   receives the payloads
+	 */
+	public void forEachBefore(long deadline, Consumer<? super T> action) {
+		visit(due, deadline, action);
+		long limitTick = tickOf(deadline);
+		for (int level = 0; level < LEVELS; level++) {
+			int shift = SLOT_BITS * level;
+			long block = currentTick >> shift;
+			for (int k = 1; k <= SLOTS; k++) {
+				if (((block + k) << shift) > limitTick) {
+					break;
+				}
+				visit(wheels[level][(int) ((block + k) & SLOT_MASK)],
+						deadline, action);
+			}
+		}
+		// overflow timers are not due before the top level wraps
+		int shift = SLOT_BITS * LEVELS;
+		if (((currentTick >> shift) + 1) << shift <= limitTick) {
+			visit(overflow, deadline, action);
+		}
+	}
+
+	/**
+	 * Returns the number of pending timers
+	 *
+	 * @return int
+	 */
+	public int size() {
+		return size;
+	}
+
+	private long tickOf(long deadline) {
+		// round up, so a timer never expires before its deadline
+		return deadline / tickMillis + (deadline % tickMillis == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Puts the timer into its slot. A timer of the current tick goes to the
+	 * due list, unless it is cascading and the current slot is still to be
+	 * expired.
+	 */
+	private void place(Timer<T> timer, boolean cascading) {
+		long tick = tickOf(timer.deadline);
+		long delta = tick - currentTick;
+		if (delta < 0 || delta == 0 && !cascading) {
+			timer.level = -1;
+			due.append(timer);
+			return;
+		}
+		int level = 0;
+		while (level < LEVELS && delta >= 1L << (SLOT_BITS * (level + 1))) {
+			level++;
+		}
+		timer.level = level;
+		levelSize[level]++;
+		if (level == LEVELS) {
+			overflow.append(timer);
+		} else {
+			int slot = (int) ((tick >> (SLOT_BITS * level)) & SLOT_MASK);
+			wheels[level][slot].append(timer);
+		}
+	}
+
+	/**
+	 * Moves the timers of the slot of the current tick down from the given
+	 * level, after cascading the level above when this level wrapped
+	 */
+	private void cascade(int level) {
+		int shift = SLOT_BITS * level;
+		if ((currentTick & ((1L << shift) - 1)) != 0) {
+			return;
+		}
+		if (level == LEVELS) {
+			replace(overflow);
+			return;
+		}
+		int slot = (int) ((currentTick >> shift) & SLOT_MASK);
+		if (slot == 0) {
+			cascade(level + 1);
+		}
+		replace(wheels[level][slot]);
+	}
+
+	private void replace(Timer<T> head) {
+		Timer<T> timer = head.next;
+		head.next = head;
+		head.prev = head;
+		while (timer != head) {
+			Timer<T> next = timer.next;
+			timer.prev = null;
+			timer.next = null;
+			levelSize[timer.level]--;
+			place(timer, true);
+			timer = next;
+		}
+	}
+
+	private int expire(Timer<T> head, Consumer<? super T> expired) {
+		int count = 0;
+		while (head.next != head) {
+			Timer<T> timer = head.next;
+			cancel(timer);
+			count++;
+			expired.accept(timer.payload);
+		}
+		return count;
+	}
+
+	private static <T> void visit(Timer<T> head, long deadline,
+			Consumer<? super T> action) {
+		for (Timer<T> timer = head.next; timer != head; timer = timer.next) {
+			if (timer.deadline <= deadline) {
+				action.accept(timer.payload);
+			}
+		}
+	}
+
+	/**
+	 * Scheduled timer. A list head is a timer without payload.
+	 *
+	 * @param <T> payload type
+	 */
+	public static final class Timer<T> {
+
+		private final T payload;
+
+		private final long deadline;
+
+		private Timer<T> prev;
+
+		private Timer<T> next;
+
+		/**
+		 * Level holding the timer, -1 while it is due
+		 */
+		private int level;
+
+		Timer(T payload, long deadline) {
+			this.payload = payload;
+			this.deadline = deadline;
+			if (payload == null) {
+				prev = this;
+				next = this;
+			}
+		}
+
+		/**
+		 * Returns the payload
+		 *
+		 * @return payload
+		 */
+		public T getPayload() {
+			return payload;
+		}
+
+		/**
+		 * Returns the deadline in milliseconds
+		 *
+		 * @return long
+		 */
+		public long getDeadline() {
+			return deadline;
+		}
+
+		/**
+		 * Checks if the timer neither expired nor was cancelled
+		 *
+		 * @return boolean
+		 */
+		public boolean isPending() {
+			return next != null;
+		}
+
+		void append(Timer<T> timer) {
+			timer.prev = prev;
+			timer.next = this;
+			prev.next = timer;
+			prev = timer;
+		}
+
+		boolean unlink() {
+			if (next == null) {
+				return false;
+			}
+			prev.next = next;
+			next.prev = prev;
+			prev = null;
+			next = null;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,611 @@
+package com.oleksandr.smartfridge.ingest;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+
+/**
+ * Admission control in front of a {@link SmartFridgeManager}. Events are
+ * queued by any number of producer threads and applied by one drain
+ * thread, so the manager behind it needs no locking and a burst of events
+ * never blocks the producers for longer than a queue operation.
+ *
+ * The queues are bounded by the {@link AdmissionPolicy}:
+ *
+ * <ul>
+ * <li>removals are applied before adds and are never shed; when the
+ * queues are full a removal evicts the newest waiting add, and only waits
+ * for room when no add is left to evict</li>
+ * <li>an add of an item which already waits to be added, with no removal
+ * of it queued since, is dropped on arrival, and an add which finds the
+ * queues full is shed</li>
+ * <li>when the depth reaches the high watermark the
+ * {@link BackpressureListener listeners} are told to back off, and told to
+ * resume when it falls to the low watermark</li>
+ * </ul>
+ *
+ * A removal of an item which waits to be added queues behind the add, so
+ * the events of one item keep their order. Forgetting an item type keeps
+ * its place among the adds.
+ *
+ * Queries are answered by the drain thread ahead of the waiting events, so
+ * they stay fast during a burst but don't see the events which still wait;
+ * {@link #flush()} waits for them.
+ *
+ * @author oleksandr
+ *
+ */
+public class AdmissionController implements SmartFridgeManager, AutoCloseable {
+
+	/**
+	 * Outcome of submitting an add event
+	 */
+	public enum Admission {
+		/**
+		 * The event waits to be applied
+		 */
+		QUEUED,
+		/**
+		 * The item already waits to be added
+		 */
+		SHED_DUPLICATE,
+		/**
+		 * The queues are full
+		 */
+		SHED_OVERLOAD
+	}
+
+	private final SmartFridgeManager delegate;
+
+	private final AdmissionPolicy policy;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notEmpty = lock.newCondition();
+
+	private final Condition notFull = lock.newCondition();
+
+	/**
+	 * Removals which don't have to wait for an add
+	 */
+	private final ArrayDeque<Event> removals = new ArrayDeque<>();
+
+	/**
+	 * Adds, forgets and the removals of waiting items, in arrival order
+	 */
+	private final ArrayDeque<Event> adds = new ArrayDeque<>();
+
+	/**
+	 * Queries, answered before any event
+	 */
+	private final ArrayDeque<FutureTask<?>> queries = new ArrayDeque<>();
+
+	/**
+	 * Number of waiting adds of every item UUID
+	 */
+	private final HashMap<String, Integer> pendingAdds = new HashMap<>();
+
+	/**
+	 * Newest waiting add of every item UUID with no removal queued after
+	 * it. Another add of the item is a duplicate of it; a removal closes it,
+	 * so the item may be added again.
+	 */
+	private final HashMap<String, Event> openAdds = new HashMap<>();
+
+	private final CopyOnWriteArrayList<BackpressureListener> listeners =
+			new CopyOnWriteArrayList<>();
+
+	private volatile boolean underPressure;
+
+	private boolean closed;
+
+	private final Thread thread;
+
+	private final LongAdder admitted = new LongAdder();
+
+	private final LongAdder deferred = new LongAdder();
+
+	private final LongAdder shedDuplicates = new LongAdder();
+
+	private final LongAdder shedOverload = new LongAdder();
+
+	private final LongAdder evicted = new LongAdder();
+
+	private final LongAdder applied = new LongAdder();
+
+	private final LongAdder failed = new LongAdder();
+
+	/**
+	 * Constructor. Starts the drain thread.
+	 *
+	 * @param delegate manager the events are applied to, only called from
+	 *                 the drain thread
+	 * @param policy   {@link AdmissionPolicy}
+	 */
+	public AdmissionController(SmartFridgeManager delegate,
+			AdmissionPolicy policy) {
+		super();
+		this.delegate = Objects.requireNonNull(delegate,
+				"Manager reference must be not null");
+		this.policy = Objects.requireNonNull(policy,
+				"Policy reference must be not null");
+		thread = new Thread(this::drain, "admission-drain");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Registers a listener of the backpressure signal
+	 *
+	 * @param listener {@link BackpressureListener}
+	 */
+	public void addListener(BackpressureListener listener) {
+		listeners.add(Objects.requireNonNull(listener,
+				"Listener reference must be not null"));
+	}
+
+	/**
+	 * Unregisters a listener
+	 *
+	 * @param listener {@link BackpressureListener}
+	 */
+	public void removeListener(BackpressureListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Submits an add event
+	 *
+	 * @param itemType   item type
+	 * @param itemUUID   item UUID
+	 * @param name       item name
+	 * @param fillFactor item fill factor
+	 * @return {@link Admission}
+	 */
+	public Admission submitItemAdded(long itemType, String itemUUID,
+			String name, Double fillFactor) {
+		lock.lock();
+		try {
+			checkOpen();
+			boolean duplicate = openAdds.containsKey(itemUUID);
+			if (policy.isDropDuplicateAdds() && duplicate) {
+				shedDuplicates.increment();
+				return Admission.SHED_DUPLICATE;
+			}
+			if (depth() >= policy.getCapacity()) {
+				shedOverload.increment();
+				return Admission.SHED_OVERLOAD;
+			}
+			Event event = new Event(Kind.ADD, itemType, itemUUID, name,
+					fillFactor);
+			event.duplicate = duplicate;
+			adds.add(event);
+			pendingAdds.merge(itemUUID, 1, Integer::sum);
+			openAdds.put(itemUUID, event);
+			enqueued();
+			return Admission.QUEUED;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Submits a removal. It waits only when the queues are full and hold no
+	 * add to evict.
+	 *
+	 * @param itemUUID item UUID
+	 */
+	public void submitItemRemoved(String itemUUID) {
+		lock.lock();
+		try {
+			checkOpen();
+			boolean waited = false;
+			while (depth() >= policy.getCapacity() && !evictAdd()) {
+				waited = true;
+				notFull.awaitUninterruptibly();
+				checkOpen();
+			}
+			if (waited) {
+				deferred.increment();
+			}
+			Event event = new Event(Kind.REMOVE, 0, itemUUID, null, null);
+			openAdds.remove(itemUUID);
+			if (pendingAdds.containsKey(itemUUID)) {
+				adds.add(event);
+			} else {
+				removals.add(event);
+			}
+			enqueued();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemAdded(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double)
+	 */
+	@Override
+	public void handleItemAdded(long itemType, String itemUUID, String name,
+			Double fillFactor) {
+		submitItemAdded(itemType, itemUUID, name, fillFactor);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemRemoved(java.lang.String)
+	 */
+	@Override
+	public void handleItemRemoved(String itemUUID) {
+		submitItemRemoved(itemUUID);
+	}
+
+	/**
+	 * Queues forgetting the item type behind the waiting adds. It is never
+	 * shed and never waits.
+	 *
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#forgetItem(long)
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		lock.lock();
+		try {
+			checkOpen();
+			adds.add(new Event(Kind.FORGET, itemType, null, null, null));
+			enqueued();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getItems(java.lang.Double)
+	 */
+	@Override
+	public Object[] getItems(Double fillFactor) {
+		return query(() -> delegate.getItems(fillFactor));
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getFillFactor(long)
+	 */
+	@Override
+	public Double getFillFactor(long itemType) {
+		return query(() -> delegate.getFillFactor(itemType));
+	}
+
+	/**
+	 * Waits until every event submitted before the call was applied
+	 */
+	public void flush() {
+		FutureTask<Void> marker = new FutureTask<>(() -> null);
+		lock.lock();
+		try {
+			checkOpen();
+			adds.add(new Event(marker));
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		await(marker);
+	}
+
+	/**
+	 * Returns the number of waiting events
+	 *
+	 * @return int
+	 */
+	public int getQueueDepth() {
+		lock.lock();
+		try {
+			return depth();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Checks if the backpressure signal is raised
+	 *
+	 * @return boolean
+	 */
+	public boolean isUnderPressure() {
+		return underPressure;
+	}
+
+	/**
+	 * Returns the number of events which were queued
+	 *
+	 * @return long
+	 */
+	public long getAdmittedCount() {
+		return admitted.sum();
+	}
+
+	/**
+	 * Returns the number of removals which had to wait for room
+	 *
+	 * @return long
+	 */
+	public long getDeferredCount() {
+		return deferred.sum();
+	}
+
+	/**
+	 * Returns the number of adds dropped because the item already waited to
+	 * be added
+	 *
+	 * @return long
+	 */
+	public long getShedDuplicateCount() {
+		return shedDuplicates.sum();
+	}
+
+	/**
+	 * Returns the number of adds shed because the queues were full
+	 *
+	 * @return long
+	 */
+	public long getShedOverloadCount() {
+		return shedOverload.sum();
+	}
+
+	/**
+	 * Returns the number of waiting adds evicted to make room for removals
+	 *
+	 * @return long
+	 */
+	public long getEvictedCount() {
+		return evicted.sum();
+	}
+
+	/**
+	 * Returns the number of events applied to the manager
+	 *
+	 * @return long
+	 */
+	public long getAppliedCount() {
+		return applied.sum();
+	}
+
+	/**
+	 * Returns the number of events the manager failed with an exception
+	 *
+	 * @return long
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * Stops accepting events, applies the waiting ones and stops the drain
+	 * thread
+	 *
+	 * @throws InterruptedException when interrupted while waiting for the
+	 *                              drain thread
+	 */
+	@Override
+	public void close() throws InterruptedException {
+		lock.lock();
+		try {
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		thread.join();
+	}
+
+	private int depth() {
+		return removals.size() + adds.size();
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Admission controller is closed");
+		}
+	}
+
+	/**
+	 * Drops a waiting add to make room, the newest duplicate one if there is
+	 * one, otherwise the newest
+	 *
+	 * @return false when no add waits
+	 */
+	private boolean evictAdd() {
+		Event victim = null;
+		for (Iterator<Event> it = adds.descendingIterator(); it.hasNext();) {
+			Event event = it.next();
+			if (event.kind != Kind.ADD) {
+				continue;
+			}
+			if (victim == null) {
+				victim = event;
+			}
+			if (event.duplicate) {
+				victim = event;
+				break;
+			}
+		}
+		if (victim == null) {
+			return false;
+		}
+		// the events are distinct objects, so this removes the victim itself
+		adds.removeLastOccurrence(victim);
+		dequeuedAdd(victim);
+		evicted.increment();
+		return true;
+	}
+
+	private void enqueued() {
+		admitted.increment();
+		notEmpty.signal();
+		if (!underPressure && depth() >= policy.getHighWatermark()) {
+			underPressure = true;
+			listeners.forEach(l -> l.onPressureChanged(true));
+		}
+	}
+
+	private void dequeued() {
+		notFull.signal();
+		if (underPressure && depth() <= policy.getLowWatermark()) {
+			underPressure = false;
+			listeners.forEach(l -> l.onPressureChanged(false));
+		}
+	}
+
+	private void dequeuedAdd(Event event) {
+		pendingAdds.computeIfPresent(event.itemUUID,
+				(k, count) -> count == 1 ? null : count - 1);
+		openAdds.remove(event.itemUUID, event);
+	}
+
+	private void drain() {
+		while (true) {
+			FutureTask<?> query = null;
+			Event event = null;
+			lock.lock();
+			try {
+				while (queries.isEmpty() && removals.isEmpty()
+						&& adds.isEmpty()) {
+					if (closed) {
+						return;
+					}
+					notEmpty.awaitUninterruptibly();
+				}
+				if (!queries.isEmpty()) {
+					query = queries.poll();
+				} else {
+					event = removals.isEmpty() ? adds.poll()
+							: removals.poll();
+					if (event.kind == Kind.ADD) {
+						dequeuedAdd(event);
+					}
+					dequeued();
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (query != null) {
+				query.run();
+			} else {
+				apply(event);
+			}
+		}
+	}
+
+	private void apply(Event event) {
+		try {
+			switch (event.kind) {
+			case ADD:
+				delegate.handleItemAdded(event.itemType, event.itemUUID,
+						event.name, event.fillFactor);
+				break;
+			case REMOVE:
+				delegate.handleItemRemoved(event.itemUUID);
+				break;
+			case FORGET:
+				delegate.forgetItem(event.itemType);
+				break;
+			default:
+				event.marker.run();
+				return;
+			}
+			applied.increment();
+		} catch (RuntimeException e) {
+			// one bad event must not stop the drain thread
+			failed.increment();
+		}
+	}
+
+	private <T> T query(Callable<T> call) {
+		if (Thread.currentThread() == thread) {
+			try {
+				return call.call();
+			} catch (Exception e) {
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+		FutureTask<T> task = new FutureTask<>(call);
+		lock.lock();
+		try {
+			checkOpen();
+			queries.add(task);
+			notEmpty.signal();
+		} finally {
+			lock.unlock();
+		}
+		return await(task);
+	}
+
+	private static <T> T await(FutureTask<T> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause().getMessage(),
+					e.getCause());
+		}
+	}
+
+	private enum Kind {
+		ADD, REMOVE, FORGET, FLUSH
+	}
+
+	/**
+	 * Waiting event
+	 */
+	private static final class Event {
+
+		final Kind kind;
+
+		final long itemType;
+
+		final String itemUUID;
+
+		final String name;
+
+		final Double fillFactor;
+
+		final FutureTask<Void> marker;
+
+		/**
+		 * An add of an item which already waited to be added
+		 */
+		boolean duplicate;
+
+		Event(Kind kind, long itemType, String itemUUID, String name,
+				Double fillFactor) {
+			this.kind = kind;
+			this.itemType = itemType;
+			this.itemUUID = itemUUID;
+			this.name = name;
+			this.fillFactor = fillFactor;
+			this.marker = null;
+		}
+
+		Event(FutureTask<Void> marker) {
+			this.kind = Kind.FLUSH;
+			this.itemType = 0;
+			this.itemUUID = null;
+			this.name = null;
+			this.fillFactor = null;
+			this.marker = marker;
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package com.oleksandr.smartfridge.ingest;
+
+/**
+ * Limits of an {@link AdmissionController}: how many events may wait, at
+ * which depth producers are asked to back off and whether duplicate adds
+ * are dropped on arrival.
+ *
+ * <pre>
+ * AdmissionPolicy policy = AdmissionPolicy.builder().capacity(50000)
+ * 		.watermarks(20000, 40000).build();
+ * </pre>
+ *
+ * @author oleksandr
+ *
+ */
+public class AdmissionPolicy {
+
+	private final int capacity;
+
+	private final int lowWatermark;
+
+	private final int highWatermark;
+
+	private final boolean dropDuplicateAdds;
+
+	private AdmissionPolicy(Builder builder) {
+		this.capacity = builder.capacity;
+		if (builder.highWatermark < 0) {
+			highWatermark = Math.max(1, (int) (builder.capacity * 4L / 5));
+			lowWatermark = Math.min(builder.capacity / 2, highWatermark - 1);
+		} else {
+			highWatermark = builder.highWatermark;
+			lowWatermark = builder.lowWatermark;
+		}
+		this.dropDuplicateAdds = builder.dropDuplicateAdds;
+	}
+
+	/**
+	 * Returns the default policy: 10000 events, back off at 80% and resume
+	 * at 50%, drop duplicate adds
+	 *
+	 * @return {@link AdmissionPolicy}
+	 */
+	public static AdmissionPolicy defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder with the default settings
+	 *
+	 * @return {@link Builder}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the number of add and remove events which may wait
+	 *
+	 * @return int
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the depth at which the backpressure signal is cleared
+	 *
+	 * @return int
+	 */
+	public int getLowWatermark() {
+		return lowWatermark;
+	}
+
+	/**
+	 * Returns the depth at which the backpressure signal is raised
+	 *
+	 * @return int
+	 */
+	public int getHighWatermark() {
+		return highWatermark;
+	}
+
+	/**
+	 * Checks if an add of an item which already waits to be added is
+	 * dropped
+	 *
+	 * @return boolean
+	 */
+	public boolean isDropDuplicateAdds() {
+		return dropDuplicateAdds;
+	}
+
+	/**
+	 * Builder of {@link AdmissionPolicy}
+	 */
+	public static class Builder {
+
+		private int capacity = 10000;
+
+		private int lowWatermark = -1;
+
+		private int highWatermark = -1;
+
+		private boolean dropDuplicateAdds = true;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets the number of add and remove events which may wait
+		 *
+		 * @param capacity number of events
+		 * @return this builder
+		 */
+		public Builder capacity(int capacity) {
+			if (capacity <= 0) {
+				throw new IllegalArgumentException(
+						"Capacity must be greater then 0");
+			}
+			this.capacity = capacity;
+			return this;
+		}
+
+		/**
+		 * Sets the backpressure watermarks. By default they are 50% and 80%
+		 * of the capacity.
+		 *
+		 * @param low  depth at which the signal is cleared
+		 * @param high depth at which the signal is raised
+		 * @return this builder
+		 */
+		public Builder watermarks(int low, int high) {
+			if (low < 0 || high <= low) {
+				throw new IllegalArgumentException(
+						"High watermark must be greater then the low one");
+			}
+			this.lowWatermark = low;
+			this.highWatermark = high;
+			return this;
+		}
+
+		/**
+		 * Sets if an add of an item which already waits to be added is
+		 * dropped
+		 *
+		 * @param dropDuplicateAdds true to drop them
+		 * @return this builder
+		 */
+		public Builder dropDuplicateAdds(boolean dropDuplicateAdds) {
+			this.dropDuplicateAdds = dropDuplicateAdds;
+			return this;
+		}
+
+		/**
+		 * Builds the policy
+		 *
+		 * @return {@link AdmissionPolicy}
+		 */
+		public AdmissionPolicy build() {
+			if (highWatermark > capacity) {
+				throw new IllegalArgumentException(
+						"High watermark must be not greater then capacity");
+			}
+			return new AdmissionPolicy(this);
+		}
+	}
+}
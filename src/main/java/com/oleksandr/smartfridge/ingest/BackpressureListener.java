@@ -0,0 +1,22 @@
+package com.oleksandr.smartfridge.ingest;
+
+/**
+ * Receives the backpressure signal of an {@link AdmissionController}.
+ * Producers should slow down while it is raised, for instance stop reading
+ * from their connections.
+ *
+ * @author oleksandr
+ *
+ */
+@FunctionalInterface
+public interface BackpressureListener {
+
+	/**
+	 * Called when the queue depth crosses a watermark. It is called with the
+	 * queues locked, so it must return quickly and must not submit events.
+	 *
+	 * @param underPressure true when the high watermark was reached, false
+	 *                      when the depth fell to the low watermark
+	 */
+	void onPressureChanged(boolean underPressure);
+}
@@ -0,0 +1,233 @@
+package com.oleksandr.smartfridge.ingest;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers recently seen event identifiers so that retried events can be
+ * recognized and dropped.
+ *
+ * Two Bloom filters cover the window: the current one receives new ids, the
+ * previous one still answers lookups until the next rotation. The filters
+ * rotate after a number of insertions or after a time span, whichever comes
+ * first, so an id is remembered for at least one and at most two
+ * generations. A Bloom filter can report false positives, so a hit is only
+ * trusted when a small exact set of the most recent ids confirms it. An id
+ * which the filters report but the exact set doesn't know is treated as new.
+ *
+ * Most new ids are rejected by the filters with a few bit tests, without
+ * probing the exact set.
+ *
+ * The window is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class DedupWindow {
+
+	/**
+	 * Number of bits set per id
+	 */
+	private static final int HASHES = 4;
+
+	private final int generationSize;
+
+	private final long generationMillis;
+
+	private final int exactCapacity;
+
+	private final LongSupplier clock;
+
+	private long[] current;
+
+	private long[] previous;
+
+	private final int bitMask;
+
+	private int generationCount;
+
+	private long generationStart;
+
+	/**
+	 * Most recent ids and the time they were seen, oldest first
+	 */
+	private final LinkedHashMap<String, Long> recent;
+
+	/**
+	 * Constructor
+	 *
+	 * @param generationSize   number of ids per Bloom filter generation
+	 * @param generationMillis lifetime of a generation in milliseconds
+	 * @param exactCapacity    number of most recent ids kept exactly
+	 * @param clock            current time in milliseconds
+	 */
+	public DedupWindow(int generationSize, long generationMillis,
+			int exactCapacity, LongSupplier clock) {
+		super();
+		if (generationSize <= 0 || generationMillis <= 0
+				|| exactCapacity <= 0) {
+			throw new IllegalArgumentException(
+					"Window sizes must be greater then 0");
+		}
+		this.generationSize = generationSize;
+		this.generationMillis = generationMillis;
+		this.exactCapacity = exactCapacity;
+		this.clock = clock;
+
+		// about 16 bits per id keeps the false positive rate well below 1%
+		int bits = Integer.highestOneBit(Math.max(64, generationSize * 16));
+		if (bits < generationSize * 16 && bits < (1 << 30)) {
+			bits <<= 1;
+		}
+		bitMask = bits - 1;
+		current = new long[bits / 64];
+		previous = new long[bits / 64];
+		generationStart = clock.getAsLong();
+		recent = new LinkedHashMap<>(Math.min(exactCapacity, 1 << 16) * 2);
+	}
+
+	/**
+	 * Constructor using the system clock
+	 *
+	 * @param generationSize   number of ids per Bloom filter generation
+	 * @param generationMillis lifetime of a generation in milliseconds
+	 * @param exactCapacity    number of most recent ids kept exactly
+	 */
+	public DedupWindow(int generationSize, long generationMillis,
+			int exactCapacity) {
+		this(generationSize, generationMillis, exactCapacity,
+				System::currentTimeMillis);
+	}
+
+	/**
+	 * Checks if the id was seen within the window and records it
+	 *
+	 * @param id event identifier
+	 * @return true when the id is a confirmed duplicate
+	 */
+	public boolean isDuplicate(String id) {
+		if (contains(id)) {
+			return true;
+		}
+		record(id);
+		return false;
+	}
+
+	/**
+	 * Checks if the id was seen within the window without recording it
+	 *
+	 * @param id event identifier
+	 * @return true when the id is a confirmed duplicate
+	 */
+	public boolean contains(String id) {
+		long now = clock.getAsLong();
+		rotate(now);
+		expire(now);
+
+		int h1 = id.hashCode();
+		int h2 = mix(h1);
+		return (contains(current, h1, h2) || contains(previous, h1, h2))
+				&& recent.containsKey(id);
+	}
+
+	/**
+	 * Records an id as seen. It is used once the event of the id was
+	 * applied, so that a rejected event may be retried.
+	 *
+	 * @param id event identifier
+	 */
+	public void record(String id) {
+		long now = clock.getAsLong();
+		rotate(now);
+
+		int h1 = id.hashCode();
+		set(current, h1, mix(h1));
+		generationCount++;
+		recent.put(id, now);
+		if (recent.size() > exactCapacity) {
+			Iterator<String> oldest = recent.keySet().iterator();
+			oldest.next();
+			oldest.remove();
+		}
+	}
+
+	/**
+	 * Forgets an id, so that the next event with this id is accepted again.
+	 * It is used when an item is removed and may legitimately be re-inserted
+	 * later.
+	 *
+	 * @param id event identifier
+	 */
+	public void forget(String id) {
+		recent.remove(id);
+	}
+
+	/**
+	 * Returns the number of ids kept in the exact set
+	 *
+	 * @return int
+	 */
+	public int getExactSize() {
+		return recent.size();
+	}
+
+	private void rotate(long now) {
+		if (generationCount < generationSize
+				&& now - generationStart < generationMillis) {
+			return;
+		}
+		long[] swap = previous;
+		previous = current;
+		current = swap;
+		Arrays.fill(current, 0L);
+		generationCount = 0;
+		generationStart = now;
+	}
+
+	/**
+	 * Drops exact entries which are older than two generations
+	 */
+	private void expire(long now) {
+		Iterator<Map.Entry<String, Long>> oldest = recent.entrySet()
+				.iterator();
+		while (oldest.hasNext()) {
+			if (now - oldest.next().getValue() < 2 * generationMillis) {
+				return;
+			}
+			oldest.remove();
+		}
+	}
+
+	private boolean contains(long[] bits, int h1, int h2) {
+		for (int i = 0; i < HASHES; i++) {
+			int bit = (h1 + i * h2) & bitMask;
+			if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void set(long[] bits, int h1, int h2) {
+		for (int i = 0; i < HASHES; i++) {
+			int bit = (h1 + i * h2) & bitMask;
+			bits[bit >>> 6] |= 1L << bit;
+		}
+	}
+
+	/**
+	 * Second hash derived from the first one with the murmur3 finalizer. It
+	 * is forced to be odd, so the probe sequence visits distinct bits.
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h | 1;
+	}
+}
@@ -0,0 +1,166 @@
+package com.oleksandr.smartfridge.ingest;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+
+/**
+ * Idempotent ingestion mode for a {@link SmartFridgeManager}. Retried add
+ * events are recognized by their event identifier in a {@link DedupWindow}
+ * and dropped before they reach the storage, instead of being rejected by
+ * it with an exception and a warning.
+ *
+ * Without an explicit event identifier the item UUID is used. Removing an
+ * item or forgetting its type forgets its UUID, so an item which is taken
+ * out and put back is added again.
+ *
+ * An event identifier is only recorded once the add was applied, so an add
+ * the delegate rejected, with an exception or, for a
+ * {@link SmartFridgeManagerImpl}, with a warning, may be retried.
+ *
+ * The manager is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class IdempotentFridgeManager implements SmartFridgeManager {
+
+	private final SmartFridgeManager delegate;
+
+	private final DedupWindow window;
+
+	/**
+	 * Item type of every added item, so forgetting a type can forget the
+	 * UUIDs of its items
+	 */
+	private final HashMap<String, Long> itemTypes = new HashMap<>();
+
+	/**
+	 * Number of add events dropped as duplicates
+	 */
+	private long duplicates;
+
+	/**
+	 * Constructor
+	 *
+	 * @param delegate manager receiving the events which are not duplicates
+	 * @param window   window of recently seen event identifiers
+	 */
+	public IdempotentFridgeManager(SmartFridgeManager delegate,
+			DedupWindow window) {
+		super();
+		this.delegate = Objects.requireNonNull(delegate,
+				"Manager reference must be not null");
+		this.window = Objects.requireNonNull(window,
+				"Window reference must be not null");
+	}
+
+	/**
+	 * Handles an add event carrying its own identifier. Retries of the event
+	 * must carry the same identifier.
+	 *
+	 * @param eventId    event identifier
+	 * @param itemType   item type
+	 * @param itemUUID   item UUID
+	 * @param name       item name
+	 * @param fillFactor item fill factor
+	 * @return false when the event was dropped as a duplicate
+	 */
+	public boolean handleItemAdded(String eventId, long itemType,
+			String itemUUID, String name, Double fillFactor) {
+		if (eventId != null && window.contains(eventId)) {
+			duplicates++;
+			return false;
+		}
+		if (addToDelegate(itemType, itemUUID, name, fillFactor)) {
+			if (eventId != null) {
+				window.record(eventId);
+			}
+			itemTypes.put(itemUUID, itemType);
+		}
+		return true;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemAdded(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double)
+	 */
+	@Override
+	public void handleItemAdded(long itemType, String itemUUID, String name,
+			Double fillFactor) {
+		handleItemAdded(itemUUID, itemType, itemUUID, name, fillFactor);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemRemoved(java.lang.String)
+	 */
+	@Override
+	public void handleItemRemoved(String itemUUID) {
+		if (itemUUID != null) {
+			window.forget(itemUUID);
+			itemTypes.remove(itemUUID);
+		}
+		delegate.handleItemRemoved(itemUUID);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getItems(java.lang.Double)
+	 */
+	@Override
+	public Object[] getItems(Double fillFactor) {
+		return delegate.getItems(fillFactor);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getFillFactor(long)
+	 */
+	@Override
+	public Double getFillFactor(long itemType) {
+		return delegate.getFillFactor(itemType);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#forgetItem(long)
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		Iterator<Map.Entry<String, Long>> it = itemTypes.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			if (entry.getValue() == itemType) {
+				window.forget(entry.getKey());
+				it.remove();
+			}
+		}
+		delegate.forgetItem(itemType);
+	}
+
+	/**
+	 * Passes an add to the delegate
+	 *
+	 * @return false when the delegate rejected the item
+	 */
+	private boolean addToDelegate(long itemType, String itemUUID, String name,
+			Double fillFactor) {
+		if (delegate instanceof SmartFridgeManagerImpl) {
+			return ((SmartFridgeManagerImpl) delegate).addItem(itemType,
+					itemUUID, name, fillFactor);
+		}
+		// an exception leaves the event id unrecorded
+		delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+		return true;
+	}
+
+	/**
+	 * Returns the number of add events dropped as duplicates
+	 *
+	 * @return long
+	 */
+	public long getDuplicateCount() {
+		return duplicates;
+	}
+}
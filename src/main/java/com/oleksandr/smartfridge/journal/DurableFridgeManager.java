@@ -0,0 +1,139 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+
+/**
+ * Durable ingestion for a {@link SmartFridgeManager}. Every event is
+ * appended to a {@link GroupCommitLog} and applied to the manager in one
+ * step, so the log has the events in the order the manager saw them, and
+ * the caller is released once the event is forced to disk. Concurrent
+ * callers share the forces of the log.
+ *
+ * Queries may see an event a moment before it is durable. Events the log
+ * can't encode, such as an add without a UUID, can't change the storage
+ * and go to the manager without being logged. When the log fails the
+ * event which hit the failure stays applied and the caller gets an
+ * {@link UncheckedIOException}.
+ *
+ * A fridge is recovered by replaying the log with
+ * {@link EventLogReader#replay(SmartFridgeManager)} before a new log is
+ * started.
+ *
+ * The manager is thread-safe; the manager behind it is only called by one
+ * thread at a time.
+ *
+ * @author oleksandr
+ *
+ */
+public class DurableFridgeManager implements SmartFridgeManager {
+
+	private final SmartFridgeManager delegate;
+
+	private final GroupCommitLog log;
+
+	private final LongSupplier clock;
+
+	/**
+	 * Constructor
+	 *
+	 * @param delegate manager receiving the events
+	 * @param log      {@link GroupCommitLog} the events are written to
+	 */
+	public DurableFridgeManager(SmartFridgeManager delegate,
+			GroupCommitLog log) {
+		this(delegate, log, System::currentTimeMillis);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param delegate manager receiving the events
+	 * @param log      {@link GroupCommitLog} the events are written to
+	 * @param clock    time of the events in milliseconds
+	 */
+	public DurableFridgeManager(SmartFridgeManager delegate,
+			GroupCommitLog log, LongSupplier clock) {
+		super();
+		this.delegate = Objects.requireNonNull(delegate,
+				"Manager reference must be not null");
+		this.log = Objects.requireNonNull(log,
+				"Log reference must be not null");
+		this.clock = Objects.requireNonNull(clock,
+				"Clock reference must be not null");
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemAdded(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double)
+	 */
+	@Override
+	public void handleItemAdded(long itemType, String itemUUID, String name,
+			Double fillFactor) {
+		long sequence = 0;
+		synchronized (this) {
+			if (itemUUID != null && name != null && fillFactor != null) {
+				sequence = log.appendAdded(clock.getAsLong(), itemType,
+						itemUUID, name, fillFactor);
+			}
+			delegate.handleItemAdded(itemType, itemUUID, name, fillFactor);
+		}
+		commit(sequence);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemRemoved(java.lang.String)
+	 */
+	@Override
+	public void handleItemRemoved(String itemUUID) {
+		long sequence = 0;
+		synchronized (this) {
+			if (itemUUID != null) {
+				sequence = log.appendRemoved(clock.getAsLong(), itemUUID);
+			}
+			delegate.handleItemRemoved(itemUUID);
+		}
+		commit(sequence);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#forgetItem(long)
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		long sequence;
+		synchronized (this) {
+			sequence = log.appendForgotten(clock.getAsLong(), itemType);
+			delegate.forgetItem(itemType);
+		}
+		commit(sequence);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getItems(java.lang.Double)
+	 */
+	@Override
+	public synchronized Object[] getItems(Double fillFactor) {
+		return delegate.getItems(fillFactor);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getFillFactor(long)
+	 */
+	@Override
+	public synchronized Double getFillFactor(long itemType) {
+		return delegate.getFillFactor(itemType);
+	}
+
+	private void commit(long sequence) {
+		try {
+			log.awaitDurable(sequence);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.oleksandr.smartfridge.journal;
+
+/**
+ * Binary event log format.
+ *
+ * A log starts with a header made of the {@link #MAGIC} int and the
+ * {@link #VERSION} byte. The header is followed by records, each starting
+ * with an unsigned varint record kind:
+ *
+ * <pre>
+ * NAME   string name                       defines the next name id
+ * ADD    delta timestamp, signed itemType, string UUID, name id, fill
+ * REMOVE delta timestamp, string UUID
+ * FORGET delta timestamp, signed itemType
+ * TYPE   delta timestamp, signed itemType   declares a type without items
+ * </pre>
+ *
+ * Timestamps are milliseconds, stored as a signed varint delta from the
+ * previous record's timestamp. Item names are dictionary coded: the first
+ * time a name is used a NAME record assigns it the next id, later records
+ * refer to the id only. Fill factors are stored as signed varint fixed-point
+ * numbers with {@link #FILL_SCALE} units per 1.0. Strings are an unsigned
+ * varint byte count followed by UTF-8 bytes.
+ *
+ * A log which ends in the middle of a record, for instance after a crash,
+ * is read up to its last complete record.
+ *
+ * @author oleksandr
+ *
+ */
+public final class EventLog {
+
+	/**
+	 * "SFEL"
+	 */
+	public static final int MAGIC = 0x5346454C;
+
+	/**
+	 * Format version
+	 */
+	public static final byte VERSION = 1;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	public static final int HEADER_SIZE = 5;
+
+	/**
+	 * Fixed-point units per 1.0 of fill factor
+	 */
+	public static final int FILL_SCALE = 10000;
+
+	static final int NAME = 1;
+
+	static final int ADD = 2;
+
+	static final int REMOVE = 3;
+
+	static final int FORGET = 4;
+
+	static final int TYPE = 5;
+
+	private EventLog() {
+	}
+
+	/**
+	 * Converts a fill factor to its fixed-point representation
+	 *
+	 * @param fillFactor fill factor
+	 * @return fixed-point value
+	 */
+	public static long toFixed(double fillFactor) {
+		if (Double.isNaN(fillFactor) || Double.isInfinite(fillFactor)) {
+			throw new IllegalArgumentException(
+					"Fill factor must be a finite number");
+		}
+		return Math.round(fillFactor * FILL_SCALE);
+	}
+
+	/**
+	 * Converts a fixed-point value back to a fill factor
+	 *
+	 * @param fixed fixed-point value
+	 * @return fill factor
+	 */
+	public static double fromFixed(long fixed) {
+		return (double) fixed / FILL_SCALE;
+	}
+}
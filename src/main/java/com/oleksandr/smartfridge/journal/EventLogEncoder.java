@@ -0,0 +1,200 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Encodes events into the {@link EventLog} format. The encoder keeps the
+ * name dictionary and the previous timestamp, so the bytes it produces are
+ * only meaningful in the order they were encoded, starting with
+ * {@link #header()}.
+ *
+ * The encoder is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class EventLogEncoder {
+
+	/**
+	 * Name dictionary. Maps the item name to its id.
+	 */
+	private final HashMap<String, Integer> names = new HashMap<>();
+
+	/**
+	 * Timestamp of the last encoded record
+	 */
+	private long lastTimestamp;
+
+	/**
+	 * Encoded bytes in write mode
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * Constructor
+	 *
+	 * @param initialCapacity initial size of the buffer
+	 */
+	public EventLogEncoder(int initialCapacity) {
+		super();
+		buffer = ByteBuffer.allocate(initialCapacity);
+	}
+
+	/**
+	 * Encodes the log header
+	 */
+	public void header() {
+		reserve(EventLog.HEADER_SIZE);
+		buffer.putInt(EventLog.MAGIC);
+		buffer.put(EventLog.VERSION);
+	}
+
+	/**
+	 * Encodes an item added event
+	 *
+	 * @param timestamp  event time in milliseconds
+	 * @param itemType   item type
+	 * @param itemUUID   item UUID
+	 * @param name       item name
+	 * @param fillFactor item fill factor
+	 */
+	public void add(long timestamp, long itemType, String itemUUID,
+			String name, double fillFactor) {
+		long fixed = EventLog.toFixed(fillFactor);
+		byte[] uuid = bytes(itemUUID);
+		int nameId = nameId(name);
+
+		reserve(4 * Varint.MAX_LENGTH + 5 + uuid.length);
+		Varint.putUnsigned(buffer, EventLog.ADD);
+		putTimestamp(timestamp);
+		Varint.putSigned(buffer, itemType);
+		putBytes(uuid);
+		Varint.putUnsigned(buffer, nameId);
+		Varint.putSigned(buffer, fixed);
+	}
+
+	/**
+	 * Encodes an item removed event
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemUUID  item UUID
+	 */
+	public void remove(long timestamp, String itemUUID) {
+		byte[] uuid = bytes(itemUUID);
+
+		reserve(2 * Varint.MAX_LENGTH + 5 + uuid.length);
+		Varint.putUnsigned(buffer, EventLog.REMOVE);
+		putTimestamp(timestamp);
+		putBytes(uuid);
+	}
+
+	/**
+	 * Encodes an item type forgotten event
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemType  item type
+	 */
+	public void forget(long timestamp, long itemType) {
+		reserve(3 * Varint.MAX_LENGTH);
+		Varint.putUnsigned(buffer, EventLog.FORGET);
+		putTimestamp(timestamp);
+		Varint.putSigned(buffer, itemType);
+	}
+
+	/**
+	 * Encodes an item type added event
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemType  item type
+	 */
+	public void type(long timestamp, long itemType) {
+		reserve(3 * Varint.MAX_LENGTH);
+		Varint.putUnsigned(buffer, EventLog.TYPE);
+		putTimestamp(timestamp);
+		Varint.putSigned(buffer, itemType);
+	}
+
+	/**
+	 * Returns the number of encoded bytes not written yet
+	 *
+	 * @return size in bytes
+	 */
+	public int size() {
+		return buffer.position();
+	}
+
+	/**
+	 * Writes all encoded bytes to the channel and empties the buffer
+	 *
+	 * @param channel destination channel
+	 * @throws IOException when writing fails
+	 */
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		buffer.flip();
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			buffer.compact();
+		}
+	}
+
+	/**
+	 * Drops the encoded bytes, the dictionary and the timestamp base. The
+	 * next bytes encoded start a new log.
+	 */
+	public void reset() {
+		buffer.clear();
+		names.clear();
+		lastTimestamp = 0;
+	}
+
+	private int nameId(String name) {
+		Integer id = names.get(name);
+		if (id == null) {
+			id = names.size();
+			names.put(name, id);
+
+			byte[] bytes = bytes(name);
+			reserve(2 * Varint.MAX_LENGTH + bytes.length);
+			Varint.putUnsigned(buffer, EventLog.NAME);
+			putBytes(bytes);
+		}
+		return id;
+	}
+
+	private void putTimestamp(long timestamp) {
+		Varint.putSigned(buffer, timestamp - lastTimestamp);
+		lastTimestamp = timestamp;
+	}
+
+	private void putBytes(byte[] bytes) {
+		Varint.putUnsigned(buffer, bytes.length);
+		buffer.put(bytes);
+	}
+
+	private static byte[] bytes(String value) {
+		if (value == null) {
+			throw new IllegalArgumentException(
+					"Event log strings can't be null");
+		}
+		return value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void reserve(int needed) {
+		if (buffer.remaining() >= needed) {
+			return;
+		}
+		int capacity = Math.max(buffer.capacity() * 2,
+				buffer.position() + needed);
+		ByteBuffer larger = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		larger.put(buffer);
+		buffer = larger;
+	}
+}
@@ -0,0 +1,236 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Objects;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+
+/**
+ * Reads an {@link EventLog} file through a read-only memory mapping. Records
+ * are decoded in place from the mapped pages. Only the item UUIDs are
+ * materialized per event, names are decoded once when their dictionary
+ * record is read.
+ *
+ * Logs larger than 2GB are not supported.
+ *
+ * @author oleksandr
+ *
+ */
+public class EventLogReader implements Closeable {
+
+	private final FileChannel channel;
+
+	private final MappedByteBuffer mapped;
+
+	/**
+	 * Offset right after the last complete record read so far
+	 */
+	private long validLength;
+
+	/**
+	 * Opens a log for reading
+	 *
+	 * @param path log file
+	 * @throws IOException when the file can't be mapped or is not an event
+	 *                     log
+	 */
+	public EventLogReader(Path path) throws IOException {
+		super();
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Event log is too large to be mapped");
+			}
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (size >= EventLog.HEADER_SIZE
+					&& (mapped.getInt(0) != EventLog.MAGIC
+							|| mapped.get(4) != EventLog.VERSION)) {
+				throw new IOException(
+						String.format("%s is not an event log", path));
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Decodes all records and passes the events to the visitor. Reading
+	 * stops at the end of the file or at an incomplete last record.
+	 * Exceptions of the visitor are passed on.
+	 *
+	 * @param visitor receives the events
+	 * @return number of events read
+	 * @throws IllegalStateException when a complete record is corrupt
+	 */
+	public long accept(EventLogVisitor visitor) {
+		Objects.requireNonNull(visitor, "Visitor reference must be not null");
+		ByteBuffer buffer = mapped.duplicate();
+		if (buffer.limit() < EventLog.HEADER_SIZE) {
+			validLength = 0;
+			return 0;
+		}
+		buffer.position(EventLog.HEADER_SIZE);
+		validLength = EventLog.HEADER_SIZE;
+
+		ArrayList<String> names = new ArrayList<>();
+		byte[] scratch = new byte[256];
+		long timestamp = 0;
+		long count = 0;
+
+		while (buffer.hasRemaining()) {
+			// decode the whole record first: an exception while decoding
+			// means a torn tail, one thrown by the visitor is not caught
+			int kind;
+			long at;
+			long itemType = 0;
+			String itemUUID = null;
+			String name = null;
+			double fillFactor = 0.0;
+			try {
+				kind = (int) Varint.getUnsigned(buffer);
+				switch (kind) {
+				case EventLog.NAME:
+					names.add(getString(buffer, scratch));
+					validLength = buffer.position();
+					continue;
+				case EventLog.ADD:
+					at = timestamp + Varint.getSigned(buffer);
+					itemType = Varint.getSigned(buffer);
+					int uuidLength = getLength(buffer);
+					if (uuidLength > scratch.length) {
+						scratch = new byte[uuidLength];
+					}
+					buffer.get(scratch, 0, uuidLength);
+					itemUUID = new String(scratch, 0, uuidLength,
+							StandardCharsets.UTF_8);
+					long nameId = Varint.getUnsigned(buffer);
+					fillFactor = EventLog
+							.fromFixed(Varint.getSigned(buffer));
+					if (nameId >= names.size()) {
+						throw new IllegalStateException(String.format(
+								"Unknown name %d at offset %d", nameId,
+								validLength));
+					}
+					name = names.get((int) nameId);
+					break;
+				case EventLog.REMOVE:
+					at = timestamp + Varint.getSigned(buffer);
+					itemUUID = getString(buffer, scratch);
+					break;
+				case EventLog.FORGET:
+				case EventLog.TYPE:
+					at = timestamp + Varint.getSigned(buffer);
+					itemType = Varint.getSigned(buffer);
+					break;
+				default:
+					throw new IllegalStateException(String.format(
+							"Unknown record kind %d at offset %d", kind,
+							validLength));
+				}
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				// incomplete last record, the log ends at validLength
+				break;
+			}
+
+			timestamp = at;
+			switch (kind) {
+			case EventLog.ADD:
+				visitor.itemAdded(timestamp, itemType, itemUUID, name,
+						fillFactor);
+				break;
+			case EventLog.REMOVE:
+				visitor.itemRemoved(timestamp, itemUUID);
+				break;
+			case EventLog.FORGET:
+				visitor.itemForgotten(timestamp, itemType);
+				break;
+			default:
+				visitor.itemTypeAdded(timestamp, itemType);
+			}
+			count++;
+			validLength = buffer.position();
+		}
+		return count;
+	}
+
+	/**
+	 * Replays the log into a fridge manager. Item types without items are
+	 * only restored into a {@link SmartFridgeManagerImpl}.
+	 *
+	 * @param manager fridge manager receiving the events
+	 * @return number of events replayed
+	 */
+	public long replay(SmartFridgeManager manager) {
+		Objects.requireNonNull(manager, "Manager reference must be not null");
+		return accept(new EventLogVisitor() {
+			@Override
+			public void itemAdded(long timestamp, long itemType,
+					String itemUUID, String name, double fillFactor) {
+				manager.handleItemAdded(itemType, itemUUID, name, fillFactor);
+			}
+
+			@Override
+			public void itemRemoved(long timestamp, String itemUUID) {
+				manager.handleItemRemoved(itemUUID);
+			}
+
+			@Override
+			public void itemForgotten(long timestamp, long itemType) {
+				manager.forgetItem(itemType);
+			}
+
+			@Override
+			public void itemTypeAdded(long timestamp, long itemType) {
+				if (manager instanceof SmartFridgeManagerImpl) {
+					((SmartFridgeManagerImpl) manager).addItemType(itemType);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns the length of the log up to its last complete record, as found
+	 * by the last {@link #accept(EventLogVisitor)} call
+	 *
+	 * @return length in bytes
+	 */
+	public long getValidLength() {
+		return validLength;
+	}
+
+	/**
+	 * Releases the file. The mapping itself is released by the garbage
+	 * collector.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static int getLength(ByteBuffer buffer) {
+		long length = Varint.getUnsigned(buffer);
+		if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		return (int) length;
+	}
+
+	private static String getString(ByteBuffer buffer, byte[] scratch) {
+		int length = getLength(buffer);
+		byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+		buffer.get(bytes, 0, length);
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,48 @@
+package com.oleksandr.smartfridge.journal;
+
+/**
+ * Receives the events decoded from an event log in the order they were
+ * written.
+ *
+ * @author oleksandr
+ *
+ */
+public interface EventLogVisitor {
+
+	/**
+	 * An item was added to the fridge
+	 *
+	 * @param timestamp  event time in milliseconds
+	 * @param itemType   item type
+	 * @param itemUUID   item UUID
+	 * @param name       item name
+	 * @param fillFactor item fill factor
+	 */
+	void itemAdded(long timestamp, long itemType, String itemUUID,
+			String name, double fillFactor);
+
+	/**
+	 * An item was removed from the fridge
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemUUID  item UUID
+	 */
+	void itemRemoved(long timestamp, String itemUUID);
+
+	/**
+	 * An item type was forgotten
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemType  item type
+	 */
+	void itemForgotten(long timestamp, long itemType);
+
+	/**
+	 * An item type without items was declared. Snapshots use it for the
+	 * types whose items were all removed.
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemType  item type
+	 */
+	void itemTypeAdded(long timestamp, long itemType);
+}
@@ -0,0 +1,127 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes events to an {@link EventLog} file. Events are buffered and
+ * written once the buffer fills up, on {@link #flush()} and on
+ * {@link #close()}.
+ *
+ * The writer is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class EventLogWriter implements EventLogVisitor, Closeable {
+
+	/**
+	 * Amount of buffered bytes which triggers a write
+	 */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private final FileChannel channel;
+
+	private final EventLogEncoder encoder = new EventLogEncoder(
+			BUFFER_SIZE + 1024);
+
+	/**
+	 * Creates a new log. An existing file is truncated.
+	 *
+	 * @param path log file
+	 * @throws IOException when the file can't be created
+	 */
+	public EventLogWriter(Path path) throws IOException {
+		super();
+		channel = FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		encoder.header();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemAdded(long,
+	 *      long, java.lang.String, java.lang.String, double)
+	 */
+	@Override
+	public void itemAdded(long timestamp, long itemType, String itemUUID,
+			String name, double fillFactor) {
+		encoder.add(timestamp, itemType, itemUUID, name, fillFactor);
+		flushIfFull();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemRemoved(long,
+	 *      java.lang.String)
+	 */
+	@Override
+	public void itemRemoved(long timestamp, String itemUUID) {
+		encoder.remove(timestamp, itemUUID);
+		flushIfFull();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemForgotten(long,
+	 *      long)
+	 */
+	@Override
+	public void itemForgotten(long timestamp, long itemType) {
+		encoder.forget(timestamp, itemType);
+		flushIfFull();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemTypeAdded(long,
+	 *      long)
+	 */
+	@Override
+	public void itemTypeAdded(long timestamp, long itemType) {
+		encoder.type(timestamp, itemType);
+		flushIfFull();
+	}
+
+	/**
+	 * Writes the buffered events to the file
+	 *
+	 * @throws IOException when writing fails
+	 */
+	public void flush() throws IOException {
+		encoder.writeTo(channel);
+	}
+
+	/**
+	 * Returns the size of the log including buffered events
+	 *
+	 * @return size in bytes
+	 * @throws IOException when the file size can't be read
+	 */
+	public long size() throws IOException {
+		return channel.position() + encoder.size();
+	}
+
+	/**
+	 * Flushes buffered events and closes the file
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void flushIfFull() {
+		if (encoder.size() >= BUFFER_SIZE) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
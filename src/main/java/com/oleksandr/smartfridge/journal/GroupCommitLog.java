@@ -0,0 +1,400 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable {@link EventLog} shared by any number of writer threads. Writers
+ * encode their events into a shared buffer and get a sequence number; one
+ * sync thread writes the buffer to the file and forces it to disk, and
+ * every writer waiting for a sequence number covered by the force is
+ * released together. A disk which takes a millisecond to force then
+ * commits as many events per millisecond as the writers produce, instead
+ * of one.
+ *
+ * Batching is tuned by a {@link GroupCommitPolicy}. The sync thread writes
+ * the buffer to the file while holding the lock of the writers, which
+ * costs a copy into the page cache; it only forces without the lock.
+ *
+ * After a failed write or force the log accepts no more events. The events
+ * which were not forced stay unconfirmed and their writers get the error.
+ *
+ * @author oleksandr
+ *
+ */
+public class GroupCommitLog implements EventLogVisitor, Closeable {
+
+	private final FileChannel channel;
+
+	private final GroupCommitPolicy policy;
+
+	private final EventLogEncoder encoder = new EventLogEncoder(
+			EventLogWriter.BUFFER_SIZE);
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Signalled when events wait to be written
+	 */
+	private final Condition pending = lock.newCondition();
+
+	/**
+	 * Signalled when a batch was forced or the log failed
+	 */
+	private final Condition forced = lock.newCondition();
+
+	/**
+	 * Sequence number of the last appended event
+	 */
+	private long appended;
+
+	/**
+	 * Sequence number of the last event written to the file
+	 */
+	private long written;
+
+	/**
+	 * Sequence number of the last event forced to disk
+	 */
+	private volatile long durable;
+
+	private volatile long syncs;
+
+	private IOException failure;
+
+	private boolean closed;
+
+	private final Thread thread;
+
+	/**
+	 * Creates a new log. An existing file is truncated.
+	 *
+	 * @param path   log file
+	 * @param policy {@link GroupCommitPolicy}
+	 * @throws IOException when the file can't be created
+	 */
+	public GroupCommitLog(Path path, GroupCommitPolicy policy)
+			throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE), policy);
+	}
+
+	/**
+	 * Starts a new log at the position of the channel. Starts the sync
+	 * thread; the channel is closed with the log.
+	 *
+	 * @param channel writable channel of the log file
+	 * @param policy  {@link GroupCommitPolicy}
+	 */
+	public GroupCommitLog(FileChannel channel, GroupCommitPolicy policy) {
+		super();
+		this.channel = Objects.requireNonNull(channel,
+				"Channel reference must be not null");
+		this.policy = Objects.requireNonNull(policy,
+				"Policy reference must be not null");
+		encoder.header();
+		thread = new Thread(this::run, "group-commit");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Appends an item added event
+	 *
+	 * @param timestamp  event time in milliseconds
+	 * @param itemType   item type
+	 * @param itemUUID   item UUID
+	 * @param name       item name
+	 * @param fillFactor item fill factor
+	 * @return sequence number of the event
+	 * @throws IllegalStateException when the log is closed or failed
+	 */
+	public long appendAdded(long timestamp, long itemType, String itemUUID,
+			String name, double fillFactor) {
+		lock.lock();
+		try {
+			checkOpen();
+			encoder.add(timestamp, itemType, itemUUID, name, fillFactor);
+			return appended();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends an item removed event
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemUUID  item UUID
+	 * @return sequence number of the event
+	 * @throws IllegalStateException when the log is closed or failed
+	 */
+	public long appendRemoved(long timestamp, String itemUUID) {
+		lock.lock();
+		try {
+			checkOpen();
+			encoder.remove(timestamp, itemUUID);
+			return appended();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends an item type forgotten event
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemType  item type
+	 * @return sequence number of the event
+	 * @throws IllegalStateException when the log is closed or failed
+	 */
+	public long appendForgotten(long timestamp, long itemType) {
+		lock.lock();
+		try {
+			checkOpen();
+			encoder.forget(timestamp, itemType);
+			return appended();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Appends an item type added event
+	 *
+	 * @param timestamp event time in milliseconds
+	 * @param itemType  item type
+	 * @return sequence number of the event
+	 * @throws IllegalStateException when the log is closed or failed
+	 */
+	public long appendItemType(long timestamp, long itemType) {
+		lock.lock();
+		try {
+			checkOpen();
+			encoder.type(timestamp, itemType);
+			return appended();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until the event with the sequence number and all events before
+	 * it are forced to disk
+	 *
+	 * @param sequence sequence number returned by an append
+	 * @throws IOException when the log failed before the event was forced
+	 *                     or the thread was interrupted
+	 */
+	public void awaitDurable(long sequence) throws IOException {
+		if (durable >= sequence) {
+			return;
+		}
+		lock.lock();
+		try {
+			while (durable < sequence && failure == null) {
+				forced.await();
+			}
+			if (durable < sequence) {
+				throw new IOException("Event log failed", failure);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted waiting for the event log");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until all appended events are forced to disk
+	 *
+	 * @throws IOException when the log failed or the thread was interrupted
+	 */
+	public void sync() throws IOException {
+		long sequence;
+		lock.lock();
+		try {
+			sequence = appended;
+		} finally {
+			lock.unlock();
+		}
+		awaitDurable(sequence);
+	}
+
+	/**
+	 * Appends the event and waits until it is forced to disk
+	 *
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemAdded(long,
+	 *      long, java.lang.String, java.lang.String, double)
+	 */
+	@Override
+	public void itemAdded(long timestamp, long itemType, String itemUUID,
+			String name, double fillFactor) {
+		commit(appendAdded(timestamp, itemType, itemUUID, name, fillFactor));
+	}
+
+	/**
+	 * Appends the event and waits until it is forced to disk
+	 *
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemRemoved(long,
+	 *      java.lang.String)
+	 */
+	@Override
+	public void itemRemoved(long timestamp, String itemUUID) {
+		commit(appendRemoved(timestamp, itemUUID));
+	}
+
+	/**
+	 * Appends the event and waits until it is forced to disk
+	 *
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemForgotten(long,
+	 *      long)
+	 */
+	@Override
+	public void itemForgotten(long timestamp, long itemType) {
+		commit(appendForgotten(timestamp, itemType));
+	}
+
+	/**
+	 * Appends the event and waits until it is forced to disk
+	 *
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemTypeAdded(long,
+	 *      long)
+	 */
+	@Override
+	public void itemTypeAdded(long timestamp, long itemType) {
+		commit(appendItemType(timestamp, itemType));
+	}
+
+	/**
+	 * Returns the sequence number of the last event forced to disk
+	 *
+	 * @return long
+	 */
+	public long getDurableSequence() {
+		return durable;
+	}
+
+	/**
+	 * Returns the number of forces issued so far. The number of durable
+	 * events divided by it is the average batch size.
+	 *
+	 * @return long
+	 */
+	public long getSyncCount() {
+		return syncs;
+	}
+
+	/**
+	 * Forces the appended events, stops the sync thread and closes the file
+	 *
+	 * @throws IOException when the last events couldn't be forced
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			closed = true;
+			pending.signal();
+		} finally {
+			lock.unlock();
+		}
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted closing the event log");
+		} finally {
+			channel.close();
+		}
+		if (failure != null) {
+			throw new IOException("Event log failed", failure);
+		}
+	}
+
+	private void checkOpen() {
+		if (failure != null) {
+			throw new IllegalStateException("Event log failed", failure);
+		}
+		if (closed) {
+			throw new IllegalStateException("Event log is closed");
+		}
+	}
+
+	private long appended() {
+		long sequence = ++appended;
+		long waiting = sequence - written;
+		// wake the sync thread for the first event of a batch and once more
+		// when the batch is full
+		if (waiting == 1 || waiting == policy.getBatchEvents()) {
+			pending.signal();
+		}
+		return sequence;
+	}
+
+	private void commit(long sequence) {
+		try {
+			awaitDurable(sequence);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Sync thread: writes and forces the appended events batch by batch
+	 * until the log is closed and everything is forced
+	 */
+	private void run() {
+		lock.lock();
+		try {
+			while (true) {
+				while (appended == written && !closed) {
+					pending.await();
+				}
+				if (appended == written) {
+					return;
+				}
+				long delay = policy.getMaxDelayNanos();
+				while (delay > 0 && !closed
+						&& appended - written < policy.getBatchEvents()) {
+					delay = pending.awaitNanos(delay);
+				}
+
+				long batch = appended;
+				encoder.writeTo(channel);
+				written = batch;
+
+				lock.unlock();
+				try {
+					channel.force(policy.isForceMetadata());
+				} finally {
+					lock.lock();
+				}
+				durable = batch;
+				syncs++;
+				forced.signalAll();
+			}
+		} catch (IOException e) {
+			failure = e;
+			forced.signalAll();
+		} catch (InterruptedException e) {
+			failure = new InterruptedIOException(
+					"Group commit thread was interrupted");
+			forced.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
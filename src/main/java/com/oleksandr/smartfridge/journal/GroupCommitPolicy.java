@@ -0,0 +1,152 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batching targets of a {@link GroupCommitLog}: how long the first event of
+ * a batch may wait for more events before the batch is forced to disk, and
+ * how many events make a batch full enough to be forced right away.
+ *
+ * With no delay, which is the default, a batch is forced as soon as the
+ * previous force completed; the events appended during a force form the
+ * next batch. A delay trades latency for fewer forces when the writers are
+ * too few to fill a batch during a force.
+ *
+ * <pre>
+ * GroupCommitPolicy policy = GroupCommitPolicy.builder()
+ * 		.maxDelay(200, TimeUnit.MICROSECONDS).batchEvents(64).build();
+ * </pre>
+ *
+ * @author oleksandr
+ *
+ */
+public class GroupCommitPolicy {
+
+	private final long maxDelayNanos;
+
+	private final int batchEvents;
+
+	private final boolean forceMetadata;
+
+	private GroupCommitPolicy(Builder builder) {
+		this.maxDelayNanos = builder.maxDelayNanos;
+		this.batchEvents = builder.batchEvents;
+		this.forceMetadata = builder.forceMetadata;
+	}
+
+	/**
+	 * Returns the default policy: no delay, batches of up to 1024 events,
+	 * file metadata not forced
+	 *
+	 * @return {@link GroupCommitPolicy}
+	 */
+	public static GroupCommitPolicy defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder with the default settings
+	 *
+	 * @return {@link Builder}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns how long the first event of a batch may wait for more events
+	 *
+	 * @return delay in nanoseconds
+	 */
+	public long getMaxDelayNanos() {
+		return maxDelayNanos;
+	}
+
+	/**
+	 * Returns the number of events which make a batch full
+	 *
+	 * @return int
+	 */
+	public int getBatchEvents() {
+		return batchEvents;
+	}
+
+	/**
+	 * Checks if the file metadata is forced together with the content
+	 *
+	 * @return boolean
+	 */
+	public boolean isForceMetadata() {
+		return forceMetadata;
+	}
+
+	/**
+	 * Builder of {@link GroupCommitPolicy}
+	 */
+	public static class Builder {
+
+		private long maxDelayNanos;
+
+		private int batchEvents = 1024;
+
+		private boolean forceMetadata;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets how long the first event of a batch may wait for more events
+		 * before the batch is forced
+		 *
+		 * @param delay delay, 0 to force as soon as possible
+		 * @param unit  unit of the delay
+		 * @return this builder
+		 */
+		public Builder maxDelay(long delay, TimeUnit unit) {
+			if (delay < 0) {
+				throw new IllegalArgumentException(
+						"Delay must be not less then 0");
+			}
+			this.maxDelayNanos = unit.toNanos(delay);
+			return this;
+		}
+
+		/**
+		 * Sets the number of events which make a batch full. A full batch is
+		 * forced without waiting out the delay.
+		 *
+		 * @param batchEvents number of events
+		 * @return this builder
+		 */
+		public Builder batchEvents(int batchEvents) {
+			if (batchEvents <= 0) {
+				throw new IllegalArgumentException(
+						"Batch size must be greater then 0");
+			}
+			this.batchEvents = batchEvents;
+			return this;
+		}
+
+		/**
+		 * Sets if the file metadata is forced together with the content.
+		 * Forcing the content also keeps the file size on most file systems,
+		 * which is all a growing log needs.
+		 *
+		 * @param forceMetadata true to force the metadata
+		 * @return this builder
+		 */
+		public Builder forceMetadata(boolean forceMetadata) {
+			this.forceMetadata = forceMetadata;
+			return this;
+		}
+
+		/**
+		 * Builds the policy
+		 *
+		 * @return {@link GroupCommitPolicy}
+		 */
+		public GroupCommitPolicy build() {
+			return new GroupCommitPolicy(this);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tells a {@link SegmentedJournal} when to start a new segment and how
+ * eagerly to compact the full ones: a compaction starts once enough
+ * segments are full, and it reads and writes at most a given number of
+ * bytes per second so the disk stays available to the appends.
+ *
+ * <pre>
+ * JournalCompactionPolicy policy = JournalCompactionPolicy.builder()
+ * 		.segmentBytes(1 &lt;&lt; 20).minSegments(8)
+ * 		.maxBytesPerSecond(4 &lt;&lt; 20).build();
+ * </pre>
+ *
+ * @author oleksandr
+ *
+ */
+public class JournalCompactionPolicy {
+
+	/**
+	 * Rate which doesn't throttle the compaction
+	 */
+	public static final long UNLIMITED = Long.MAX_VALUE;
+
+	private final long segmentBytes;
+
+	private final int minSegments;
+
+	private final long checkIntervalMillis;
+
+	private final long maxBytesPerSecond;
+
+	private JournalCompactionPolicy(Builder builder) {
+		this.segmentBytes = builder.segmentBytes;
+		this.minSegments = builder.minSegments;
+		this.checkIntervalMillis = builder.checkIntervalMillis;
+		this.maxBytesPerSecond = builder.maxBytesPerSecond;
+	}
+
+	/**
+	 * Returns the default policy: segments of 4MB, compacted four at a
+	 * time at up to 16MB per second, checked every second
+	 *
+	 * @return {@link JournalCompactionPolicy}
+	 */
+	public static JournalCompactionPolicy defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder with the default settings
+	 *
+	 * @return {@link Builder}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the size which makes a segment full
+	 *
+	 * @return size in bytes
+	 */
+	public long getSegmentBytes() {
+		return segmentBytes;
+	}
+
+	/**
+	 * Returns the number of full segments which starts a compaction
+	 *
+	 * @return int
+	 */
+	public int getMinSegments() {
+		return minSegments;
+	}
+
+	/**
+	 * Returns how often the compactor looks for full segments
+	 *
+	 * @return interval in milliseconds
+	 */
+	public long getCheckIntervalMillis() {
+		return checkIntervalMillis;
+	}
+
+	/**
+	 * Returns the number of bytes the compactor may read and write per
+	 * second
+	 *
+	 * @return bytes per second or {@link #UNLIMITED}
+	 */
+	public long getMaxBytesPerSecond() {
+		return maxBytesPerSecond;
+	}
+
+	/**
+	 * Builder of {@link JournalCompactionPolicy}
+	 */
+	public static class Builder {
+
+		private long segmentBytes = 4 << 20;
+
+		private int minSegments = 4;
+
+		private long checkIntervalMillis = 1000;
+
+		private long maxBytesPerSecond = 16 << 20;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets the size which makes a segment full. The next event goes to
+		 * a new segment.
+		 *
+		 * @param segmentBytes size in bytes
+		 * @return this builder
+		 */
+		public Builder segmentBytes(long segmentBytes) {
+			if (segmentBytes <= EventLog.HEADER_SIZE) {
+				throw new IllegalArgumentException(
+						"Segment size must be greater then the log header");
+			}
+			this.segmentBytes = segmentBytes;
+			return this;
+		}
+
+		/**
+		 * Sets the number of full segments which starts a compaction
+		 *
+		 * @param minSegments number of segments
+		 * @return this builder
+		 */
+		public Builder minSegments(int minSegments) {
+			if (minSegments <= 0) {
+				throw new IllegalArgumentException(
+						"Segment count must be greater then 0");
+			}
+			this.minSegments = minSegments;
+			return this;
+		}
+
+		/**
+		 * Sets how often the compactor looks for full segments. It also
+		 * looks every time a segment gets full.
+		 *
+		 * @param interval interval
+		 * @param unit     unit of the interval
+		 * @return this builder
+		 */
+		public Builder checkInterval(long interval, TimeUnit unit) {
+			if (interval <= 0) {
+				throw new IllegalArgumentException(
+						"Interval must be greater then 0");
+			}
+			this.checkIntervalMillis = Math.max(1, unit.toMillis(interval));
+			return this;
+		}
+
+		/**
+		 * Sets the number of bytes the compactor may read and write per
+		 * second
+		 *
+		 * @param maxBytesPerSecond bytes per second or
+		 *                          {@link JournalCompactionPolicy#UNLIMITED}
+		 * @return this builder
+		 */
+		public Builder maxBytesPerSecond(long maxBytesPerSecond) {
+			if (maxBytesPerSecond <= 0) {
+				throw new IllegalArgumentException(
+						"Rate must be greater then 0");
+			}
+			this.maxBytesPerSecond = maxBytesPerSecond;
+			return this;
+		}
+
+		/**
+		 * Builds the policy
+		 *
+		 * @return {@link JournalCompactionPolicy}
+		 */
+		public JournalCompactionPolicy build() {
+			return new JournalCompactionPolicy(this);
+		}
+	}
+}
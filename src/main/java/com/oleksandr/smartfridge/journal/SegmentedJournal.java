@@ -0,0 +1,612 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageConfig;
+
+/**
+ * {@link EventLog} journal which doesn't grow with the number of events,
+ * only with the number of live items. Events are appended to the active
+ * segment file; a full segment is sealed and a new one started. A
+ * background compactor replays the sealed segments into a scratch storage
+ * and writes its content as a {@link StorageSnapshot}, which replaces them:
+ * an item which was added and removed again leaves no record behind.
+ *
+ * The directory holds at most one snapshot and the segments after it:
+ *
+ * <pre>
+ * snapshot-N.log   state after the events of segments up to N
+ * segment-M.log    events, M &gt; N, in order
+ * </pre>
+ *
+ * A snapshot is written to a temporary file, forced and renamed over its
+ * final name, so a crash at any point leaves either the old or the new
+ * snapshot in place; files it made obsolete are deleted when the journal
+ * is opened again.
+ *
+ * The compactor only reads sealed segments, so it never blocks an append
+ * for longer than it takes to hand over the list of segments. It reads and
+ * writes at most {@link JournalCompactionPolicy#getMaxBytesPerSecond()}
+ * bytes per second, paced a file at a time, and runs at the lowest thread
+ * priority.
+ *
+ * The scratch storage is built from the {@link StorageConfig} of the
+ * journaled fridge, so it takes every item the fridge took, provided the
+ * journal only receives the events the fridge applied. An event the
+ * scratch storage rejects fails the compaction, and the files stay as
+ * they are.
+ *
+ * Like {@link StorageSnapshot} the journal doesn't keep expiry times. The
+ * journal is thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class SegmentedJournal implements EventLogVisitor, Closeable {
+
+	private static final String SEGMENT = "segment-";
+
+	private static final String SNAPSHOT = "snapshot-";
+
+	private static final String SUFFIX = ".log";
+
+	private static final String TEMPORARY = ".tmp";
+
+	private final Path directory;
+
+	private final JournalCompactionPolicy policy;
+
+	/**
+	 * Configuration of the scratch storage
+	 */
+	private final StorageConfig config;
+
+	private final Logger logger;
+
+	private final EventLogEncoder encoder = new EventLogEncoder(
+			EventLogWriter.BUFFER_SIZE + 1024);
+
+	/**
+	 * Taken by a compaction and by a replay, so a replay never sees a half
+	 * swapped directory
+	 */
+	private final ReentrantLock compactionLock = new ReentrantLock();
+
+	/**
+	 * Numbers of the sealed segments, guarded by this
+	 */
+	private final TreeSet<Long> sealed = new TreeSet<>();
+
+	/**
+	 * Number of the last segment in the snapshot, -1 without snapshot
+	 */
+	private long snapshot = -1;
+
+	private long active;
+
+	private FileChannel channel;
+
+	private boolean closed;
+
+	private volatile long compactions;
+
+	/**
+	 * Time until which the compactor is paced, in nanoseconds
+	 */
+	private long pacedUntil;
+
+	private final Thread thread;
+
+	/**
+	 * Opens the journal in a directory and starts the compactor. The
+	 * events found in the directory stay in the journal and are replayed
+	 * by {@link #replay(SmartFridgeManager)}; new events go to a new
+	 * segment.
+	 *
+	 * @param directory directory of the journal, created when missing
+	 * @param policy    {@link JournalCompactionPolicy}
+	 * @param logger    logger of the compactor
+	 * @throws IOException when the directory can't be read or the segment
+	 *                     can't be created
+	 */
+	public SegmentedJournal(Path directory, JournalCompactionPolicy policy,
+			Logger logger) throws IOException {
+		this(directory, policy, StorageConfig.defaults(), logger);
+	}
+
+	/**
+	 * Opens the journal of a fridge with its own storage configuration and
+	 * starts the compactor
+	 *
+	 * @param directory directory of the journal, created when missing
+	 * @param policy    {@link JournalCompactionPolicy}
+	 * @param config    {@link StorageConfig} of the journaled fridge
+	 * @param logger    logger of the compactor
+	 * @throws IOException when the directory can't be read or the segment
+	 *                     can't be created
+	 */
+	public SegmentedJournal(Path directory, JournalCompactionPolicy policy,
+			StorageConfig config, Logger logger) throws IOException {
+		super();
+		this.directory = Objects.requireNonNull(directory,
+				"Directory reference must be not null");
+		this.policy = Objects.requireNonNull(policy,
+				"Policy reference must be not null");
+		this.config = Objects.requireNonNull(config,
+				"Config reference must be not null");
+		this.logger = Objects.requireNonNull(logger,
+				"Logger reference must be not null");
+		Files.createDirectories(directory);
+		recover();
+		open(active);
+
+		thread = new Thread(this::run, "journal-compactor");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		thread.start();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemAdded(long,
+	 *      long, java.lang.String, java.lang.String, double)
+	 */
+	@Override
+	public synchronized void itemAdded(long timestamp, long itemType,
+			String itemUUID, String name, double fillFactor) {
+		checkOpen();
+		encoder.add(timestamp, itemType, itemUUID, name, fillFactor);
+		appended();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemRemoved(long,
+	 *      java.lang.String)
+	 */
+	@Override
+	public synchronized void itemRemoved(long timestamp, String itemUUID) {
+		checkOpen();
+		encoder.remove(timestamp, itemUUID);
+		appended();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemForgotten(long,
+	 *      long)
+	 */
+	@Override
+	public synchronized void itemForgotten(long timestamp, long itemType) {
+		checkOpen();
+		encoder.forget(timestamp, itemType);
+		appended();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.journal.EventLogVisitor#itemTypeAdded(long,
+	 *      long)
+	 */
+	@Override
+	public synchronized void itemTypeAdded(long timestamp, long itemType) {
+		checkOpen();
+		encoder.type(timestamp, itemType);
+		appended();
+	}
+
+	/**
+	 * Writes the buffered events and forces the active segment to disk
+	 *
+	 * @throws IOException when writing fails
+	 */
+	public synchronized void sync() throws IOException {
+		checkOpen();
+		encoder.writeTo(channel);
+		channel.force(false);
+	}
+
+	/**
+	 * Replays the snapshot and all segments into a fridge manager. Events
+	 * appended while the journal is replayed may be missed, so a fridge is
+	 * recovered before new events are appended.
+	 *
+	 * @param manager fridge manager receiving the events
+	 * @return number of events replayed
+	 * @throws IOException when a file can't be read
+	 */
+	public long replay(SmartFridgeManager manager) throws IOException {
+		Objects.requireNonNull(manager, "Manager reference must be not null");
+		compactionLock.lock();
+		try {
+			List<Path> files = new ArrayList<>();
+			synchronized (this) {
+				checkOpen();
+				encoder.writeTo(channel);
+				if (snapshot >= 0) {
+					files.add(snapshotPath(snapshot));
+				}
+				for (long segment : sealed) {
+					files.add(segmentPath(segment));
+				}
+				files.add(segmentPath(active));
+			}
+			long count = 0;
+			for (Path file : files) {
+				try (EventLogReader reader = new EventLogReader(file)) {
+					count += reader.replay(manager);
+				}
+			}
+			return count;
+		} finally {
+			compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Compacts all sealed segments now, however few they are. The
+	 * compactor does the same in the background once
+	 * {@link JournalCompactionPolicy#getMinSegments()} segments are sealed.
+	 *
+	 * @return false when there was no sealed segment
+	 * @throws IOException when a file can't be read or written, or the
+	 *                     scratch storage rejects an event
+	 */
+	public boolean compact() throws IOException {
+		compactionLock.lock();
+		try {
+			return compact(1);
+		} finally {
+			compactionLock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of sealed segments waiting for compaction
+	 *
+	 * @return int
+	 */
+	public synchronized int getSealedCount() {
+		return sealed.size();
+	}
+
+	/**
+	 * Returns the number of compactions done since the journal was opened
+	 *
+	 * @return long
+	 */
+	public long getCompactionCount() {
+		return compactions;
+	}
+
+	/**
+	 * Stops the compactor, forces the buffered events to disk and closes the
+	 * active segment. A compaction in progress is abandoned.
+	 *
+	 * @throws IOException when the last events couldn't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			notifyAll();
+		}
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted closing the journal");
+		}
+		synchronized (this) {
+			try {
+				encoder.writeTo(channel);
+				channel.force(false);
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("Journal is closed");
+		}
+	}
+
+	/**
+	 * Writes the buffer when it is full and seals the segment when it is
+	 * full. Called holding this.
+	 */
+	private void appended() {
+		try {
+			if (encoder.size() >= EventLogWriter.BUFFER_SIZE) {
+				encoder.writeTo(channel);
+			}
+			if (channel.position() + encoder.size() >= policy
+					.getSegmentBytes()) {
+				encoder.writeTo(channel);
+				channel.force(false);
+				channel.close();
+				sealed.add(active);
+				open(active + 1);
+				if (sealed.size() >= policy.getMinSegments()) {
+					notifyAll();
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Starts a new active segment. Called holding this.
+	 */
+	private void open(long segment) throws IOException {
+		channel = FileChannel.open(segmentPath(segment),
+				StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+		active = segment;
+		encoder.reset();
+		encoder.header();
+	}
+
+	/**
+	 * Finds the snapshot and the segments after it and removes what a crash
+	 * left behind
+	 */
+	private void recover() throws IOException {
+		List<Path> obsolete = new ArrayList<>();
+		TreeSet<Long> snapshots = new TreeSet<>();
+		TreeSet<Long> segments = new TreeSet<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				if (name.endsWith(TEMPORARY)) {
+					obsolete.add(file);
+				} else if (name.endsWith(SUFFIX) && name.startsWith(SNAPSHOT)) {
+					snapshots.add(number(name, SNAPSHOT));
+				} else if (name.endsWith(SUFFIX) && name.startsWith(SEGMENT)) {
+					segments.add(number(name, SEGMENT));
+				}
+			}
+		}
+		if (!snapshots.isEmpty()) {
+			snapshot = snapshots.pollLast();
+			for (long older : snapshots) {
+				obsolete.add(snapshotPath(older));
+			}
+		}
+		for (long segment : segments) {
+			if (segment <= snapshot) {
+				obsolete.add(segmentPath(segment));
+			} else {
+				sealed.add(segment);
+			}
+		}
+		active = Math.max(snapshot, sealed.isEmpty() ? -1 : sealed.last())
+				+ 1;
+		for (Path file : obsolete) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	/**
+	 * Compactor thread: compacts whenever enough segments are sealed, until
+	 * the journal is closed
+	 */
+	private void run() {
+		while (true) {
+			synchronized (this) {
+				try {
+					if (!closed && sealed.size() < policy.getMinSegments()) {
+						wait(policy.getCheckIntervalMillis());
+					}
+				} catch (InterruptedException e) {
+					// closing
+				}
+				if (closed) {
+					return;
+				}
+			}
+			compactionLock.lock();
+			try {
+				compact(policy.getMinSegments());
+			} catch (InterruptedIOException e) {
+				if (!isClosed()) {
+					logger.warn("Journal compaction was interrupted");
+				}
+			} catch (IOException | RuntimeException e) {
+				if (!isClosed()) {
+					logger.error(String.format("Journal compaction failed: %s",
+							e.getMessage()));
+				}
+			} finally {
+				compactionLock.unlock();
+			}
+		}
+	}
+
+	private synchronized boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Replaces the snapshot and the sealed segments with a new snapshot.
+	 * Called holding the compaction lock.
+	 */
+	private boolean compact(int minSegments) throws IOException {
+		long previous;
+		List<Long> segments;
+		synchronized (this) {
+			if (closed || sealed.size() < minSegments) {
+				return false;
+			}
+			previous = snapshot;
+			segments = new ArrayList<>(sealed);
+		}
+		long last = segments.get(segments.size() - 1);
+
+		List<Path> inputs = new ArrayList<>();
+		if (previous >= 0) {
+			inputs.add(snapshotPath(previous));
+		}
+		for (long segment : segments) {
+			inputs.add(segmentPath(segment));
+		}
+		InMemoryStorage storage = new InMemoryStorage(config);
+		EventLogVisitor scratch = new ScratchVisitor(storage);
+		for (Path input : inputs) {
+			pace(Files.size(input));
+			try (EventLogReader reader = new EventLogReader(input)) {
+				reader.accept(scratch);
+			} catch (IllegalStateException e) {
+				// an item would be missing from the snapshot
+				throw new IOException(String.format(
+						"Can't compact %s: %s", input.getFileName(),
+						e.getMessage()), e);
+			}
+		}
+
+		Path target = snapshotPath(last);
+		Path temporary = directory
+				.resolve(target.getFileName().toString() + TEMPORARY);
+		try {
+			StorageSnapshot.write(storage, temporary);
+			pace(Files.size(temporary));
+			try (FileChannel file = FileChannel.open(temporary,
+					StandardOpenOption.WRITE)) {
+				file.force(true);
+			}
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+			forceDirectory();
+		} catch (IOException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+		}
+
+		synchronized (this) {
+			snapshot = last;
+			sealed.removeAll(segments);
+		}
+		compactions++;
+		for (Path input : inputs) {
+			Files.deleteIfExists(input);
+		}
+		logger.debug(String.format(
+				"Compacted %d journal files into %s, %d items", inputs.size(),
+				target.getFileName(), storage.getItemCount()));
+		return true;
+	}
+
+	/**
+	 * Sleeps as long as reading or writing the bytes takes at the maximal
+	 * rate
+	 */
+	private void pace(long bytes) throws InterruptedIOException {
+		long rate = policy.getMaxBytesPerSecond();
+		if (rate == JournalCompactionPolicy.UNLIMITED) {
+			return;
+		}
+		long now = System.nanoTime();
+		pacedUntil = Math.max(pacedUntil, now)
+				+ (long) ((double) bytes * TimeUnit.SECONDS.toNanos(1) / rate);
+		try {
+			TimeUnit.NANOSECONDS.sleep(pacedUntil - now);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(
+					"Interrupted pacing the journal compaction");
+		}
+	}
+
+	/**
+	 * Makes the rename durable where the file system allows to force a
+	 * directory
+	 */
+	private void forceDirectory() {
+		try (FileChannel dir = FileChannel.open(directory,
+				StandardOpenOption.READ)) {
+			dir.force(true);
+		} catch (IOException e) {
+			// not supported on this platform, the rename is durable later
+		}
+	}
+
+	private Path segmentPath(long segment) {
+		return directory.resolve(String.format("%s%020d%s", SEGMENT, segment,
+				SUFFIX));
+	}
+
+	private Path snapshotPath(long segment) {
+		return directory.resolve(String.format("%s%020d%s", SNAPSHOT,
+				segment, SUFFIX));
+	}
+
+	private static long number(String name, String prefix) throws IOException {
+		try {
+			return Long.parseLong(name.substring(prefix.length(),
+					name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			throw new IOException(
+					String.format("%s is not a journal file", name), e);
+		}
+	}
+
+	/**
+	 * Applies the events to the scratch storage and fails on the first one
+	 * it rejects
+	 */
+	private static final class ScratchVisitor implements EventLogVisitor {
+
+		private final InMemoryStorage storage;
+
+		ScratchVisitor(InMemoryStorage storage) {
+			this.storage = storage;
+		}
+
+		@Override
+		public void itemAdded(long timestamp, long itemType, String itemUUID,
+				String name, double fillFactor) {
+			try {
+				storage.addItem(itemType, itemUUID, name, fillFactor);
+			} catch (Exception e) {
+				throw new IllegalStateException(String.format(
+						"Item %s was rejected: %s", itemUUID, e.getMessage()),
+						e);
+			}
+		}
+
+		@Override
+		public void itemRemoved(long timestamp, String itemUUID) {
+			storage.removeItem(itemUUID);
+		}
+
+		@Override
+		public void itemForgotten(long timestamp, long itemType) {
+			storage.forgetItem(itemType);
+		}
+
+		@Override
+		public void itemTypeAdded(long timestamp, long itemType) {
+			storage.addItemType(itemType);
+		}
+	}
+}
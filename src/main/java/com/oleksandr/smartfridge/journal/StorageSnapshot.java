@@ -0,0 +1,52 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+/**
+ * Writes the content of a storage as an {@link EventLog}: one add record per
+ * item. Replaying the log into an empty storage rebuilds the content.
+ *
+ * An item type without items still shows up in the queries of the storage,
+ * so it is written as an item type record, which
+ * {@link InMemoryStorage#addItemType(long)} restores without any item
+ * events.
+ *
+ * @author oleksandr
+ *
+ */
+public final class StorageSnapshot {
+
+	private StorageSnapshot() {
+	}
+
+	/**
+	 * Writes the snapshot. The storage must not change while it is written.
+	 *
+	 * @param storage storage to write
+	 * @param path    log file, an existing file is replaced
+	 * @return number of records written
+	 * @throws IOException when the file can't be written
+	 */
+	public static long write(InMemoryStorage storage, Path path)
+			throws IOException {
+		long timestamp = System.currentTimeMillis();
+		long[] records = new long[1];
+		try (EventLogWriter writer = new EventLogWriter(path)) {
+			storage.forEachType((itemType, fillFactor) -> {
+				if (fillFactor == 0.0) {
+					writer.itemTypeAdded(timestamp, itemType);
+					records[0]++;
+				}
+			});
+			storage.forEachItem(item -> {
+				writer.itemAdded(timestamp, item.getType(), item.getUUID(),
+						item.getName(), item.getFillFactor());
+				records[0]++;
+			});
+		}
+		return records[0];
+	}
+}
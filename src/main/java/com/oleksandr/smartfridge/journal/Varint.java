@@ -0,0 +1,90 @@
+package com.oleksandr.smartfridge.journal;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variable length integer encoding used by the event log. Seven bits are
+ * stored per byte, the high bit tells if more bytes follow. Signed values
+ * are zig-zag encoded first, so small negative numbers stay short.
+ *
+ * @author oleksandr
+ *
+ */
+public final class Varint {
+
+	/**
+	 * Longest encoding of a 64 bit value
+	 */
+	public static final int MAX_LENGTH = 10;
+
+	private Varint() {
+	}
+
+	/**
+	 * Writes an unsigned variable length value
+	 *
+	 * @param buffer destination buffer
+	 * @param value  value treated as unsigned
+	 */
+	public static void putUnsigned(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Writes a signed variable length value
+	 *
+	 * @param buffer destination buffer
+	 * @param value  signed value
+	 */
+	public static void putSigned(ByteBuffer buffer, long value) {
+		putUnsigned(buffer, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Reads an unsigned variable length value
+	 *
+	 * @param buffer source buffer
+	 * @return decoded value
+	 */
+	public static long getUnsigned(ByteBuffer buffer) {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			result |= (long) (b & 0x7F) << shift;
+			if (b >= 0) {
+				return result;
+			}
+		}
+		throw new IllegalArgumentException("Malformed variable length value");
+	}
+
+	/**
+	 * Reads a signed variable length value
+	 *
+	 * @param buffer source buffer
+	 * @return decoded value
+	 */
+	public static long getSigned(ByteBuffer buffer) {
+		long value = getUnsigned(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Returns the number of bytes the unsigned encoding of the value takes
+	 *
+	 * @param value value treated as unsigned
+	 * @return encoded size
+	 */
+	public static int sizeOfUnsigned(long value) {
+		int size = 1;
+		while ((value & ~0x7FL) != 0) {
+			size++;
+			value >>>= 7;
+		}
+		return size;
+	}
+}
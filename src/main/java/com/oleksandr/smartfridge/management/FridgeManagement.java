@@ -0,0 +1,109 @@
+package com.oleksandr.smartfridge.management;
+
+import java.lang.management.ManagementFactory;
+import java.util.Objects;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Registers the statistics of the fridge with the platform MBean server,
+ * where JConsole, VisualVM or any other JMX client can read them
+ * 
+ * @author oleksandr
+ *
+ */
+public final class FridgeManagement {
+
+	/**
+	 * Domain of the object names
+	 */
+	public static final String DOMAIN = "com.oleksandr.smartfridge";
+
+	private FridgeManagement() {
+	}
+
+	/**
+	 * Returns the object name of the statistics of a manager
+	 * 
+	 * @param name name which tells the manager apart
+	 * @return {@link ObjectName}
+	 */
+	public static ObjectName managerName(String name) {
+		return objectName("Manager", name);
+	}
+
+	/**
+	 * Returns the object name of the statistics of a storage
+	 * 
+	 * @param name name which tells the storage apart
+	 * @return {@link ObjectName}
+	 */
+	public static ObjectName storageName(String name) {
+		return objectName("Storage", name);
+	}
+
+	/**
+	 * Registers the statistics of a manager
+	 * 
+	 * @param name       name which tells the manager apart
+	 * @param statistics statistics of the manager
+	 * @return the object name it was registered under
+	 * @throws JMException when the name is already registered
+	 */
+	public static ObjectName register(String name,
+			ManagerStatisticsMXBean statistics) throws JMException {
+		return register(managerName(name), statistics);
+	}
+
+	/**
+	 * Registers the statistics of a storage
+	 * 
+	 * @param name       name which tells the storage apart
+	 * @param statistics statistics of the storage
+	 * @return the object name it was registered under
+	 * @throws JMException when the name is already registered
+	 */
+	public static ObjectName register(String name,
+			StorageStatisticsMXBean statistics) throws JMException {
+		return register(storageName(name), statistics);
+	}
+
+	/**
+	 * Unregisters an MBean, an unknown name is ignored
+	 * 
+	 * @param objectName name returned by one of the register methods
+	 * @throws JMException when the MBean can't be unregistered
+	 */
+	public static void unregister(ObjectName objectName) throws JMException {
+		try {
+			server().unregisterMBean(objectName);
+		} catch (InstanceNotFoundException e) {
+			// already gone
+		}
+	}
+
+	private static ObjectName register(ObjectName objectName, Object mbean)
+			throws JMException {
+		Objects.requireNonNull(mbean, "MBean reference must be not null");
+		server().registerMBean(mbean, objectName);
+		return objectName;
+	}
+
+	private static MBeanServer server() {
+		return ManagementFactory.getPlatformMBeanServer();
+	}
+
+	private static ObjectName objectName(String type, String name) {
+		Objects.requireNonNull(name, "Name reference must be not null");
+		try {
+			return new ObjectName(DOMAIN + ":type=" + type + ",name="
+					+ ObjectName.quote(name));
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException(e.getMessage(), e);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.oleksandr.smartfridge.management;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+
+/**
+ * Event counters maintained by a
+ * {@link com.oleksandr.smartfridge.SmartFridgeManagerImpl} as it handles the
+ * events. The counters may be read from any thread.
+ * 
+ * @author oleksandr
+ *
+ */
+public class ManagerStatistics implements ManagerStatisticsMXBean {
+
+	private final LongAdder added = new LongAdder();
+
+	private final LongAdder removed = new LongAdder();
+
+	private final LongAdder unknownRemovals = new LongAdder();
+
+	private final LongAdder forgotten = new LongAdder();
+
+	private final LongAdder rejectedDuplicates = new LongAdder();
+
+	private final LongAdder rejectedOverflows = new LongAdder();
+
+	private final LongAdder rejectedInvalid = new LongAdder();
+
+	/**
+	 * Counts an added item
+	 */
+	public void itemAdded() {
+		added.increment();
+	}
+
+	/**
+	 * Counts a removal
+	 * 
+	 * @param found whether the item was in the fridge
+	 */
+	public void itemRemoved(boolean found) {
+		(found ? removed : unknownRemovals).increment();
+	}
+
+	/**
+	 * Counts a forgotten item type
+	 */
+	public void itemForgotten() {
+		forgotten.increment();
+	}
+
+	/**
+	 * Counts a rejected addition
+	 * 
+	 * @param cause the exception the storage rejected the item with
+	 */
+	public void itemRejected(Exception cause) {
+		if (cause instanceof DoublicateItemException) {
+			rejectedDuplicates.increment();
+		} else if (cause instanceof BinOverflowException) {
+			rejectedOverflows.increment();
+		} else {
+			rejectedInvalid.increment();
+		}
+	}
+
+	@Override
+	public long getAddedCount() {
+		return added.sum();
+	}
+
+	@Override
+	public long getRemovedCount() {
+		return removed.sum();
+	}
+
+	@Override
+	public long getUnknownRemovalCount() {
+		return unknownRemovals.sum();
+	}
+
+	@Override
+	public long getForgottenCount() {
+		return forgotten.sum();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return getRejectedDuplicateCount() + getRejectedOverflowCount()
+				+ getRejectedInvalidCount();
+	}
+
+	@Override
+	public long getRejectedDuplicateCount() {
+		return rejectedDuplicates.sum();
+	}
+
+	@Override
+	public long getRejectedOverflowCount() {
+		return rejectedOverflows.sum();
+	}
+
+	@Override
+	public long getRejectedInvalidCount() {
+		return rejectedInvalid.sum();
+	}
+
+	@Override
+	public void reset() {
+		added.reset();
+		removed.reset();
+		unknownRemovals.reset();
+		forgotten.reset();
+		rejectedDuplicates.reset();
+		rejectedOverflows.reset();
+		rejectedInvalid.reset();
+	}
+}
@@ -0,0 +1,55 @@
+package com.oleksandr.smartfridge.management;
+
+/**
+ * Event counters of a {@link com.oleksandr.smartfridge.SmartFridgeManagerImpl}
+ * 
+ * @author oleksandr
+ *
+ */
+public interface ManagerStatisticsMXBean {
+
+	/**
+	 * @return number of items added
+	 */
+	long getAddedCount();
+
+	/**
+	 * @return number of items removed
+	 */
+	long getRemovedCount();
+
+	/**
+	 * @return number of removals of items which were not in the fridge
+	 */
+	long getUnknownRemovalCount();
+
+	/**
+	 * @return number of item types forgotten
+	 */
+	long getForgottenCount();
+
+	/**
+	 * @return number of rejected additions
+	 */
+	long getRejectedCount();
+
+	/**
+	 * @return number of additions rejected because the UUID was taken
+	 */
+	long getRejectedDuplicateCount();
+
+	/**
+	 * @return number of additions rejected because the bins were full
+	 */
+	long getRejectedOverflowCount();
+
+	/**
+	 * @return number of additions rejected because of invalid arguments
+	 */
+	long getRejectedInvalidCount();
+
+	/**
+	 * Resets all counters
+	 */
+	void reset();
+}
@@ -0,0 +1,303 @@
+package com.oleksandr.smartfridge.management;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.oleksandr.smartfridge.journal.StorageSnapshot;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Statistics of an {@link InMemoryStorage}, kept up to date by listening to
+ * its changes, so reading them never scans the storage. The statistics
+ * may be read from any thread.
+ *
+ * The snapshot and compaction operations touch the storage itself, which
+ * is not thread-safe. They run on the storage executor, which should be
+ * the executor of the thread owning the storage; the default one runs
+ * them on the calling thread, which is only safe while the storage is
+ * idle.
+ *
+ * @author oleksandr
+ *
+ */
+public class StorageStatistics
+		implements StorageStatisticsMXBean, StorageListener, AutoCloseable {
+
+	/**
+	 * Estimated heap of an item apart from its strings: the item, its boxed
+	 * fill factor and its entries in the bin and UUID maps
+	 */
+	static final long ITEM_BYTES = 160;
+
+	/**
+	 * Estimated heap of an item type apart from its bins
+	 */
+	static final long TYPE_BYTES = 160;
+
+	/**
+	 * Estimated heap of an empty bin
+	 */
+	static final long BIN_BYTES = 120;
+
+	private final InMemoryStorage storage;
+
+	private final Executor storageExecutor;
+
+	/**
+	 * State of every item type, only touched by the storage's thread
+	 */
+	private final HashMap<Long, TypeState> types = new HashMap<>();
+
+	private volatile int itemTypeCount;
+
+	private volatile int emptyItemTypeCount;
+
+	private volatile int binCount;
+
+	private volatile int itemCount;
+
+	private volatile double totalFill;
+
+	private volatile long estimatedHeapBytes;
+
+	private volatile long mutationCount;
+
+	/**
+	 * Constructor which runs the operations on the calling thread
+	 *
+	 * @param storage observed storage
+	 */
+	public StorageStatistics(InMemoryStorage storage) {
+		this(storage, Runnable::run);
+	}
+
+	/**
+	 * Constructor. Collects the statistics of the current content once and
+	 * registers as a listener of the storage.
+	 *
+	 * @param storage         observed storage
+	 * @param storageExecutor executor of the thread owning the storage
+	 */
+	public StorageStatistics(InMemoryStorage storage,
+			Executor storageExecutor) {
+		super();
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+		this.storageExecutor = Objects.requireNonNull(storageExecutor,
+				"Executor reference must be not null");
+		storage.forEachType((type, fill) -> typeState(type).fill = fill);
+		storage.forEachItem(item -> addItem(typeState(item.getType()), item));
+		recount();
+		storage.addListener(this);
+	}
+
+	@Override
+	public int getItemTypeCount() {
+		return itemTypeCount;
+	}
+
+	@Override
+	public int getEmptyItemTypeCount() {
+		return emptyItemTypeCount;
+	}
+
+	@Override
+	public int getBinCount() {
+		return binCount;
+	}
+
+	@Override
+	public int getItemCount() {
+		return itemCount;
+	}
+
+	@Override
+	public double getAverageItemsPerBin() {
+		int bins = binCount;
+		return bins == 0 ? 0.0 : (double) itemCount / bins;
+	}
+
+	@Override
+	public double getTotalFill() {
+		return totalFill;
+	}
+
+	@Override
+	public double getAverageFill() {
+		int count = itemTypeCount;
+		return count == 0 ? 0.0 : totalFill / count;
+	}
+
+	@Override
+	public long getEstimatedHeapBytes() {
+		return estimatedHeapBytes;
+	}
+
+	@Override
+	public long getMutationCount() {
+		return mutationCount;
+	}
+
+	@Override
+	public long snapshotTo(String path) {
+		return onStorageThread(
+				() -> StorageSnapshot.write(storage, Paths.get(path)));
+	}
+
+	@Override
+	public int compact() {
+		return onStorageThread(storage::compact);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		TypeState state;
+		switch (event.getKind()) {
+		case ADDED:
+			state = typeState(event.getItemType());
+			addItem(state, event.getItem());
+			changeFill(state, event.getFillFactor());
+			break;
+		case REMOVED:
+			state = typeState(event.getItemType());
+			state.items--;
+			itemCount--;
+			if (state.items == 0) {
+				emptyItemTypeCount++;
+			}
+			long bytes = itemBytes(event.getItem());
+			state.bytes -= bytes;
+			estimatedHeapBytes -= bytes;
+			changeFill(state, event.getFillFactor());
+			break;
+		case FORGOTTEN:
+			state = types.remove(event.getItemType());
+			if (state != null) {
+				itemTypeCount--;
+				binCount -= state.bins;
+				itemCount -= state.items;
+				totalFill -= state.fill;
+				estimatedHeapBytes -= state.bytes;
+				if (state.items == 0) {
+					emptyItemTypeCount--;
+				}
+			}
+			break;
+		}
+		mutationCount++;
+	}
+
+	/**
+	 * Unregisters from the storage
+	 */
+	@Override
+	public void close() {
+		storage.removeListener(this);
+	}
+
+	private TypeState typeState(long itemType) {
+		TypeState state = types.get(itemType);
+		if (state == null) {
+			state = new TypeState(storage.getBinCount(itemType));
+			types.put(itemType, state);
+			itemTypeCount++;
+			emptyItemTypeCount++;
+			binCount += state.bins;
+			estimatedHeapBytes += state.bytes;
+		}
+		return state;
+	}
+
+	private void addItem(TypeState state, Item item) {
+		if (state.items == 0) {
+			emptyItemTypeCount--;
+		}
+		state.items++;
+		itemCount++;
+		long bytes = itemBytes(item);
+		state.bytes += bytes;
+		estimatedHeapBytes += bytes;
+	}
+
+	private void changeFill(TypeState state, double fill) {
+		totalFill += fill - state.fill;
+		state.fill = fill;
+	}
+
+	/**
+	 * Recomputes the counters touched by {@link #addItem} from the type
+	 * states, which is cheaper than keeping them exact while seeding
+	 */
+	private void recount() {
+		int items = 0;
+		int empty = 0;
+		double fill = 0;
+		long bytes = 0;
+		for (TypeState state : types.values()) {
+			items += state.items;
+			empty += state.items == 0 ? 1 : 0;
+			fill += state.fill;
+			bytes += state.bytes;
+		}
+		itemCount = items;
+		emptyItemTypeCount = empty;
+		totalFill = fill;
+		estimatedHeapBytes = bytes;
+	}
+
+	private static long itemBytes(Item item) {
+		// two bytes per char covers both string encodings
+		return ITEM_BYTES
+				+ 2L * (item.getUUID().length() + item.getName().length());
+	}
+
+	private <T> T onStorageThread(Callable<T> operation) {
+		FutureTask<T> task = new FutureTask<>(operation);
+		storageExecutor.execute(task);
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				// JMX clients may not have the exception classes, pass the
+				// message only
+				throw new IllegalStateException(cause.getMessage());
+			}
+			throw new IllegalStateException(cause.toString());
+		}
+	}
+
+	/**
+	 * Statistics of one item type
+	 */
+	private static final class TypeState {
+
+		final int bins;
+
+		int items;
+
+		double fill;
+
+		long bytes;
+
+		TypeState(int bins) {
+			this.bins = bins;
+			this.bytes = TYPE_BYTES + bins * BIN_BYTES;
+		}
+	}
+}
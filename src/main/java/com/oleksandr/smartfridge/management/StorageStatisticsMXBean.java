@@ -0,0 +1,71 @@
+package com.oleksandr.smartfridge.management;
+
+/**
+ * Live statistics and maintenance operations of an
+ * {@link com.oleksandr.smartfridge.storage.InMemoryStorage}
+ * 
+ * @author oleksandr
+ *
+ */
+public interface StorageStatisticsMXBean {
+
+	/**
+	 * @return number of item types
+	 */
+	int getItemTypeCount();
+
+	/**
+	 * @return number of item types without items
+	 */
+	int getEmptyItemTypeCount();
+
+	/**
+	 * @return number of bins
+	 */
+	int getBinCount();
+
+	/**
+	 * @return number of items
+	 */
+	int getItemCount();
+
+	/**
+	 * @return average number of items per bin
+	 */
+	double getAverageItemsPerBin();
+
+	/**
+	 * @return sum of the fill factors of all item types
+	 */
+	double getTotalFill();
+
+	/**
+	 * @return average fill factor of the item types
+	 */
+	double getAverageFill();
+
+	/**
+	 * @return rough estimate of the heap retained by the items and bins
+	 */
+	long getEstimatedHeapBytes();
+
+	/**
+	 * @return number of add, remove and forget operations seen
+	 */
+	long getMutationCount();
+
+	/**
+	 * Writes a snapshot of the storage as an event log
+	 * 
+	 * @param path file to write
+	 * @return number of records written
+	 */
+	long snapshotTo(String path);
+
+	/**
+	 * Rebuilds the oversized hash maps of the storage
+	 * 
+	 * @return number of maps rebuilt
+	 */
+	int compact();
+}
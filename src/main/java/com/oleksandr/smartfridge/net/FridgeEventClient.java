@@ -0,0 +1,401 @@
+package com.oleksandr.smartfridge.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+
+/**
+ * Client side of the {@link Protocol}. It implements
+ * {@link SmartFridgeManager}, so the hardware integration can talk to a
+ * remote {@link FridgeEventServer} exactly as it talks to a local manager.
+ *
+ * Event handlers are pipelined: they are encoded into a local buffer which
+ * is written once it fills up or when {@link #flush()} is called, and they
+ * never wait for the server. {@link #sync()} waits until every event sent
+ * so far is acknowledged. Query methods flush the pipeline and wait for
+ * their own response.
+ *
+ * The client is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class FridgeEventClient implements SmartFridgeManager, Closeable {
+
+	/**
+	 * Amount of buffered output which triggers a write
+	 */
+	static final int FLUSH_THRESHOLD = 32 * 1024;
+
+	private final SocketChannel channel;
+
+	private final Selector selector;
+
+	/**
+	 * Outgoing bytes in write mode
+	 */
+	private ByteBuffer out = ByteBuffer.allocate(FLUSH_THRESHOLD * 2);
+
+	/**
+	 * Incoming bytes in write mode
+	 */
+	private final ByteBuffer in = ByteBuffer
+			.allocate(Protocol.LENGTH_SIZE + Protocol.MAX_FRAME_SIZE);
+
+	/**
+	 * Id of the last request sent
+	 */
+	private int lastSentId;
+
+	/**
+	 * Id of the last event sent. Queries are answered, not acknowledged, so
+	 * {@link #sync()} waits for this one.
+	 */
+	private int lastEventId;
+
+	/**
+	 * Id of the last request acknowledged by the server
+	 */
+	private int lastAckedId;
+
+	/**
+	 * Number of events acknowledged by the server
+	 */
+	private long ackedCount;
+
+	/**
+	 * Response frames of the query being waited for, positioned at their
+	 * payload. A long list of items comes in several frames.
+	 */
+	private final ArrayDeque<ByteBuffer> responses = new ArrayDeque<>();
+
+	/**
+	 * Connects to the server
+	 *
+	 * @param address server address
+	 * @throws IOException when the connection can't be established
+	 */
+	public FridgeEventClient(InetSocketAddress address) throws IOException {
+		super();
+		channel = SocketChannel.open(address);
+		channel.socket().setTcpNoDelay(true);
+		channel.configureBlocking(false);
+		selector = Selector.open();
+		channel.register(selector, SelectionKey.OP_READ);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemRemoved(java.lang.String)
+	 */
+	@Override
+	public void handleItemRemoved(String itemUUID) {
+		reserve(Protocol.LENGTH_SIZE + Protocol.HEADER_SIZE
+				+ Protocol.stringSize(itemUUID));
+		int start = Protocol.beginFrame(out, Protocol.REMOVE, nextEventId());
+		Protocol.putString(out, itemUUID);
+		Protocol.endFrame(out, start);
+		flushIfFull();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#handleItemAdded(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double)
+	 */
+	@Override
+	public void handleItemAdded(long itemType, String itemUUID, String name,
+			Double fillFactor) {
+		reserve(Protocol.LENGTH_SIZE + Protocol.HEADER_SIZE + 16
+				+ Protocol.stringSize(itemUUID) + Protocol.stringSize(name));
+		int start = Protocol.beginFrame(out, Protocol.ADD, nextEventId());
+		out.putLong(itemType);
+		Protocol.putString(out, itemUUID);
+		Protocol.putString(out, name);
+		out.putDouble(fillFactor == null ? Double.NaN : fillFactor);
+		Protocol.endFrame(out, start);
+		flushIfFull();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#forgetItem(long)
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		reserve(Protocol.LENGTH_SIZE + Protocol.HEADER_SIZE + 8);
+		int start = Protocol.beginFrame(out, Protocol.FORGET, nextEventId());
+		out.putLong(itemType);
+		Protocol.endFrame(out, start);
+		flushIfFull();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getFillFactor(long)
+	 */
+	@Override
+	public Double getFillFactor(long itemType) {
+		reserve(Protocol.LENGTH_SIZE + Protocol.HEADER_SIZE + 8);
+		int requestId = ++lastSentId;
+		int start = Protocol.beginFrame(out, Protocol.GET_FILL_FACTOR,
+				requestId);
+		out.putLong(itemType);
+		Protocol.endFrame(out, start);
+
+		ByteBuffer payload = await(requestId, Protocol.FILL_FACTOR);
+		boolean present = payload.get() != 0;
+		double value = payload.getDouble();
+		return present ? value : null;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.SmartFridgeManager#getItems(java.lang.Double)
+	 */
+	@Override
+	public Object[] getItems(Double fillFactor) {
+		reserve(Protocol.LENGTH_SIZE + Protocol.HEADER_SIZE + 8);
+		int requestId = ++lastSentId;
+		int start = Protocol.beginFrame(out, Protocol.GET_ITEMS, requestId);
+		out.putDouble(fillFactor);
+		Protocol.endFrame(out, start);
+
+		ArrayList<Object> result = new ArrayList<>();
+		while (true) {
+			ByteBuffer payload = await(requestId);
+			byte opcode = payload.get(Protocol.LENGTH_SIZE);
+			if (opcode != Protocol.ITEMS && opcode != Protocol.ITEMS_PART) {
+				throw new UncheckedIOException(new IOException(
+						"Unexpected response from the server"));
+			}
+			int count = payload.getInt();
+			for (int i = 0; i < count; i++) {
+				result.add(new double[] { payload.getLong(),
+						payload.getDouble() });
+			}
+			if (opcode == Protocol.ITEMS) {
+				return result.toArray();
+			}
+		}
+	}
+
+	/**
+	 * Writes all buffered events to the server without waiting for
+	 * acknowledgements
+	 */
+	public void flush() {
+		try {
+			writeAll();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Flushes the buffered events and waits until the server acknowledged
+	 * every one of them
+	 */
+	public void sync() {
+		try {
+			writeAll();
+			while (lastAckedId != lastEventId) {
+				selector.select();
+				selector.selectedKeys().clear();
+				readAvailable();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Processes the acknowledgements which already arrived without waiting
+	 * for more
+	 */
+	public void poll() {
+		try {
+			if (selector.selectNow() > 0) {
+				selector.selectedKeys().clear();
+				readAvailable();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the number of events acknowledged by the server so far
+	 *
+	 * @return acknowledged events count
+	 */
+	public long getAckedCount() {
+		return ackedCount;
+	}
+
+	/**
+	 * Returns the id of the last request the server acknowledged
+	 *
+	 * @return request id
+	 */
+	public int getLastAckedId() {
+		return lastAckedId;
+	}
+
+	/**
+	 * Returns the id of the last request written to the pipeline
+	 *
+	 * @return request id
+	 */
+	public int getLastSentId() {
+		return lastSentId;
+	}
+
+	/**
+	 * Flushes pending events and closes the connection. Events which were
+	 * not acknowledged yet may still be applied by the server.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			writeAll();
+		} finally {
+			selector.close();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Closes the connection without writing the buffered events. Unlike the
+	 * other methods it may be called from another thread: a call which is
+	 * blocked on the server then fails.
+	 *
+	 * @throws IOException when the connection can't be closed
+	 */
+	public void abort() throws IOException {
+		try {
+			selector.close();
+		} finally {
+			channel.close();
+		}
+	}
+
+	private void reserve(int needed) {
+		out = Protocol.ensureCapacity(out, needed);
+	}
+
+	private int nextEventId() {
+		lastEventId = ++lastSentId;
+		return lastEventId;
+	}
+
+	private void flushIfFull() {
+		if (out.position() >= FLUSH_THRESHOLD) {
+			flush();
+		}
+	}
+
+	/**
+	 * Sends the request already placed into the output buffer and waits for
+	 * its response
+	 */
+	private ByteBuffer await(int requestId, byte opcode) {
+		ByteBuffer payload = await(requestId);
+		if (payload.get(Protocol.LENGTH_SIZE) != opcode) {
+			throw new UncheckedIOException(new IOException(
+					"Unexpected response from the server"));
+		}
+		return payload;
+	}
+
+	/**
+	 * Sends the request already placed into the output buffer and waits for
+	 * the next frame of its response
+	 */
+	private ByteBuffer await(int requestId) {
+		try {
+			writeAll();
+			while (responses.isEmpty()) {
+				selector.select();
+				selector.selectedKeys().clear();
+				readAvailable();
+			}
+			ByteBuffer payload = responses.poll();
+			if (payload.getInt(Protocol.LENGTH_SIZE + 1) != requestId) {
+				throw new IOException("Unexpected response from the server");
+			}
+			return payload;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes the output buffer. While the socket is full the responses are
+	 * drained, so a server which is blocked on writing its acknowledgements
+	 * can't dead lock the pipeline.
+	 */
+	private void writeAll() throws IOException {
+		out.flip();
+		try {
+			while (out.hasRemaining()) {
+				if (channel.write(out) == 0) {
+					channel.keyFor(selector).interestOps(
+							SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					selector.select();
+					selector.selectedKeys().clear();
+					readAvailable();
+				}
+			}
+		} finally {
+			out.compact();
+			channel.keyFor(selector).interestOps(SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Reads whatever the server sent and processes all complete frames
+	 */
+	private void readAvailable() throws IOException {
+		if (channel.read(in) < 0) {
+			throw new IOException("Connection closed by server");
+		}
+		in.flip();
+		try {
+			while (in.remaining() >= Protocol.LENGTH_SIZE) {
+				int length = in.getInt(in.position());
+				if (length < Protocol.HEADER_SIZE
+						|| length > Protocol.MAX_FRAME_SIZE) {
+					throw new IOException(String
+							.format("Invalid frame length %d", length));
+				}
+				if (in.remaining() < Protocol.LENGTH_SIZE + length) {
+					break;
+				}
+				int frameStart = in.position();
+				byte opcode = in.get(frameStart + Protocol.LENGTH_SIZE);
+				int requestId = in.getInt(frameStart + Protocol.LENGTH_SIZE + 1);
+				if (opcode == Protocol.ACK) {
+					lastAckedId = requestId;
+					ackedCount += in.getInt(frameStart + Protocol.LENGTH_SIZE
+							+ Protocol.HEADER_SIZE);
+				} else {
+					// copy the response, the input buffer is reused
+					byte[] frame = new byte[Protocol.LENGTH_SIZE + length];
+					in.get(frame);
+					in.position(frameStart);
+					ByteBuffer copy = ByteBuffer.wrap(frame);
+					copy.position(Protocol.LENGTH_SIZE + Protocol.HEADER_SIZE);
+					responses.add(copy);
+				}
+				in.position(frameStart + Protocol.LENGTH_SIZE + length);
+			}
+		} finally {
+			in.compact();
+		}
+	}
+}
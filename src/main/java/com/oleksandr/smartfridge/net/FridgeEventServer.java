@@ -0,0 +1,358 @@
+package com.oleksandr.smartfridge.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Objects;
+
+import org.slf4j.Logger;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+
+/**
+ * Embedded selector based server which decodes the {@link Protocol} frames
+ * straight into {@link SmartFridgeManager} calls.
+ *
+ * The server runs a single thread. All manager calls are made from that
+ * thread, so the manager doesn't have to be thread-safe as long as nobody
+ * else uses it while the server is running.
+ *
+ * Each read drains every complete frame from the connection's buffer and
+ * answers all mutations of that read with one {@link Protocol#ACK} frame.
+ * When a client stops reading its responses, the server stops reading from
+ * that client until the pending output is written.
+ *
+ * @author oleksandr
+ *
+ */
+public class FridgeEventServer implements Closeable {
+
+	/**
+	 * Amount of pending output after which the server stops reading from a
+	 * connection
+	 */
+	static final int OUTPUT_HIGH_WATERMARK = 1024 * 1024;
+
+	/**
+	 * Fridge manager which receives the decoded events
+	 */
+	private final SmartFridgeManager manager;
+
+	/**
+	 * Logger
+	 */
+	private final Logger logger;
+
+	private Selector selector;
+
+	private ServerSocketChannel serverChannel;
+
+	private Thread thread;
+
+	private volatile boolean running;
+
+	/**
+	 * Constructor
+	 *
+	 * @param manager fridge manager the events are delivered to
+	 * @param logger  logger
+	 */
+	public FridgeEventServer(SmartFridgeManager manager, Logger logger) {
+		super();
+		this.manager = Objects.requireNonNull(manager,
+				"Manager reference must be not null");
+		this.logger = Objects.requireNonNull(logger,
+				"Logger reference must be not null");
+	}
+
+	/**
+	 * Binds the server and starts the selector thread
+	 *
+	 * @param address address to bind to. Use port 0 to pick a free port.
+	 * @return the address the server is listening on
+	 * @throws IOException when the server can't be bound
+	 */
+	public synchronized InetSocketAddress start(InetSocketAddress address)
+			throws IOException {
+		if (running) {
+			throw new IllegalStateException("Server is already running");
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.configureBlocking(false);
+		serverChannel.bind(address);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		thread = new Thread(this::run, "fridge-event-server");
+		thread.setDaemon(true);
+		thread.start();
+
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+
+	/**
+	 * Stops the selector thread and closes all connections
+	 */
+	@Override
+	public synchronized void close() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			while (running) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys()
+						.iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					try {
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							Connection connection = (Connection) key
+									.attachment();
+							if (key.isWritable()) {
+								connection.write();
+							}
+							if (key.isValid() && key.isReadable()) {
+								connection.read();
+							}
+						}
+					} catch (IOException e) {
+						logger.warn(String.format("Connection closed: %s",
+								e.getMessage()));
+						closeQuietly(key);
+					} catch (RuntimeException e) {
+						// a failing manager takes down this connection only,
+						// the others keep being served
+						logger.error(String.format(
+								"Connection closed, request failed: %s",
+								e.getMessage()), e);
+						closeQuietly(key);
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.error(String.format("Event server stopped: %s",
+					e.getMessage()));
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				closeQuietly(key);
+			}
+			try {
+				selector.close();
+			} catch (IOException e) {
+				// nothing left to release
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		key.attach(new Connection(channel, key));
+	}
+
+	private static void closeQuietly(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException e) {
+			// the connection is gone either way
+		}
+	}
+
+	/**
+	 * State of a single client connection
+	 */
+	private class Connection {
+
+		private final SocketChannel channel;
+
+		private final SelectionKey key;
+
+		/**
+		 * Incoming bytes. Always large enough for one complete frame.
+		 */
+		private final ByteBuffer in = ByteBuffer
+				.allocate(Protocol.LENGTH_SIZE + Protocol.MAX_FRAME_SIZE);
+
+		/**
+		 * Outgoing bytes in write mode
+		 */
+		private ByteBuffer out = ByteBuffer.allocate(4096);
+
+		/**
+		 * Mutations applied but not acknowledged yet
+		 */
+		private int pendingAcks;
+
+		/**
+		 * Request id of the last applied mutation
+		 */
+		private int lastRequestId;
+
+		Connection(SocketChannel channel, SelectionKey key) {
+			this.channel = channel;
+			this.key = key;
+		}
+
+		void read() throws IOException {
+			int read = channel.read(in);
+			if (read < 0) {
+				throw new IOException("Connection closed by peer");
+			}
+			in.flip();
+			try {
+				while (in.remaining() >= Protocol.LENGTH_SIZE) {
+					int length = in.getInt(in.position());
+					if (length < Protocol.HEADER_SIZE
+							|| length > Protocol.MAX_FRAME_SIZE) {
+						throw new IOException(String
+								.format("Invalid frame length %d", length));
+					}
+					if (in.remaining() < Protocol.LENGTH_SIZE + length) {
+						break;
+					}
+					int end = in.position() + Protocol.LENGTH_SIZE + length;
+					in.position(in.position() + Protocol.LENGTH_SIZE);
+					int limit = in.limit();
+					in.limit(end);
+					dispatch();
+					in.limit(limit);
+					in.position(end);
+				}
+			} catch (BufferUnderflowException | IllegalArgumentException e) {
+				throw new IOException("Malformed frame", e);
+			} finally {
+				in.compact();
+			}
+			flushAcks();
+			write();
+		}
+
+		private void dispatch() throws IOException {
+			byte opcode = in.get();
+			int requestId = in.getInt();
+			switch (opcode) {
+			case Protocol.ADD:
+				long itemType = in.getLong();
+				String itemUUID = Protocol.getString(in);
+				String name = Protocol.getString(in);
+				double fillFactor = in.getDouble();
+				manager.handleItemAdded(itemType, itemUUID, name, fillFactor);
+				acknowledge(requestId);
+				break;
+			case Protocol.REMOVE:
+				manager.handleItemRemoved(Protocol.getString(in));
+				acknowledge(requestId);
+				break;
+			case Protocol.FORGET:
+				manager.forgetItem(in.getLong());
+				acknowledge(requestId);
+				break;
+			case Protocol.GET_FILL_FACTOR:
+				Double value = manager.getFillFactor(in.getLong());
+				flushAcks();
+				reserve(Protocol.HEADER_SIZE + Protocol.LENGTH_SIZE + 9);
+				int start = Protocol.beginFrame(out, Protocol.FILL_FACTOR,
+						requestId);
+				out.put((byte) (value == null ? 0 : 1));
+				out.putDouble(value == null ? 0.0 : value.doubleValue());
+				Protocol.endFrame(out, start);
+				break;
+			case Protocol.GET_ITEMS:
+				Object[] items = manager.getItems(in.getDouble());
+				flushAcks();
+				// frames are bounded, a long list goes out in parts
+				int from = 0;
+				do {
+					int count = Math.min(items.length - from,
+							Protocol.MAX_ITEMS_PER_FRAME);
+					boolean last = from + count == items.length;
+					reserve(Protocol.HEADER_SIZE + Protocol.LENGTH_SIZE + 4
+							+ count * 16);
+					start = Protocol.beginFrame(out,
+							last ? Protocol.ITEMS : Protocol.ITEMS_PART,
+							requestId);
+					out.putInt(count);
+					for (int i = from; i < from + count; i++) {
+						double[] array = (double[]) items[i];
+						out.putLong((long) array[0]);
+						out.putDouble(array[1]);
+					}
+					Protocol.endFrame(out, start);
+					from += count;
+				} while (from < items.length);
+				break;
+			default:
+				throw new IOException(
+						String.format("Unknown opcode %d", opcode));
+			}
+		}
+
+		private void acknowledge(int requestId) {
+			pendingAcks++;
+			lastRequestId = requestId;
+		}
+
+		private void flushAcks() {
+			if (pendingAcks == 0) {
+				return;
+			}
+			reserve(Protocol.HEADER_SIZE + Protocol.LENGTH_SIZE + 4);
+			int start = Protocol.beginFrame(out, Protocol.ACK, lastRequestId);
+			out.putInt(pendingAcks);
+			Protocol.endFrame(out, start);
+			pendingAcks = 0;
+		}
+
+		private void reserve(int needed) {
+			out = Protocol.ensureCapacity(out, needed);
+		}
+
+		void write() throws IOException {
+			out.flip();
+			channel.write(out);
+			out.compact();
+
+			int interest = SelectionKey.OP_READ;
+			if (out.position() > 0) {
+				interest |= SelectionKey.OP_WRITE;
+				if (out.position() > OUTPUT_HIGH_WATERMARK) {
+					// stop reading until the client drains its responses
+					interest = SelectionKey.OP_WRITE;
+				}
+			}
+			key.interestOps(interest);
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+package com.oleksandr.smartfridge.net;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary protocol spoken between the fridges and {@link FridgeEventServer}.
+ *
+ * Every frame is length prefixed:
+ *
+ * <pre>
+ * [int length][byte opcode][int requestId][payload]
+ * </pre>
+ *
+ * where length counts the bytes that follow the length field. Strings are
+ * encoded as an unsigned short byte count followed by UTF-8 bytes. All
+ * numbers are big endian.
+ *
+ * Mutating requests ({@link #ADD}, {@link #REMOVE}, {@link #FORGET}) are not
+ * answered one by one. The server acknowledges them in batches with a single
+ * {@link #ACK} frame carrying the last applied request id and the number of
+ * requests it covers, so a client may pipeline any number of events without
+ * waiting. Queries are answered with their own response frame, which is
+ * always preceded by the acknowledgement of every earlier mutation.
+ *
+ * @author oleksandr
+ *
+ */
+public final class Protocol {
+
+	/**
+	 * Size of the length field
+	 */
+	public static final int LENGTH_SIZE = 4;
+
+	/**
+	 * Size of the opcode and request id fields
+	 */
+	public static final int HEADER_SIZE = 5;
+
+	/**
+	 * Largest frame body accepted by either side
+	 */
+	public static final int MAX_FRAME_SIZE = 64 * 1024;
+
+	/**
+	 * handleItemAdded: long itemType, string UUID, string name, double
+	 * fillFactor
+	 */
+	public static final byte ADD = 1;
+
+	/**
+	 * handleItemRemoved: string UUID
+	 */
+	public static final byte REMOVE = 2;
+
+	/**
+	 * forgetItem: long itemType
+	 */
+	public static final byte FORGET = 3;
+
+	/**
+	 * getFillFactor: long itemType. Answered with {@link #FILL_FACTOR}.
+	 */
+	public static final byte GET_FILL_FACTOR = 4;
+
+	/**
+	 * getItems: double fillFactor. Answered with {@link #ITEMS}.
+	 */
+	public static final byte GET_ITEMS = 5;
+
+	/**
+	 * Batched acknowledgement: int count. The request id field holds the
+	 * last acknowledged request.
+	 */
+	public static final byte ACK = 16;
+
+	/**
+	 * Response to {@link #GET_FILL_FACTOR}: byte present, double fillFactor
+	 */
+	public static final byte FILL_FACTOR = 17;
+
+	/**
+	 * Response to {@link #GET_ITEMS}: int count, count x (long itemType,
+	 * double fillFactor). It is the last frame of the response.
+	 */
+	public static final byte ITEMS = 18;
+
+	/**
+	 * Part of a response to {@link #GET_ITEMS} which doesn't fit into one
+	 * frame, laid out like {@link #ITEMS}. The parts come first, the
+	 * {@link #ITEMS} frame closes the response.
+	 */
+	public static final byte ITEMS_PART = 19;
+
+	/**
+	 * Largest number of item types in one {@link #ITEMS} or
+	 * {@link #ITEMS_PART} frame
+	 */
+	public static final int MAX_ITEMS_PER_FRAME = (MAX_FRAME_SIZE
+			- HEADER_SIZE - 4) / 16;
+
+	private Protocol() {
+	}
+
+	/**
+	 * Writes a string as an unsigned short length followed by UTF-8 bytes
+	 *
+	 * @param buffer destination buffer
+	 * @param value  string to write, null is written as an empty string
+	 */
+	public static void putString(ByteBuffer buffer, String value) {
+		byte[] bytes = value == null ? new byte[0]
+				: value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > 0xFFFF) {
+			throw new IllegalArgumentException(
+					"String is too long to be encoded");
+		}
+		buffer.putShort((short) bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Reads a string written by {@link #putString(ByteBuffer, String)}
+	 *
+	 * @param buffer source buffer
+	 * @return decoded string
+	 */
+	public static String getString(ByteBuffer buffer) {
+		int length = buffer.getShort() & 0xFFFF;
+		if (length > buffer.remaining()) {
+			throw new IllegalArgumentException(
+					"String length exceeds the frame");
+		}
+		String value;
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(),
+					buffer.arrayOffset() + buffer.position(), length,
+					StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + length);
+		} else {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the number of bytes {@link #putString(ByteBuffer, String)}
+	 * needs for the given string. Called before a frame is begun, it keeps
+	 * a string which can't be encoded from leaving a half written frame.
+	 *
+	 * @param value string
+	 * @return encoded size in bytes
+	 * @throws IllegalArgumentException when the string is too long to be
+	 *                                  encoded
+	 */
+	public static int stringSize(String value) {
+		int length = value == null ? 0
+				: value.getBytes(StandardCharsets.UTF_8).length;
+		if (length > 0xFFFF) {
+			throw new IllegalArgumentException(
+					"String is too long to be encoded");
+		}
+		return 2 + length;
+	}
+
+	/**
+	 * Writes the frame header and reserves the length field. The length is
+	 * filled in by {@link #endFrame(ByteBuffer, int)}.
+	 *
+	 * @param buffer    destination buffer
+	 * @param opcode    frame opcode
+	 * @param requestId request id
+	 * @return position of the length field
+	 */
+	public static int beginFrame(ByteBuffer buffer, byte opcode,
+			int requestId) {
+		int start = buffer.position();
+		buffer.putInt(0);
+		buffer.put(opcode);
+		buffer.putInt(requestId);
+		return start;
+	}
+
+	/**
+	 * Completes a frame started by {@link #beginFrame(ByteBuffer, byte, int)}
+	 *
+	 * @param buffer destination buffer
+	 * @param start  position returned by beginFrame
+	 */
+	public static void endFrame(ByteBuffer buffer, int start) {
+		buffer.putInt(start, buffer.position() - start - LENGTH_SIZE);
+	}
+
+	/**
+	 * Returns a buffer which has room for at least {@code needed} more bytes.
+	 * The content of the given buffer is preserved.
+	 *
+	 * @param buffer buffer in write mode
+	 * @param needed number of bytes about to be written
+	 * @return the same buffer or a larger copy of it
+	 */
+	static ByteBuffer ensureCapacity(ByteBuffer buffer, int needed) {
+		if (buffer.remaining() >= needed) {
+			return buffer;
+		}
+		int capacity = Math.max(buffer.capacity() * 2,
+				buffer.position() + needed);
+		ByteBuffer larger = ByteBuffer.allocate(capacity);
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+}
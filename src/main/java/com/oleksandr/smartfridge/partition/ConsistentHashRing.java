@@ -0,0 +1,219 @@
+package com.oleksandr.smartfridge.partition;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Consistent hash ring. Every node is placed on the ring at a number of
+ * virtual points and a key belongs to the node of the first point at or
+ * after the hash of the key. Adding a node only takes keys over from the
+ * other nodes, it never moves a key between them; the virtual points
+ * spread the load of a node evenly over all the others.
+ *
+ * The points are kept in a sorted primitive array which is rebuilt when a
+ * node joins or leaves, so a lookup is a binary search without allocation.
+ *
+ * The ring is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ * @param <N> node type
+ */
+public class ConsistentHashRing<N> {
+
+	/**
+	 * Virtual points of a node by default
+	 */
+	public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+	private final int virtualNodes;
+
+	/**
+	 * Nodes by name, in the order they joined
+	 */
+	private final LinkedHashMap<String, N> nodes = new LinkedHashMap<>();
+
+	/**
+	 * Hashes of the virtual points, sorted
+	 */
+	private long[] points = new long[0];
+
+	/**
+	 * Node names of the virtual points, by point position
+	 */
+	private String[] owners = new String[0];
+
+	/**
+	 * Constructs a ring with {@link #DEFAULT_VIRTUAL_NODES} points per node
+	 */
+	public ConsistentHashRing() {
+		this(DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param virtualNodes number of points of every node
+	 */
+	public ConsistentHashRing(int virtualNodes) {
+		super();
+		if (virtualNodes <= 0) {
+			throw new IllegalArgumentException(
+					"Virtual node count must be greater then 0");
+		}
+		this.virtualNodes = virtualNodes;
+	}
+
+	/**
+	 * Adds a node
+	 *
+	 * @param name unique name of the node, its points are derived from it
+	 * @param node node
+	 * @throws IllegalArgumentException when a node with the name exists
+	 */
+	public void add(String name, N node) {
+		Objects.requireNonNull(name, "Name reference must be not null");
+		Objects.requireNonNull(node, "Node reference must be not null");
+		if (nodes.containsKey(name)) {
+			throw new IllegalArgumentException(
+					String.format("Node %s is already on the ring", name));
+		}
+		nodes.put(name, node);
+		rebuild();
+	}
+
+	/**
+	 * Removes a node. Its keys go to the nodes of the following points.
+	 *
+	 * @param name name of the node
+	 * @return removed node or null when there is no node with the name
+	 */
+	public N remove(String name) {
+		N node = nodes.remove(name);
+		if (node != null) {
+			rebuild();
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the node owning a key
+	 *
+	 * @param key key
+	 * @return node or null when the ring is empty
+	 */
+	public N nodeFor(String key) {
+		String name = nameFor(key);
+		return name == null ? null : nodes.get(name);
+	}
+
+	/**
+	 * Returns the name of the node owning a key
+	 *
+	 * @param key key
+	 * @return node name or null when the ring is empty
+	 */
+	public String nameFor(String key) {
+		if (points.length == 0) {
+			return null;
+		}
+		long hash = hash(key);
+		int index = Arrays.binarySearch(points, hash);
+		if (index < 0) {
+			index = -index - 1;
+			if (index == points.length) {
+				index = 0;
+			}
+		}
+		return owners[index];
+	}
+
+	/**
+	 * Returns a node by name
+	 *
+	 * @param name node name
+	 * @return node or null
+	 */
+	public N get(String name) {
+		return nodes.get(name);
+	}
+
+	/**
+	 * Returns the names of the nodes in the order they joined
+	 *
+	 * @return list of names
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(new ArrayList<>(nodes.keySet()));
+	}
+
+	/**
+	 * Returns the number of points of every node
+	 *
+	 * @return int
+	 */
+	public int getVirtualNodes() {
+		return virtualNodes;
+	}
+
+	/**
+	 * Returns the number of nodes
+	 *
+	 * @return int
+	 */
+	public int size() {
+		return nodes.size();
+	}
+
+	private void rebuild() {
+		int count = nodes.size() * virtualNodes;
+		long[] hashes = new long[count];
+		String[] names = new String[count];
+		int i = 0;
+		for (String name : nodes.keySet()) {
+			for (int v = 0; v < virtualNodes; v++) {
+				hashes[i] = hash(name + "#" + v);
+				names[i] = name;
+				i++;
+			}
+		}
+		// sort the points and carry their owners along
+		Integer[] order = new Integer[count];
+		for (i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+		points = new long[count];
+		owners = new String[count];
+		for (i = 0; i < count; i++) {
+			points[i] = hashes[order[i]];
+			owners[i] = names[order[i]];
+		}
+	}
+
+	/**
+	 * 64 bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3
+	 * mixer so that similar keys land far apart on the ring
+	 *
+	 * @param key key
+	 * @return hash
+	 */
+	static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			h ^= b & 0xFF;
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,80 @@
+package com.oleksandr.smartfridge.partition;
+
+/**
+ * Stream protocol between a {@link PartitionRouter} and its
+ * {@link PartitionWorker workers}.
+ *
+ * A request is an opcode byte followed by its fields, the fridge id first,
+ * written with {@link java.io.DataOutputStream}: strings as modified
+ * UTF-8, numbers big endian. Fridge ids are at most 65535 bytes long.
+ *
+ * <pre>
+ * ADD    fridge, long itemType, UUID, name, double fillFactor
+ * REMOVE fridge, UUID
+ * FORGET fridge, long itemType
+ * GET_FILL_FACTOR fridge, long itemType  -&gt; boolean present, double
+ * GET_ITEMS fridge, double fillFactor    -&gt; int count, count x (long
+ *                                           itemType, double fillFactor)
+ * EXPORT fridge                          -&gt; state
+ * IMPORT fridge, state                   -&gt; boolean
+ * DROP   fridge                          -&gt; boolean
+ * LIST   -                               -&gt; int count, count x fridge
+ * SYNC   -                               -&gt; boolean
+ * </pre>
+ *
+ * where a state is the content of the storage of a fridge:
+ *
+ * <pre>
+ * int count, count x long itemType          item types without items
+ * int count, count x (long itemType, UUID, name, double fillFactor,
+ *                     long expiresAt)       items grouped by type
+ * </pre>
+ *
+ * The mutations {@link #ADD}, {@link #REMOVE} and {@link #FORGET} are not
+ * answered; the router pipelines them and the worker applies them in
+ * order, so a query or an {@link #EXPORT} sees every mutation sent before
+ * it. Every other request is answered in order.
+ *
+ * @author oleksandr
+ *
+ */
+public final class PartitionProtocol {
+
+	public static final byte ADD = 1;
+
+	public static final byte REMOVE = 2;
+
+	public static final byte FORGET = 3;
+
+	public static final byte GET_FILL_FACTOR = 4;
+
+	public static final byte GET_ITEMS = 5;
+
+	/**
+	 * Returns the state of a fridge, which stays on the worker
+	 */
+	public static final byte EXPORT = 6;
+
+	/**
+	 * Replaces the state of a fridge
+	 */
+	public static final byte IMPORT = 7;
+
+	/**
+	 * Drops a fridge and its state
+	 */
+	public static final byte DROP = 8;
+
+	/**
+	 * Lists the ids of the fridges the worker holds
+	 */
+	public static final byte LIST = 9;
+
+	/**
+	 * Answered once every earlier request is applied
+	 */
+	public static final byte SYNC = 10;
+
+	private PartitionProtocol() {
+	}
+}
@@ -0,0 +1,293 @@
+package com.oleksandr.smartfridge.partition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+
+/**
+ * Spreads the fridges of a fleet over several {@link PartitionWorker
+ * workers}, so no single heap has to hold all of them. A fridge belongs to
+ * the worker a {@link ConsistentHashRing} picks for its id; the router
+ * forwards the events and queries of the fridge to that worker.
+ *
+ * Workers can join and leave while the fleet is running. Only the fridges
+ * whose owner changes are moved: the router streams the state of each one
+ * from its old owner to its new owner, switches the ring and then drops
+ * the fridges at their old owners. Mutations sent earlier are applied
+ * before the state is read, so no event is lost or applied twice. When a
+ * copy fails the ring is left as it was.
+ *
+ * Events which can't change a storage, such as an add without a UUID, are
+ * not forwarded.
+ *
+ * The router is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class PartitionRouter implements Closeable {
+
+	private final ConsistentHashRing<WorkerClient> ring;
+
+	/**
+	 * Constructs a router with
+	 * {@link ConsistentHashRing#DEFAULT_VIRTUAL_NODES} points per worker
+	 */
+	public PartitionRouter() {
+		this(ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param virtualNodes number of ring points of every worker
+	 */
+	public PartitionRouter(int virtualNodes) {
+		super();
+		ring = new ConsistentHashRing<>(virtualNodes);
+	}
+
+	/**
+	 * Connects a worker and moves the fridges it now owns to it
+	 *
+	 * @param name    unique name of the worker, it places the worker on the
+	 *                ring
+	 * @param address address of the worker
+	 * @return number of fridges moved to the worker
+	 * @throws IOException when the worker can't be reached or a move fails
+	 */
+	public int addWorker(String name, InetSocketAddress address)
+			throws IOException {
+		Objects.requireNonNull(name, "Name reference must be not null");
+		Objects.requireNonNull(address, "Address reference must be not null");
+		if (ring.get(name) != null) {
+			throw new IllegalArgumentException(
+					String.format("Worker %s is already connected", name));
+		}
+		WorkerClient worker = new WorkerClient(address);
+
+		// the fridges the new worker takes over, found on a ring which
+		// already has it
+		ConsistentHashRing<String> next = new ConsistentHashRing<>(
+				ring.getVirtualNodes());
+		for (String owner : ring.getNames()) {
+			next.add(owner, owner);
+		}
+		next.add(name, name);
+		List<Move> moves = new ArrayList<>();
+		try {
+			for (String owner : ring.getNames()) {
+				for (String fridgeId : ring.get(owner).listFridges()) {
+					if (name.equals(next.nameFor(fridgeId))) {
+						moves.add(new Move(fridgeId, ring.get(owner), worker));
+					}
+				}
+			}
+			copy(moves);
+		} catch (IOException | RuntimeException e) {
+			worker.close();
+			throw e;
+		}
+		ring.add(name, worker);
+		for (Move move : moves) {
+			move.source.drop(move.fridgeId);
+		}
+		return moves.size();
+	}
+
+	/**
+	 * Moves the fridges of a worker to their new owners and disconnects it.
+	 * The worker itself keeps running.
+	 *
+	 * @param name name of the worker
+	 * @return number of fridges moved away from the worker
+	 * @throws IOException when a move fails
+	 */
+	public int removeWorker(String name) throws IOException {
+		WorkerClient worker = ring.get(name);
+		if (worker == null) {
+			return 0;
+		}
+		if (ring.size() == 1) {
+			throw new IllegalStateException(
+					"The last worker can't be removed");
+		}
+		ConsistentHashRing<String> next = new ConsistentHashRing<>(
+				ring.getVirtualNodes());
+		for (String owner : ring.getNames()) {
+			if (!owner.equals(name)) {
+				next.add(owner, owner);
+			}
+		}
+		List<Move> moves = new ArrayList<>();
+		for (String fridgeId : worker.listFridges()) {
+			moves.add(new Move(fridgeId, worker,
+					ring.get(next.nameFor(fridgeId))));
+		}
+		copy(moves);
+		ring.remove(name);
+		for (Move move : moves) {
+			worker.drop(move.fridgeId);
+		}
+		worker.close();
+		return moves.size();
+	}
+
+	/**
+	 * Returns a manager of one fridge which forwards to its current owner.
+	 * The manager follows the fridge when it is moved.
+	 *
+	 * @param fridgeId fridge id
+	 * @return {@link SmartFridgeManager}
+	 */
+	public SmartFridgeManager getManager(String fridgeId) {
+		Objects.requireNonNull(fridgeId, "Fridge id must be not null");
+		return new FridgeView(fridgeId);
+	}
+
+	/**
+	 * Returns the name of the worker owning a fridge
+	 *
+	 * @param fridgeId fridge id
+	 * @return worker name or null when no worker is connected
+	 */
+	public String getOwner(String fridgeId) {
+		return ring.nameFor(fridgeId);
+	}
+
+	/**
+	 * Returns the names of the connected workers
+	 *
+	 * @return list of names
+	 */
+	public List<String> getWorkers() {
+		return ring.getNames();
+	}
+
+	/**
+	 * Waits until every worker applied the events sent to it
+	 *
+	 * @throws IOException when a worker can't be reached
+	 */
+	public void sync() throws IOException {
+		for (String name : ring.getNames()) {
+			ring.get(name).sync();
+		}
+	}
+
+	/**
+	 * Flushes the pending events and disconnects from all workers
+	 */
+	@Override
+	public void close() throws IOException {
+		IOException failure = null;
+		for (String name : ring.getNames()) {
+			try {
+				ring.remove(name).close();
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private WorkerClient owner(String fridgeId) {
+		WorkerClient worker = ring.nodeFor(fridgeId);
+		if (worker == null) {
+			throw new IllegalStateException("No worker is connected");
+		}
+		return worker;
+	}
+
+	/**
+	 * Manager of one fridge
+	 */
+	private final class FridgeView implements SmartFridgeManager {
+
+		private final String fridgeId;
+
+		FridgeView(String fridgeId) {
+			this.fridgeId = fridgeId;
+		}
+
+		@Override
+		public void handleItemAdded(long itemType, String itemUUID,
+				String name, Double fillFactor) {
+			if (itemUUID != null && name != null && fillFactor != null) {
+				owner(fridgeId).itemAdded(fridgeId, itemType, itemUUID, name,
+						fillFactor);
+			}
+		}
+
+		@Override
+		public void handleItemRemoved(String itemUUID) {
+			if (itemUUID != null) {
+				owner(fridgeId).itemRemoved(fridgeId, itemUUID);
+			}
+		}
+
+		@Override
+		public void forgetItem(long itemType) {
+			owner(fridgeId).itemForgotten(fridgeId, itemType);
+		}
+
+		@Override
+		public Double getFillFactor(long itemType) {
+			return owner(fridgeId).getFillFactor(fridgeId, itemType);
+		}
+
+		@Override
+		public Object[] getItems(Double fillFactor) {
+			return owner(fridgeId).getItems(fridgeId, fillFactor);
+		}
+	}
+
+	/**
+	 * Copies the fridges to their new owners. When a copy fails the copies
+	 * made so far are dropped again, so the old owners stay the only
+	 * holders of the fridges.
+	 */
+	private static void copy(List<Move> moves) throws IOException {
+		int copied = 0;
+		try {
+			for (Move move : moves) {
+				move.source.copyTo(move.fridgeId, move.target);
+				copied++;
+			}
+		} catch (IOException | RuntimeException e) {
+			for (Move move : moves.subList(0, copied)) {
+				try {
+					move.target.drop(move.fridgeId);
+				} catch (IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Fridge changing its owner
+	 */
+	private static final class Move {
+
+		private final String fridgeId;
+
+		private final WorkerClient source;
+
+		private final WorkerClient target;
+
+		Move(String fridgeId, WorkerClient source, WorkerClient target) {
+			this.fridgeId = fridgeId;
+			this.source = source;
+			this.target = target;
+		}
+	}
+}
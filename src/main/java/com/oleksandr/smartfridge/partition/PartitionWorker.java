@@ -0,0 +1,357 @@
+package com.oleksandr.smartfridge.partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.Item;
+
+/**
+ * Worker of a partitioned deployment. It holds the fridges a
+ * {@link PartitionRouter} assigned to it, each with its own storage and
+ * {@link SmartFridgeManagerImpl}, and serves the {@link PartitionProtocol}
+ * on a loopback socket with one thread per connection.
+ *
+ * A fridge is created by its first event. Requests for one fridge are
+ * applied one at a time, so several routers may share a worker.
+ *
+ * Run as a process with {@link #main(String[])}, usually through
+ * {@link WorkerProcess}.
+ *
+ * @author oleksandr
+ *
+ */
+public class PartitionWorker implements Closeable {
+
+	/**
+	 * Line printed on standard output once a worker process listens,
+	 * followed by its port
+	 */
+	static final String READY = "LISTENING ";
+
+	private final Logger logger;
+
+	private final ConcurrentHashMap<String, Fridge> fridges =
+			new ConcurrentHashMap<>();
+
+	private final List<Socket> connections = new ArrayList<>();
+
+	private ServerSocket serverSocket;
+
+	private volatile boolean running;
+
+	/**
+	 * Constructor
+	 *
+	 * @param logger logger of the fridge managers
+	 */
+	public PartitionWorker(Logger logger) {
+		super();
+		this.logger = Objects.requireNonNull(logger,
+				"Logger reference must be not null");
+	}
+
+	/**
+	 * Binds the worker to a loopback port and starts accepting routers
+	 *
+	 * @param port port, 0 to pick a free one
+	 * @return the address the worker is listening on
+	 * @throws IOException when the worker can't be bound
+	 */
+	public synchronized InetSocketAddress start(int port) throws IOException {
+		if (running) {
+			throw new IllegalStateException("Worker is already running");
+		}
+		serverSocket = new ServerSocket(port, 50,
+				InetAddress.getLoopbackAddress());
+		running = true;
+		Thread thread = new Thread(this::accept, "partition-worker");
+		thread.setDaemon(true);
+		thread.start();
+		return (InetSocketAddress) serverSocket.getLocalSocketAddress();
+	}
+
+	/**
+	 * Returns the number of fridges held by the worker
+	 *
+	 * @return int
+	 */
+	public int getFridgeCount() {
+		return fridges.size();
+	}
+
+	/**
+	 * Stops accepting routers and closes all connections
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!running) {
+			return;
+		}
+		running = false;
+		serverSocket.close();
+		synchronized (connections) {
+			for (Socket socket : connections) {
+				socket.close();
+			}
+			connections.clear();
+		}
+	}
+
+	/**
+	 * Runs a worker process. Prints {@link #READY} and the port once it
+	 * listens, and exits when its standard input is closed, which happens
+	 * at the latest when the parent process dies.
+	 *
+	 * @param args optional port, a free one by default
+	 * @throws IOException when the worker can't be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		PartitionWorker worker = new PartitionWorker(
+				LoggerFactory.getLogger(PartitionWorker.class));
+		InetSocketAddress address = worker.start(port);
+		System.out.println(READY + address.getPort());
+		System.out.flush();
+		while (System.in.read() >= 0) {
+			// wait for the parent to let go
+		}
+		worker.close();
+	}
+
+	private void accept() {
+		while (running) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				synchronized (connections) {
+					connections.add(socket);
+				}
+				Thread thread = new Thread(() -> serve(socket),
+						"partition-connection");
+				thread.setDaemon(true);
+				thread.start();
+			} catch (IOException e) {
+				if (running) {
+					logger.error(String.format("Worker stopped: %s",
+							e.getMessage()));
+				}
+				return;
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket s = socket;
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(s.getInputStream()));
+				DataOutputStream out = new DataOutputStream(
+						new BufferedOutputStream(s.getOutputStream()))) {
+			while (true) {
+				int opcode = in.read();
+				if (opcode < 0) {
+					return;
+				}
+				if (dispatch(opcode, in, out) && in.available() == 0) {
+					// answer now unless more requests are already waiting
+					out.flush();
+				}
+			}
+		} catch (EOFException e) {
+			// the router went away in the middle of a request
+		} catch (IOException e) {
+			if (running) {
+				logger.warn(String.format("Connection closed: %s",
+						e.getMessage()));
+			}
+		} finally {
+			synchronized (connections) {
+				connections.remove(socket);
+			}
+		}
+	}
+
+	/**
+	 * Applies a request
+	 *
+	 * @return true when the request was answered
+	 */
+	private boolean dispatch(int opcode, DataInputStream in,
+			DataOutputStream out) throws IOException {
+		if (opcode == PartitionProtocol.LIST) {
+			List<String> ids = new ArrayList<>(fridges.keySet());
+			out.writeInt(ids.size());
+			for (String id : ids) {
+				out.writeUTF(id);
+			}
+			return true;
+		}
+		if (opcode == PartitionProtocol.SYNC) {
+			out.writeBoolean(true);
+			return true;
+		}
+
+		String fridgeId = in.readUTF();
+		switch (opcode) {
+		case PartitionProtocol.ADD:
+			long itemType = in.readLong();
+			String itemUUID = in.readUTF();
+			String name = in.readUTF();
+			double fillFactor = in.readDouble();
+			Fridge fridge = fridge(fridgeId);
+			synchronized (fridge) {
+				fridge.manager.handleItemAdded(itemType, itemUUID, name,
+						fillFactor);
+			}
+			return false;
+		case PartitionProtocol.REMOVE:
+			itemUUID = in.readUTF();
+			fridge = fridges.get(fridgeId);
+			if (fridge != null) {
+				synchronized (fridge) {
+					fridge.manager.handleItemRemoved(itemUUID);
+				}
+			}
+			return false;
+		case PartitionProtocol.FORGET:
+			itemType = in.readLong();
+			fridge = fridges.get(fridgeId);
+			if (fridge != null) {
+				synchronized (fridge) {
+					fridge.manager.forgetItem(itemType);
+				}
+			}
+			return false;
+		case PartitionProtocol.GET_FILL_FACTOR:
+			itemType = in.readLong();
+			fridge = fridges.get(fridgeId);
+			Double value = null;
+			if (fridge != null) {
+				synchronized (fridge) {
+					value = fridge.manager.getFillFactor(itemType);
+				}
+			}
+			out.writeBoolean(value != null);
+			out.writeDouble(value == null ? 0.0 : value);
+			return true;
+		case PartitionProtocol.GET_ITEMS:
+			double threshold = in.readDouble();
+			fridge = fridges.get(fridgeId);
+			Object[] items = new Object[0];
+			if (fridge != null) {
+				synchronized (fridge) {
+					items = fridge.manager.getItems(threshold);
+				}
+			}
+			out.writeInt(items.length);
+			for (Object item : items) {
+				double[] array = (double[]) item;
+				out.writeLong((long) array[0]);
+				out.writeDouble(array[1]);
+			}
+			return true;
+		case PartitionProtocol.EXPORT:
+			fridge = fridges.get(fridgeId);
+			if (fridge == null) {
+				out.writeInt(0);
+				out.writeInt(0);
+			} else {
+				synchronized (fridge) {
+					fridge.export(out);
+				}
+			}
+			return true;
+		case PartitionProtocol.IMPORT:
+			Fridge imported = new Fridge(logger);
+			imported.load(in);
+			fridges.put(fridgeId, imported);
+			out.writeBoolean(true);
+			return true;
+		case PartitionProtocol.DROP:
+			out.writeBoolean(fridges.remove(fridgeId) != null);
+			return true;
+		default:
+			throw new IOException(String.format("Unknown opcode %d", opcode));
+		}
+	}
+
+	private Fridge fridge(String fridgeId) {
+		return fridges.computeIfAbsent(fridgeId, id -> new Fridge(logger));
+	}
+
+	/**
+	 * Storage and manager of one fridge
+	 */
+	private static final class Fridge {
+
+		private final InMemoryStorage storage = new InMemoryStorage();
+
+		private final SmartFridgeManager manager;
+
+		Fridge(Logger logger) {
+			manager = new SmartFridgeManagerImpl(storage, logger);
+		}
+
+		void export(DataOutputStream out) throws IOException {
+			List<Long> emptyTypes = new ArrayList<>();
+			storage.forEachType((itemType, fillFactor) -> {
+				if (fillFactor == 0.0) {
+					emptyTypes.add(itemType);
+				}
+			});
+			out.writeInt(emptyTypes.size());
+			for (long itemType : emptyTypes) {
+				out.writeLong(itemType);
+			}
+			List<Item> items = new ArrayList<>(storage.getItemCount());
+			storage.forEachItem(items::add);
+			out.writeInt(items.size());
+			for (Item item : items) {
+				out.writeLong(item.getType());
+				out.writeUTF(item.getUUID());
+				out.writeUTF(item.getName());
+				out.writeDouble(item.getFillFactor());
+				out.writeLong(item.getExpiresAt());
+			}
+		}
+
+		void load(DataInputStream in) throws IOException {
+			int emptyCount = in.readInt();
+			long[] emptyTypes = new long[emptyCount];
+			for (int i = 0; i < emptyCount; i++) {
+				emptyTypes[i] = in.readLong();
+			}
+			int count = in.readInt();
+			List<Item> items = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				items.add(new Item(in.readLong(), in.readUTF(), in.readUTF(),
+						in.readDouble(), in.readLong()));
+			}
+			items.sort(Comparator.comparingLong(Item::getType));
+			storage.bulkLoad(items.iterator());
+
+			for (long itemType : emptyTypes) {
+				storage.addItemType(itemType);
+			}
+		}
+	}
+}
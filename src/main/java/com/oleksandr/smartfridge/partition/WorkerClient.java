@@ -0,0 +1,191 @@
+package com.oleksandr.smartfridge.partition;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Router side connection to a {@link PartitionWorker}. Mutations are
+ * buffered and pipelined, requests with an answer flush the buffer and
+ * wait for it.
+ *
+ * The client is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+class WorkerClient implements Closeable {
+
+	private final InetSocketAddress address;
+
+	private final Socket socket;
+
+	private final DataInputStream in;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Connects to the worker
+	 *
+	 * @param address worker address
+	 * @throws IOException when the connection can't be established
+	 */
+	WorkerClient(InetSocketAddress address) throws IOException {
+		this.address = address;
+		socket = new Socket(address.getAddress(), address.getPort());
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(
+				new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(
+				new BufferedOutputStream(socket.getOutputStream(), 32 * 1024));
+	}
+
+	InetSocketAddress getAddress() {
+		return address;
+	}
+
+	void itemAdded(String fridgeId, long itemType, String itemUUID,
+			String name, double fillFactor) {
+		try {
+			out.writeByte(PartitionProtocol.ADD);
+			out.writeUTF(fridgeId);
+			out.writeLong(itemType);
+			out.writeUTF(itemUUID);
+			out.writeUTF(name);
+			out.writeDouble(fillFactor);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void itemRemoved(String fridgeId, String itemUUID) {
+		try {
+			out.writeByte(PartitionProtocol.REMOVE);
+			out.writeUTF(fridgeId);
+			out.writeUTF(itemUUID);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	void itemForgotten(String fridgeId, long itemType) {
+		try {
+			out.writeByte(PartitionProtocol.FORGET);
+			out.writeUTF(fridgeId);
+			out.writeLong(itemType);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	Double getFillFactor(String fridgeId, long itemType) {
+		try {
+			out.writeByte(PartitionProtocol.GET_FILL_FACTOR);
+			out.writeUTF(fridgeId);
+			out.writeLong(itemType);
+			out.flush();
+			boolean present = in.readBoolean();
+			double value = in.readDouble();
+			return present ? value : null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	Object[] getItems(String fridgeId, double fillFactor) {
+		try {
+			out.writeByte(PartitionProtocol.GET_ITEMS);
+			out.writeUTF(fridgeId);
+			out.writeDouble(fillFactor);
+			out.flush();
+			Object[] items = new Object[in.readInt()];
+			for (int i = 0; i < items.length; i++) {
+				items[i] = new double[] { in.readLong(), in.readDouble() };
+			}
+			return items;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Copies the state of a fridge from this worker to another one. The
+	 * state is written to the other worker as it arrives from this one.
+	 *
+	 * @param fridgeId fridge id
+	 * @param target   worker receiving the copy
+	 * @return number of items copied
+	 */
+	int copyTo(String fridgeId, WorkerClient target) throws IOException {
+		out.writeByte(PartitionProtocol.EXPORT);
+		out.writeUTF(fridgeId);
+		out.flush();
+
+		target.out.writeByte(PartitionProtocol.IMPORT);
+		target.out.writeUTF(fridgeId);
+		int emptyCount = in.readInt();
+		target.out.writeInt(emptyCount);
+		for (int i = 0; i < emptyCount; i++) {
+			target.out.writeLong(in.readLong());
+		}
+		int count = in.readInt();
+		target.out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			target.out.writeLong(in.readLong());
+			target.out.writeUTF(in.readUTF());
+			target.out.writeUTF(in.readUTF());
+			target.out.writeDouble(in.readDouble());
+			target.out.writeLong(in.readLong());
+		}
+		target.out.flush();
+		target.in.readBoolean();
+		return count;
+	}
+
+	/**
+	 * Drops a fridge and its state
+	 *
+	 * @param fridgeId fridge id
+	 * @return false when the worker didn't hold the fridge
+	 */
+	boolean drop(String fridgeId) throws IOException {
+		out.writeByte(PartitionProtocol.DROP);
+		out.writeUTF(fridgeId);
+		out.flush();
+		return in.readBoolean();
+	}
+
+	List<String> listFridges() throws IOException {
+		out.writeByte(PartitionProtocol.LIST);
+		out.flush();
+		int count = in.readInt();
+		List<String> ids = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			ids.add(in.readUTF());
+		}
+		return ids;
+	}
+
+	void sync() throws IOException {
+		out.writeByte(PartitionProtocol.SYNC);
+		out.flush();
+		in.readBoolean();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			out.flush();
+		} finally {
+			socket.close();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package com.oleksandr.smartfridge.partition;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link PartitionWorker} running in a child process on the class path of
+ * the current one. The child listens on a free loopback port and stops
+ * when it is closed or when the current process dies.
+ *
+ * @author oleksandr
+ *
+ */
+public class WorkerProcess implements Closeable {
+
+	private static final long START_TIMEOUT_SECONDS = 30;
+
+	private static final long STOP_TIMEOUT_SECONDS = 5;
+
+	private final Process process;
+
+	private final InetSocketAddress address;
+
+	/**
+	 * Starts a worker process and waits until it listens
+	 *
+	 * @param name name of the worker, used for its output thread
+	 * @throws IOException when the process can't be started or doesn't
+	 *                     listen in time
+	 */
+	public WorkerProcess(String name) throws IOException {
+		super();
+		String java = System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java";
+		process = new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"),
+				PartitionWorker.class.getName())
+						.redirectErrorStream(true).start();
+
+		CompletableFuture<Integer> port = new CompletableFuture<>();
+		Thread thread = new Thread(() -> drain(port), "worker-" + name);
+		thread.setDaemon(true);
+		thread.start();
+		try {
+			address = new InetSocketAddress(InetAddress.getLoopbackAddress(),
+					port.get(START_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while the worker was starting",
+					e);
+		} catch (ExecutionException | TimeoutException e) {
+			process.destroyForcibly();
+			throw new IOException("Worker process didn't start", e);
+		}
+	}
+
+	/**
+	 * Returns the address the worker listens on
+	 *
+	 * @return {@link InetSocketAddress}
+	 */
+	public InetSocketAddress getAddress() {
+		return address;
+	}
+
+	/**
+	 * Stops the worker process
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			process.getOutputStream().close();
+			if (!process.waitFor(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		} catch (InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Reads the output of the child: the ready line completes the port, the
+	 * rest is discarded so the child never blocks on a full pipe
+	 */
+	private void drain(CompletableFuture<Integer> port) {
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+				process.getInputStream(), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (!port.isDone() && line.startsWith(PartitionWorker.READY)) {
+					port.complete(Integer.valueOf(line
+							.substring(PartitionWorker.READY.length()).trim()));
+				}
+			}
+		} catch (IOException | NumberFormatException e) {
+			port.completeExceptionally(e);
+			return;
+		}
+		port.completeExceptionally(
+				new IOException("Worker process exited before listening"));
+	}
+}
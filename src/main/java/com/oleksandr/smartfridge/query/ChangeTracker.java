@@ -0,0 +1,273 @@
+package com.oleksandr.smartfridge.query;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Versions the changes of an {@link InMemoryStorage}, so clients which
+ * refresh the low items list only receive what changed since their last
+ * refresh.
+ *
+ * Every change of the storage gets the next version. Every item type keeps
+ * one entry with the version of its last change, and the entries are
+ * linked in version order, so the changes since a version are found by
+ * walking back from the newest entry: the cost is in proportion to the
+ * number of changed item types, not to the size of the storage. Forgotten
+ * item types leave a tombstone; only the newest tombstones are kept, and a
+ * token older than the oldest dropped one gets the full list.
+ *
+ * A token names the tracker which issued it, so tokens of another tracker,
+ * for instance from before a restart, also get the full list.
+ *
+ * The tracker follows the storage as a {@link StorageListener} and like the
+ * storage it is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class ChangeTracker implements StorageListener, AutoCloseable {
+
+	/**
+	 * Default number of tombstones kept
+	 */
+	public static final int DEFAULT_TOMBSTONES = 1024;
+
+	/**
+	 * Precision the storage compares fill factors with
+	 */
+	private static final MathContext FILL_PRECISION = new MathContext(2);
+
+	private final InMemoryStorage storage;
+
+	private final int maxTombstones;
+
+	/**
+	 * Identifies the tokens of this tracker
+	 */
+	private final String epoch;
+
+	private long version;
+
+	/**
+	 * Oldest version a delta can start from
+	 */
+	private long horizon;
+
+	private final HashMap<Long, Entry> entries = new HashMap<>();
+
+	/**
+	 * Tombstones, oldest first. An entry revived by a later change leaves
+	 * it, so it never holds more than the tombstones kept.
+	 */
+	private final ArrayDeque<Entry> tombstones = new ArrayDeque<>();
+
+	/**
+	 * Head of the list of entries in version order
+	 */
+	private final Entry head = new Entry(0);
+
+	/**
+	 * Constructs a tracker keeping {@link #DEFAULT_TOMBSTONES} tombstones
+	 *
+	 * @param storage tracked storage
+	 */
+	public ChangeTracker(InMemoryStorage storage) {
+		this(storage, DEFAULT_TOMBSTONES);
+	}
+
+	/**
+	 * Constructor. Registers the tracker as a listener of the storage.
+	 *
+	 * @param storage       tracked storage
+	 * @param maxTombstones number of forgotten item types remembered
+	 */
+	public ChangeTracker(InMemoryStorage storage, int maxTombstones) {
+		super();
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+		if (maxTombstones <= 0) {
+			throw new IllegalArgumentException(
+					"Tombstone count must be greater then 0");
+		}
+		this.maxTombstones = maxTombstones;
+		this.epoch = Long.toHexString(
+				ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+		head.prev = head;
+		head.next = head;
+		storage.forEachType((type, fill) -> touch(type).fillFactor = fill);
+		storage.addListener(this);
+	}
+
+	/**
+	 * Returns the current version
+	 *
+	 * @return long
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the token of the current version
+	 *
+	 * @return String
+	 */
+	public String getToken() {
+		return epoch + ":" + Long.toHexString(version);
+	}
+
+	/**
+	 * Returns the changes of the item types below the threshold since the
+	 * version of the token
+	 *
+	 * @param token     token of the previous call, null for the full list
+	 * @param threshold fill factor threshold like in
+	 *                  {@link InMemoryStorage#getItems(Double)}
+	 * @return {@link ItemsDelta}
+	 */
+	public ItemsDelta getItemsSince(String token, double threshold) {
+		BigDecimal limit = new BigDecimal(threshold, FILL_PRECISION);
+		long since = parse(token);
+		HashMap<Long, Double> updated = new HashMap<>();
+		HashSet<Long> removed = new HashSet<>();
+		if (since < horizon || since > version) {
+			for (Map.Entry<Long, Double> item : storage.getItems(threshold)
+					.entrySet()) {
+				updated.put(item.getKey(), item.getValue());
+			}
+			return new ItemsDelta(getToken(), true, updated, removed);
+		}
+		for (Entry entry = head.prev; entry != head
+				&& entry.version > since; entry = entry.prev) {
+			if (!entry.forgotten && new BigDecimal(entry.fillFactor,
+					FILL_PRECISION).compareTo(limit) < 0) {
+				updated.put(entry.type, entry.fillFactor);
+			} else {
+				removed.add(entry.type);
+			}
+		}
+		return new ItemsDelta(getToken(), false, updated, removed);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		version++;
+		Entry entry = touch(event.getItemType());
+		entry.fillFactor = event.getFillFactor();
+		boolean forgotten = event.getKind() == StorageEvent.Kind.FORGOTTEN;
+		if (forgotten && !entry.forgotten) {
+			tombstones.add(entry);
+		} else if (!forgotten && entry.forgotten) {
+			// revivals are rare, a scan of the kept tombstones is cheap
+			tombstones.removeLastOccurrence(entry);
+		}
+		entry.forgotten = forgotten;
+		while (tombstones.size() > maxTombstones) {
+			dropTombstone();
+		}
+	}
+
+	/**
+	 * Unregisters the tracker from the storage
+	 */
+	@Override
+	public void close() {
+		storage.removeListener(this);
+	}
+
+	/**
+	 * Moves the entry of the type to the end of the list with the current
+	 * version, creating it if needed
+	 */
+	private Entry touch(long type) {
+		Entry entry = entries.get(type);
+		if (entry == null) {
+			entry = new Entry(type);
+			entries.put(type, entry);
+		} else {
+			entry.unlink();
+		}
+		entry.version = version;
+		entry.prev = head.prev;
+		entry.next = head;
+		head.prev.next = entry;
+		head.prev = entry;
+		return entry;
+	}
+
+	/**
+	 * Returns the number of tombstones kept
+	 *
+	 * @return int
+	 */
+	int getTombstoneCount() {
+		return tombstones.size();
+	}
+
+	private void dropTombstone() {
+		Entry entry = tombstones.poll();
+		entries.remove(entry.type);
+		entry.unlink();
+		// deltas from before the tombstone would miss the forget
+		horizon = Math.max(horizon, entry.version);
+	}
+
+	/**
+	 * Returns the version of the token, -1 when it is not one of ours
+	 */
+	private long parse(String token) {
+		if (token == null) {
+			return -1;
+		}
+		int colon = token.indexOf(':');
+		if (colon < 0 || !token.regionMatches(0, epoch, 0, colon)
+				|| colon != epoch.length()) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(token.substring(colon + 1), 16);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Latest state of an item type, linked in version order
+	 */
+	private static final class Entry {
+
+		final long type;
+
+		long version;
+
+		double fillFactor;
+
+		boolean forgotten;
+
+		Entry prev;
+
+		Entry next;
+
+		Entry(long type) {
+			this.type = type;
+		}
+
+		void unlink() {
+			prev.next = next;
+			next.prev = prev;
+		}
+	}
+}
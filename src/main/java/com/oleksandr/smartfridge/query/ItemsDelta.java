@@ -0,0 +1,73 @@
+package com.oleksandr.smartfridge.query;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changes of the low items list since a version token, as returned by
+ * {@link ChangeTracker#getItemsSince(String, double)}. A client applies it
+ * to its copy of the list: it puts the updated item types and drops the
+ * removed ones. A full delta replaces the copy instead.
+ *
+ * @author oleksandr
+ *
+ */
+public final class ItemsDelta {
+
+	private final String token;
+
+	private final boolean full;
+
+	private final Map<Long, Double> updated;
+
+	private final Set<Long> removed;
+
+	ItemsDelta(String token, boolean full, Map<Long, Double> updated,
+			Set<Long> removed) {
+		this.token = token;
+		this.full = full;
+		this.updated = Collections.unmodifiableMap(updated);
+		this.removed = Collections.unmodifiableSet(removed);
+	}
+
+	/**
+	 * Returns the token to pass with the next call
+	 *
+	 * @return String
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Checks if the delta is the whole list, because the token was missing,
+	 * unknown or too old
+	 *
+	 * @return boolean
+	 */
+	public boolean isFull() {
+		return full;
+	}
+
+	/**
+	 * Returns the item types below the threshold whose fill changed, with
+	 * their fill factor
+	 *
+	 * @return map of item type to fill factor
+	 */
+	public Map<Long, Double> getUpdated() {
+		return updated;
+	}
+
+	/**
+	 * Returns the item types which changed and are no longer below the
+	 * threshold or were forgotten. It may name types the client doesn't
+	 * have.
+	 *
+	 * @return set of item types
+	 */
+	public Set<Long> getRemoved() {
+		return removed;
+	}
+}
@@ -0,0 +1,165 @@
+package com.oleksandr.smartfridge.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+
+import com.oleksandr.smartfridge.storage.Item;
+
+/**
+ * Character trie of item names. Names are matched ignoring case. A prefix
+ * lookup walks down the prefix and then only visits the subtree below it,
+ * so its cost depends on the prefix and the result, not on the number of
+ * items.
+ *
+ * @author oleksandr
+ *
+ */
+class NameTrie {
+
+	private final Node root = new Node();
+
+	private int size;
+
+	/**
+	 * Adds the item under its name
+	 *
+	 * @param item {@link Item}
+	 */
+	void add(Item item) {
+		String key = key(item.getName());
+		Node node = root;
+		for (int i = 0; i < key.length(); i++) {
+			node = node.child(key.charAt(i), true);
+		}
+		if (node.items == null) {
+			node.items = new LinkedHashMap<>(4);
+		}
+		if (node.items.put(item.getUUID(), item) == null) {
+			size++;
+		}
+	}
+
+	/**
+	 * Removes the item and prunes the branches left without items
+	 *
+	 * @param item {@link Item}
+	 */
+	void remove(Item item) {
+		String key = key(item.getName());
+		Node[] path = new Node[key.length() + 1];
+		path[0] = root;
+		for (int i = 0; i < key.length(); i++) {
+			path[i + 1] = path[i].child(key.charAt(i), false);
+			if (path[i + 1] == null) {
+				return;
+			}
+		}
+		Node node = path[key.length()];
+		if (node.items == null || node.items.remove(item.getUUID()) == null) {
+			return;
+		}
+		size--;
+		for (int i = key.length(); i > 0 && path[i].isUnused(); i--) {
+			path[i - 1].children.remove(key.charAt(i - 1));
+		}
+	}
+
+	/**
+	 * Returns the items whose name starts with the prefix, in name order
+	 *
+	 * @param prefix name prefix
+	 * @param limit  maximum number of items to return
+	 * @return list of {@link Item}
+	 */
+	List<Item> find(String prefix, int limit) {
+		List<Item> result = new ArrayList<>();
+		String key = key(prefix);
+		Node node = root;
+		for (int i = 0; i < key.length() && node != null; i++) {
+			node = node.child(key.charAt(i), false);
+		}
+		if (node == null) {
+			return result;
+		}
+		// depth first in character order, using an explicit stack of
+		// iterators to survive long names
+		ArrayDeque<Iterator<Node>> stack = new ArrayDeque<>();
+		collect(node, result, limit);
+		if (node.children != null) {
+			stack.push(node.children.values().iterator());
+		}
+		while (!stack.isEmpty() && result.size() < limit) {
+			Iterator<Node> iterator = stack.peek();
+			if (!iterator.hasNext()) {
+				stack.pop();
+				continue;
+			}
+			Node child = iterator.next();
+			collect(child, result, limit);
+			if (child.children != null) {
+				stack.push(child.children.values().iterator());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of items in the trie
+	 *
+	 * @return int
+	 */
+	int size() {
+		return size;
+	}
+
+	private static void collect(Node node, List<Item> result, int limit) {
+		if (node.items == null) {
+			return;
+		}
+		for (Item item : node.items.values()) {
+			if (result.size() >= limit) {
+				return;
+			}
+			result.add(item);
+		}
+	}
+
+	private static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Trie node. Children and items are created on demand.
+	 */
+	private static final class Node {
+
+		TreeMap<Character, Node> children;
+
+		LinkedHashMap<String, Item> items;
+
+		Node child(char c, boolean create) {
+			if (children == null) {
+				if (!create) {
+					return null;
+				}
+				children = new TreeMap<>();
+			}
+			Node child = children.get(c);
+			if (child == null && create) {
+				child = new Node();
+				children.put(c, child);
+			}
+			return child;
+		}
+
+		boolean isUnused() {
+			return (items == null || items.isEmpty())
+					&& (children == null || children.isEmpty());
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package com.oleksandr.smartfridge.query;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Secondary indexes over an {@link InMemoryStorage} for the queries the
+ * {@link com.oleksandr.smartfridge.storage.Storage} interface can't answer
+ * without a full scan:
+ *
+ * <ul>
+ * <li>item types with a fill factor in a range, {@link #getItemsBetween}</li>
+ * <li>the k emptiest item types, {@link #getLowest(int)}</li>
+ * <li>items whose name starts with a prefix, {@link #findByName}</li>
+ * </ul>
+ *
+ * Fill factors are kept in an ordered set and names in a trie, so each
+ * query costs time in proportion to its result. The index follows the
+ * storage as a {@link StorageListener}; like the storage it is not
+ * thread-safe and must be queried from the thread which changes the
+ * storage.
+ *
+ * @author oleksandr
+ *
+ */
+public class QueryIndex implements StorageListener, AutoCloseable {
+
+	private final InMemoryStorage storage;
+
+	/**
+	 * Item types ordered by fill factor, then by type
+	 */
+	private final TreeSet<TypeFill> fillIndex = new TreeSet<>();
+
+	/**
+	 * Entry of every item type in {@link #fillIndex}
+	 */
+	private final HashMap<Long, TypeFill> types = new HashMap<>();
+
+	/**
+	 * Items of every type, needed to unindex forgotten types
+	 */
+	private final HashMap<Long, HashMap<String, Item>> itemsByType =
+			new HashMap<>();
+
+	private final NameTrie names = new NameTrie();
+
+	/**
+	 * Builds the indexes from the current content of the storage and
+	 * registers the index as its listener
+	 *
+	 * @param storage indexed storage
+	 */
+	public QueryIndex(InMemoryStorage storage) {
+		super();
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+		storage.forEachType(this::updateFill);
+		storage.forEachItem(this::index);
+		storage.addListener(this);
+	}
+
+	/**
+	 * Returns the item types whose fill factor is at least {@code from} and
+	 * less than {@code to}, in ascending order of fill factor
+	 *
+	 * @param from lowest fill factor, inclusive
+	 * @param to   highest fill factor, exclusive
+	 * @return map of item type to fill factor
+	 */
+	public Map<Long, Double> getItemsBetween(double from, double to) {
+		LinkedHashMap<Long, Double> result = new LinkedHashMap<>();
+		if (from >= to) {
+			return result;
+		}
+		for (TypeFill entry : fillIndex.subSet(
+				new TypeFill(Long.MIN_VALUE, from), true,
+				new TypeFill(Long.MIN_VALUE, to), false)) {
+			result.put(entry.type, entry.fillFactor);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the {@code k} item types with the lowest fill factor, emptiest
+	 * first
+	 *
+	 * @param k number of item types
+	 * @return map of item type to fill factor
+	 */
+	public Map<Long, Double> getLowest(int k) {
+		if (k < 0) {
+			throw new IllegalArgumentException(
+					"Count must be not less then 0");
+		}
+		LinkedHashMap<Long, Double> result = new LinkedHashMap<>();
+		for (TypeFill entry : fillIndex) {
+			if (result.size() >= k) {
+				break;
+			}
+			result.put(entry.type, entry.fillFactor);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the items whose name starts with the prefix, ignoring case, in
+	 * name order
+	 *
+	 * @param prefix name prefix, the empty prefix matches every item
+	 * @return list of {@link Item}
+	 */
+	public List<Item> findByName(String prefix) {
+		return findByName(prefix, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Returns at most {@code limit} items whose name starts with the prefix,
+	 * ignoring case, in name order
+	 *
+	 * @param prefix name prefix, the empty prefix matches every item
+	 * @param limit  maximum number of items
+	 * @return list of {@link Item}
+	 */
+	public List<Item> findByName(String prefix, int limit) {
+		Objects.requireNonNull(prefix, "Prefix reference must be not null");
+		if (limit < 0) {
+			throw new IllegalArgumentException(
+					"Limit must be not less then 0");
+		}
+		return names.find(prefix, limit);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		switch (event.getKind()) {
+		case ADDED:
+			index(event.getItem());
+			updateFill(event.getItemType(), event.getFillFactor());
+			break;
+		case REMOVED:
+			unindex(event.getItem());
+			updateFill(event.getItemType(), event.getFillFactor());
+			break;
+		case FORGOTTEN:
+			TypeFill entry = types.remove(event.getItemType());
+			if (entry != null) {
+				fillIndex.remove(entry);
+			}
+			HashMap<String, Item> items = itemsByType
+					.remove(event.getItemType());
+			if (items != null) {
+				items.values().forEach(names::remove);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Unregisters the index from the storage
+	 */
+	@Override
+	public void close() {
+		storage.removeListener(this);
+	}
+
+	private void index(Item item) {
+		itemsByType.computeIfAbsent(item.getType(), t -> new HashMap<>())
+				.put(item.getUUID(), item);
+		names.add(item);
+	}
+
+	private void unindex(Item item) {
+		HashMap<String, Item> items = itemsByType.get(item.getType());
+		if (items != null) {
+			items.remove(item.getUUID());
+		}
+		names.remove(item);
+	}
+
+	private void updateFill(long itemType, double fillFactor) {
+		TypeFill previous = types.get(itemType);
+		if (previous != null) {
+			if (previous.fillFactor == fillFactor) {
+				return;
+			}
+			fillIndex.remove(previous);
+		}
+		TypeFill entry = new TypeFill(itemType, fillFactor);
+		fillIndex.add(entry);
+		types.put(itemType, entry);
+	}
+
+	/**
+	 * Entry of the fill factor index
+	 */
+	private static final class TypeFill implements Comparable<TypeFill> {
+
+		final long type;
+
+		final double fillFactor;
+
+		TypeFill(long type, double fillFactor) {
+			this.type = type;
+			this.fillFactor = fillFactor;
+		}
+
+		@Override
+		public int compareTo(TypeFill other) {
+			int result = Double.compare(fillFactor, other.fillFactor);
+			return result != 0 ? result : Long.compare(type, other.type);
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package com.oleksandr.smartfridge.replication;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.Storage;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+
+/**
+ * Read-only replica living in the same process as the primary.
+ *
+ * Shipped mutations are queued and applied to the replica's own storage by
+ * a dedicated thread, so the primary never waits for the replica. Queries
+ * may come from any number of threads: they share a read lock, the apply
+ * thread takes the write lock for one mutation at a time. The queries see
+ * the state as of {@link #getAppliedSequence()}.
+ *
+ * @author oleksandr
+ *
+ */
+public class InProcessReplica implements Storage, ReplicationLink {
+
+	/**
+	 * Queue entry which stops the apply thread
+	 */
+	private static final Shipment STOP = new Shipment(0, null);
+
+	/**
+	 * Storage of the replica. Only the apply thread changes it.
+	 */
+	private final Storage storage;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final LinkedBlockingQueue<Shipment> queue =
+			new LinkedBlockingQueue<>();
+
+	private final Thread thread;
+
+	private volatile long shippedSequence;
+
+	private volatile long appliedSequence;
+
+	private final AtomicLong failedCount = new AtomicLong();
+
+	private final Logger logger;
+
+	/**
+	 * Constructor. Starts the apply thread.
+	 *
+	 * @param storage empty storage to replicate into, configured like the
+	 *                primary
+	 */
+	public InProcessReplica(Storage storage) {
+		this(storage, LoggerFactory.getLogger(InProcessReplica.class));
+	}
+
+	/**
+	 * Constructor. Starts the apply thread.
+	 *
+	 * @param storage empty storage to replicate into, configured like the
+	 *                primary
+	 * @param logger  logger of the mutations which failed to apply
+	 */
+	public InProcessReplica(Storage storage, Logger logger) {
+		super();
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+		this.logger = Objects.requireNonNull(logger,
+				"Logger reference must be not null");
+		thread = new Thread(this::run, "storage-replica");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.replication.ReplicationLink#ship(long,
+	 *      com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void ship(long sequence, StorageEvent event) {
+		shippedSequence = sequence;
+		queue.add(new Shipment(sequence, event));
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.replication.ReplicationLink#getLag()
+	 */
+	@Override
+	public long getLag() {
+		return shippedSequence - appliedSequence;
+	}
+
+	/**
+	 * Returns the sequence number of the last applied mutation
+	 *
+	 * @return long
+	 */
+	public long getAppliedSequence() {
+		return appliedSequence;
+	}
+
+	/**
+	 * Returns the number of mutations the replica failed to apply. It stays
+	 * 0 unless the replica diverged from the primary.
+	 *
+	 * @return long
+	 */
+	public long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * Waits until the mutation with the given sequence number is applied
+	 *
+	 * @param sequence sequence number
+	 * @param timeout  how long to wait
+	 * @param unit     unit of the timeout
+	 * @return true when the mutation is applied, false on timeout
+	 * @throws InterruptedException when interrupted while waiting
+	 */
+	public boolean awaitSequence(long sequence, long timeout, TimeUnit unit)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (this) {
+			while (appliedSequence < sequence) {
+				long left = deadline - System.nanoTime();
+				if (left <= 0) {
+					return false;
+				}
+				TimeUnit.NANOSECONDS.timedWait(this, left);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The replica is read-only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		throw new UnsupportedOperationException("Replica is read-only");
+	}
+
+	/**
+	 * The replica is read-only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		throw new UnsupportedOperationException("Replica is read-only");
+	}
+
+	/**
+	 * The replica is read-only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public Item removeItem(String itemUUID) {
+		throw new UnsupportedOperationException("Replica is read-only");
+	}
+
+	/**
+	 * The replica is read-only
+	 *
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		throw new UnsupportedOperationException("Replica is read-only");
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getItems(java.lang.Double)
+	 */
+	@Override
+	public Map<Long, Double> getItems(Double fillFactor) {
+		lock.readLock().lock();
+		try {
+			return storage.getItems(fillFactor);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getFillFactor(long)
+	 */
+	@Override
+	public Double getFillFactor(long itemType) {
+		lock.readLock().lock();
+		try {
+			return storage.getFillFactor(itemType);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stops the apply thread after the queued mutations are applied
+	 */
+	@Override
+	public void close() {
+		queue.add(STOP);
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				Shipment shipment = queue.take();
+				if (shipment == STOP) {
+					return;
+				}
+				lock.writeLock().lock();
+				try {
+					apply(shipment.event);
+				} catch (WrongBinException | BinOverflowException
+						| DoublicateItemException | RuntimeException e) {
+					// a failed mutation must not stop the apply thread, the
+					// sequence moves on so waiting readers are released
+					failedCount.incrementAndGet();
+					logger.warn(String.format(
+							"Replica failed to apply mutation %d: %s",
+							shipment.sequence, e.getMessage()), e);
+				} finally {
+					lock.writeLock().unlock();
+				}
+				synchronized (this) {
+					appliedSequence = shipment.sequence;
+					notifyAll();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void apply(StorageEvent event) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		switch (event.getKind()) {
+		case ADDED:
+			Item item = event.getItem();
+			storage.addItem(item.getType(), item.getUUID(), item.getName(),
+					item.getFillFactor(), item.getExpiresAt());
+			break;
+		case REMOVED:
+			storage.removeItem(event.getItem().getUUID());
+			break;
+		case FORGOTTEN:
+			storage.forgetItem(event.getItemType());
+			break;
+		}
+	}
+
+	/**
+	 * Mutation waiting to be applied
+	 */
+	private static final class Shipment {
+
+		final long sequence;
+
+		final StorageEvent event;
+
+		Shipment(long sequence, StorageEvent event) {
+			this.sequence = sequence;
+			this.event = event;
+		}
+	}
+}
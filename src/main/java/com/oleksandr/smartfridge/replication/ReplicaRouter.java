@@ -0,0 +1,113 @@
+package com.oleksandr.smartfridge.replication;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.Storage;
+
+/**
+ * Storage which sends the mutations to the primary and spreads the queries
+ * over the replicas round robin. Queries are eventually consistent: a
+ * replica may not have applied the latest mutations yet.
+ *
+ * Mutations must come from a single thread, as the primary is not
+ * thread-safe. Queries may come from any thread when the replicas allow
+ * it, like {@link InProcessReplica} does.
+ *
+ * @author oleksandr
+ *
+ */
+public class ReplicaRouter implements Storage {
+
+	private final Storage primary;
+
+	private final List<Storage> replicas;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param primary  storage receiving the mutations
+	 * @param replicas storages answering the queries
+	 */
+	public ReplicaRouter(Storage primary, List<? extends Storage> replicas) {
+		super();
+		this.primary = Objects.requireNonNull(primary,
+				"Primary reference must be not null");
+		Objects.requireNonNull(replicas, "Replicas reference must be not null");
+		if (replicas.isEmpty()) {
+			throw new IllegalArgumentException(
+					"Replica count must be greater then 0");
+		}
+		this.replicas = new ArrayList<>(replicas);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double)
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		return primary.addItem(itemType, itemUUID, name, fillFactor);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double, long)
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		return primary.addItem(itemType, itemUUID, name, fillFactor,
+				expiresAt);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#removeItem(java.lang.String)
+	 */
+	@Override
+	public Item removeItem(String itemUUID) {
+		return primary.removeItem(itemUUID);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#forgetItem(long)
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		primary.forgetItem(itemType);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getItems(java.lang.Double)
+	 */
+	@Override
+	public Map<Long, Double> getItems(Double fillFactor) {
+		return nextReplica().getItems(fillFactor);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getFillFactor(long)
+	 */
+	@Override
+	public Double getFillFactor(long itemType) {
+		return nextReplica().getFillFactor(itemType);
+	}
+
+	private Storage nextReplica() {
+		int index = (next.getAndIncrement() & Integer.MAX_VALUE)
+				% replicas.size();
+		return replicas.get(index);
+	}
+}
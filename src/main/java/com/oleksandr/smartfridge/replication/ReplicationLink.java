@@ -0,0 +1,31 @@
+package com.oleksandr.smartfridge.replication;
+
+import java.io.Closeable;
+
+import com.oleksandr.smartfridge.storage.StorageEvent;
+
+/**
+ * Carries the mutation stream of a primary storage to one replica
+ * 
+ * @author oleksandr
+ *
+ */
+public interface ReplicationLink extends Closeable {
+
+	/**
+	 * Ships one mutation. It is called by the thread which changed the
+	 * primary, in sequence order, and must not block on the replica.
+	 * 
+	 * @param sequence sequence number of the mutation, starting at 1
+	 * @param event    the mutation
+	 */
+	void ship(long sequence, StorageEvent event);
+
+	/**
+	 * Returns the number of shipped mutations the replica has not applied
+	 * yet
+	 * 
+	 * @return lag in mutations
+	 */
+	long getLag();
+}
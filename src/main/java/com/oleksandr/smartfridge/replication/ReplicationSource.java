@@ -0,0 +1,110 @@
+package com.oleksandr.smartfridge.replication;
+
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Numbers the mutations of a primary storage and ships them, in order, to
+ * every attached {@link ReplicationLink}.
+ *
+ * Replicas are not seeded with the current content of the primary, so
+ * links must be attached while the primary is still empty.
+ *
+ * @author oleksandr
+ *
+ */
+public class ReplicationSource implements StorageListener, AutoCloseable {
+
+	private final InMemoryStorage primary;
+
+	private final CopyOnWriteArrayList<ReplicationLink> links =
+			new CopyOnWriteArrayList<>();
+
+	/**
+	 * Sequence number of the last mutation, written by the primary's thread
+	 */
+	private volatile long sequence;
+
+	/**
+	 * Constructor. Registers the source as a listener of the primary.
+	 *
+	 * @param primary primary storage
+	 */
+	public ReplicationSource(InMemoryStorage primary) {
+		super();
+		this.primary = Objects.requireNonNull(primary,
+				"Primary reference must be not null");
+		primary.addListener(this);
+	}
+
+	/**
+	 * Attaches a replica
+	 *
+	 * @param link link to the replica
+	 * @throws IllegalStateException when the primary is not empty
+	 */
+	public void addLink(ReplicationLink link) {
+		Objects.requireNonNull(link, "Link reference must be not null");
+		if (primary.getTypeCount() > 0) {
+			throw new IllegalStateException(
+					"Replicas can only be attached to an empty primary");
+		}
+		links.add(link);
+	}
+
+	/**
+	 * Detaches a replica. The link is not closed.
+	 *
+	 * @param link link to the replica
+	 */
+	public void removeLink(ReplicationLink link) {
+		links.remove(link);
+	}
+
+	/**
+	 * Returns the sequence number of the last mutation
+	 *
+	 * @return long
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * Returns the largest lag of the attached replicas
+	 *
+	 * @return lag in mutations
+	 */
+	public long getMaxLag() {
+		long max = 0;
+		for (ReplicationLink link : links) {
+			max = Math.max(max, link.getLag());
+		}
+		return max;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		long next = sequence + 1;
+		sequence = next;
+		for (ReplicationLink link : links) {
+			link.ship(next, event);
+		}
+	}
+
+	/**
+	 * Stops shipping mutations. The links are left open.
+	 */
+	@Override
+	public void close() {
+		primary.removeListener(this);
+		links.clear();
+	}
+}
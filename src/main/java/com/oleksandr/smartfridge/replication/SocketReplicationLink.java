@@ -0,0 +1,259 @@
+package com.oleksandr.smartfridge.replication;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.net.FridgeEventClient;
+import com.oleksandr.smartfridge.net.FridgeEventServer;
+import com.oleksandr.smartfridge.storage.Item;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+
+/**
+ * Ships the mutations to a replica running behind a
+ * {@link FridgeEventServer}, usually in another process on the same host.
+ * The replica's queries are answered by that server.
+ *
+ * Shipped mutations are put into a bounded queue and a dedicated thread
+ * pipelines them through a {@link FridgeEventClient}, so the primary never
+ * waits for the socket. The lag is the number of shipped mutations the
+ * server has not acknowledged yet. A replica which falls a whole queue
+ * behind is disconnected: the link {@link #isFailed() fails} and drops
+ * every later mutation, the replica has to be seeded again.
+ *
+ * @author oleksandr
+ *
+ */
+public class SocketReplicationLink implements ReplicationLink {
+
+	/**
+	 * Default number of mutations which may wait for the sender thread
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 64 * 1024;
+
+	/**
+	 * Queue entry which stops the sender thread
+	 */
+	private static final Shipment STOP = new Shipment(0, null);
+
+	/**
+	 * Client of the replica's server. Only the sender thread uses it.
+	 */
+	private final FridgeEventClient client;
+
+	private final ArrayBlockingQueue<Shipment> queue;
+
+	private final Thread thread;
+
+	/**
+	 * Number of mutations put into the queue, written by the primary's
+	 * thread
+	 */
+	private volatile long shippedCount;
+
+	/**
+	 * Number of mutations the server acknowledged, written by the sender
+	 * thread
+	 */
+	private volatile long ackedCount;
+
+	private volatile boolean failed;
+
+	private final Logger logger;
+
+	/**
+	 * Connects to the replica's server and starts the sender thread
+	 *
+	 * @param address server address
+	 * @throws IOException when the connection can't be established
+	 */
+	public SocketReplicationLink(InetSocketAddress address)
+			throws IOException {
+		this(address, DEFAULT_QUEUE_CAPACITY,
+				LoggerFactory.getLogger(SocketReplicationLink.class));
+	}
+
+	/**
+	 * Connects to the replica's server and starts the sender thread
+	 *
+	 * @param address       server address
+	 * @param queueCapacity number of mutations which may wait for the
+	 *                      sender thread before the link fails
+	 * @param logger        logger of the link failures
+	 * @throws IOException when the connection can't be established
+	 */
+	public SocketReplicationLink(InetSocketAddress address, int queueCapacity,
+			Logger logger) throws IOException {
+		super();
+		if (queueCapacity <= 0) {
+			throw new IllegalArgumentException(
+					"Queue capacity must be greater then 0");
+		}
+		this.logger = Objects.requireNonNull(logger,
+				"Logger reference must be not null");
+		queue = new ArrayBlockingQueue<>(queueCapacity);
+		client = new FridgeEventClient(address);
+		thread = new Thread(this::run, "storage-replication-link");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.replication.ReplicationLink#ship(long,
+	 *      com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void ship(long sequence, StorageEvent event) {
+		if (failed) {
+			return;
+		}
+		if (!queue.offer(new Shipment(sequence, event))) {
+			fail(String.format(
+					"Replica is %d mutations behind, mutation %d is dropped",
+					queue.size(), sequence), null);
+			return;
+		}
+		shippedCount++;
+	}
+
+	/**
+	 * Waits until the replica applied every shipped mutation
+	 *
+	 * @throws IllegalStateException when the link failed
+	 */
+	public void sync() {
+		try {
+			synchronized (this) {
+				while (!failed && ackedCount < shippedCount) {
+					wait();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (failed) {
+			throw new IllegalStateException("Replication link failed");
+		}
+	}
+
+	/**
+	 * Returns true when the link was disconnected because the replica fell
+	 * behind or the connection broke
+	 *
+	 * @return boolean
+	 */
+	public boolean isFailed() {
+		return failed;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.replication.ReplicationLink#getLag()
+	 */
+	@Override
+	public long getLag() {
+		return shippedCount - ackedCount;
+	}
+
+	/**
+	 * Stops the sender thread after the queued mutations are written and
+	 * closes the connection
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			while (thread.isAlive()
+					&& !queue.offer(STOP, 10, TimeUnit.MILLISECONDS)) {
+				// the sender thread is still draining a full queue
+			}
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				Shipment shipment = queue.poll();
+				if (shipment == null) {
+					// the queue is drained, write the batch and wait for the
+					// replica to catch up
+					client.sync();
+					acknowledged(client.getAckedCount());
+					shipment = queue.take();
+				}
+				if (shipment == STOP) {
+					client.close();
+					return;
+				}
+				send(shipment.event);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException | RuntimeException e) {
+			if (!failed) {
+				fail("Replication link failed", e);
+			}
+		}
+	}
+
+	private void send(StorageEvent event) {
+		switch (event.getKind()) {
+		case ADDED:
+			Item item = event.getItem();
+			client.handleItemAdded(item.getType(), item.getUUID(),
+					item.getName(), item.getFillFactor());
+			break;
+		case REMOVED:
+			client.handleItemRemoved(event.getItem().getUUID());
+			break;
+		case FORGOTTEN:
+			client.forgetItem(event.getItemType());
+			break;
+		}
+	}
+
+	private synchronized void acknowledged(long count) {
+		ackedCount = count;
+		notifyAll();
+	}
+
+	/**
+	 * Disconnects the replica. A sender thread blocked on the socket is
+	 * released by the closed connection.
+	 */
+	private void fail(String message, Exception cause) {
+		synchronized (this) {
+			failed = true;
+			notifyAll();
+		}
+		logger.error(message, cause);
+		queue.clear();
+		try {
+			client.abort();
+		} catch (IOException e) {
+			logger.warn("Replication link can't be closed", e);
+		}
+	}
+
+	/**
+	 * Mutation waiting to be written
+	 */
+	private static final class Shipment {
+
+		final long sequence;
+
+		final StorageEvent event;
+
+		Shipment(long sequence, StorageEvent event) {
+			this.sequence = sequence;
+			this.event = event;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package com.oleksandr.smartfridge.storage;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 
 import com.oleksandr.smartfridge.exceptions.BinOverflowException;
@@ -28,8 +30,19 @@ class Bin {
 	private long type;
 
 	/**
-	 * Indicates the how much bin is filled up. The value ranges is 0-1. 0 -
-	 * the bin is empty. 1 - the bin is full.
+	 * Capacity of the bin in item fill factor units. A standard bin has
+	 * capacity 1.
+	 */
+	private BigDecimal capacity;
+
+	/**
+	 * Position of the bin within its {@link BinGroup}
+	 */
+	private int index;
+
+	/**
+	 * Indicates the how much bin is filled up. The value ranges is
+	 * 0-capacity. 0 - the bin is empty. capacity - the bin is full.
 	 */
 	private BigDecimal fillFactor = new BigDecimal(0, mathCtx);
 
@@ -42,7 +55,12 @@ class Bin {
 	 * This is a collection of all items in the bin. The key is the item's
 	 * UUID.
 	 */
-	private HashMap<String, Item> items = new HashMap<>();
+	private HashMap<String, Item> items;
+
+	/**
+	 * Largest number of items since the items map was built
+	 */
+	private int peakItems;
 
 	/**
 	 * Constructs a bin of a certain type
@@ -50,8 +68,23 @@ class Bin {
 	 * @param itemType defines what items could be stored in the bin
 	 */
 	public Bin(long itemType) {
+		this(itemType, BigDecimal.ONE, 0, 0);
+	}
+
+	/**
+	 * Constructs a bin of a certain type and capacity
+	 * 
+	 * @param itemType      defines what items could be stored in the bin
+	 * @param capacity      capacity of the bin in item fill factor units
+	 * @param index         position of the bin within its group
+	 * @param expectedItems number of items the bin is sized for
+	 */
+	Bin(long itemType, BigDecimal capacity, int index, int expectedItems) {
 		super();
 		type = itemType;
+		this.capacity = capacity;
+		this.index = index;
+		items = new HashMap<>(StorageConfig.mapCapacity(expectedItems));
 	}
 
 	/**
@@ -92,7 +125,7 @@ class Bin {
 		
 		// Check if Bin can accept the item. If adding an item exceed the
 		// bin's capacity, it throws an exception
-		if (newFillFactor.compareTo(BigDecimal.ONE) > 0) {
+		if (newFillFactor.compareTo(capacity) > 0) {
 			throw new BinOverflowException(String.format(
 					"Can't add item. Not enough room for item type %d",
 					item.getType()));
@@ -102,6 +135,52 @@ class Bin {
 		fillFactor = newFillFactor;
 
 		items.put(item.getUUID(), item);
+		peakItems = Math.max(peakItems, items.size());
+	}
+
+	/**
+	 * Adds an item without checking its type or UUID. It is used to load
+	 * items which are known to be valid, for instance a snapshot of a
+	 * storage. Only the capacity is checked.
+	 * 
+	 * @param item Item object reference
+	 * @throws IllegalArgumentException when the item doesn't fit
+	 */
+	void load(Item item) {
+		BigDecimal newFillFactor = fillFactor
+				.add(new BigDecimal(item.getFillFactor(), mathCtx));
+		if (newFillFactor.compareTo(capacity) > 0) {
+			throw new IllegalArgumentException(String.format(
+					"Item %s can't be loaded: not enough room for item "
+							+ "type %d",
+					item.getUUID(), item.getType()));
+		}
+		fillFactor = newFillFactor;
+		items.put(item.getUUID(), item);
+		peakItems = Math.max(peakItems, items.size());
+	}
+
+	/**
+	 * Checks if the items map is much larger than its content
+	 * 
+	 * @return boolean
+	 */
+	boolean isOversized() {
+		return StorageConfig.isOversized(items.size(), peakItems);
+	}
+
+	/**
+	 * Rebuilds the items map when it is much larger than its content
+	 * 
+	 * @return true when the map was rebuilt
+	 */
+	boolean compact() {
+		if (!isOversized()) {
+			return false;
+		}
+		items = new HashMap<>(items);
+		peakItems = items.size();
+		return true;
 	}
 
 	/**
@@ -135,12 +214,84 @@ class Bin {
 	}
 
 	/**
-	 * Returns fill factor value
+	 * Returns fill factor value. It is relative to the bin's capacity, so it
+	 * ranges 0-1 for any capacity.
 	 * 
 	 * @return {@link Double}
 	 */
 	public Double getFillFactor() {
-		return fillFactor.doubleValue();
+		if (capacity == BigDecimal.ONE) {
+			return fillFactor.doubleValue();
+		}
+		return fillFactor.divide(capacity, mathCtx).doubleValue();
+	}
+
+	/**
+	 * Rounds a fill factor like the threshold comparison of
+	 * {@link InMemoryStorage}, to two significant digits. Distinct two digit
+	 * decimals stay distinct doubles, so comparing the rounded doubles gives
+	 * the same answer as comparing the decimals.
+	 * 
+	 * @param fillFactor fill factor
+	 * @return double
+	 */
+	static double round(double fillFactor) {
+		// two significant digits, not two decimals: 1.04 rounds to 1.0
+		return new BigDecimal(fillFactor, mathCtx).doubleValue();
+	}
+
+	/**
+	 * Returns the room left in the bin in item fill factor units
+	 * 
+	 * @return {@link BigDecimal}
+	 */
+	BigDecimal getFreeSpace() {
+		return capacity.subtract(fillFactor);
+	}
+
+	/**
+	 * Returns the capacity of the bin in item fill factor units
+	 * 
+	 * @return {@link BigDecimal}
+	 */
+	BigDecimal getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the position of the bin within its group
+	 * 
+	 * @return int
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns a read-only view of the items in the bin
+	 * 
+	 * @return collection of {@link Item}
+	 */
+	Collection<Item> getItems() {
+		return Collections.unmodifiableCollection(items.values());
+	}
+
+	/**
+	 * Returns the number of items in the bin
+	 * 
+	 * @return int
+	 */
+	public int getItemCount() {
+		return items.size();
+	}
+
+	/**
+	 * Checks if the bin holds no items
+	 * 
+	 * @return boolean
+	 */
+	public boolean isEmpty() {
+		return items.isEmpty();
 	}
 
 	/**
@@ -0,0 +1,284 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+
+/**
+ * All bins of one item type. New items are placed into the best-fit bin:
+ * the bin with the least room left which can still take the item. An item
+ * only overflows when no bin of its type has enough room.
+ * 
+ * The bins with room left are kept in an ordered index by free space, so
+ * placing and removing an item costs O(log bins).
+ * 
+ * @author oleksandr
+ *
+ */
+class BinGroup {
+
+	/**
+	 * Item type of all bins in the group
+	 */
+	private final long type;
+
+	/**
+	 * Bins of the group
+	 */
+	private final Bin[] bins;
+
+	/**
+	 * Free space index. Only used when the group has more than one bin.
+	 */
+	private final TreeMap<FreeSpace, Bin> freeIndex;
+
+	/**
+	 * Index keys of the bins, by bin position
+	 */
+	private final FreeSpace[] keys;
+
+	/**
+	 * Cached fill factor of the group, null when it has to be recalculated
+	 */
+	private Double fillFactor;
+
+	/**
+	 * Number of items in all bins
+	 */
+	private int itemCount;
+
+	/**
+	 * Time the group lost its last item, for compaction
+	 */
+	long emptySince;
+
+	/**
+	 * Whether the group waits in the queue of empty groups
+	 */
+	boolean reclaimQueued;
+
+	/**
+	 * Whether the group waits in the queue of groups with oversized bins
+	 */
+	boolean compactQueued;
+
+	/**
+	 * Constructs the bins of an item type
+	 * 
+	 * @param itemType      item type
+	 * @param capacities    capacity of every bin
+	 * @param expectedItems number of items the group is sized for
+	 */
+	BinGroup(long itemType, double[] capacities, int expectedItems) {
+		if (capacities == null || capacities.length == 0) {
+			throw new IllegalArgumentException(String.format(
+					"Item type %d must have at least one bin", itemType));
+		}
+		type = itemType;
+		bins = new Bin[capacities.length];
+		for (int i = 0; i < capacities.length; i++) {
+			if (capacities[i] <= 0) {
+				throw new IllegalArgumentException(
+						"Bin capacity must be greater then 0");
+			}
+			BigDecimal capacity = capacities[i] == 1.0 ? BigDecimal.ONE
+					: new BigDecimal(capacities[i], Bin.mathCtx);
+			bins[i] = new Bin(itemType, capacity, i,
+					expectedItems / capacities.length);
+		}
+
+		if (bins.length > 1) {
+			freeIndex = new TreeMap<>();
+			keys = new FreeSpace[bins.length];
+			for (Bin bin : bins) {
+				index(bin);
+			}
+		} else {
+			freeIndex = null;
+			keys = null;
+		}
+	}
+
+	/**
+	 * Places the item into the best-fit bin
+	 * 
+	 * @param item item to add
+	 * @return the bin which took the item
+	 * @throws WrongBinException
+	 * @throws BinOverflowException    when no bin has enough room
+	 * @throws DoublicateItemException
+	 */
+	Bin addItem(Item item) throws WrongBinException, BinOverflowException,
+			DoublicateItemException {
+		Bin bin;
+		if (freeIndex == null) {
+			bin = bins[0];
+			bin.addItem(item);
+		} else {
+			BigDecimal needed = new BigDecimal(item.getFillFactor(),
+					Bin.mathCtx);
+			Map.Entry<FreeSpace, Bin> entry = freeIndex
+					.ceilingEntry(new FreeSpace(needed, -1));
+			if (entry == null) {
+				throw new BinOverflowException(String.format(
+						"Can't add item. Not enough room for item type %d",
+						item.getType()));
+			}
+			bin = entry.getValue();
+			freeIndex.remove(entry.getKey());
+			try {
+				bin.addItem(item);
+			} finally {
+				index(bin);
+			}
+		}
+		itemCount++;
+		fillFactor = null;
+		return bin;
+	}
+
+	/**
+	 * Places an item which is known to be valid, checking only that it
+	 * fits. Groups with several bins still look for the best-fit bin.
+	 * 
+	 * @param item item to add
+	 * @return the bin which took the item
+	 * @throws IllegalArgumentException when the item doesn't fit
+	 */
+	Bin load(Item item) {
+		Bin bin;
+		if (freeIndex == null) {
+			bin = bins[0];
+			bin.load(item);
+			itemCount++;
+			fillFactor = null;
+		} else {
+			try {
+				bin = addItem(item);
+			} catch (WrongBinException | BinOverflowException
+					| DoublicateItemException e) {
+				throw new IllegalArgumentException(String.format(
+						"Item %s can't be loaded: %s", item.getUUID(),
+						e.getMessage()), e);
+			}
+		}
+		return bin;
+	}
+
+	/**
+	 * Removes the item from its bin
+	 * 
+	 * @param bin      bin holding the item
+	 * @param itemUUID item UUID
+	 * @return removed {@link Item} or null
+	 */
+	Item removeItem(Bin bin, String itemUUID) {
+		Item item;
+		if (freeIndex == null) {
+			item = bin.removeItem(itemUUID);
+		} else {
+			freeIndex.remove(keys[bin.getIndex()]);
+			item = bin.removeItem(itemUUID);
+			index(bin);
+		}
+		if (item != null) {
+			itemCount--;
+			fillFactor = null;
+		}
+		return item;
+	}
+
+	/**
+	 * Returns the fill factor of the item type. Unless all bins are empty,
+	 * only the non-empty bins are averaged.
+	 * 
+	 * @return {@link Double}
+	 */
+	Double getFillFactor() {
+		if (freeIndex == null) {
+			return bins[0].getFillFactor();
+		}
+		if (fillFactor == null) {
+			double sum = 0;
+			int count = 0;
+			for (Bin bin : bins) {
+				if (!bin.isEmpty()) {
+					sum += bin.getFillFactor();
+					count++;
+				}
+			}
+			fillFactor = count == 0 ? 0.0 : sum / count;
+		}
+		return fillFactor;
+	}
+
+	/**
+	 * Returns the item type of the group
+	 * 
+	 * @return long
+	 */
+	long getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the bins of the group
+	 * 
+	 * @return array of {@link Bin}
+	 */
+	Bin[] getBins() {
+		return bins;
+	}
+
+	/**
+	 * Returns the number of items in all bins
+	 * 
+	 * @return int
+	 */
+	int getItemCount() {
+		return itemCount;
+	}
+
+	/**
+	 * Checks if all bins are empty
+	 * 
+	 * @return boolean
+	 */
+	boolean isEmpty() {
+		return itemCount == 0;
+	}
+
+	private void index(Bin bin) {
+		FreeSpace key = new FreeSpace(bin.getFreeSpace(), bin.getIndex());
+		keys[bin.getIndex()] = key;
+		if (key.amount.signum() > 0) {
+			freeIndex.put(key, bin);
+		}
+	}
+
+	/**
+	 * Key of the free space index. Bins with the same free space are
+	 * ordered by their position.
+	 */
+	private static final class FreeSpace implements Comparable<FreeSpace> {
+
+		private final BigDecimal amount;
+
+		private final int index;
+
+		FreeSpace(BigDecimal amount, int index) {
+			this.amount = amount;
+			this.index = index;
+		}
+
+		@Override
+		public int compareTo(FreeSpace other) {
+			int result = amount.compareTo(other.amount);
+			return result != 0 ? result : Integer.compare(index, other.index);
+		}
+	}
+}
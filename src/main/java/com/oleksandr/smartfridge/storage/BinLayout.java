@@ -0,0 +1,53 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.Arrays;
+
+/**
+ * Describes the bins available for every item type. The storage asks the
+ * layout once, when the first item of a type is added.
+ * 
+ * @author oleksandr
+ *
+ */
+@FunctionalInterface
+public interface BinLayout {
+
+	/**
+	 * Returns the capacities of the bins of an item type, in item fill
+	 * factor units. A standard bin has capacity 1.
+	 * 
+	 * @param itemType item type
+	 * @return capacity of every bin, at least one
+	 */
+	double[] getCapacities(long itemType);
+
+	/**
+	 * Returns the layout of a fridge with one standard bin per item type
+	 * 
+	 * @return {@link BinLayout}
+	 */
+	static BinLayout single() {
+		return uniform(1, 1.0);
+	}
+
+	/**
+	 * Returns a layout with the same bins for every item type
+	 * 
+	 * @param count    number of bins per item type
+	 * @param capacity capacity of every bin
+	 * @return {@link BinLayout}
+	 */
+	static BinLayout uniform(int count, double capacity) {
+		if (count <= 0) {
+			throw new IllegalArgumentException(
+					"Bin count must be greater then 0");
+		}
+		if (capacity <= 0) {
+			throw new IllegalArgumentException(
+					"Bin capacity must be greater then 0");
+		}
+		double[] capacities = new double[count];
+		Arrays.fill(capacities, capacity);
+		return itemType -> capacities.clone();
+	}
+}
@@ -0,0 +1,249 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+
+/**
+ * Storage which keeps the bins of the item types in flat arrays indexed by
+ * the ordinals of an {@link ItemTypeCatalog}. The fill factor of every
+ * type is kept next to its bins, so getFillFactor is an array read and
+ * getItems scans primitive arrays instead of iterating a hash map.
+ *
+ * The bins of a type are sized by its catalog entry. Types which are not
+ * in the catalog are registered under their number when their first item
+ * is added.
+ *
+ * The storage is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class CatalogStorage implements Storage {
+
+	private final ItemTypeCatalog catalog;
+
+	/**
+	 * Bins of every type by ordinal, null for types without bins
+	 */
+	private BinGroup[] groups;
+
+	/**
+	 * Fill factor of every type by ordinal
+	 */
+	private double[] fills;
+
+	/**
+	 * Fill factors rounded for the threshold comparison
+	 */
+	private double[] rounded;
+
+	/**
+	 * Low thresholds rounded for the threshold comparison
+	 */
+	private double[] lowThresholds;
+
+	/**
+	 * Bin of every item by UUID
+	 */
+	private final HashMap<String, Bin> uuidMap = new HashMap<>();
+
+	/**
+	 * Constructs a storage with its own catalog
+	 */
+	public CatalogStorage() {
+		this(new ItemTypeCatalog());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param catalog {@link ItemTypeCatalog} of the item types
+	 */
+	public CatalogStorage(ItemTypeCatalog catalog) {
+		super();
+		this.catalog = Objects.requireNonNull(catalog,
+				"Catalog reference must be not null");
+		int capacity = Math.max(8, catalog.size());
+		groups = new BinGroup[capacity];
+		fills = new double[capacity];
+		rounded = new double[capacity];
+		lowThresholds = new double[capacity];
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double)
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		return addItem(itemType, itemUUID, name, fillFactor, Item.NO_EXPIRY);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double, long)
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+
+		InMemoryStorage.checkItem(itemUUID, name, fillFactor, expiresAt);
+
+		if (uuidMap.containsKey(itemUUID)) {
+			throw new DoublicateItemException(
+					String.format("Item UUID %s is not unique", itemUUID));
+		}
+
+		int ordinal = catalog.getOrRegister(itemType);
+		BinGroup group = groupOf(ordinal);
+		Item item = new Item(itemType, itemUUID, name, fillFactor,
+				expiresAt);
+		uuidMap.put(itemUUID, group.addItem(item));
+		update(ordinal);
+		return item;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#removeItem(java.lang.String)
+	 */
+	@Override
+	public Item removeItem(String itemUUID) {
+		Bin bin = uuidMap.remove(itemUUID);
+		if (bin == null) {
+			return null;
+		}
+		int ordinal = catalog.ordinalOf(bin.getType());
+		Item item = groups[ordinal].removeItem(bin, itemUUID);
+		update(ordinal);
+		return item;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getItems(java.lang.Double)
+	 */
+	@Override
+	public Map<Long, Double> getItems(Double fillFactor) {
+		double threshold = Bin.round(fillFactor);
+		HashMap<Long, Double> result = new HashMap<>();
+		int size = Math.min(groups.length, catalog.size());
+		for (int ordinal = 0; ordinal < size; ordinal++) {
+			if (groups[ordinal] != null && rounded[ordinal] < threshold) {
+				result.put(groups[ordinal].getType(), fills[ordinal]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the types which are below the low threshold of their catalog
+	 * entry
+	 *
+	 * @return a map of item type to its fill factor
+	 */
+	public Map<Long, Double> getLowItems() {
+		HashMap<Long, Double> result = new HashMap<>();
+		int size = Math.min(groups.length, catalog.size());
+		for (int ordinal = 0; ordinal < size; ordinal++) {
+			if (groups[ordinal] != null
+					&& rounded[ordinal] < lowThresholds[ordinal]) {
+				result.put(groups[ordinal].getType(), fills[ordinal]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getFillFactor(long)
+	 */
+	@Override
+	public Double getFillFactor(long itemType) {
+		int ordinal = catalog.ordinalOf(itemType);
+		if (ordinal < 0 || ordinal >= groups.length
+				|| groups[ordinal] == null) {
+			return null;
+		}
+		return fills[ordinal];
+	}
+
+	/**
+	 * Returns the number of items of the item type
+	 *
+	 * @param itemType item type
+	 * @return number of items, 0 for unknown types
+	 */
+	public int getItemCount(long itemType) {
+		int ordinal = catalog.ordinalOf(itemType);
+		if (ordinal < 0 || ordinal >= groups.length
+				|| groups[ordinal] == null) {
+			return 0;
+		}
+		return groups[ordinal].getItemCount();
+	}
+
+	/**
+	 * Returns the catalog of the item types
+	 *
+	 * @return {@link ItemTypeCatalog}
+	 */
+	public ItemTypeCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#forgetItem(long)
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		int ordinal = catalog.ordinalOf(itemType);
+		if (ordinal < 0 || ordinal >= groups.length
+				|| groups[ordinal] == null) {
+			return;
+		}
+		// only the items of the type have to leave the UUID index, they are
+		// all in its bins
+		for (Bin bin : groups[ordinal].getBins()) {
+			for (Item item : bin.getItems()) {
+				uuidMap.remove(item.getUUID());
+			}
+		}
+		groups[ordinal] = null;
+		fills[ordinal] = 0.0;
+		rounded[ordinal] = 0.0;
+	}
+
+	/**
+	 * Returns the bins of the type, creating them on first use
+	 */
+	private BinGroup groupOf(int ordinal) {
+		if (ordinal >= groups.length) {
+			int capacity = Math.max(groups.length * 2, ordinal + 1);
+			groups = Arrays.copyOf(groups, capacity);
+			fills = Arrays.copyOf(fills, capacity);
+			rounded = Arrays.copyOf(rounded, capacity);
+			lowThresholds = Arrays.copyOf(lowThresholds, capacity);
+		}
+		BinGroup group = groups[ordinal];
+		if (group == null) {
+			ItemTypeCatalog.ItemType type = catalog.byOrdinal(ordinal);
+			group = new BinGroup(type.getType(), type.getCapacities(), 0);
+			groups[ordinal] = group;
+			lowThresholds[ordinal] = Bin.round(type.getLowThreshold());
+		}
+		return group;
+	}
+
+	private void update(int ordinal) {
+		double fillFactor = groups[ordinal].getFillFactor();
+		fills[ordinal] = fillFactor;
+		rounded[ordinal] = Bin.round(fillFactor);
+	}
+}
@@ -0,0 +1,33 @@
+package com.oleksandr.smartfridge.storage;
+
+/**
+ * Provides {@link CatalogStorage} with an empty {@link ItemTypeCatalog}
+ * which gives every type the bin layout of the configuration
+ * 
+ * @author oleksandr
+ *
+ */
+public class CatalogStorageProvider implements StorageProvider {
+
+	/**
+	 * Backend name
+	 */
+	public static final String NAME = "catalog";
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProvider#getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProvider#create(com.oleksandr.smartfridge.storage.StorageConfig)
+	 */
+	@Override
+	public Storage create(StorageConfig config) {
+		return new CatalogStorage(new ItemTypeCatalog(config.getBinLayout(),
+				ItemTypeCatalog.DEFAULT_LOW_THRESHOLD));
+	}
+}
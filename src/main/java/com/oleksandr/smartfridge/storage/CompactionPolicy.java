@@ -0,0 +1,220 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * Tells an {@link InMemoryStorage} how to clean up after churn. An item
+ * type keeps its bins after its last item is removed, and hash maps keep
+ * their tables after mass removals, so without compaction a storage only
+ * grows.
+ * 
+ * Compaction runs in small steps: every {@link #getStepInterval()}
+ * mutations the storage does at most {@link #getStepSize()} units of work,
+ * so no single add or remove pays for cleaning up the whole storage. The
+ * storage wide UUID and type maps are only rebuilt by
+ * {@link InMemoryStorage#compactStep()} and
+ * {@link InMemoryStorage#compact()}, which the owner of the storage calls.
+ * 
+ * <pre>
+ * CompactionPolicy policy = CompactionPolicy.builder()
+ * 		.emptyTypeRetention(TimeUnit.DAYS.toMillis(30)).build();
+ * Storage storage = new InMemoryStorage(
+ * 		StorageConfig.builder().compactionPolicy(policy).build());
+ * </pre>
+ * 
+ * An item type which stayed empty for the retention time is reclaimed as
+ * if it was forgotten: it no longer shows up in
+ * {@link Storage#getItems(Double)} and the listeners are notified with a
+ * {@link StorageEvent.Kind#FORGOTTEN} event.
+ * 
+ * @author oleksandr
+ *
+ */
+public class CompactionPolicy {
+
+	/**
+	 * Retention which keeps empty item types forever
+	 */
+	public static final long KEEP_EMPTY_TYPES = Long.MAX_VALUE;
+
+	private static final CompactionPolicy NONE = new CompactionPolicy(
+			new Builder(), false);
+
+	private final boolean enabled;
+
+	private final long emptyTypeRetention;
+
+	private final int stepInterval;
+
+	private final int stepSize;
+
+	private final LongSupplier clock;
+
+	private CompactionPolicy(Builder builder, boolean enabled) {
+		this.enabled = enabled;
+		this.emptyTypeRetention = builder.emptyTypeRetention;
+		this.stepInterval = builder.stepInterval;
+		this.stepSize = builder.stepSize;
+		this.clock = builder.clock;
+	}
+
+	/**
+	 * Returns the policy which never compacts in the background, the
+	 * default of a storage
+	 * 
+	 * @return {@link CompactionPolicy}
+	 */
+	public static CompactionPolicy none() {
+		return NONE;
+	}
+
+	/**
+	 * Returns a new builder. By default empty item types are kept and only
+	 * oversized maps are rebuilt.
+	 * 
+	 * @return {@link Builder}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Checks if the storage compacts in the background
+	 * 
+	 * @return boolean
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Returns how long an item type stays empty before it is reclaimed
+	 * 
+	 * @return retention in milliseconds, {@link #KEEP_EMPTY_TYPES} to keep
+	 *         empty types
+	 */
+	public long getEmptyTypeRetention() {
+		return emptyTypeRetention;
+	}
+
+	/**
+	 * Checks if empty item types are ever reclaimed
+	 * 
+	 * @return boolean
+	 */
+	public boolean isReclaiming() {
+		return enabled && emptyTypeRetention != KEEP_EMPTY_TYPES;
+	}
+
+	/**
+	 * Returns the number of mutations between two compaction steps
+	 * 
+	 * @return int
+	 */
+	public int getStepInterval() {
+		return stepInterval;
+	}
+
+	/**
+	 * Returns the largest number of item types a step examines
+	 * 
+	 * @return int
+	 */
+	public int getStepSize() {
+		return stepSize;
+	}
+
+	/**
+	 * Returns the current time in milliseconds, as seen by the policy
+	 * 
+	 * @return long
+	 */
+	long now() {
+		return clock.getAsLong();
+	}
+
+	/**
+	 * Builder of {@link CompactionPolicy}
+	 */
+	public static class Builder {
+
+		private long emptyTypeRetention = KEEP_EMPTY_TYPES;
+
+		private int stepInterval = 64;
+
+		private int stepSize = 8;
+
+		private LongSupplier clock = System::currentTimeMillis;
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets how long an item type stays empty before it is reclaimed
+		 * 
+		 * @param millis retention in milliseconds, {@link #KEEP_EMPTY_TYPES}
+		 *               to keep empty types
+		 * @return this builder
+		 */
+		public Builder emptyTypeRetention(long millis) {
+			if (millis < 0) {
+				throw new IllegalArgumentException(
+						"Retention must be not negative");
+			}
+			this.emptyTypeRetention = millis;
+			return this;
+		}
+
+		/**
+		 * Sets the number of mutations between two compaction steps
+		 * 
+		 * @param mutations number of adds and removes
+		 * @return this builder
+		 */
+		public Builder stepInterval(int mutations) {
+			if (mutations <= 0) {
+				throw new IllegalArgumentException(
+						"Step interval must be greater then 0");
+			}
+			this.stepInterval = mutations;
+			return this;
+		}
+
+		/**
+		 * Sets the largest number of item types a step examines
+		 * 
+		 * @param types number of item types
+		 * @return this builder
+		 */
+		public Builder stepSize(int types) {
+			if (types <= 0) {
+				throw new IllegalArgumentException(
+						"Step size must be greater then 0");
+			}
+			this.stepSize = types;
+			return this;
+		}
+
+		/**
+		 * Sets the clock the retention is measured with
+		 * 
+		 * @param clock current time in milliseconds
+		 * @return this builder
+		 */
+		public Builder clock(LongSupplier clock) {
+			this.clock = Objects.requireNonNull(clock,
+					"Clock reference must be not null");
+			return this;
+		}
+
+		/**
+		 * Builds the policy
+		 * 
+		 * @return {@link CompactionPolicy}
+		 */
+		public CompactionPolicy build() {
+			return new CompactionPolicy(this, true);
+		}
+	}
+}
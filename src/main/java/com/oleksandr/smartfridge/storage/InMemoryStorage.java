@@ -4,8 +4,15 @@
 package com.oleksandr.smartfridge.storage;
 
 import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import com.oleksandr.smartfridge.exceptions.BinOverflowException;
 import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
@@ -20,14 +27,132 @@ import com.oleksandr.smartfridge.exceptions.WrongBinException;
 public class InMemoryStorage implements Storage {
 
 	/**
-	 * Collection of bins in the fridge. Maps item type to its bin.
+	 * Collection of bins in the fridge. Maps item type to its bins.
 	 */
-	private HashMap<Long, Bin> binMap = new HashMap<>();
+	private HashMap<Long, BinGroup> binMap;
 
 	/**
 	 * Maps items UUID to Bin.
 	 */
-	private HashMap<String, Bin> uuidMap = new HashMap<>();
+	private HashMap<String, Bin> uuidMap;
+
+	/**
+	 * Largest size of {@link #binMap} since it was built
+	 */
+	private int peakTypes;
+
+	/**
+	 * Largest size of {@link #uuidMap} since it was built
+	 */
+	private int peakItems;
+
+	/**
+	 * Listeners notified about every change of the storage
+	 */
+	private CopyOnWriteArrayList<StorageListener> listeners =
+			new CopyOnWriteArrayList<>();
+
+	/**
+	 * Describes the bins of every item type
+	 */
+	private final BinLayout layout;
+
+	/**
+	 * Number of items a new item type is sized for
+	 */
+	private final int expectedItemsPerType;
+
+	/**
+	 * Background compaction policy
+	 */
+	private final CompactionPolicy compaction;
+
+	/**
+	 * Mutations since the last compaction step
+	 */
+	private int mutationsSinceStep;
+
+	/**
+	 * Groups which lost their last item, oldest first
+	 */
+	private final ArrayDeque<BinGroup> emptyGroups = new ArrayDeque<>();
+
+	/**
+	 * Groups with a bin whose items map became oversized
+	 */
+	private final ArrayDeque<BinGroup> shrunkGroups = new ArrayDeque<>();
+
+	/**
+	 * Instrumentation of the operations
+	 */
+	private StorageProbe probe = StorageProbe.system();
+
+	/**
+	 * Constructs a storage with one standard bin per item type
+	 */
+	public InMemoryStorage() {
+		this(StorageConfig.defaults());
+	}
+
+	/**
+	 * Constructs a storage with the given bins per item type. Items are
+	 * placed into the best-fit bin of their type and only overflow when no
+	 * bin of the type has enough room.
+	 * 
+	 * @param layout {@link BinLayout}
+	 */
+	public InMemoryStorage(BinLayout layout) {
+		this(StorageConfig.builder().binLayout(layout).build());
+	}
+
+	/**
+	 * Constructs a storage with pre-sized indexes
+	 * 
+	 * @param config {@link StorageConfig}
+	 */
+	public InMemoryStorage(StorageConfig config) {
+		super();
+		Objects.requireNonNull(config, "Config reference must be not null");
+		layout = config.getBinLayout();
+		binMap = new HashMap<>(
+				StorageConfig.mapCapacity(config.getExpectedTypes()));
+		uuidMap = new HashMap<>(
+				StorageConfig.mapCapacity(config.getExpectedItems()));
+		expectedItemsPerType = config.getExpectedTypes() == 0 ? 0
+				: config.getExpectedItems() / config.getExpectedTypes();
+		compaction = config.getCompactionPolicy();
+	}
+
+	/**
+	 * Registers a listener which is notified after every add, remove and
+	 * forget operation
+	 * 
+	 * @param listener {@link StorageListener}
+	 */
+	public void addListener(StorageListener listener) {
+		listeners.add(Objects.requireNonNull(listener,
+				"Listener reference must be not null"));
+	}
+
+	/**
+	 * Unregisters a listener
+	 * 
+	 * @param listener {@link StorageListener}
+	 */
+	public void removeListener(StorageListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Replaces the instrumentation probe, which is
+	 * {@link StorageProbe#system()} by default
+	 * 
+	 * @param probe {@link StorageProbe}
+	 */
+	public void setProbe(StorageProbe probe) {
+		this.probe = Objects.requireNonNull(probe,
+				"Probe reference must be not null");
+	}
 
 	/**
 	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
@@ -37,7 +162,86 @@ public class InMemoryStorage implements Storage {
 	public Item addItem(long itemType, String itemUUID, String name,
 			Double fillFactor) throws WrongBinException,
 			BinOverflowException, DoublicateItemException {
+		return addItem(itemType, itemUUID, name, fillFactor, Item.NO_EXPIRY);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double, long)
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		if (!probe.isEnabled()) {
+			return insertItem(itemType, itemUUID, name, fillFactor,
+					expiresAt);
+		}
+		long start = System.nanoTime();
+		double fillBefore = fillOf(itemType);
+		try {
+			Item item = insertItem(itemType, itemUUID, name, fillFactor,
+					expiresAt);
+			probe.record(StorageProbe.Operation.ADD, itemType, start,
+					StorageProbe.Outcome.OK, null, fillBefore,
+					fillOf(itemType));
+			return item;
+		} catch (WrongBinException | BinOverflowException
+				| DoublicateItemException | IllegalArgumentException e) {
+			probe.record(StorageProbe.Operation.ADD, itemType, start,
+					StorageProbe.Outcome.REJECTED, e.getMessage(), fillBefore,
+					fillBefore);
+			throw e;
+		}
+	}
+
+	private Item insertItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+
+		checkItem(itemUUID, name, fillFactor, expiresAt);
+
+		// check if item UUID is unique
+		if (uuidMap.containsKey(itemUUID)) {
+			throw new DoublicateItemException(
+					String.format("Item UUID %s is not unique", itemUUID));
+		}
+
+		BinGroup group = binMap.computeIfAbsent(itemType,
+				k -> new BinGroup(itemType, layout.getCapacities(itemType),
+						expectedItemsPerType));
+		double previousFillFactor = listeners.isEmpty() ? 0.0
+				: group.getFillFactor();
+
+		// add item to the best-fit bin first
+		Item item = new Item(itemType, itemUUID, name, fillFactor,
+				expiresAt);
+		Bin bin = group.addItem(item);
 
+		// then add bin to uuidMap if addItem doesn't fail.
+		// we have to do it here, after we added an item to the bin
+		// successfully,
+		// otherwise we end up with a map record for UUID which wasn't added
+		// to the bin
+
+		uuidMap.put(itemUUID, bin);
+		trackPeaks();
+
+		fireEvent(StorageEvent.Kind.ADDED, group, item, previousFillFactor);
+		if (compaction.isEnabled()) {
+			countMutation();
+		}
+
+		return item;
+	}
+
+	/**
+	 * Checks the arguments of an add operation
+	 * 
+	 * @throws IllegalArgumentException when an argument is invalid
+	 */
+	static void checkItem(String itemUUID, String name, Double fillFactor,
+			long expiresAt) {
 		if (itemUUID == null) {
 			throw new IllegalArgumentException("Item UUID can't be null");
 		}
@@ -65,27 +269,129 @@ public class InMemoryStorage implements Storage {
 					"Fill factor must be not greater then 1");
 		}
 
-		// check if item UUID is unique
-		if (uuidMap.containsKey(itemUUID)) {
-			throw new DoublicateItemException(
-					String.format("Item UUID %s is not unique", itemUUID));
+		if (expiresAt <= 0) {
+			throw new IllegalArgumentException(
+					"Expiry time must be greater then 0");
 		}
+	}
 
-		Bin bin = binMap.computeIfAbsent(itemType, k -> new Bin(itemType));
-
-		// add item to existing bin first
-		Item item = new Item(itemType, itemUUID, name, fillFactor);
-		bin.addItem(item);
+	/**
+	 * Loads items into an empty storage in one pass. The items must be
+	 * grouped by item type, for instance sorted by it, and must be valid:
+	 * unique UUIDs, fill factors which fit into the bins. Unlike
+	 * {@link #addItem(long, String, String, Double)} the item values are
+	 * not checked, which makes it suitable for rebuilding a storage from a
+	 * snapshot of a previous one.
+	 * 
+	 * @param items items grouped by item type
+	 * @return number of items loaded
+	 * @throws IllegalStateException    when the storage is not empty
+	 * @throws IllegalArgumentException when the items are not grouped by
+	 *                                  type, a UUID repeats or an item
+	 *                                  doesn't fit, the storage stays
+	 *                                  empty then
+	 */
+	public int bulkLoad(Iterator<Item> items) {
+		if (!binMap.isEmpty() || !uuidMap.isEmpty()) {
+			throw new IllegalStateException(
+					"Bulk load requires an empty storage");
+		}
+		// nothing is announced before every item is in place, a failure
+		// rolls back to the empty storage
+		ArrayList<Item> loaded = new ArrayList<>();
+		ArrayList<Double> fillFactors = listeners.isEmpty() ? null
+				: new ArrayList<>();
+		ArrayList<Item> run = new ArrayList<>();
+		try {
+			while (items.hasNext()) {
+				Item item = items.next();
+				if (!run.isEmpty()
+						&& run.get(0).getType() != item.getType()) {
+					loadRun(run, loaded, fillFactors);
+					run.clear();
+				}
+				run.add(item);
+			}
+			loadRun(run, loaded, fillFactors);
+		} catch (RuntimeException e) {
+			binMap.clear();
+			uuidMap.clear();
+			throw e;
+		}
+		trackPeaks();
 
-		// then add bin to uuidMap if addItem doesn't fail.
-		// we have to do it here, after we added an item to the bin
-		// successfully,
-		// otherwise we end up with a map record for UUID which wasn't added
-		// to the bin
+		if (fillFactors != null) {
+			double previousFillFactor = 0.0;
+			for (int i = 0; i < loaded.size(); i++) {
+				Item item = loaded.get(i);
+				if (i > 0 && loaded.get(i - 1).getType() != item.getType()) {
+					previousFillFactor = 0.0;
+				}
+				double fillFactor = fillFactors.get(i);
+				StorageEvent event = new StorageEvent(
+						StorageEvent.Kind.ADDED, item.getType(), item,
+						previousFillFactor, fillFactor);
+				listeners.forEach(l -> l.onEvent(event));
+				previousFillFactor = fillFactor;
+			}
+		}
+		return loaded.size();
+	}
 
-		uuidMap.put(itemUUID, bin);
+	/**
+	 * Creates an item type without items, as a removal of its last item
+	 * leaves it. The listeners are not notified, no item was added or
+	 * removed; this is meant for restoring a snapshot, before anything
+	 * listens.
+	 * 
+	 * @param itemType item type
+	 * @return false when the storage already has the item type
+	 */
+	public boolean addItemType(long itemType) {
+		if (binMap.containsKey(itemType)) {
+			return false;
+		}
+		BinGroup group = new BinGroup(itemType,
+				layout.getCapacities(itemType), expectedItemsPerType);
+		binMap.put(itemType, group);
+		trackPeaks();
+		shrunk(group, group.getBins()[0]);
+		return true;
+	}
 
-		return item;
+	/**
+	 * Builds the bins of one item type from all its items. The fill factor
+	 * of the type after each item is kept for the events.
+	 * 
+	 * @param run         items of the same type
+	 * @param loaded      receives the loaded items
+	 * @param fillFactors receives the fill factors after each item, null
+	 *                    when nobody listens
+	 */
+	private void loadRun(ArrayList<Item> run, ArrayList<Item> loaded,
+			ArrayList<Double> fillFactors) {
+		if (run.isEmpty()) {
+			return;
+		}
+		long itemType = run.get(0).getType();
+		if (binMap.containsKey(itemType)) {
+			throw new IllegalArgumentException(String.format(
+					"Items of type %d are not grouped together", itemType));
+		}
+		BinGroup group = new BinGroup(itemType,
+				layout.getCapacities(itemType), run.size());
+		binMap.put(itemType, group);
+		for (Item item : run) {
+			if (uuidMap.containsKey(item.getUUID())) {
+				throw new IllegalArgumentException(String.format(
+						"Item %s is loaded twice", item.getUUID()));
+			}
+			uuidMap.put(item.getUUID(), group.load(item));
+			loaded.add(item);
+			if (fillFactors != null) {
+				fillFactors.add(group.getFillFactor());
+			}
+		}
 	}
 
 	/**
@@ -93,11 +399,36 @@ public class InMemoryStorage implements Storage {
 	 */
 	@Override
 	public Item removeItem(String itemUUID) {
-		// find a bin by UUID
+		if (!probe.isEnabled()) {
+			return detachItem(itemUUID);
+		}
+		long start = System.nanoTime();
 		Bin bin = uuidMap.get(itemUUID);
+		long itemType = bin == null ? -1 : bin.getType();
+		double fillBefore = fillOf(itemType);
+		Item item = detachItem(itemUUID);
+		probe.record(StorageProbe.Operation.REMOVE, itemType, start,
+				item == null ? StorageProbe.Outcome.NOT_FOUND
+						: StorageProbe.Outcome.OK,
+				null, fillBefore, fillOf(itemType));
+		return item;
+	}
+
+	private Item detachItem(String itemUUID) {
+		// find a bin by UUID
+		Bin bin = uuidMap.remove(itemUUID);
 		if (bin != null) {
-			uuidMap.remove(itemUUID);
-			return bin.removeItem(itemUUID);
+			BinGroup group = binMap.get(bin.getType());
+			double previousFillFactor = listeners.isEmpty() ? 0.0
+					: group.getFillFactor();
+			Item item = group.removeItem(bin, itemUUID);
+			fireEvent(StorageEvent.Kind.REMOVED, group, item,
+					previousFillFactor);
+			if (compaction.isEnabled()) {
+				shrunk(group, bin);
+				countMutation();
+			}
+			return item;
 		}
 		return null;
 	}
@@ -107,19 +438,52 @@ public class InMemoryStorage implements Storage {
 	 */
 	@Override
 	public Double getFillFactor(long itemType) {
-		Bin bin = binMap.get(itemType);
-		if (bin != null) {
-			return bin.getFillFactor();
+		if (!probe.isEnabled()) {
+			return lookupFillFactor(itemType);
+		}
+		long start = System.nanoTime();
+		Double fillFactor = lookupFillFactor(itemType);
+		double value = fillFactor == null ? 0.0 : fillFactor;
+		probe.record(StorageProbe.Operation.GET_FILL_FACTOR, itemType, start,
+				fillFactor == null ? StorageProbe.Outcome.NOT_FOUND
+						: StorageProbe.Outcome.OK,
+				null, value, value);
+		return fillFactor;
+	}
+
+	private Double lookupFillFactor(long itemType) {
+		BinGroup group = binMap.get(itemType);
+		if (group != null) {
+			return group.getFillFactor();
 		}
 		return null;
 	}
 
+	/**
+	 * Returns the fill factor of the item type, 0 for unknown types
+	 */
+	private double fillOf(long itemType) {
+		BinGroup group = binMap.get(itemType);
+		return group == null ? 0.0 : group.getFillFactor();
+	}
+
 	/**
 	 * 
 	 * @see com.discoverorg.smartfridge.Storage#getItems(java.lang.Double)
 	 */
 	@Override
 	public Map<Long, Double> getItems(Double fillFactor) {
+		if (!probe.isEnabled()) {
+			return findItems(fillFactor);
+		}
+		long start = System.nanoTime();
+		Map<Long, Double> result = findItems(fillFactor);
+		probe.record(StorageProbe.Operation.GET_ITEMS, -1, start,
+				StorageProbe.Outcome.OK, null, fillFactor, fillFactor);
+		return result;
+	}
+
+	private Map<Long, Double> findItems(Double fillFactor) {
 		HashMap<Long, Double> returnMap = new HashMap<>();
 
 		// check all bins if their fill factor is less then passed value
@@ -135,17 +499,248 @@ public class InMemoryStorage implements Storage {
 		return returnMap;
 	}
 
+	/**
+	 * Returns the number of bins of the item type
+	 * 
+	 * @param itemType item type
+	 * @return number of bins, 0 for unknown types
+	 */
+	public int getBinCount(long itemType) {
+		BinGroup group = binMap.get(itemType);
+		return group == null ? 0 : group.getBins().length;
+	}
+
+	/**
+	 * Returns the number of items in the storage
+	 * 
+	 * @return int
+	 */
+	public int getItemCount() {
+		return uuidMap.size();
+	}
+
+	/**
+	 * Returns the number of item types in the storage, empty ones included
+	 * 
+	 * @return int
+	 */
+	public int getTypeCount() {
+		return binMap.size();
+	}
+
+	/**
+	 * Rebuilds the hash maps which stayed much larger than their content
+	 * after mass removals, so their tables can be garbage collected, and
+	 * reclaims the item types which stayed empty longer than the
+	 * {@link CompactionPolicy} allows
+	 * 
+	 * @return number of maps rebuilt and item types reclaimed
+	 */
+	public int compact() {
+		int work = reclaimEmptyGroups(emptyGroups.size());
+		for (BinGroup group : binMap.values()) {
+			for (Bin bin : group.getBins()) {
+				if (bin.compact()) {
+					work++;
+				}
+			}
+		}
+		return work + compactMaps();
+	}
+
+	/**
+	 * Runs one bounded compaction step: reclaims expired empty item types
+	 * and rebuilds the bins of item types which shrank, at most
+	 * {@link CompactionPolicy#getStepSize()} of each, then rebuilds the top
+	 * level maps when they became oversized. The storage runs the bounded
+	 * part by itself while it is changed; the map rebuilds copy every entry,
+	 * so they are left to this method, which an idle storage may run from
+	 * its owner thread, and to {@link #compact()}.
+	 * 
+	 * @return number of maps rebuilt and item types reclaimed
+	 */
+	public int compactStep() {
+		return boundedStep() + compactMaps();
+	}
+
+	/**
+	 * Runs the part of a compaction step whose cost is bounded by the step
+	 * size
+	 */
+	private int boundedStep() {
+		int stepSize = compaction.getStepSize();
+		int work = reclaimEmptyGroups(stepSize);
+		for (int i = 0; i < stepSize && !shrunkGroups.isEmpty(); i++) {
+			BinGroup group = shrunkGroups.poll();
+			group.compactQueued = false;
+			if (binMap.get(group.getType()) == group) {
+				for (Bin bin : group.getBins()) {
+					if (bin.compact()) {
+						work++;
+					}
+				}
+			}
+		}
+		return work;
+	}
+
+	private void countMutation() {
+		if (++mutationsSinceStep >= compaction.getStepInterval()) {
+			mutationsSinceStep = 0;
+			boundedStep();
+		}
+	}
+
+	/**
+	 * Queues the group for compaction after a removal left it empty or its
+	 * bin oversized
+	 */
+	private void shrunk(BinGroup group, Bin bin) {
+		if (group.isEmpty() && compaction.isReclaiming()) {
+			group.emptySince = compaction.now();
+			if (!group.reclaimQueued) {
+				group.reclaimQueued = true;
+				emptyGroups.add(group);
+			}
+		}
+		if (!group.compactQueued && bin.isOversized()) {
+			group.compactQueued = true;
+			shrunkGroups.add(group);
+		}
+	}
+
+	/**
+	 * Forgets the groups which stayed empty for the retention time
+	 * 
+	 * @param limit largest number of queued groups to examine
+	 * @return number of groups reclaimed
+	 */
+	private int reclaimEmptyGroups(int limit) {
+		if (emptyGroups.isEmpty()) {
+			return 0;
+		}
+		long now = compaction.now();
+		long retention = compaction.getEmptyTypeRetention();
+		int reclaimed = 0;
+		for (int i = 0; i < limit && !emptyGroups.isEmpty(); i++) {
+			BinGroup group = emptyGroups.poll();
+			if (binMap.get(group.getType()) != group || !group.isEmpty()) {
+				// forgotten or filled again since it was queued
+				group.reclaimQueued = false;
+			} else if (now - group.emptySince >= retention) {
+				group.reclaimQueued = false;
+				dropItemType(group.getType());
+				reclaimed++;
+			} else {
+				// emptied again after it was queued, wait for its turn
+				emptyGroups.add(group);
+			}
+		}
+		return reclaimed;
+	}
+
+	private int compactMaps() {
+		int rebuilt = 0;
+		if (StorageConfig.isOversized(uuidMap.size(), peakItems)) {
+			uuidMap = new HashMap<>(uuidMap);
+			peakItems = uuidMap.size();
+			rebuilt++;
+		}
+		if (StorageConfig.isOversized(binMap.size(), peakTypes)) {
+			binMap = new HashMap<>(binMap);
+			peakTypes = binMap.size();
+			rebuilt++;
+		}
+		return rebuilt;
+	}
+
+	private void trackPeaks() {
+		peakItems = Math.max(peakItems, uuidMap.size());
+		peakTypes = Math.max(peakTypes, binMap.size());
+	}
+
+	/**
+	 * Passes every item in the storage to the action, type by type
+	 * 
+	 * @param action action called for each item
+	 */
+	public void forEachItem(Consumer<Item> action) {
+		Objects.requireNonNull(action, "Action reference must be not null");
+		for (BinGroup group : binMap.values()) {
+			for (Bin bin : group.getBins()) {
+				bin.getItems().forEach(action);
+			}
+		}
+	}
+
+	/**
+	 * Passes every item type in the storage with its fill factor to the
+	 * action, empty types included
+	 * 
+	 * @param action action called for each item type
+	 */
+	public void forEachType(BiConsumer<Long, Double> action) {
+		Objects.requireNonNull(action, "Action reference must be not null");
+		for (BinGroup group : binMap.values()) {
+			action.accept(group.getType(), group.getFillFactor());
+		}
+	}
+
 	/**
 	 * @see com.oleksandr.smartfridge.storage.Storage#forgetItem(long)
 	 */
 	@Override
 	public void forgetItem(long itemType) {
-		Bin bin = binMap.remove(itemType);
-		if (bin != null) {
+		if (!probe.isEnabled()) {
+			dropItemType(itemType);
+			return;
+		}
+		long start = System.nanoTime();
+		double fillBefore = fillOf(itemType);
+		boolean known = binMap.containsKey(itemType);
+		dropItemType(itemType);
+		probe.record(StorageProbe.Operation.FORGET, itemType, start,
+				known ? StorageProbe.Outcome.OK
+						: StorageProbe.Outcome.NOT_FOUND,
+				null, fillBefore, 0.0);
+	}
+
+	private void dropItemType(long itemType) {
+		BinGroup group = binMap.remove(itemType);
+		if (group != null) {
 			// process uiidMap to remove all references to bin if it matches
-			// item's type
-			uuidMap.values().removeIf(b -> b.getType() == itemType);
+			// item's type, an empty group has none
+			if (!group.isEmpty()) {
+				uuidMap.values().removeIf(b -> b.getType() == itemType);
+			}
+
+			if (!listeners.isEmpty()) {
+				StorageEvent event = new StorageEvent(
+						StorageEvent.Kind.FORGOTTEN, itemType, null,
+						group.getFillFactor(), 0.0);
+				listeners.forEach(l -> l.onEvent(event));
+			}
+		}
+	}
+
+	/**
+	 * Notifies the listeners about an item added to or removed from the bins
+	 * of its type
+	 * 
+	 * @param kind               kind of the change
+	 * @param group              bins which were changed
+	 * @param item               item added or removed
+	 * @param previousFillFactor fill factor of the item type before the
+	 *                           change
+	 */
+	private void fireEvent(StorageEvent.Kind kind, BinGroup group, Item item,
+			double previousFillFactor) {
+		if (listeners.isEmpty()) {
+			return;
 		}
+		StorageEvent event = new StorageEvent(kind, group.getType(), item,
+				previousFillFactor, group.getFillFactor());
+		listeners.forEach(l -> l.onEvent(event));
 	}
 
 }
@@ -8,6 +8,11 @@ package com.oleksandr.smartfridge.storage;
  */
 public class Item {
 
+	/**
+	 * Expiry timestamp of items which never expire
+	 */
+	public static final long NO_EXPIRY = Long.MAX_VALUE;
+
 	/**
 	 * Item's ID
 	 */
@@ -29,19 +34,41 @@ public class Item {
 	private Double fillFactor;
 
 	/**
-	 * Constructor
+	 * Time the item expires at, in milliseconds since the epoch
+	 */
+	private long expiresAt;
+
+	/**
+	 * Constructor for an item which never expires
 	 * 
-	 * @param type     item type
-	 * @param itemUUID item ID
-	 * @param name     item name
+	 * @param type       item type
+	 * @param itemUUID   item ID
+	 * @param name       item name
+	 * @param fillFactor part of a bin the item takes
 	 */
 	public Item(long type, String itemUUID, String name,
 			Double fillFactor) {
+		this(type, itemUUID, name, fillFactor, NO_EXPIRY);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param type       item type
+	 * @param itemUUID   item ID
+	 * @param name       item name
+	 * @param fillFactor part of a bin the item takes
+	 * @param expiresAt  expiry time in milliseconds since the epoch or
+	 *                   {@link #NO_EXPIRY}
+	 */
+	public Item(long type, String itemUUID, String name, Double fillFactor,
+			long expiresAt) {
 		super();
 		this.type = type;
 		this.itemUUID = itemUUID;
 		this.name = name;
 		this.fillFactor = fillFactor;
+		this.expiresAt = expiresAt;
 	}
 
 	/**
@@ -81,6 +108,25 @@ public class Item {
 		return fillFactor;
 	}
 
+	/**
+	 * Returns the time the item expires at, in milliseconds since the epoch.
+	 * It is {@link #NO_EXPIRY} for items which never expire.
+	 * 
+	 * @return long
+	 */
+	public long getExpiresAt() {
+		return expiresAt;
+	}
+
+	/**
+	 * Checks if the item has an expiry time
+	 * 
+	 * @return boolean
+	 */
+	public boolean isPerishable() {
+		return expiresAt != NO_EXPIRY;
+	}
+
 	/**
 	 * @see java.lang.Object#hashCode()
 	 */
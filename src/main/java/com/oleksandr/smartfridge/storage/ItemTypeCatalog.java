@@ -0,0 +1,343 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Registry of the item types of a fridge. Every type gets a display name,
+ * the capacities of its bins, the fill factor below which it is running
+ * low and a dense ordinal: the first registered type has ordinal 0, the
+ * next one 1 and so on. Storages index flat arrays by the ordinal instead
+ * of hashing the type on every access.
+ *
+ * Types are looked up in an open addressing table of primitive arrays, so
+ * a lookup doesn't box the type. Types are never unregistered; the
+ * ordinal of a type stays the same for the life of the catalog.
+ *
+ * The catalog is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class ItemTypeCatalog {
+
+	/**
+	 * Low threshold of the types registered without one
+	 */
+	public static final double DEFAULT_LOW_THRESHOLD = 0.5;
+
+	private final BinLayout defaultLayout;
+
+	private final double defaultLowThreshold;
+
+	/**
+	 * Types of the lookup table
+	 */
+	private long[] keys;
+
+	/**
+	 * Ordinal + 1 of the type in the same slot, 0 for a free slot
+	 */
+	private int[] slots;
+
+	/**
+	 * Registered types by ordinal
+	 */
+	private ItemType[] types;
+
+	private int size;
+
+	/**
+	 * Constructs a catalog with one standard bin per type
+	 */
+	public ItemTypeCatalog() {
+		this(BinLayout.single(), DEFAULT_LOW_THRESHOLD);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param defaultLayout       bins of the types registered without
+	 *                            capacities
+	 * @param defaultLowThreshold low threshold of the types registered
+	 *                            without one
+	 */
+	public ItemTypeCatalog(BinLayout defaultLayout,
+			double defaultLowThreshold) {
+		super();
+		this.defaultLayout = Objects.requireNonNull(defaultLayout,
+				"Layout reference must be not null");
+		this.defaultLowThreshold = checkThreshold(defaultLowThreshold);
+		keys = new long[16];
+		slots = new int[16];
+		types = new ItemType[8];
+	}
+
+	/**
+	 * Registers a type with the default bins and low threshold
+	 *
+	 * @param itemType item type
+	 * @param name     display name
+	 * @return {@link ItemType}
+	 * @throws IllegalArgumentException when the type is already registered
+	 */
+	public ItemType register(long itemType, String name) {
+		return register(itemType, name,
+				defaultLayout.getCapacities(itemType), defaultLowThreshold);
+	}
+
+	/**
+	 * Registers a type
+	 *
+	 * @param itemType     item type
+	 * @param name         display name
+	 * @param capacities   capacity of every bin of the type
+	 * @param lowThreshold fill factor below which the type is running low
+	 * @return {@link ItemType}
+	 * @throws IllegalArgumentException when the type is already registered
+	 *                                  or an argument is invalid
+	 */
+	public ItemType register(long itemType, String name, double[] capacities,
+			double lowThreshold) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException(
+					"Item type name can't be null or blank");
+		}
+		if (capacities == null || capacities.length == 0) {
+			throw new IllegalArgumentException(String.format(
+					"Item type %d must have at least one bin", itemType));
+		}
+		for (double capacity : capacities) {
+			if (capacity <= 0) {
+				throw new IllegalArgumentException(
+						"Bin capacity must be greater then 0");
+			}
+		}
+		checkThreshold(lowThreshold);
+		if (ordinalOf(itemType) >= 0) {
+			throw new IllegalArgumentException(String.format(
+					"Item type %d is already registered", itemType));
+		}
+
+		ItemType type = new ItemType(itemType, size, name,
+				capacities.clone(), lowThreshold);
+		if (size == types.length) {
+			types = Arrays.copyOf(types, size * 2);
+		}
+		types[size++] = type;
+		if (size * 2 > keys.length) {
+			grow();
+		}
+		insert(itemType, size);
+		return type;
+	}
+
+	/**
+	 * Returns the ordinal of a type, registering it under its number when
+	 * it is unknown
+	 *
+	 * @param itemType item type
+	 * @return int
+	 */
+	public int getOrRegister(long itemType) {
+		int ordinal = ordinalOf(itemType);
+		if (ordinal < 0) {
+			ordinal = register(itemType, String.valueOf(itemType)).ordinal;
+		}
+		return ordinal;
+	}
+
+	/**
+	 * Returns the ordinal of a type
+	 *
+	 * @param itemType item type
+	 * @return ordinal or -1 when the type is not registered
+	 */
+	public int ordinalOf(long itemType) {
+		int mask = keys.length - 1;
+		for (int slot = hash(itemType) & mask;; slot = (slot + 1) & mask) {
+			int value = slots[slot];
+			if (value == 0) {
+				return -1;
+			}
+			if (keys[slot] == itemType) {
+				return value - 1;
+			}
+		}
+	}
+
+	/**
+	 * Returns a registered type
+	 *
+	 * @param itemType item type
+	 * @return {@link ItemType} or null when the type is not registered
+	 */
+	public ItemType get(long itemType) {
+		int ordinal = ordinalOf(itemType);
+		return ordinal < 0 ? null : types[ordinal];
+	}
+
+	/**
+	 * Returns the type with the given ordinal
+	 *
+	 * @param ordinal ordinal of the type
+	 * @return {@link ItemType}
+	 * @throws IndexOutOfBoundsException when no type has the ordinal
+	 */
+	public ItemType byOrdinal(int ordinal) {
+		if (ordinal < 0 || ordinal >= size) {
+			throw new IndexOutOfBoundsException(
+					String.format("No item type with ordinal %d", ordinal));
+		}
+		return types[ordinal];
+	}
+
+	/**
+	 * Returns the registered types in ordinal order
+	 *
+	 * @return list of {@link ItemType}
+	 */
+	public List<ItemType> getTypes() {
+		return Collections.unmodifiableList(
+				Arrays.asList(Arrays.copyOf(types, size)));
+	}
+
+	/**
+	 * Returns the number of registered types
+	 *
+	 * @return int
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns a layout with the bins of the registered types and the
+	 * default bins for the other ones
+	 *
+	 * @return {@link BinLayout}
+	 */
+	public BinLayout asBinLayout() {
+		return itemType -> {
+			ItemType type = get(itemType);
+			return type == null ? defaultLayout.getCapacities(itemType)
+					: type.getCapacities();
+		};
+	}
+
+	private void insert(long itemType, int value) {
+		int mask = keys.length - 1;
+		int slot = hash(itemType) & mask;
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = itemType;
+		slots[slot] = value;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		int[] oldSlots = slots;
+		keys = new long[oldKeys.length * 2];
+		slots = new int[oldSlots.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldSlots[i] != 0) {
+				insert(oldKeys[i], oldSlots[i]);
+			}
+		}
+	}
+
+	private static int hash(long itemType) {
+		long h = itemType * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static double checkThreshold(double lowThreshold) {
+		if (lowThreshold <= 0) {
+			throw new IllegalArgumentException(
+					"Low threshold must be greater then 0");
+		}
+		if (lowThreshold > 1) {
+			throw new IllegalArgumentException(
+					"Low threshold must be not greater then 1");
+		}
+		return lowThreshold;
+	}
+
+	/**
+	 * Registered item type
+	 */
+	public static final class ItemType {
+
+		private final long type;
+
+		private final int ordinal;
+
+		private final String name;
+
+		private final double[] capacities;
+
+		private final double lowThreshold;
+
+		ItemType(long type, int ordinal, String name, double[] capacities,
+				double lowThreshold) {
+			this.type = type;
+			this.ordinal = ordinal;
+			this.name = name;
+			this.capacities = capacities;
+			this.lowThreshold = lowThreshold;
+		}
+
+		/**
+		 * Returns the item type
+		 *
+		 * @return long
+		 */
+		public long getType() {
+			return type;
+		}
+
+		/**
+		 * Returns the dense ordinal of the type
+		 *
+		 * @return int
+		 */
+		public int getOrdinal() {
+			return ordinal;
+		}
+
+		/**
+		 * Returns the display name
+		 *
+		 * @return String
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the capacity of every bin of the type
+		 *
+		 * @return array of capacities
+		 */
+		public double[] getCapacities() {
+			return capacities.clone();
+		}
+
+		/**
+		 * Returns the fill factor below which the type is running low
+		 *
+		 * @return double
+		 */
+		public double getLowThreshold() {
+			return lowThreshold;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s (%d)", name, type);
+		}
+	}
+}
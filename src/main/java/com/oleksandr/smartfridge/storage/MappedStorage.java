@@ -0,0 +1,778 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+
+/**
+ * Storage which keeps its state in memory-mapped files instead of the heap.
+ * The state survives a restart without any replay: opening the directory
+ * again maps the same tables.
+ *
+ * The storage is made of two open-addressed hash tables with linear probing
+ * and backward shift deletion, each in its own file:
+ *
+ * <pre>
+ * types.tbl  one 32 byte slot per item type:
+ *            int state, int item count, long type, long fill units
+ * items.tbl  one 128 byte slot per item:
+ *            int state, int UUID hash, long type, double fill factor,
+ *            long expiry time, byte length + 47 bytes UUID,
+ *            byte length + 47 bytes name
+ * </pre>
+ *
+ * UUIDs and names are limited to 47 UTF-8 bytes. Every item type has one
+ * standard bin, the bin layout of the configuration is ignored. A table
+ * grows in place: its file is extended to twice the size, remapped and the
+ * entries are moved to their slots under the new capacity. Nothing is
+ * written to the disk by a growth, but the insert which triggers it still
+ * pays for moving every entry of the table.
+ *
+ * Changes go to the page cache right away and reach the disk when the OS
+ * writes the pages back or on {@link #flush()} and {@link #close()}. A
+ * crash in the middle of an update may leave that update half applied.
+ *
+ * The storage is not thread-safe.
+ *
+ * @author oleksandr
+ *
+ */
+public class MappedStorage implements Storage, Closeable {
+
+	/**
+	 * Fixed-point units per 1.0 of fill factor
+	 */
+	static final long FILL_UNITS = 1000000L;
+
+	/**
+	 * Longest UUID or name in bytes
+	 */
+	public static final int MAX_STRING_LENGTH = 47;
+
+	static final int TYPE_SLOT = 32;
+
+	static final int ITEM_SLOT = 128;
+
+	private static final int STATE = 0;
+
+	private static final int TYPE_COUNT = 4;
+
+	private static final int TYPE_KEY = 8;
+
+	private static final int TYPE_FILL = 16;
+
+	private static final int ITEM_HASH = 4;
+
+	private static final int ITEM_TYPE = 8;
+
+	private static final int ITEM_FILL = 16;
+
+	private static final int ITEM_EXPIRY = 24;
+
+	private static final int ITEM_UUID = 32;
+
+	private static final int ITEM_NAME = 80;
+
+	private static final BigDecimal FILL_UNITS_DECIMAL = BigDecimal
+			.valueOf(FILL_UNITS);
+
+	private final Path directory;
+
+	private final boolean temporary;
+
+	private MappedTable types;
+
+	private MappedTable items;
+
+	/**
+	 * Opens the storage in the directory, creating it when it doesn't exist
+	 *
+	 * @param directory directory holding the table files
+	 * @throws IOException when the files can't be opened or mapped
+	 */
+	public MappedStorage(Path directory) throws IOException {
+		this(directory, StorageConfig.defaults());
+	}
+
+	/**
+	 * Opens the storage in the directory, creating it with tables sized for
+	 * the configuration when it doesn't exist
+	 *
+	 * @param directory directory holding the table files
+	 * @param config    {@link StorageConfig}
+	 * @throws IOException when the files can't be opened or mapped
+	 */
+	public MappedStorage(Path directory, StorageConfig config)
+			throws IOException {
+		this(directory, config, false);
+	}
+
+	private MappedStorage(Path directory, StorageConfig config,
+			boolean temporary) throws IOException {
+		super();
+		this.directory = Objects.requireNonNull(directory,
+				"Directory reference must be not null");
+		Objects.requireNonNull(config, "Config reference must be not null");
+		this.temporary = temporary;
+		Files.createDirectories(directory);
+		types = MappedTable.open(directory.resolve("types.tbl"), TYPE_SLOT,
+				tableCapacity(config.getExpectedTypes()));
+		try {
+			items = MappedTable.open(directory.resolve("items.tbl"),
+					ITEM_SLOT, tableCapacity(config.getExpectedItems()));
+		} catch (IOException e) {
+			types.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a storage in a new temporary directory, which is deleted when
+	 * the storage is closed
+	 *
+	 * @param config {@link StorageConfig}
+	 * @return {@link MappedStorage}
+	 * @throws IOException when the files can't be created
+	 */
+	public static MappedStorage temporary(StorageConfig config)
+			throws IOException {
+		return new MappedStorage(Files.createTempDirectory("mapped-storage"),
+				config, true);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double)
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		return addItem(itemType, itemUUID, name, fillFactor, Item.NO_EXPIRY);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#addItem(long,
+	 *      java.lang.String, java.lang.String, java.lang.Double, long)
+	 */
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		if (itemUUID == null) {
+			throw new IllegalArgumentException("Item UUID can't be null");
+		}
+		if (itemUUID.isEmpty()) {
+			throw new IllegalArgumentException("Item UUID can't be blank");
+		}
+		if (name == null) {
+			throw new IllegalArgumentException("Item name can't be null");
+		}
+		if (name.isEmpty()) {
+			throw new IllegalArgumentException("Item name can't be blank");
+		}
+		long units = toUnits(fillFactor);
+		if (units <= 0) {
+			throw new IllegalArgumentException(
+					"Fill factor must be greater then 0");
+		}
+		if (units >= FILL_UNITS) {
+			throw new IllegalArgumentException(
+					"Fill factor must be not greater then 1");
+		}
+		if (expiresAt <= 0) {
+			throw new IllegalArgumentException(
+					"Expiry time must be greater then 0");
+		}
+		byte[] uuid = encode(itemUUID, "Item UUID");
+		byte[] nameBytes = encode(name, "Item name");
+
+		int hash = hash(itemUUID);
+		if (findItem(uuid, hash) >= 0) {
+			throw new DoublicateItemException(
+					String.format("Item UUID %s is not unique", itemUUID));
+		}
+
+		int typeSlot = findType(itemType);
+		long typeFill = typeSlot >= 0 ? types.getLong(typeSlot, TYPE_FILL)
+				: 0;
+		if (typeFill + units > FILL_UNITS) {
+			throw new BinOverflowException(String.format(
+					"Can't add item. Not enough room for item type %d",
+					itemType));
+		}
+
+		// grow both tables before writing anything, a failed growth leaves
+		// the storage as it was
+		if (items.needsGrowth()) {
+			growItems();
+		}
+		if (typeSlot < 0) {
+			if (types.needsGrowth()) {
+				growTypes();
+			}
+			typeSlot = freeTypeSlot(itemType);
+			types.putInt(typeSlot, STATE, 1);
+			types.putLong(typeSlot, TYPE_KEY, itemType);
+			types.putInt(typeSlot, TYPE_COUNT, 0);
+			types.putLong(typeSlot, TYPE_FILL, 0);
+			types.setCount(types.count + 1);
+		}
+		types.putLong(typeSlot, TYPE_FILL, typeFill + units);
+		types.putInt(typeSlot, TYPE_COUNT,
+				types.getInt(typeSlot, TYPE_COUNT) + 1);
+
+		int slot = freeItemSlot(hash);
+		items.putInt(slot, ITEM_HASH, hash);
+		items.putLong(slot, ITEM_TYPE, itemType);
+		items.putDouble(slot, ITEM_FILL, fillFactor);
+		items.putLong(slot, ITEM_EXPIRY, expiresAt);
+		items.putString(slot, ITEM_UUID, uuid);
+		items.putString(slot, ITEM_NAME, nameBytes);
+		items.putInt(slot, STATE, 1);
+		items.setCount(items.count + 1);
+
+		return new Item(itemType, itemUUID, name, fillFactor, expiresAt);
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#removeItem(java.lang.String)
+	 */
+	@Override
+	public Item removeItem(String itemUUID) {
+		if (itemUUID == null || itemUUID.isEmpty()) {
+			return null;
+		}
+		byte[] uuid = itemUUID.getBytes(StandardCharsets.UTF_8);
+		if (uuid.length > MAX_STRING_LENGTH) {
+			return null;
+		}
+		int slot = findItem(uuid, hash(itemUUID));
+		if (slot < 0) {
+			return null;
+		}
+		Item item = readItem(slot);
+		deleteItem(slot);
+
+		int typeSlot = findType(item.getType());
+		types.putLong(typeSlot, TYPE_FILL, types.getLong(typeSlot, TYPE_FILL)
+				- toUnits(item.getFillFactor()));
+		types.putInt(typeSlot, TYPE_COUNT,
+				types.getInt(typeSlot, TYPE_COUNT) - 1);
+		return item;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getItems(java.lang.Double)
+	 */
+	@Override
+	public Map<Long, Double> getItems(Double fillFactor) {
+		HashMap<Long, Double> returnMap = new HashMap<>();
+		BigDecimal inFillFactor = new BigDecimal(fillFactor, Bin.mathCtx);
+		for (int slot = 0; slot < types.capacity; slot++) {
+			if (types.getInt(slot, STATE) == 0) {
+				continue;
+			}
+			double typeFillFactor = fromUnits(
+					types.getLong(slot, TYPE_FILL));
+			BigDecimal binFillFactor = new BigDecimal(typeFillFactor,
+					Bin.mathCtx);
+			if (binFillFactor.compareTo(inFillFactor) < 0) {
+				returnMap.put(types.getLong(slot, TYPE_KEY), typeFillFactor);
+			}
+		}
+		return returnMap;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#getFillFactor(long)
+	 */
+	@Override
+	public Double getFillFactor(long itemType) {
+		int slot = findType(itemType);
+		if (slot < 0) {
+			return null;
+		}
+		return fromUnits(types.getLong(slot, TYPE_FILL));
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.Storage#forgetItem(long)
+	 */
+	@Override
+	public void forgetItem(long itemType) {
+		int typeSlot = findType(itemType);
+		if (typeSlot < 0) {
+			return;
+		}
+		deleteType(typeSlot);
+
+		// collect first, deleting shifts the slots which are still to scan
+		ArrayList<String> forgotten = new ArrayList<>();
+		for (int slot = 0; slot < items.capacity; slot++) {
+			if (items.getInt(slot, STATE) != 0
+					&& items.getLong(slot, ITEM_TYPE) == itemType) {
+				forgotten.add(items.getString(slot, ITEM_UUID));
+			}
+		}
+		for (String itemUUID : forgotten) {
+			int slot = findItem(itemUUID.getBytes(StandardCharsets.UTF_8),
+					hash(itemUUID));
+			deleteItem(slot);
+		}
+	}
+
+	/**
+	 * Returns the number of items in the storage
+	 *
+	 * @return int
+	 */
+	public int getItemCount() {
+		return items.count;
+	}
+
+	/**
+	 * Returns the directory holding the table files
+	 *
+	 * @return {@link Path}
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Writes the changed pages to the disk
+	 */
+	public void flush() {
+		types.buffer.force();
+		items.buffer.force();
+	}
+
+	/**
+	 * Flushes and closes the table files. A temporary storage deletes its
+	 * files.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (!temporary) {
+				flush();
+			}
+		} finally {
+			types.close();
+			items.close();
+			if (temporary) {
+				Files.deleteIfExists(types.path);
+				Files.deleteIfExists(items.path);
+				Files.deleteIfExists(directory);
+			}
+		}
+	}
+
+	private Item readItem(int slot) {
+		return new Item(items.getLong(slot, ITEM_TYPE),
+				items.getString(slot, ITEM_UUID),
+				items.getString(slot, ITEM_NAME),
+				items.getDouble(slot, ITEM_FILL),
+				items.getLong(slot, ITEM_EXPIRY));
+	}
+
+	private int findItem(byte[] uuid, int hash) {
+		int mask = items.capacity - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			if (items.getInt(slot, STATE) == 0) {
+				return -1;
+			}
+			if (items.getInt(slot, ITEM_HASH) == hash
+					&& items.stringEquals(slot, ITEM_UUID, uuid)) {
+				return slot;
+			}
+		}
+	}
+
+	private int freeItemSlot(int hash) {
+		return items.freeSlot(hash);
+	}
+
+	private int findType(long itemType) {
+		int mask = types.capacity - 1;
+		for (int slot = hash(itemType) & mask;; slot = (slot + 1) & mask) {
+			if (types.getInt(slot, STATE) == 0) {
+				return -1;
+			}
+			if (types.getLong(slot, TYPE_KEY) == itemType) {
+				return slot;
+			}
+		}
+	}
+
+	private int freeTypeSlot(long itemType) {
+		return types.freeSlot(hash(itemType));
+	}
+
+	private void deleteItem(int slot) {
+		items.delete(slot, s -> items.getInt(s, ITEM_HASH));
+	}
+
+	private void deleteType(int slot) {
+		types.delete(slot, s -> hash(types.getLong(s, TYPE_KEY)));
+	}
+
+	private void growItems() {
+		grow(items, s -> items.getInt(s, ITEM_HASH));
+	}
+
+	private void growTypes() {
+		grow(types, s -> hash(types.getLong(s, TYPE_KEY)));
+	}
+
+	private static void grow(MappedTable table, SlotHash hash) {
+		try {
+			table.grow(hash);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Storage table can't grow", e);
+		}
+	}
+
+	static long toUnits(double fillFactor) {
+		return new BigDecimal(fillFactor, Bin.mathCtx)
+				.multiply(FILL_UNITS_DECIMAL)
+				.setScale(0, RoundingMode.HALF_UP).longValue();
+	}
+
+	static double fromUnits(long units) {
+		return BigDecimal.valueOf(units, 6).doubleValue();
+	}
+
+	private static int tableCapacity(int expected) {
+		// keep the load factor at or below one half
+		int capacity = 16;
+		while (capacity < expected * 2 && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	private static int hash(String value) {
+		return mix(value.hashCode());
+	}
+
+	private static int hash(long value) {
+		return mix((int) (value ^ (value >>> 32)));
+	}
+
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h;
+	}
+
+	private static byte[] encode(String value, String what) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > MAX_STRING_LENGTH) {
+			throw new IllegalArgumentException(String.format(
+					"%s is longer than %d bytes", what, MAX_STRING_LENGTH));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Computes the hash of the key stored in a slot
+	 */
+	@FunctionalInterface
+	interface SlotHash {
+		int of(int slot);
+	}
+
+	/**
+	 * Fixed size slot table in a memory-mapped file. The file starts with a
+	 * header: int magic, int slot size, int capacity, int count.
+	 */
+	static final class MappedTable {
+
+		static final int MAGIC = 0x53464D54;
+
+		static final int HEADER_SIZE = 32;
+
+		final Path path;
+
+		final int slotSize;
+
+		int capacity;
+
+		int count;
+
+		private final FileChannel channel;
+
+		MappedByteBuffer buffer;
+
+		private MappedTable(Path path, FileChannel channel, int slotSize,
+				int capacity) throws IOException {
+			this.path = path;
+			this.channel = channel;
+			this.slotSize = slotSize;
+			this.capacity = capacity;
+			try {
+				buffer = map(capacity);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		private MappedByteBuffer map(int capacity) throws IOException {
+			long size = HEADER_SIZE + (long) slotSize * capacity;
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Storage table is too large");
+			}
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+
+		static MappedTable open(Path path, int slotSize, int capacity)
+				throws IOException {
+			if (!Files.exists(path)) {
+				return create(path, slotSize, capacity);
+			}
+			FileChannel channel = FileChannel.open(path,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			while (header.hasRemaining()
+					&& channel.read(header, header.position()) > 0) {
+				// read the whole header
+			}
+			header.flip();
+			if (header.remaining() < HEADER_SIZE
+					|| header.getInt(0) != MAGIC
+					|| header.getInt(4) != slotSize) {
+				channel.close();
+				throw new IOException(
+						String.format("%s is not a storage table", path));
+			}
+			MappedTable table = new MappedTable(path, channel, slotSize,
+					header.getInt(8));
+			table.count = header.getInt(12);
+			return table;
+		}
+
+		static MappedTable create(Path path, int slotSize, int capacity)
+				throws IOException {
+			FileChannel channel = FileChannel.open(path,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			MappedTable table = new MappedTable(path, channel, slotSize,
+					capacity);
+			table.buffer.putInt(0, MAGIC);
+			table.buffer.putInt(4, slotSize);
+			table.buffer.putInt(8, capacity);
+			table.setCount(0);
+			return table;
+		}
+
+		boolean needsGrowth() {
+			return (count + 1) * 2 > capacity;
+		}
+
+		/**
+		 * Doubles the capacity in place: extends the file, remaps it and
+		 * moves every entry to its slot under the new mask. When the file
+		 * can't be remapped the table stays as it was.
+		 *
+		 * An entry probes only past entries which are already moved and
+		 * takes the first free or still pending slot, carrying on with the
+		 * pending entry it displaces. The slots pending entries leave empty
+		 * therefore never break the probe run of a moved entry.
+		 */
+		void grow(SlotHash hash) throws IOException {
+			int oldCapacity = capacity;
+			buffer = map(oldCapacity * 2);
+			capacity = oldCapacity * 2;
+			int mask = capacity - 1;
+
+			BitSet pending = new BitSet(oldCapacity);
+			for (int slot = 0; slot < oldCapacity; slot++) {
+				if (getInt(slot, STATE) != 0) {
+					pending.set(slot);
+				}
+			}
+			byte[] carried = new byte[slotSize];
+			byte[] displaced = new byte[slotSize];
+			for (int slot = pending.nextSetBit(0); slot >= 0; slot = pending
+					.nextSetBit(slot + 1)) {
+				int home = hash.of(slot) & mask;
+				readSlot(slot, carried);
+				clearSlot(slot);
+				pending.clear(slot);
+				while (true) {
+					int target = home;
+					while (getInt(target, STATE) != 0 && !pending.get(target)) {
+						target = (target + 1) & mask;
+					}
+					if (!pending.get(target)) {
+						writeSlot(target, carried);
+						break;
+					}
+					home = hash.of(target) & mask;
+					readSlot(target, displaced);
+					writeSlot(target, carried);
+					pending.clear(target);
+					byte[] swap = carried;
+					carried = displaced;
+					displaced = swap;
+				}
+			}
+			buffer.putInt(8, capacity);
+		}
+
+		void setCount(int count) {
+			this.count = count;
+			buffer.putInt(12, count);
+		}
+
+		int offset(int slot, int field) {
+			return HEADER_SIZE + slot * slotSize + field;
+		}
+
+		int getInt(int slot, int field) {
+			return buffer.getInt(offset(slot, field));
+		}
+
+		void putInt(int slot, int field, int value) {
+			buffer.putInt(offset(slot, field), value);
+		}
+
+		long getLong(int slot, int field) {
+			return buffer.getLong(offset(slot, field));
+		}
+
+		void putLong(int slot, int field, long value) {
+			buffer.putLong(offset(slot, field), value);
+		}
+
+		double getDouble(int slot, int field) {
+			return buffer.getDouble(offset(slot, field));
+		}
+
+		void putDouble(int slot, int field, double value) {
+			buffer.putDouble(offset(slot, field), value);
+		}
+
+		String getString(int slot, int field) {
+			int offset = offset(slot, field);
+			int length = buffer.get(offset);
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++) {
+				bytes[i] = buffer.get(offset + 1 + i);
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		void putString(int slot, int field, byte[] bytes) {
+			int offset = offset(slot, field);
+			buffer.put(offset, (byte) bytes.length);
+			for (int i = 0; i < bytes.length; i++) {
+				buffer.put(offset + 1 + i, bytes[i]);
+			}
+		}
+
+		boolean stringEquals(int slot, int field, byte[] bytes) {
+			int offset = offset(slot, field);
+			if (buffer.get(offset) != bytes.length) {
+				return false;
+			}
+			for (int i = 0; i < bytes.length; i++) {
+				if (buffer.get(offset + 1 + i) != bytes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		int freeSlot(int hash) {
+			int mask = capacity - 1;
+			int slot = hash & mask;
+			while (getInt(slot, STATE) != 0) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		void copySlot(int slot, MappedTable source, int sourceSlot) {
+			ByteBuffer from = source.buffer.duplicate();
+			int start = source.offset(sourceSlot, 0);
+			from.limit(start + slotSize).position(start);
+			ByteBuffer to = buffer.duplicate();
+			to.position(offset(slot, 0));
+			to.put(from);
+		}
+
+		void readSlot(int slot, byte[] bytes) {
+			ByteBuffer from = buffer.duplicate();
+			from.position(offset(slot, 0));
+			from.get(bytes);
+		}
+
+		void writeSlot(int slot, byte[] bytes) {
+			ByteBuffer to = buffer.duplicate();
+			to.position(offset(slot, 0));
+			to.put(bytes);
+		}
+
+		void clearSlot(int slot) {
+			int start = offset(slot, 0);
+			for (int i = 0; i < slotSize; i += 8) {
+				buffer.putLong(start + i, 0L);
+			}
+		}
+
+		/**
+		 * Deletes the slot with backward shift: the entries which follow in
+		 * the same probe run are moved back, so no tombstones are needed
+		 */
+		void delete(int slot, SlotHash hash) {
+			int mask = capacity - 1;
+			int hole = slot;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & mask;
+				if (getInt(next, STATE) == 0) {
+					break;
+				}
+				int home = hash.of(next) & mask;
+				// move the entry back unless its home lies cyclically in
+				// (hole, next]
+				boolean movable = hole <= next ? (home <= hole || home > next)
+						: (home <= hole && home > next);
+				if (movable) {
+					copySlot(hole, this, next);
+					hole = next;
+				}
+			}
+			clearSlot(hole);
+			setCount(count - 1);
+		}
+
+		void close() throws IOException {
+			channel.close();
+		}
+	}
+}
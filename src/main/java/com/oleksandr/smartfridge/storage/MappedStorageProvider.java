@@ -0,0 +1,40 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Provides {@link MappedStorage} in a temporary directory, which is deleted
+ * when the storage is closed. Open a {@link MappedStorage} directly to keep
+ * the data across restarts.
+ * 
+ * @author oleksandr
+ *
+ */
+public class MappedStorageProvider implements StorageProvider {
+
+	/**
+	 * Backend name
+	 */
+	public static final String NAME = "mapped";
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProvider#getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProvider#create(com.oleksandr.smartfridge.storage.StorageConfig)
+	 */
+	@Override
+	public Storage create(StorageConfig config) {
+		try {
+			return MappedStorage.temporary(config);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+
+/**
+ * Thread-safe storage for read-heavy use. Writers take the write lock of a
+ * {@link StampedLock} and change an {@link InMemoryStorage}; queries read
+ * optimistically without taking any lock and only fall back to the read
+ * lock when a writer got in between.
+ * 
+ * The hash maps of the storage can't be read while they are changed, so
+ * the fill factor of every item type is mirrored into an open addressing
+ * table of primitive arrays. A reader probes the table, validates its
+ * stamp and only then uses what it read; a torn read is thrown away. Reads
+ * which don't overlap a write never write to shared memory, so they scale
+ * with the number of cores.
+ * 
+ * The storage must only be changed through this view.
+ * 
+ * @author oleksandr
+ *
+ */
+public class StampedLockStorage implements Storage {
+
+	/**
+	 * Optimistic reads tried before falling back to the read lock. Writes
+	 * are short, so a retry usually succeeds and spares the writer from
+	 * waiting for readers.
+	 */
+	private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+	private final InMemoryStorage storage;
+
+	private final StampedLock lock = new StampedLock();
+
+	/**
+	 * Fill factor of every item type, replaced when it grows
+	 */
+	private FillTable table = new FillTable(16);
+
+	/**
+	 * Number of reads which had to take the read lock
+	 */
+	private final LongAdder fallbacks = new LongAdder();
+
+	/**
+	 * Constructs a view of a new default storage
+	 */
+	public StampedLockStorage() {
+		this(new InMemoryStorage());
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param storage storage which is only used through this view
+	 */
+	public StampedLockStorage(InMemoryStorage storage) {
+		super();
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+		storage.forEachType(this::putFill);
+		storage.addListener(this::onEvent);
+	}
+
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		return addItem(itemType, itemUUID, name, fillFactor, Item.NO_EXPIRY);
+	}
+
+	@Override
+	public Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		long stamp = lock.writeLock();
+		try {
+			return storage.addItem(itemType, itemUUID, name, fillFactor,
+					expiresAt);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public Item removeItem(String itemUUID) {
+		long stamp = lock.writeLock();
+		try {
+			return storage.removeItem(itemUUID);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public void forgetItem(long itemType) {
+		long stamp = lock.writeLock();
+		try {
+			storage.forgetItem(itemType);
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public Double getFillFactor(long itemType) {
+		for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp == 0) {
+				// a writer holds the lock
+				continue;
+			}
+			FillTable current = table;
+			int slot = current.find(itemType);
+			double fill = slot < 0 ? 0.0 : current.fills[slot];
+			if (lock.validate(stamp)) {
+				return slot < 0 ? null : fill;
+			}
+		}
+		fallbacks.increment();
+		long stamp = lock.readLock();
+		try {
+			FillTable current = table;
+			int slot = current.find(itemType);
+			return slot < 0 ? null : current.fills[slot];
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	@Override
+	public Map<Long, Double> getItems(Double fillFactor) {
+		double threshold = Bin.round(fillFactor);
+		for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp == 0) {
+				continue;
+			}
+			Map<Long, Double> result = table.below(threshold);
+			if (lock.validate(stamp)) {
+				return result;
+			}
+		}
+		fallbacks.increment();
+		long stamp = lock.readLock();
+		try {
+			return table.below(threshold);
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Returns the number of reads which conflicted with a write and took the
+	 * read lock
+	 * 
+	 * @return long
+	 */
+	public long getReadLockFallbackCount() {
+		return fallbacks.sum();
+	}
+
+	/**
+	 * Mirrors the changes of the storage, called under the write lock
+	 */
+	private void onEvent(StorageEvent event) {
+		if (event.getKind() == StorageEvent.Kind.FORGOTTEN) {
+			table.remove(event.getItemType());
+		} else {
+			putFill(event.getItemType(), event.getFillFactor());
+		}
+	}
+
+	private void putFill(long itemType, double fillFactor) {
+		if (!table.put(itemType, fillFactor, Bin.round(fillFactor))) {
+			table = table.grow();
+			table.put(itemType, fillFactor, Bin.round(fillFactor));
+		}
+	}
+
+	/**
+	 * Open addressing table of item type to fill factor with linear probing.
+	 * Only the writer changes it; every loop is bounded by the capacity, so
+	 * an optimistic reader racing with the writer can't get stuck or index
+	 * out of the arrays.
+	 */
+	private static final class FillTable {
+
+		final long[] keys;
+
+		final double[] fills;
+
+		/**
+		 * Fill factors rounded for the threshold comparison
+		 */
+		final double[] rounded;
+
+		final boolean[] used;
+
+		final int mask;
+
+		int size;
+
+		FillTable(int capacity) {
+			keys = new long[capacity];
+			fills = new double[capacity];
+			rounded = new double[capacity];
+			used = new boolean[capacity];
+			mask = capacity - 1;
+		}
+
+		int find(long key) {
+			int slot = slot(key);
+			for (int i = 0; i <= mask; i++) {
+				if (!used[slot]) {
+					return -1;
+				}
+				if (keys[slot] == key) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * Sets the fill factor of the key
+		 * 
+		 * @return false when the table is too full to add the key
+		 */
+		boolean put(long key, double fill, double roundedFill) {
+			int slot = slot(key);
+			while (used[slot] && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			if (!used[slot]) {
+				if ((size + 1) * 2 > keys.length) {
+					return false;
+				}
+				keys[slot] = key;
+				size++;
+			}
+			fills[slot] = fill;
+			rounded[slot] = roundedFill;
+			used[slot] = true;
+			return true;
+		}
+
+		void remove(long key) {
+			int slot = find(key);
+			if (slot < 0) {
+				return;
+			}
+			used[slot] = false;
+			size--;
+			// shift the following entries back, so no probe sequence is
+			// broken by the hole
+			int next = (slot + 1) & mask;
+			while (used[next]) {
+				int home = slot(keys[next]);
+				if (((next - home) & mask) >= ((next - slot) & mask)) {
+					keys[slot] = keys[next];
+					fills[slot] = fills[next];
+					rounded[slot] = rounded[next];
+					used[slot] = true;
+					used[next] = false;
+					slot = next;
+				}
+				next = (next + 1) & mask;
+			}
+		}
+
+		Map<Long, Double> below(double threshold) {
+			HashMap<Long, Double> result = new HashMap<>();
+			for (int slot = 0; slot <= mask; slot++) {
+				if (used[slot] && rounded[slot] < threshold) {
+					result.put(keys[slot], fills[slot]);
+				}
+			}
+			return result;
+		}
+
+		FillTable grow() {
+			FillTable grown = new FillTable(keys.length * 2);
+			for (int slot = 0; slot <= mask; slot++) {
+				if (used[slot]) {
+					grown.put(keys[slot], fills[slot], rounded[slot]);
+				}
+			}
+			return grown;
+		}
+
+		private int slot(long key) {
+			long hash = key * 0x9E3779B97F4A7C15L;
+			return (int) (hash ^ (hash >>> 32)) & mask;
+		}
+	}
+}
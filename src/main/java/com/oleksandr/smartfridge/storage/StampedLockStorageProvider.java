@@ -0,0 +1,31 @@
+package com.oleksandr.smartfridge.storage;
+
+/**
+ * Provides {@link StampedLockStorage} over a new {@link InMemoryStorage}
+ * 
+ * @author oleksandr
+ *
+ */
+public class StampedLockStorageProvider implements StorageProvider {
+
+	/**
+	 * Backend name
+	 */
+	public static final String NAME = "stamped-lock";
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProvider#getName()
+	 */
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProvider#create(com.oleksandr.smartfridge.storage.StorageConfig)
+	 */
+	@Override
+	public Storage create(StorageConfig config) {
+		return new StampedLockStorage(new InMemoryStorage(config));
+	}
+}
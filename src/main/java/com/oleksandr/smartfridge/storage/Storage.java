@@ -30,6 +30,31 @@ public interface Storage {
 			Double fillFactor) throws WrongBinException,
 			BinOverflowException, DoublicateItemException;
 
+	/**
+	 * Adds a perishable item to storage. Storages which don't track expiry
+	 * only accept {@link Item#NO_EXPIRY}.
+	 * 
+	 * @param itemType   - items type
+	 * @param itemUUID   - items UUID. Must be unique.
+	 * @param name       - items name
+	 * @param fillFactor - items fill factor
+	 * @param expiresAt  - expiry time in milliseconds since the epoch or
+	 *                   {@link Item#NO_EXPIRY}
+	 * @return {@link Item}
+	 * @throws WrongBinException
+	 * @throws BinOverflowException
+	 * @throws DoublicateItemException
+	 */
+	default Item addItem(long itemType, String itemUUID, String name,
+			Double fillFactor, long expiresAt) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		if (expiresAt != Item.NO_EXPIRY) {
+			throw new UnsupportedOperationException(
+					"Storage doesn't track expiry");
+		}
+		return addItem(itemType, itemUUID, name, fillFactor);
+	}
+
 	/**
 	 * Removes item from the storage by item's UUID
 	 * 
@@ -0,0 +1,194 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.Objects;
+
+/**
+ * Configuration of an {@link InMemoryStorage}. The expected counts are used
+ * to size the indexes up front, so a storage which is rebuilt with many
+ * items doesn't rehash while it warms up.
+ * 
+ * <pre>
+ * StorageConfig config = StorageConfig.builder().expectedTypes(200)
+ * 		.expectedItems(50000).build();
+ * Storage storage = new InMemoryStorage(config);
+ * </pre>
+ * 
+ * @author oleksandr
+ *
+ */
+public class StorageConfig {
+
+	private final int expectedTypes;
+
+	private final int expectedItems;
+
+	private final BinLayout binLayout;
+
+	private final CompactionPolicy compactionPolicy;
+
+	private StorageConfig(Builder builder) {
+		this.expectedTypes = builder.expectedTypes;
+		this.expectedItems = builder.expectedItems;
+		this.binLayout = builder.binLayout;
+		this.compactionPolicy = builder.compactionPolicy;
+	}
+
+	/**
+	 * Returns the default configuration: small indexes and one standard bin
+	 * per item type
+	 * 
+	 * @return {@link StorageConfig}
+	 */
+	public static StorageConfig defaults() {
+		return builder().build();
+	}
+
+	/**
+	 * Returns a new builder with the default settings
+	 * 
+	 * @return {@link Builder}
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Returns the number of item types the storage is sized for
+	 * 
+	 * @return int
+	 */
+	public int getExpectedTypes() {
+		return expectedTypes;
+	}
+
+	/**
+	 * Returns the number of items the storage is sized for
+	 * 
+	 * @return int
+	 */
+	public int getExpectedItems() {
+		return expectedItems;
+	}
+
+	/**
+	 * Returns the bins of every item type
+	 * 
+	 * @return {@link BinLayout}
+	 */
+	public BinLayout getBinLayout() {
+		return binLayout;
+	}
+
+	/**
+	 * Returns the background compaction policy
+	 * 
+	 * @return {@link CompactionPolicy}
+	 */
+	public CompactionPolicy getCompactionPolicy() {
+		return compactionPolicy;
+	}
+
+	/**
+	 * Returns the initial capacity of a hash map which holds the given
+	 * number of entries without rehashing
+	 * 
+	 * @param entries expected number of entries
+	 * @return initial capacity
+	 */
+	static int mapCapacity(int entries) {
+		return Math.max(16, (int) (entries / 0.75f) + 1);
+	}
+
+	/**
+	 * Checks if a hash map which once held {@code peak} entries is worth
+	 * rebuilding now that it holds {@code size}. Hash maps never shrink, so
+	 * after mass removals their tables stay as large as at the peak.
+	 * 
+	 * @param size current number of entries
+	 * @param peak largest number of entries since the map was built
+	 * @return boolean
+	 */
+	static boolean isOversized(int size, int peak) {
+		return peak > 64 && peak > 4 * size;
+	}
+
+	/**
+	 * Builder of {@link StorageConfig}
+	 */
+	public static class Builder {
+
+		private int expectedTypes = 16;
+
+		private int expectedItems = 16;
+
+		private BinLayout binLayout = BinLayout.single();
+
+		private CompactionPolicy compactionPolicy = CompactionPolicy.none();
+
+		private Builder() {
+		}
+
+		/**
+		 * Sets the number of item types the storage is sized for
+		 * 
+		 * @param expectedTypes number of item types
+		 * @return this builder
+		 */
+		public Builder expectedTypes(int expectedTypes) {
+			if (expectedTypes < 0) {
+				throw new IllegalArgumentException(
+						"Expected types must be not negative");
+			}
+			this.expectedTypes = expectedTypes;
+			return this;
+		}
+
+		/**
+		 * Sets the number of items the storage is sized for
+		 * 
+		 * @param expectedItems number of items
+		 * @return this builder
+		 */
+		public Builder expectedItems(int expectedItems) {
+			if (expectedItems < 0) {
+				throw new IllegalArgumentException(
+						"Expected items must be not negative");
+			}
+			this.expectedItems = expectedItems;
+			return this;
+		}
+
+		/**
+		 * Sets the bins of every item type
+		 * 
+		 * @param binLayout {@link BinLayout}
+		 * @return this builder
+		 */
+		public Builder binLayout(BinLayout binLayout) {
+			this.binLayout = Objects.requireNonNull(binLayout,
+					"Layout reference must be not null");
+			return this;
+		}
+
+		/**
+		 * Sets the background compaction policy
+		 * 
+		 * @param compactionPolicy {@link CompactionPolicy}
+		 * @return this builder
+		 */
+		public Builder compactionPolicy(CompactionPolicy compactionPolicy) {
+			this.compactionPolicy = Objects.requireNonNull(compactionPolicy,
+					"Policy reference must be not null");
+			return this;
+		}
+
+		/**
+		 * Builds the configuration
+		 * 
+		 * @return {@link StorageConfig}
+		 */
+		public StorageConfig build() {
+			return new StorageConfig(this);
+		}
+	}
+}
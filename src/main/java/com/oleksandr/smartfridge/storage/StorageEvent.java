@@ -0,0 +1,117 @@
+package com.oleksandr.smartfridge.storage;
+
+/**
+ * Describes a change of the storage content. Events are emitted after the
+ * change was applied.
+ *
+ * @author oleksandr
+ *
+ */
+public class StorageEvent {
+
+	/**
+	 * Kind of the change
+	 */
+	public enum Kind {
+		/**
+		 * An item was added to the storage
+		 */
+		ADDED,
+		/**
+		 * An item was removed from the storage
+		 */
+		REMOVED,
+		/**
+		 * All items of a type were forgotten
+		 */
+		FORGOTTEN
+	}
+
+	private final Kind kind;
+
+	private final long itemType;
+
+	private final Item item;
+
+	private final double previousFillFactor;
+
+	private final double fillFactor;
+
+	/**
+	 * Constructor
+	 *
+	 * @param kind               kind of the change
+	 * @param itemType           item type affected by the change
+	 * @param item               item added or removed, null for
+	 *                           {@link Kind#FORGOTTEN}
+	 * @param previousFillFactor fill factor of the item type before the
+	 *                           change
+	 * @param fillFactor         fill factor of the item type after the
+	 *                           change
+	 */
+	public StorageEvent(Kind kind, long itemType, Item item,
+			double previousFillFactor, double fillFactor) {
+		super();
+		this.kind = kind;
+		this.itemType = itemType;
+		this.item = item;
+		this.previousFillFactor = previousFillFactor;
+		this.fillFactor = fillFactor;
+	}
+
+	/**
+	 * Returns the kind of the change
+	 *
+	 * @return {@link Kind}
+	 */
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the item type affected by the change
+	 *
+	 * @return long
+	 */
+	public long getItemType() {
+		return itemType;
+	}
+
+	/**
+	 * Returns the item added or removed. It is null for
+	 * {@link Kind#FORGOTTEN} events.
+	 *
+	 * @return {@link Item}
+	 */
+	public Item getItem() {
+		return item;
+	}
+
+	/**
+	 * Returns the fill factor of the item type before the change
+	 *
+	 * @return double
+	 */
+	public double getPreviousFillFactor() {
+		return previousFillFactor;
+	}
+
+	/**
+	 * Returns the fill factor of the item type after the change. It is 0 for
+	 * {@link Kind#FORGOTTEN} events.
+	 *
+	 * @return double
+	 */
+	public double getFillFactor() {
+		return fillFactor;
+	}
+
+	/**
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.format("%s type %d: %.2f -> %.2f", kind, itemType,
+				previousFillFactor, fillFactor);
+	}
+}
@@ -0,0 +1,20 @@
+package com.oleksandr.smartfridge.storage;
+
+/**
+ * Receives the changes of a storage. Listeners are called synchronously by
+ * the thread which changed the storage, right after the change, so they
+ * must be quick and must not change the storage themselves.
+ *
+ * @author oleksandr
+ *
+ */
+@FunctionalInterface
+public interface StorageListener {
+
+	/**
+	 * Called after the storage content has changed
+	 *
+	 * @param event describes the change
+	 */
+	void onEvent(StorageEvent event);
+}
@@ -0,0 +1,117 @@
+package com.oleksandr.smartfridge.storage;
+
+/**
+ * Instrumentation hook of the storage operations. The storage asks
+ * {@link #isEnabled()} before timing an operation, so a disabled probe
+ * costs one call and nothing else.
+ *
+ * {@link #system()} returns the Java Flight Recorder probe when the
+ * optional JFR classes are present and the runtime supports them, a no-op
+ * probe otherwise.
+ *
+ * @author oleksandr
+ *
+ */
+public interface StorageProbe {
+
+	/**
+	 * Storage operations
+	 */
+	enum Operation {
+		ADD, REMOVE, FORGET, GET_FILL_FACTOR, GET_ITEMS
+	}
+
+	/**
+	 * Outcome of an operation
+	 */
+	enum Outcome {
+		/**
+		 * The operation changed or read the storage
+		 */
+		OK,
+		/**
+		 * The item or item type was not in the storage
+		 */
+		NOT_FOUND,
+		/**
+		 * The storage refused the operation
+		 */
+		REJECTED
+	}
+
+	/**
+	 * Probe which records nothing
+	 */
+	StorageProbe NOOP = new StorageProbe() {
+
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public void record(Operation operation, long itemType,
+				long startNanos, Outcome outcome, String reason,
+				double fillBefore, double fillAfter) {
+		}
+	};
+
+	/**
+	 * Checks if operations should be recorded right now
+	 *
+	 * @return boolean
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Records a finished operation
+	 *
+	 * @param operation  the operation
+	 * @param itemType   item type, -1 for {@link Operation#GET_ITEMS}
+	 * @param startNanos {@link System#nanoTime()} at the start
+	 * @param outcome    the outcome
+	 * @param reason     why the operation was rejected, null otherwise
+	 * @param fillBefore fill factor of the item type before the operation,
+	 *                   the threshold for {@link Operation#GET_ITEMS}
+	 * @param fillAfter  fill factor of the item type after the operation,
+	 *                   the threshold for {@link Operation#GET_ITEMS}
+	 */
+	void record(Operation operation, long itemType, long startNanos,
+			Outcome outcome, String reason, double fillBefore,
+			double fillAfter);
+
+	/**
+	 * Returns the probe of the running JVM
+	 *
+	 * @return {@link StorageProbe}
+	 */
+	static StorageProbe system() {
+		return SystemProbe.INSTANCE;
+	}
+
+	/**
+	 * Loads the JFR probe once. Its classes are compiled for Java 11 and
+	 * are left out of Java 8 builds, so any linkage problem means there is
+	 * no JFR support.
+	 */
+	final class SystemProbe {
+
+		static final String JFR_PROBE =
+				"com.oleksandr.smartfridge.jfr.JfrStorageProbe";
+
+		static final StorageProbe INSTANCE = load();
+
+		private SystemProbe() {
+		}
+
+		private static StorageProbe load() {
+			try {
+				return (StorageProbe) Class.forName(JFR_PROBE)
+						.getConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError
+					| ClassCastException e) {
+				return NOOP;
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Service provider of a {@link Storage} backend. Providers are discovered
+ * with {@link ServiceLoader}: a backend lists its provider class in
+ * META-INF/services/com.oleksandr.smartfridge.storage.StorageProvider.
+ * 
+ * @author oleksandr
+ *
+ */
+public interface StorageProvider {
+
+	/**
+	 * Returns the unique name of the backend
+	 * 
+	 * @return backend name
+	 */
+	String getName();
+
+	/**
+	 * Creates a new, empty storage
+	 * 
+	 * @param config {@link StorageConfig}
+	 * @return {@link Storage}
+	 */
+	Storage create(StorageConfig config);
+
+	/**
+	 * Creates a new, empty storage with the default configuration
+	 * 
+	 * @return {@link Storage}
+	 */
+	default Storage create() {
+		return create(StorageConfig.defaults());
+	}
+
+	/**
+	 * Returns all providers found on the class path
+	 * 
+	 * @return list of {@link StorageProvider}
+	 */
+	static List<StorageProvider> providers() {
+		List<StorageProvider> result = new ArrayList<>();
+		ServiceLoader.load(StorageProvider.class).forEach(result::add);
+		return result;
+	}
+
+	/**
+	 * Returns the provider of the named backend
+	 * 
+	 * @param name backend name
+	 * @return {@link StorageProvider}
+	 * @throws IllegalArgumentException when no such backend is available
+	 */
+	static StorageProvider byName(String name) {
+		for (StorageProvider provider : providers()) {
+			if (provider.getName().equals(name)) {
+				return provider;
+			}
+		}
+		throw new IllegalArgumentException(
+				String.format("Storage backend %s is not available", name));
+	}
+}
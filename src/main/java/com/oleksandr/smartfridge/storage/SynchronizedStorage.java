@@ -0,0 +1,68 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.Map;
+import java.util.Objects;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+
+/**
+ * Thread-safe view of a storage which serializes every call on one monitor.
+ * Reads wait for writes and for each other; {@link StampedLockStorage}
+ * lets reads run in parallel.
+ * 
+ * @author oleksandr
+ *
+ */
+public class SynchronizedStorage implements Storage {
+
+	private final Storage storage;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param storage storage which is only used through this view
+	 */
+	public SynchronizedStorage(Storage storage) {
+		super();
+		this.storage = Objects.requireNonNull(storage,
+				"Storage reference must be not null");
+	}
+
+	@Override
+	public synchronized Item addItem(long itemType, String itemUUID,
+			String name, Double fillFactor) throws WrongBinException,
+			BinOverflowException, DoublicateItemException {
+		return storage.addItem(itemType, itemUUID, name, fillFactor);
+	}
+
+	@Override
+	public synchronized Item addItem(long itemType, String itemUUID,
+			String name, Double fillFactor, long expiresAt)
+			throws WrongBinException, BinOverflowException,
+			DoublicateItemException {
+		return storage.addItem(itemType, itemUUID, name, fillFactor,
+				expiresAt);
+	}
+
+	@Override
+	public synchronized Item removeItem(String itemUUID) {
+		return storage.removeItem(itemUUID);
+	}
+
+	@Override
+	public synchronized Map<Long, Double> getItems(Double fillFactor) {
+		return storage.getItems(fillFactor);
+	}
+
+	@Override
+	public synchronized Double getFillFactor(long itemType) {
+		return storage.getFillFactor(itemType);
+	}
+
+	@Override
+	public synchronized void forgetItem(long itemType) {
+		storage.forgetItem(itemType);
+	}
+}
@@ -0,0 +1,422 @@
+package com.oleksandr.smartfridge.stream;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.oleksandr.smartfridge.storage.StorageEvent;
+import com.oleksandr.smartfridge.storage.StorageListener;
+
+/**
+ * Publishes the changes of a storage to any number of subscribers. Register
+ * the publisher as a {@link StorageListener} of the storage.
+ *
+ * Every subscriber gets its own bounded buffer and its own
+ * {@link OverflowPolicy}. Events are delivered on the given executor, never
+ * on the thread which changed the storage, so a slow subscriber only loses
+ * its own events (or, with {@link OverflowPolicy#BLOCK}, slows the storage
+ * down). Each subscriber receives its events sequentially.
+ *
+ * @author oleksandr
+ *
+ */
+public class FillChangePublisher implements Flow.Publisher<StorageEvent>,
+		StorageListener, Closeable {
+
+	/**
+	 * Executor delivering the events
+	 */
+	private final Executor executor;
+
+	/**
+	 * Default buffer size
+	 */
+	private final int bufferSize;
+
+	/**
+	 * Default overflow policy
+	 */
+	private final OverflowPolicy policy;
+
+	private final CopyOnWriteArrayList<BufferedSubscription> subscriptions =
+			new CopyOnWriteArrayList<>();
+
+	private volatile boolean closed;
+
+	/**
+	 * Constructor
+	 *
+	 * @param executor   executor delivering the events to the subscribers
+	 * @param bufferSize default size of the subscriber's buffer
+	 * @param policy     default overflow policy
+	 */
+	public FillChangePublisher(Executor executor, int bufferSize,
+			OverflowPolicy policy) {
+		super();
+		this.executor = Objects.requireNonNull(executor,
+				"Executor reference must be not null");
+		this.policy = Objects.requireNonNull(policy,
+				"Policy reference must be not null");
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException(
+					"Buffer size must be greater then 0");
+		}
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Subscribes with the default buffer size and overflow policy
+	 *
+	 * @see com.oleksandr.smartfridge.stream.Flow.Publisher#subscribe(com.oleksandr.smartfridge.stream.Flow.Subscriber)
+	 */
+	@Override
+	public void subscribe(Flow.Subscriber<? super StorageEvent> subscriber) {
+		subscribe(subscriber, bufferSize, policy);
+	}
+
+	/**
+	 * Subscribes with its own buffer size and overflow policy
+	 *
+	 * @param subscriber the subscriber
+	 * @param bufferSize maximum number of buffered events
+	 * @param policy     what to do when the buffer is full
+	 */
+	public void subscribe(Flow.Subscriber<? super StorageEvent> subscriber,
+			int bufferSize, OverflowPolicy policy) {
+		Objects.requireNonNull(subscriber,
+				"Subscriber reference must be not null");
+		Objects.requireNonNull(policy, "Policy reference must be not null");
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException(
+					"Buffer size must be greater then 0");
+		}
+		BufferedSubscription subscription = new BufferedSubscription(
+				subscriber, bufferSize, policy);
+		subscriber.onSubscribe(subscription);
+		subscriptions.add(subscription);
+		if (closed) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * Offers the event to every subscriber
+	 *
+	 * @see com.oleksandr.smartfridge.storage.StorageListener#onEvent(com.oleksandr.smartfridge.storage.StorageEvent)
+	 */
+	@Override
+	public void onEvent(StorageEvent event) {
+		if (closed) {
+			return;
+		}
+		for (BufferedSubscription subscription : subscriptions) {
+			subscription.offer(event);
+		}
+	}
+
+	/**
+	 * Returns the number of subscribers
+	 *
+	 * @return int
+	 */
+	public int getSubscriberCount() {
+		return subscriptions.size();
+	}
+
+	/**
+	 * Returns the number of events dropped for all current subscribers
+	 *
+	 * @return long
+	 */
+	public long getDroppedCount() {
+		long dropped = 0;
+		for (BufferedSubscription subscription : subscriptions) {
+			dropped += subscription.getDropped();
+		}
+		return dropped;
+	}
+
+	/**
+	 * Completes every subscription once its buffered events are delivered.
+	 * Events published afterwards are ignored.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (BufferedSubscription subscription : subscriptions) {
+			subscription.complete();
+		}
+	}
+
+	/**
+	 * Subscription with its own bounded buffer
+	 */
+	private class BufferedSubscription implements Flow.Subscription {
+
+		private final Flow.Subscriber<? super StorageEvent> subscriber;
+
+		private final int capacity;
+
+		private final OverflowPolicy policy;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private final Condition notFull = lock.newCondition();
+
+		/**
+		 * Buffer of {@link OverflowPolicy#DROP_OLDEST} and
+		 * {@link OverflowPolicy#BLOCK} subscriptions
+		 */
+		private final ArrayDeque<StorageEvent> queue;
+
+		/**
+		 * Buffer of {@link OverflowPolicy#CONFLATE} subscriptions. Maps item
+		 * type to its latest event, in the order of the first buffered event
+		 * of each type.
+		 */
+		private final LinkedHashMap<Long, StorageEvent> latest;
+
+		private long demand;
+
+		private long dropped;
+
+		private boolean draining;
+
+		private boolean cancelled;
+
+		private boolean completed;
+
+		private boolean terminated;
+
+		private Throwable error;
+
+		BufferedSubscription(Flow.Subscriber<? super StorageEvent> subscriber,
+				int capacity, OverflowPolicy policy) {
+			this.subscriber = subscriber;
+			this.capacity = capacity;
+			this.policy = policy;
+			if (policy == OverflowPolicy.CONFLATE) {
+				queue = null;
+				latest = new LinkedHashMap<>();
+			} else {
+				queue = new ArrayDeque<>(Math.min(capacity, 1024));
+				latest = null;
+			}
+		}
+
+		void offer(StorageEvent event) {
+			lock.lock();
+			try {
+				if (cancelled || completed) {
+					return;
+				}
+				switch (policy) {
+				case DROP_OLDEST:
+					if (queue.size() >= capacity) {
+						queue.poll();
+						dropped++;
+					}
+					queue.add(event);
+					break;
+				case CONFLATE:
+					Long key = event.getItemType();
+					if (latest.containsKey(key)) {
+						latest.put(key, event);
+						dropped++;
+					} else {
+						if (latest.size() >= capacity) {
+							Iterator<Long> oldest = latest.keySet().iterator();
+							oldest.next();
+							oldest.remove();
+							dropped++;
+						}
+						latest.put(key, event);
+					}
+					break;
+				case BLOCK:
+					while (queue.size() >= capacity && !cancelled) {
+						try {
+							notFull.await();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							dropped++;
+							return;
+						}
+					}
+					if (cancelled) {
+						return;
+					}
+					queue.add(event);
+					break;
+				}
+			} finally {
+				lock.unlock();
+			}
+			schedule();
+		}
+
+		@Override
+		public void request(long n) {
+			lock.lock();
+			try {
+				if (cancelled) {
+					return;
+				}
+				if (n <= 0) {
+					error = new IllegalArgumentException(
+							"Requested number of items must be positive");
+					clear();
+				} else {
+					demand += n;
+					if (demand < 0) {
+						// unbounded
+						demand = Long.MAX_VALUE;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+			schedule();
+		}
+
+		@Override
+		public void cancel() {
+			lock.lock();
+			try {
+				cancelled = true;
+				clear();
+			} finally {
+				lock.unlock();
+			}
+			subscriptions.remove(this);
+		}
+
+		void complete() {
+			lock.lock();
+			try {
+				completed = true;
+			} finally {
+				lock.unlock();
+			}
+			schedule();
+		}
+
+		long getDropped() {
+			lock.lock();
+			try {
+				return dropped;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean isEmpty() {
+			return queue != null ? queue.isEmpty() : latest.isEmpty();
+		}
+
+		private StorageEvent poll() {
+			if (queue != null) {
+				return queue.poll();
+			}
+			Iterator<StorageEvent> oldest = latest.values().iterator();
+			StorageEvent event = oldest.next();
+			oldest.remove();
+			return event;
+		}
+
+		private void clear() {
+			if (queue != null) {
+				queue.clear();
+			} else {
+				latest.clear();
+			}
+			notFull.signalAll();
+		}
+
+		/**
+		 * Starts a drain task unless one is running or there is nothing to
+		 * deliver
+		 */
+		private void schedule() {
+			lock.lock();
+			try {
+				if (draining || cancelled || terminated) {
+					return;
+				}
+				boolean deliverable = error != null
+						|| (demand > 0 && !isEmpty())
+						|| (completed && isEmpty());
+				if (!deliverable) {
+					return;
+				}
+				draining = true;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				executor.execute(this::drain);
+			} catch (RejectedExecutionException e) {
+				lock.lock();
+				try {
+					draining = false;
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+
+		private void drain() {
+			while (true) {
+				StorageEvent event = null;
+				Throwable failure = null;
+				boolean complete = false;
+
+				lock.lock();
+				try {
+					if (cancelled || terminated) {
+						draining = false;
+						return;
+					}
+					if (error != null) {
+						failure = error;
+						terminated = true;
+					} else if (demand > 0 && !isEmpty()) {
+						event = poll();
+						demand--;
+						notFull.signal();
+					} else if (completed && isEmpty()) {
+						complete = true;
+						terminated = true;
+					} else {
+						draining = false;
+						return;
+					}
+				} finally {
+					lock.unlock();
+				}
+
+				if (failure != null) {
+					subscriptions.remove(this);
+					subscriber.onError(failure);
+				} else if (complete) {
+					subscriptions.remove(this);
+					subscriber.onComplete();
+				} else {
+					try {
+						subscriber.onNext(event);
+					} catch (RuntimeException e) {
+						// a failing subscriber is cancelled
+						cancel();
+					}
+				}
+			}
+		}
+	}
+}
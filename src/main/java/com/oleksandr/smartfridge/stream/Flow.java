@@ -0,0 +1,86 @@
+package com.oleksandr.smartfridge.stream;
+
+/**
+ * Reactive streams interfaces. They mirror {@code java.util.concurrent.Flow}
+ * method for method, which is not available on the Java 8 baseline, so a
+ * publisher can be adapted to the JDK interfaces with a trivial wrapper on
+ * newer runtimes.
+ *
+ * @author oleksandr
+ *
+ */
+public final class Flow {
+
+	private Flow() {
+	}
+
+	/**
+	 * Producer of items received by subscribers
+	 *
+	 * @param <T> the published item type
+	 */
+	@FunctionalInterface
+	public interface Publisher<T> {
+
+		/**
+		 * Adds the subscriber. The subscriber receives
+		 * {@link Subscriber#onSubscribe(Subscription)} first.
+		 *
+		 * @param subscriber the subscriber
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * Receiver of items
+	 *
+	 * @param <T> the subscribed item type
+	 */
+	public interface Subscriber<T> {
+
+		/**
+		 * Called before any other method of the subscription
+		 *
+		 * @param subscription the new subscription
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called with the next item of the subscription
+		 *
+		 * @param item the item
+		 */
+		void onNext(T item);
+
+		/**
+		 * Called when the subscription failed. No other method is called
+		 * afterwards.
+		 *
+		 * @param throwable the failure
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Called when no more items will be delivered
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * Link between a publisher and a subscriber
+	 */
+	public interface Subscription {
+
+		/**
+		 * Adds the given number of items to the unfulfilled demand
+		 *
+		 * @param n number of items, must be positive
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the delivery of items
+		 */
+		void cancel();
+	}
+}
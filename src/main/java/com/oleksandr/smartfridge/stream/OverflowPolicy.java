@@ -0,0 +1,29 @@
+package com.oleksandr.smartfridge.stream;
+
+/**
+ * Decides what happens to an event when a subscriber's buffer is full
+ *
+ * @author oleksandr
+ *
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * The oldest buffered event is dropped to make room for the new one
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * The buffer keeps only the latest event per item type. A new event
+	 * replaces the buffered event of its type. When the buffer is full of
+	 * other types, the oldest one is dropped.
+	 */
+	CONFLATE,
+
+	/**
+	 * The publishing thread waits until the subscriber makes room. Only
+	 * suitable for consumers which must not miss events, as a slow consumer
+	 * slows the storage down.
+	 */
+	BLOCK
+}
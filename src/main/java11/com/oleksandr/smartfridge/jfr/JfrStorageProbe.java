@@ -0,0 +1,49 @@
+package com.oleksandr.smartfridge.jfr;
+
+import jdk.jfr.EventType;
+
+import com.oleksandr.smartfridge.storage.StorageProbe;
+
+/**
+ * {@link StorageProbe} which emits a {@link StorageOperationEvent} per
+ * operation. While no recording has the event enabled, the storage skips
+ * the probe after one flag check.
+ *
+ * @author oleksandr
+ *
+ */
+public class JfrStorageProbe implements StorageProbe {
+
+	private final EventType type = EventType
+			.getEventType(StorageOperationEvent.class);
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProbe#isEnabled()
+	 */
+	@Override
+	public boolean isEnabled() {
+		return type.isEnabled();
+	}
+
+	/**
+	 * @see com.oleksandr.smartfridge.storage.StorageProbe#record(Operation,
+	 *      long, long, Outcome, String, double, double)
+	 */
+	@Override
+	public void record(Operation operation, long itemType, long startNanos,
+			Outcome outcome, String reason, double fillBefore,
+			double fillAfter) {
+		StorageOperationEvent event = new StorageOperationEvent();
+		if (!event.shouldCommit()) {
+			return;
+		}
+		event.operation = operation.name();
+		event.itemType = itemType;
+		event.outcome = outcome.name();
+		event.reason = reason;
+		event.fillBefore = fillBefore;
+		event.fillAfter = fillAfter;
+		event.operationDuration = System.nanoTime() - startNanos;
+		event.commit();
+	}
+}
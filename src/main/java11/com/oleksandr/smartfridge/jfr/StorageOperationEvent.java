@@ -0,0 +1,47 @@
+package com.oleksandr.smartfridge.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of one storage operation
+ *
+ * @author oleksandr
+ *
+ */
+@Name("com.oleksandr.smartfridge.StorageOperation")
+@Label("Storage Operation")
+@Category({ "Smart Fridge", "Storage" })
+@Description("Add, remove, forget or query operation of a storage")
+@StackTrace(false)
+class StorageOperationEvent extends Event {
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Item Type")
+	long itemType;
+
+	@Label("Outcome")
+	String outcome;
+
+	@Label("Rejection Reason")
+	String reason;
+
+	@Label("Fill Before")
+	@Description("Fill factor of the item type before the operation")
+	double fillBefore;
+
+	@Label("Fill After")
+	@Description("Fill factor of the item type after the operation")
+	double fillAfter;
+
+	@Label("Operation Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long operationDuration;
+}
@@ -0,0 +1,181 @@
+package com.oleksandr.smartfridge.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class FleetAnalyticsTest {
+
+	static final long HOUR = 3600000L;
+
+	static final long DAIRY = 1;
+
+	static final long MEAT = 2;
+
+	long now;
+
+	FleetAnalytics analytics;
+
+	@BeforeEach
+	void setUp() {
+		now = 0;
+		// small chunks, so the queries cross chunk boundaries
+		analytics = new FleetAnalytics(4);
+	}
+
+	@Test
+	@DisplayName("Feeds turn storage changes into fill deltas")
+	void testFeed() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.addItem(DAIRY, "itemUUID1", "Milk", 0.3);
+		try (AnalyticsFeed feed = new AnalyticsFeed(analytics, 0, storage,
+				() -> now)) {
+			now = 10;
+			storage.addItem(DAIRY, "itemUUID2", "Yogurt", 0.2);
+			storage.addItem(MEAT, "itemUUID3", "Beef", 0.5);
+			now = 20;
+			storage.removeItem("itemUUID1");
+			storage.forgetItem(MEAT);
+		}
+		storage.addItem(MEAT, "itemUUID4", "Pork", 0.5);
+
+		assertEquals(5, analytics.size());
+		assertEquals(0.5, analytics.sumDeltas(DAIRY, 0, 11), 0.001);
+		assertEquals(-0.3, analytics.sumDeltas(DAIRY, 11, 100), 0.001);
+		// the forgotten meat is gone but was not consumed
+		assertEquals(0.0, analytics.sumDeltas(MEAT, 0, 100), 0.001);
+		assertEquals(0.0,
+				analytics.consumption(MEAT, 0, 100, 100, new int[] { 0 }, 1)
+						.get(0, 0),
+				0.001);
+		assertEquals(0.0, analytics.sumDeltas(99, 0, 100), 0.001);
+	}
+
+	@Test
+	@DisplayName("Fill levels are averaged per group and bucket")
+	void testFillLevels() {
+		// fridges 0 and 1 are in region 0, fridge 2 in region 1, fridge 3
+		// is not in any region
+		int[] regions = { 0, 0, 1, -1 };
+		analytics.append(0, DAIRY, 0, 0.4);
+		analytics.append(1, DAIRY, HOUR / 2, 0.6);
+		analytics.append(2, DAIRY, HOUR / 2, 0.8);
+		analytics.append(3, DAIRY, HOUR / 2, 0.9);
+		analytics.append(0, MEAT, HOUR / 2, 0.9);
+		analytics.append(0, DAIRY, HOUR + 1, -0.4);
+		analytics.append(2, DAIRY, 2 * HOUR + 1, -0.3);
+		analytics.append(4, DAIRY, 2 * HOUR + 1, 0.3);
+
+		GroupedSeries levels = analytics.fillLevels(DAIRY, HOUR, 3 * HOUR,
+				HOUR, regions, 2);
+		assertEquals(2, levels.getBucketCount());
+		assertEquals(2 * HOUR, levels.getBucketStart(1));
+		assertEquals(0.3, levels.get(0, 0), 0.001);
+		assertEquals(0.3, levels.get(0, 1), 0.001);
+		assertEquals(0.8, levels.get(1, 0), 0.001);
+		assertEquals(0.5, levels.get(1, 1), 0.001);
+		assertThrows(IndexOutOfBoundsException.class,
+				() -> levels.get(2, 0));
+
+		GroupedSeries before = analytics.fillLevels(DAIRY, 0, 1, 1, regions,
+				2);
+		assertEquals(0.2, before.get(0, 0), 0.001);
+		assertEquals(0.0, before.get(1, 0), 0.001);
+		assertEquals(0.0, analytics.fillLevels(42, 0, HOUR, HOUR, regions, 2)
+				.get(0, 0), 0.001);
+	}
+
+	@Test
+	@DisplayName("Consumption sums what was taken out per group and bucket")
+	void testConsumption() {
+		int[] regions = { 0, 1 };
+		analytics.append(0, DAIRY, 0, 0.5);
+		analytics.append(0, DAIRY, 10, -0.2);
+		analytics.append(0, DAIRY, 20, -0.1);
+		analytics.append(1, DAIRY, 20, -0.3);
+		analytics.append(1, DAIRY, 150, -0.4);
+		analytics.append(1, MEAT, 20, -0.5);
+
+		GroupedSeries taken = analytics.consumption(DAIRY, 0, 150, 100,
+				regions, 2);
+		assertEquals(2, taken.getBucketCount());
+		assertEquals(0.3, taken.get(0, 0), 0.001);
+		assertEquals(0.3, taken.get(1, 0), 0.001);
+		assertEquals(0.4, taken.get(1, 1), 0.001);
+		assertEquals(0.0, taken.get(0, 1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Queries match a row by row computation")
+	void testRandom() {
+		Random random = new Random(7);
+		int[] regions = { 0, 1, 2, 0, 1, 2, 0, -1 };
+		analytics = new FleetAnalytics(100);
+		int rows = 10000;
+		int[] fridges = new int[rows];
+		long[] types = new long[rows];
+		long[] times = new long[rows];
+		double[] deltas = new double[rows];
+		for (int i = 0; i < rows; i++) {
+			fridges[i] = random.nextInt(regions.length);
+			types[i] = random.nextInt(3);
+			times[i] = random.nextInt(1000);
+			deltas[i] = (random.nextInt(200) - 100) / 100.0;
+			analytics.append(fridges[i], types[i], times[i], deltas[i]);
+		}
+		assertEquals(rows, analytics.size());
+
+		GroupedSeries levels = analytics.fillLevels(1, 200, 800, 100,
+				regions, 3);
+		GroupedSeries taken = analytics.consumption(1, 200, 800, 100,
+				regions, 3);
+		int[] fridgesPerGroup = { 3, 2, 2 };
+		for (int group = 0; group < 3; group++) {
+			for (int bucket = 0; bucket < 6; bucket++) {
+				long end = 300 + bucket * 100;
+				double level = 0;
+				double consumed = 0;
+				for (int i = 0; i < rows; i++) {
+					if (types[i] != 1 || regions[fridges[i]] != group) {
+						continue;
+					}
+					if (times[i] < end) {
+						level += deltas[i];
+					}
+					if (times[i] >= end - 100 && times[i] < end
+							&& deltas[i] < 0) {
+						consumed -= deltas[i];
+					}
+				}
+				assertEquals(level / fridgesPerGroup[group],
+						levels.get(group, bucket), 0.001);
+				assertEquals(consumed, taken.get(group, bucket), 0.001);
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Invalid arguments are rejected")
+	void testInvalid() {
+		int[] regions = { 0 };
+		assertThrows(IllegalArgumentException.class,
+				() -> new FleetAnalytics(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> analytics.append(-1, DAIRY, 0, 0.1));
+		assertThrows(IllegalArgumentException.class,
+				() -> analytics.fillLevels(DAIRY, 0, 0, 1, regions, 1));
+		assertThrows(IllegalArgumentException.class,
+				() -> analytics.consumption(DAIRY, 0, 10, 0, regions, 1));
+		assertThrows(IllegalArgumentException.class,
+				() -> analytics.fillLevels(DAIRY, 0, 10, 1, new int[] { 1 },
+						1));
+		assertThrows(NullPointerException.class,
+				() -> analytics.consumption(DAIRY, 0, 10, 1, null, 1));
+	}
+}
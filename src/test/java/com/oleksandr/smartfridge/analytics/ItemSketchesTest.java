@@ -0,0 +1,236 @@
+package com.oleksandr.smartfridge.analytics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class ItemSketchesTest {
+
+	static final long DAIRY = 1;
+
+	static final long MEAT = 2;
+
+	static List<Double> shuffledRange(int count, long seed) {
+		List<Double> values = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			values.add((double) i);
+		}
+		Collections.shuffle(values, new Random(seed));
+		return values;
+	}
+
+	static void assertQuantiles(KllSketch sketch, int count) {
+		for (double fraction = 0.1; fraction < 0.95; fraction += 0.1) {
+			double rank = sketch.getQuantile(fraction) / count;
+			assertEquals(fraction, rank, 0.02, "quantile " + fraction);
+			assertEquals(fraction, sketch.getRank(fraction * count), 0.02,
+					"rank " + fraction);
+		}
+	}
+
+	/**
+	 * Zipf distributed names: the name of rank r is drawn with a weight of
+	 * 1/r
+	 */
+	static List<String> zipfNames(int names, int count, long seed) {
+		double[] cumulative = new double[names];
+		double sum = 0;
+		for (int r = 0; r < names; r++) {
+			sum += 1.0 / (r + 1);
+			cumulative[r] = sum;
+		}
+		Random random = new Random(seed);
+		List<String> stream = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			double x = random.nextDouble() * sum;
+			int r = 0;
+			while (cumulative[r] < x) {
+				r++;
+			}
+			stream.add("Name" + r);
+		}
+		return stream;
+	}
+
+	@Test
+	@DisplayName("KLL quantiles are within the rank error in fixed memory")
+	void testKllAccuracy() {
+		int count = 200_000;
+		KllSketch sketch = new KllSketch();
+		for (double value : shuffledRange(count, 1)) {
+			sketch.update(value);
+		}
+		assertEquals(count, sketch.getCount());
+		assertEquals(0.0, sketch.getMin());
+		assertEquals(count - 1, sketch.getMax());
+		assertEquals(0.0, sketch.getQuantile(0.0));
+		assertEquals(count - 1, sketch.getQuantile(1.0));
+		assertTrue(sketch.getRetained() < 4 * KllSketch.DEFAULT_K,
+				"retained " + sketch.getRetained());
+		assertQuantiles(sketch, count);
+
+		assertTrue(Double.isNaN(new KllSketch().getQuantile(0.5)));
+		assertThrows(IllegalArgumentException.class,
+				() -> sketch.getQuantile(1.5));
+		assertThrows(IllegalArgumentException.class,
+				() -> sketch.update(Double.NaN));
+		assertThrows(IllegalArgumentException.class, () -> new KllSketch(2));
+	}
+
+	@Test
+	@DisplayName("Merged KLL sketches summarize the whole stream")
+	void testKllMerge() {
+		int count = 200_000;
+		KllSketch[] parts = new KllSketch[4];
+		for (int i = 0; i < parts.length; i++) {
+			parts[i] = new KllSketch(KllSketch.DEFAULT_K, i);
+		}
+		int i = 0;
+		for (double value : shuffledRange(count, 2)) {
+			parts[i++ % parts.length].update(value);
+		}
+		KllSketch merged = new KllSketch();
+		for (KllSketch part : parts) {
+			merged.merge(part);
+		}
+		assertEquals(count, merged.getCount());
+		assertEquals(0.0, merged.getMin());
+		assertEquals(count - 1, merged.getMax());
+		assertTrue(merged.getRetained() < 4 * KllSketch.DEFAULT_K);
+		assertQuantiles(merged, count);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> merged.merge(new KllSketch(100)));
+	}
+
+	@Test
+	@DisplayName("Count-min estimates are never below the true count")
+	void testCountMin() {
+		CountMinSketch sketch = new CountMinSketch(256, 4);
+		Map<String, Long> exact = new HashMap<>();
+		for (String name : zipfNames(1000, 50_000, 3)) {
+			sketch.add(name, 1);
+			exact.merge(name, 1L, Long::sum);
+		}
+		assertEquals(50_000, sketch.getTotal());
+		int far = 0;
+		for (Map.Entry<String, Long> entry : exact.entrySet()) {
+			long estimate = sketch.estimate(entry.getKey());
+			assertTrue(estimate >= entry.getValue());
+			// e / width of the stream
+			if (estimate - entry.getValue() > 50_000 * Math.E / 256) {
+				far++;
+			}
+		}
+		assertTrue(far < exact.size() / 20, far + " estimates far off");
+		assertTrue(sketch.estimate("never added") < 50_000);
+
+		CountMinSketch other = new CountMinSketch(256, 4);
+		other.add("Name0", 10);
+		long before = sketch.estimate("Name0");
+		sketch.merge(other);
+		assertEquals(before + 10, sketch.estimate("Name0"));
+		assertThrows(IllegalArgumentException.class,
+				() -> sketch.merge(new CountMinSketch(128, 4)));
+		assertThrows(IllegalArgumentException.class,
+				() -> new CountMinSketch(100, 4));
+	}
+
+	@Test
+	@DisplayName("Heavy hitters find the most frequent names, merged too")
+	void testHeavyHitters() {
+		List<String> stream = zipfNames(500, 100_000, 4);
+		Map<String, Long> exact = new HashMap<>();
+		HeavyHitters all = new HeavyHitters();
+		HeavyHitters first = new HeavyHitters();
+		HeavyHitters second = new HeavyHitters();
+		for (int i = 0; i < stream.size(); i++) {
+			String name = stream.get(i);
+			exact.merge(name, 1L, Long::sum);
+			all.add(name);
+			(i % 2 == 0 ? first : second).add(name);
+		}
+		first.merge(second);
+		for (HeavyHitters hitters : new HeavyHitters[] { all, first }) {
+			Map<String, Long> top = hitters.getTop();
+			assertEquals(HeavyHitters.DEFAULT_SIZE, top.size());
+			Iterator<String> names = top.keySet().iterator();
+			for (int r = 0; r < 5; r++) {
+				assertEquals("Name" + r, names.next());
+			}
+			for (Map.Entry<String, Long> entry : top.entrySet()) {
+				assertTrue(entry.getValue() >= exact.get(entry.getKey()));
+			}
+		}
+		assertEquals(stream.size(), first.getTotal());
+	}
+
+	@Test
+	@DisplayName("Sketches listen to storages and merge across fridges")
+	void testItemSketches() throws Exception {
+		List<ItemSketches> fridges = new ArrayList<>();
+		Random random = new Random(5);
+		for (int fridge = 0; fridge < 3; fridge++) {
+			InMemoryStorage storage = new InMemoryStorage();
+			storage.addItem(MEAT, "before", "Ham", 0.5);
+			ItemSketches sketches = new ItemSketches();
+			storage.forEachItem(sketches::add);
+			storage.addListener(sketches);
+			for (int i = 0; i < 2000; i++) {
+				String uuid = fridge + "-" + i;
+				// milk cartons are 0.1 to 0.3, cheese 0.01 to 0.05
+				if (i % 4 == 0) {
+					storage.addItem(DAIRY, uuid, "Cheese",
+							0.01 * (1 + random.nextInt(5)));
+				} else {
+					storage.addItem(DAIRY, uuid, i % 3 == 0 ? "Kefir" : "Milk",
+							0.1 * (1 + random.nextInt(3)));
+				}
+				storage.removeItem(uuid);
+			}
+			storage.forgetItem(MEAT);
+			fridges.add(sketches);
+		}
+
+		ItemSketches fridge = fridges.get(0);
+		assertEquals(2000, fridge.getCount(DAIRY));
+		assertEquals(1, fridge.getCount(MEAT));
+		assertEquals(Double.valueOf(0.5),
+				fridge.getFillFactorQuantile(MEAT, 0.5));
+		assertNull(fridge.getFillFactorQuantile(3, 0.5));
+		assertTrue(fridge.getTopNames(3).isEmpty());
+		assertEquals(0.25, fridge.getFillFactorRank(DAIRY, 0.05), 0.02);
+		assertEquals("Milk",
+				fridge.getTopNames(DAIRY).keySet().iterator().next());
+
+		ItemSketches fleet = new ItemSketches();
+		fridges.forEach(fleet::merge);
+		assertEquals(6000, fleet.getCount(DAIRY));
+		assertEquals(3, fleet.getCount(MEAT));
+		assertEquals(2, fleet.getItemTypes().size());
+		// 3 of 4 items are cartons of 0.1, 0.2 or 0.3
+		assertEquals(0.2, fleet.getFillFactorQuantile(DAIRY, 0.6), 1e-9);
+		assertEquals(0.01, fleet.getFillFactorQuantile(DAIRY, 0.0), 1e-9);
+		Map<String, Long> top = fleet.getTopNames();
+		Iterator<String> names = top.keySet().iterator();
+		assertEquals("Milk", names.next());
+		assertEquals("Cheese", names.next());
+		assertEquals("Kefir", names.next());
+		assertEquals("Ham", names.next());
+		assertTrue(top.get("Ham") >= 3);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> fleet.merge(new ItemSketches(100, 4)));
+	}
+}
@@ -0,0 +1,166 @@
+package com.oleksandr.smartfridge.expiry;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.Item;
+
+class ExpiryTrackerTest {
+
+	static final long START = 1_000_000_000L;
+
+	static final long HOUR = 3_600_000L;
+
+	AtomicLong now;
+
+	InMemoryStorage storage;
+
+	ExpiryTracker tracker;
+
+	List<String> expired;
+
+	@BeforeEach
+	void setUp() {
+		now = new AtomicLong(START);
+		storage = new InMemoryStorage();
+		tracker = new ExpiryTracker(storage, 1000, now::get);
+		expired = new ArrayList<>();
+		tracker.addListener(item -> expired.add(item.getUUID()));
+	}
+
+	@Test
+	@DisplayName("Perishable items expire once their time has come")
+	void testExpiry() throws Exception {
+		storage.addItem(1, "itemUUID1", "Milk", 0.2, START + 2 * HOUR);
+		storage.addItem(1, "itemUUID2", "Yogurt", 0.2, START + 30 * 24 * HOUR);
+		storage.addItem(2, "itemUUID3", "Salt", 0.2);
+		assertEquals(2, tracker.getPendingCount());
+
+		now.set(START + HOUR);
+		assertEquals(0, tracker.advance());
+
+		now.set(START + 2 * HOUR);
+		assertEquals(1, tracker.advance());
+		assertEquals(Arrays.asList("itemUUID1"), expired);
+		assertEquals(0.4, storage.getFillFactor(1), 0.001);
+
+		now.set(START + 365 * 24 * HOUR);
+		assertEquals(1, tracker.advance());
+		assertEquals(Arrays.asList("itemUUID1", "itemUUID2"), expired);
+		assertEquals(0, tracker.getPendingCount());
+	}
+
+	@Test
+	@DisplayName("Removing or forgetting an item cancels its timer")
+	void testCancel() throws Exception {
+		storage.addItem(1, "itemUUID1", "Milk", 0.2, START + HOUR);
+		storage.addItem(1, "itemUUID2", "Yogurt", 0.2, START + HOUR);
+		storage.addItem(2, "itemUUID3", "Beef", 0.2, START + HOUR);
+		storage.addItem(2, "itemUUID4", "Pork", 0.2, START + HOUR);
+
+		storage.removeItem("itemUUID1");
+		storage.forgetItem(2);
+		assertEquals(1, tracker.getPendingCount());
+
+		now.set(START + HOUR);
+		tracker.advance();
+		assertEquals(Arrays.asList("itemUUID2"), expired);
+	}
+
+	@Test
+	@DisplayName("Expiring items are listed soonest first")
+	void testExpiringItems() throws Exception {
+		storage.addItem(1, "itemUUID1", "Milk", 0.2, START + 5 * HOUR);
+		storage.addItem(1, "itemUUID2", "Yogurt", 0.2, START + HOUR);
+		storage.addItem(2, "itemUUID3", "Beef", 0.2, START + 48 * HOUR);
+		storage.addItem(3, "itemUUID4", "Salt", 0.2);
+
+		assertEquals(Arrays.asList("itemUUID2", "itemUUID1"),
+				uuids(tracker.getExpiringItems(24 * HOUR)));
+		assertTrue(tracker.getExpiringItems(HOUR / 2).isEmpty());
+
+		// an expired item is listed until advance() reports it
+		now.set(START + 2 * HOUR);
+		assertEquals(Arrays.asList("itemUUID2"),
+				uuids(tracker.getExpiringItems(0)));
+		tracker.advance();
+		assertEquals(Arrays.asList("itemUUID1", "itemUUID3"),
+				uuids(tracker.getExpiringItems(Long.MAX_VALUE)));
+	}
+
+	@Test
+	@DisplayName("Items already in the storage are tracked")
+	void testExistingItems() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.addItem(1, "itemUUID1", "Milk", 0.2, START + HOUR);
+		try (ExpiryTracker tracker = new ExpiryTracker(storage, 1000,
+				now::get)) {
+			assertEquals(1, tracker.getPendingCount());
+			now.set(START + HOUR);
+			assertEquals(1, tracker.advance());
+		}
+	}
+
+	@Test
+	@DisplayName("The wheel fires every timer at its tick across all levels")
+	void testWheel() {
+		Random random = new Random(42);
+		long[] time = { 5 };
+		TimingWheel<Integer> wheel = new TimingWheel<>(1, time[0]);
+		Map<Integer, Long> pending = new HashMap<>();
+		List<TimingWheel.Timer<Integer>> timers = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			// spread the deadlines over all levels and the overflow list
+			long deadline = time[0] + 1
+					+ (random.nextLong() >>> (28 + random.nextInt(36)));
+			timers.add(wheel.schedule(i, deadline));
+			pending.put(i, deadline);
+		}
+		for (int i = 0; i < timers.size(); i += 3) {
+			wheel.cancel(timers.get(i));
+			pending.remove(i);
+		}
+		assertEquals(pending.size(), wheel.size());
+
+		while (!pending.isEmpty()) {
+			time[0] += 1 + (random.nextLong() >>> (28 + random.nextInt(36)));
+
+			long horizon = time[0] + random.nextInt(1 << 20);
+			Set<Integer> listed = new HashSet<>();
+			wheel.forEachBefore(horizon, listed::add);
+			assertEquals(pending.entrySet().stream()
+					.filter(e -> e.getValue() <= horizon).map(e -> e.getKey())
+					.collect(Collectors.toSet()), listed);
+
+			wheel.advance(time[0], id -> {
+				Long deadline = pending.remove(id);
+				assertNotNull(deadline);
+				assertTrue(deadline <= time[0]);
+			});
+			for (long deadline : pending.values()) {
+				assertTrue(deadline > time[0]);
+			}
+		}
+		assertEquals(0, wheel.size());
+	}
+
+	private static List<String> uuids(List<Item> items) {
+		return items.stream().map(Item::getUUID).collect(Collectors.toList());
+	}
+
+}
@@ -0,0 +1,258 @@
+package com.oleksandr.smartfridge.ingest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.ingest.AdmissionController.Admission;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class AdmissionControllerTest {
+	Logger logger = LoggerFactory.getLogger(AdmissionControllerTest.class);
+
+	/**
+	 * Item type whose forget blocks the drain thread until released
+	 */
+	static final long GATE = 999;
+
+	CountDownLatch entered;
+
+	CountDownLatch release;
+
+	List<String> applied;
+
+	SmartFridgeManager manager;
+
+	AdmissionController controller;
+
+	@BeforeEach
+	void setUp() {
+		entered = new CountDownLatch(1);
+		release = new CountDownLatch(1);
+		applied = Collections.synchronizedList(new ArrayList<>());
+		SmartFridgeManager impl = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		manager = new SmartFridgeManager() {
+
+			@Override
+			public void handleItemRemoved(String itemUUID) {
+				applied.add("-" + itemUUID);
+				impl.handleItemRemoved(itemUUID);
+			}
+
+			@Override
+			public void handleItemAdded(long itemType, String itemUUID,
+					String name, Double fillFactor) {
+				applied.add("+" + itemUUID);
+				impl.handleItemAdded(itemType, itemUUID, name, fillFactor);
+			}
+
+			@Override
+			public Object[] getItems(Double fillFactor) {
+				return impl.getItems(fillFactor);
+			}
+
+			@Override
+			public Double getFillFactor(long itemType) {
+				return impl.getFillFactor(itemType);
+			}
+
+			@Override
+			public void forgetItem(long itemType) {
+				if (itemType == GATE) {
+					entered.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				impl.forgetItem(itemType);
+			}
+		};
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		release.countDown();
+		if (controller != null) {
+			controller.close();
+		}
+	}
+
+	/**
+	 * Blocks the drain thread, so the following events stay queued
+	 */
+	void closeGate() throws InterruptedException {
+		controller.forgetItem(GATE);
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	@DisplayName("Events are applied and queries see them after a flush")
+	void testApply() throws Exception {
+		controller = new AdmissionController(manager,
+				AdmissionPolicy.defaults());
+		controller.handleItemAdded(1, "itemUUID1", "Milk", 0.3);
+		controller.handleItemAdded(1, "itemUUID2", "Yogurt", 0.2);
+		controller.handleItemRemoved("itemUUID1");
+		controller.flush();
+
+		assertEquals(0.2, controller.getFillFactor(1), 0.001);
+		assertEquals(1, controller.getItems(0.5).length);
+		assertEquals(3, controller.getAppliedCount());
+		assertEquals(0, controller.getQueueDepth());
+	}
+
+	@Test
+	@DisplayName("Removals overtake adds but not the add of their own item")
+	void testPriority() throws Exception {
+		controller = new AdmissionController(manager,
+				AdmissionPolicy.defaults());
+		closeGate();
+		controller.submitItemAdded(1, "itemUUID1", "Milk", 0.3);
+		controller.submitItemAdded(1, "itemUUID2", "Yogurt", 0.2);
+		controller.submitItemRemoved("itemUUID3");
+		controller.submitItemRemoved("itemUUID1");
+		release.countDown();
+		controller.flush();
+
+		assertEquals(
+				Arrays.asList("-itemUUID3", "+itemUUID1",
+						"+itemUUID2", "-itemUUID1"),
+				applied);
+		assertEquals(0.2, controller.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Duplicate adds are dropped and full queues shed adds")
+	void testShedding() throws Exception {
+		controller = new AdmissionController(manager,
+				AdmissionPolicy.builder().capacity(3).watermarks(1, 2)
+						.build());
+		closeGate();
+		assertEquals(Admission.QUEUED,
+				controller.submitItemAdded(1, "itemUUID1", "Milk", 0.3));
+		assertEquals(Admission.SHED_DUPLICATE,
+				controller.submitItemAdded(1, "itemUUID1", "Milk", 0.3));
+		assertEquals(Admission.QUEUED,
+				controller.submitItemAdded(1, "itemUUID2", "Yogurt", 0.2));
+		assertEquals(Admission.QUEUED,
+				controller.submitItemAdded(1, "itemUUID3", "Kefir", 0.1));
+		assertEquals(Admission.SHED_OVERLOAD,
+				controller.submitItemAdded(1, "itemUUID4", "Cream", 0.1));
+
+		// a removal evicts the newest add instead of waiting
+		controller.submitItemRemoved("itemUUID9");
+		assertEquals(3, controller.getQueueDepth());
+		release.countDown();
+		controller.flush();
+
+		assertEquals(Arrays.asList("-itemUUID9", "+itemUUID1",
+				"+itemUUID2"), applied);
+		assertEquals(1, controller.getShedDuplicateCount());
+		assertEquals(1, controller.getShedOverloadCount());
+		assertEquals(1, controller.getEvictedCount());
+		assertEquals(0, controller.getDeferredCount());
+		assertEquals(5, controller.getAdmittedCount());
+	}
+
+	@Test
+	@DisplayName("A queued removal lets its item be added again")
+	void testReAdd() throws Exception {
+		controller = new AdmissionController(manager,
+				AdmissionPolicy.defaults());
+		closeGate();
+		assertEquals(Admission.QUEUED,
+				controller.submitItemAdded(1, "itemUUID1", "Milk", 0.3));
+		controller.submitItemRemoved("itemUUID1");
+		assertEquals(Admission.QUEUED,
+				controller.submitItemAdded(1, "itemUUID1", "Milk", 0.3));
+		assertEquals(Admission.SHED_DUPLICATE,
+				controller.submitItemAdded(1, "itemUUID1", "Milk", 0.3));
+		release.countDown();
+		controller.flush();
+
+		assertEquals(Arrays.asList("+itemUUID1", "-itemUUID1", "+itemUUID1"),
+				applied);
+		assertEquals(0.3, controller.getFillFactor(1), 0.001);
+		assertEquals(1, controller.getShedDuplicateCount());
+	}
+
+	@Test
+	@DisplayName("Removals wait for room when no add can be evicted")
+	void testDeferredRemoval() throws Exception {
+		controller = new AdmissionController(manager,
+				AdmissionPolicy.builder().capacity(2).watermarks(0, 2)
+						.build());
+		closeGate();
+		controller.submitItemRemoved("itemUUID1");
+		controller.submitItemRemoved("itemUUID2");
+		Thread producer = new Thread(
+				() -> controller.submitItemRemoved("itemUUID3"));
+		producer.start();
+		producer.join(200);
+		assertTrue(producer.isAlive());
+
+		release.countDown();
+		producer.join(5000);
+		assertFalse(producer.isAlive());
+		controller.flush();
+		assertEquals(Arrays.asList("-itemUUID1", "-itemUUID2",
+				"-itemUUID3"), applied);
+		assertEquals(1, controller.getDeferredCount());
+	}
+
+	@Test
+	@DisplayName("The backpressure signal follows the watermarks")
+	void testBackpressure() throws Exception {
+		controller = new AdmissionController(manager,
+				AdmissionPolicy.builder().capacity(10).watermarks(1, 3)
+						.build());
+		List<Boolean> signals = Collections
+				.synchronizedList(new ArrayList<>());
+		controller.addListener(signals::add);
+		closeGate();
+		for (int i = 0; i < 4; i++) {
+			controller.submitItemAdded(1, "itemUUID" + i, "Milk", 0.1);
+		}
+		assertTrue(controller.isUnderPressure());
+		assertEquals(Collections.singletonList(true), signals);
+
+		release.countDown();
+		controller.flush();
+		assertFalse(controller.isUnderPressure());
+		assertEquals(Arrays.asList(true, false), signals);
+	}
+
+	@Test
+	@DisplayName("A closed controller applies what waits and rejects events")
+	void testClose() throws Exception {
+		controller = new AdmissionController(manager,
+				AdmissionPolicy.defaults());
+		controller.handleItemAdded(1, "itemUUID1", "Milk", 0.3);
+		controller.close();
+		assertEquals(1, controller.getAppliedCount());
+		assertThrows(IllegalStateException.class,
+				() -> controller.handleItemAdded(1, "itemUUID2", "Milk", 0.3));
+		assertThrows(IllegalStateException.class,
+				() -> controller.getFillFactor(1));
+		assertThrows(IllegalArgumentException.class,
+				() -> AdmissionPolicy.builder().capacity(2).watermarks(1, 3)
+						.build());
+	}
+}
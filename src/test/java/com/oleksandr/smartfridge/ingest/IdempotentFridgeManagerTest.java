@@ -0,0 +1,136 @@
+package com.oleksandr.smartfridge.ingest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class IdempotentFridgeManagerTest {
+	Logger logger = LoggerFactory.getLogger(IdempotentFridgeManagerTest.class);
+
+	@Test
+	@DisplayName("Retried add events are dropped")
+	void testRetriesAreDropped() {
+		IdempotentFridgeManager fManager = new IdempotentFridgeManager(
+				new SmartFridgeManagerImpl(new InMemoryStorage(), logger),
+				new DedupWindow(1000, 60000, 1000));
+
+		fManager.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+		fManager.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+		fManager.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+
+		assertEquals(0.2, fManager.getFillFactor(1), 0.001);
+		assertEquals(2, fManager.getDuplicateCount());
+	}
+
+	@Test
+	@DisplayName("A removed item can be added again")
+	void testReinsert() {
+		IdempotentFridgeManager fManager = new IdempotentFridgeManager(
+				new SmartFridgeManagerImpl(new InMemoryStorage(), logger),
+				new DedupWindow(1000, 60000, 1000));
+
+		fManager.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+		fManager.handleItemRemoved("itemUUID1");
+		fManager.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+
+		assertEquals(0.2, fManager.getFillFactor(1), 0.001);
+		assertEquals(0, fManager.getDuplicateCount());
+	}
+
+	@Test
+	@DisplayName("The UUIDs of a forgotten type can be added again")
+	void testForget() {
+		IdempotentFridgeManager fManager = new IdempotentFridgeManager(
+				new SmartFridgeManagerImpl(new InMemoryStorage(), logger),
+				new DedupWindow(1000, 60000, 1000));
+
+		fManager.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+		fManager.handleItemAdded(2, "itemUUID2", "Beef", 0.4);
+		fManager.forgetItem(1);
+		fManager.handleItemAdded(3, "itemUUID1", "Salad", 0.3);
+		fManager.handleItemAdded(2, "itemUUID2", "Beef", 0.4);
+
+		assertNull(fManager.getFillFactor(1));
+		assertEquals(0.3, fManager.getFillFactor(3), 0.001);
+		assertEquals(0.4, fManager.getFillFactor(2), 0.001);
+		assertEquals(1, fManager.getDuplicateCount());
+	}
+
+	@Test
+	@DisplayName("A rejected add may be retried")
+	void testRejectedRetry() {
+		IdempotentFridgeManager fManager = new IdempotentFridgeManager(
+				new SmartFridgeManagerImpl(new InMemoryStorage(), logger),
+				new DedupWindow(1000, 60000, 1000));
+
+		fManager.handleItemAdded(1, "itemUUID1", "Milk", 0.7);
+		assertTrue(fManager.handleItemAdded("event2", 1, "itemUUID2",
+				"Yogurt", 0.4));
+		assertEquals(0.7, fManager.getFillFactor(1), 0.001);
+
+		fManager.handleItemRemoved("itemUUID1");
+		assertTrue(fManager.handleItemAdded("event2", 1, "itemUUID2",
+				"Yogurt", 0.4));
+		assertEquals(0.4, fManager.getFillFactor(1), 0.001);
+		assertFalse(fManager.handleItemAdded("event2", 1, "itemUUID2",
+				"Yogurt", 0.4));
+		assertEquals(1, fManager.getDuplicateCount());
+	}
+
+	@Test
+	@DisplayName("Explicit event ids are deduplicated")
+	void testEventIds() {
+		IdempotentFridgeManager fManager = new IdempotentFridgeManager(
+				new SmartFridgeManagerImpl(new InMemoryStorage(), logger),
+				new DedupWindow(1000, 60000, 1000));
+
+		assertTrue(fManager.handleItemAdded("event1", 1, "itemUUID1", "Milk",
+				0.2));
+		assertFalse(fManager.handleItemAdded("event1", 1, "itemUUID1",
+				"Milk", 0.2));
+		assertTrue(fManager.handleItemAdded("event2", 1, "itemUUID2",
+				"Yogurt", 0.3));
+
+		assertEquals(0.5, fManager.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("The window forgets ids after two generations")
+	void testWindowExpiry() {
+		AtomicLong now = new AtomicLong();
+		DedupWindow window = new DedupWindow(1000, 100, 1000, now::get);
+
+		assertFalse(window.isDuplicate("event1"));
+		assertTrue(window.isDuplicate("event1"));
+
+		now.set(150);
+		assertTrue(window.isDuplicate("event1"));
+
+		now.set(450);
+		assertFalse(window.isDuplicate("event1"));
+	}
+
+	@Test
+	@DisplayName("The exact set is bounded and unconfirmed hits pass")
+	void testExactCapacity() {
+		DedupWindow window = new DedupWindow(100000, 60000, 100);
+
+		for (int i = 0; i < 10000; i++) {
+			assertFalse(window.isDuplicate("event" + i));
+		}
+		assertEquals(100, window.getExactSize());
+
+		// recent ids are confirmed, old ones are not
+		assertTrue(window.isDuplicate("event9999"));
+		assertFalse(window.isDuplicate("event0"));
+	}
+
+}
@@ -0,0 +1,234 @@
+package com.oleksandr.smartfridge.journal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class EventLogTest {
+	Logger logger = LoggerFactory.getLogger(EventLogTest.class);
+
+	Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("event-log");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		Files.walk(dir).sorted(Comparator.reverseOrder())
+				.forEach(p -> p.toFile().delete());
+	}
+
+	@Test
+	@DisplayName("Varints round trip")
+	void testVarint() {
+		long[] values = { 0, 1, -1, 63, -64, 64, 127, 128, 300, -300,
+				Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE,
+				Long.MIN_VALUE };
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		for (long value : values) {
+			Varint.putSigned(buffer, value);
+		}
+		buffer.flip();
+		for (long value : values) {
+			assertEquals(value, Varint.getSigned(buffer));
+		}
+
+		buffer.clear();
+		Varint.putUnsigned(buffer, 127);
+		assertEquals(1, buffer.position());
+		assertEquals(1, Varint.sizeOfUnsigned(127));
+		assertEquals(2, Varint.sizeOfUnsigned(128));
+		assertEquals(Varint.MAX_LENGTH, Varint.sizeOfUnsigned(-1L));
+	}
+
+	@Test
+	@DisplayName("Events are read back in order with their timestamps")
+	void testWriteRead() throws IOException {
+		Path log = dir.resolve("events.log");
+		try (EventLogWriter writer = new EventLogWriter(log)) {
+			writer.itemAdded(1000, 1, "ItemUUID1", "Milk", 0.2);
+			writer.itemAdded(1005, 2, "ItemUUID2", "Beef", 0.35);
+			writer.itemRemoved(1003, "ItemUUID1");
+			writer.itemForgotten(2000, -7);
+			writer.itemTypeAdded(2000, 3);
+		}
+
+		List<String> events = new ArrayList<>();
+		try (EventLogReader reader = new EventLogReader(log)) {
+			long count = reader.accept(new EventLogVisitor() {
+				@Override
+				public void itemAdded(long timestamp, long itemType,
+						String itemUUID, String name, double fillFactor) {
+					events.add(String.format("%d add %d %s %s %.4f",
+							timestamp, itemType, itemUUID, name, fillFactor));
+				}
+
+				@Override
+				public void itemRemoved(long timestamp, String itemUUID) {
+					events.add(String.format("%d remove %s", timestamp,
+							itemUUID));
+				}
+
+				@Override
+				public void itemForgotten(long timestamp, long itemType) {
+					events.add(String.format("%d forget %d", timestamp,
+							itemType));
+				}
+
+				@Override
+				public void itemTypeAdded(long timestamp, long itemType) {
+					events.add(String.format("%d type %d", timestamp,
+							itemType));
+				}
+			});
+			assertEquals(5, count);
+			assertEquals(Files.size(log), reader.getValidLength());
+		}
+
+		assertEquals(5, events.size());
+		assertEquals("1000 add 1 ItemUUID1 Milk 0.2000", events.get(0));
+		assertEquals("1005 add 2 ItemUUID2 Beef 0.3500", events.get(1));
+		assertEquals("1003 remove ItemUUID1", events.get(2));
+		assertEquals("2000 forget -7", events.get(3));
+		assertEquals("2000 type 3", events.get(4));
+	}
+
+	@Test
+	@DisplayName("A log replayed into a manager reproduces its state")
+	void testReplay() throws IOException {
+		Path log = dir.resolve("replay.log");
+		long time = System.currentTimeMillis();
+		try (EventLogWriter writer = new EventLogWriter(log)) {
+			for (int i = 0; i < 10000; i++) {
+				writer.itemAdded(time + i, i % 100, "item-" + i, "Yogurt",
+						0.01);
+			}
+			for (int i = 0; i < 10000; i += 2) {
+				writer.itemRemoved(time + 10000 + i, "item-" + i);
+			}
+			writer.itemForgotten(time + 30000, 99);
+		}
+
+		// dictionary coded names and deltas keep the records short
+		assertTrue(Files.size(log) < 15 * 15000);
+
+		SmartFridgeManager fManager = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		try (EventLogReader reader = new EventLogReader(log)) {
+			assertEquals(15001, reader.replay(fManager));
+		}
+
+		assertEquals(1.0, fManager.getFillFactor(1), 0.001);
+		assertEquals(0.0, fManager.getFillFactor(0), 0.001);
+		assertNull(fManager.getFillFactor(99));
+	}
+
+	@Test
+	@DisplayName("A torn last record is ignored")
+	void testTruncatedLog() throws IOException {
+		Path log = dir.resolve("torn.log");
+		try (EventLogWriter writer = new EventLogWriter(log)) {
+			writer.itemAdded(1, 1, "ItemUUID1", "Milk", 0.2);
+			writer.itemAdded(2, 1, "ItemUUID2", "Sour Cream", 0.3);
+		}
+		long size = Files.size(log);
+		try (FileChannel channel = FileChannel.open(log,
+				StandardOpenOption.WRITE)) {
+			channel.truncate(size - 3);
+		}
+
+		SmartFridgeManager fManager = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		try (EventLogReader reader = new EventLogReader(log)) {
+			assertEquals(1, reader.replay(fManager));
+			assertTrue(reader.getValidLength() < size - 3);
+		}
+		assertEquals(0.2, fManager.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Visitor failures and corrupt records are not a torn tail")
+	void testCorruptRecord() throws IOException {
+		Path log = dir.resolve("visited.log");
+		try (EventLogWriter writer = new EventLogWriter(log)) {
+			writer.itemAdded(1, 1, "ItemUUID1", "Milk", 0.2);
+		}
+		try (EventLogReader reader = new EventLogReader(log)) {
+			assertThrows(IllegalArgumentException.class,
+					() -> reader.accept(new EventLogVisitor() {
+						@Override
+						public void itemAdded(long timestamp, long itemType,
+								String itemUUID, String name,
+								double fillFactor) {
+							throw new IllegalArgumentException("Rejected");
+						}
+
+						@Override
+						public void itemRemoved(long timestamp,
+								String itemUUID) {
+						}
+
+						@Override
+						public void itemForgotten(long timestamp,
+								long itemType) {
+						}
+
+						@Override
+						public void itemTypeAdded(long timestamp,
+								long itemType) {
+						}
+					}));
+		}
+
+		// an add naming a name which was never written
+		ByteBuffer buffer = ByteBuffer.allocate(64);
+		buffer.putInt(EventLog.MAGIC).put(EventLog.VERSION);
+		Varint.putUnsigned(buffer, EventLog.ADD);
+		Varint.putSigned(buffer, 1);
+		Varint.putSigned(buffer, 1);
+		Varint.putUnsigned(buffer, 1);
+		buffer.put((byte) 'a');
+		Varint.putUnsigned(buffer, 5);
+		Varint.putSigned(buffer, 2000);
+		Path corrupt = dir.resolve("corrupt.log");
+		Files.write(corrupt, Arrays.copyOf(buffer.array(),
+				buffer.position()));
+		SmartFridgeManager fManager = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		try (EventLogReader reader = new EventLogReader(corrupt)) {
+			assertThrows(IllegalStateException.class,
+					() -> reader.replay(fManager));
+		}
+	}
+
+	@Test
+	@DisplayName("A file which is not an event log is rejected")
+	void testNotALog() throws IOException {
+		Path file = dir.resolve("other.bin");
+		Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6 });
+		assertThrows(IOException.class, () -> new EventLogReader(file));
+	}
+
+}
@@ -0,0 +1,192 @@
+package com.oleksandr.smartfridge.journal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class GroupCommitLogTest {
+	Logger logger = LoggerFactory.getLogger(GroupCommitLogTest.class);
+
+	Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("group-commit");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		Files.walk(dir).sorted(Comparator.reverseOrder())
+				.forEach(p -> p.toFile().delete());
+	}
+
+	long count(Path log) throws IOException {
+		try (EventLogReader reader = new EventLogReader(log)) {
+			return reader.accept(new EventLogVisitor() {
+				@Override
+				public void itemAdded(long timestamp, long itemType,
+						String itemUUID, String name, double fillFactor) {
+				}
+
+				@Override
+				public void itemRemoved(long timestamp, String itemUUID) {
+				}
+
+				@Override
+				public void itemForgotten(long timestamp, long itemType) {
+				}
+
+				@Override
+				public void itemTypeAdded(long timestamp, long itemType) {
+				}
+			});
+		}
+	}
+
+	@Test
+	@DisplayName("Concurrent writers share the forces")
+	void testGroupCommit() throws Exception {
+		Path path = dir.resolve("group.log");
+		GroupCommitPolicy policy = GroupCommitPolicy.builder()
+				.maxDelay(20, TimeUnit.MILLISECONDS).batchEvents(8).build();
+		int threads = 8;
+		int events = 50;
+		try (GroupCommitLog log = new GroupCommitLog(path, policy)) {
+			List<Thread> writers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				int writer = t;
+				writers.add(new Thread(() -> {
+					for (int i = 0; i < events; i++) {
+						log.itemAdded(i, writer, writer + "-" + i, "Milk",
+								0.1);
+					}
+				}));
+			}
+			writers.forEach(Thread::start);
+			for (Thread writer : writers) {
+				writer.join();
+			}
+			assertEquals(threads * events, log.getDurableSequence());
+			assertTrue(log.getSyncCount() < threads * events / 2,
+					"forces " + log.getSyncCount());
+		}
+		assertEquals(threads * events, count(path));
+	}
+
+	@Test
+	@DisplayName("Appended events are forced on sync and on close")
+	void testSyncAndClose() throws Exception {
+		Path path = dir.resolve("close.log");
+		GroupCommitLog log = new GroupCommitLog(path,
+				GroupCommitPolicy.defaults());
+		long first = log.appendAdded(1, 1, "itemUUID1", "Milk", 0.3);
+		long second = log.appendRemoved(2, "itemUUID1");
+		assertEquals(1, first);
+		assertEquals(2, second);
+		log.sync();
+		assertEquals(2, log.getDurableSequence());
+		log.awaitDurable(first);
+
+		log.appendForgotten(3, 1);
+		log.close();
+		assertEquals(3, count(path));
+		assertThrows(IllegalStateException.class,
+				() -> log.appendForgotten(4, 1));
+	}
+
+	@Test
+	@DisplayName("A failed write fails the waiting and the later writers")
+	void testFailure() throws Exception {
+		Path path = dir.resolve("failed.log");
+		FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		GroupCommitLog log = new GroupCommitLog(channel,
+				GroupCommitPolicy.defaults());
+		log.itemAdded(1, 1, "itemUUID1", "Milk", 0.3);
+
+		channel.close();
+		assertThrows(UncheckedIOException.class,
+				() -> log.itemRemoved(2, "itemUUID1"));
+		assertThrows(IllegalStateException.class,
+				() -> log.appendRemoved(3, "itemUUID1"));
+		assertThrows(IOException.class, log::close);
+		assertEquals(1, log.getDurableSequence());
+	}
+
+	@Test
+	@DisplayName("Invalid policies are rejected")
+	void testPolicy() {
+		assertThrows(IllegalArgumentException.class,
+				() -> GroupCommitPolicy.builder().batchEvents(0));
+		assertThrows(IllegalArgumentException.class, () -> GroupCommitPolicy
+				.builder().maxDelay(-1, TimeUnit.MILLISECONDS));
+		GroupCommitPolicy policy = GroupCommitPolicy.defaults();
+		assertEquals(0, policy.getMaxDelayNanos());
+		assertEquals(1024, policy.getBatchEvents());
+		assertFalse(policy.isForceMetadata());
+	}
+
+	@Test
+	@DisplayName("The log of a durable manager replays into the same state")
+	void testDurableManager() throws Exception {
+		Path path = dir.resolve("manager.log");
+		SmartFridgeManager fridge = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		try (GroupCommitLog log = new GroupCommitLog(path,
+				GroupCommitPolicy.defaults())) {
+			DurableFridgeManager manager = new DurableFridgeManager(fridge,
+					log, () -> 1000);
+			List<Thread> writers = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				long type = t;
+				writers.add(new Thread(() -> {
+					for (int i = 0; i < 100; i++) {
+						manager.handleItemAdded(type, type + "-" + i, "Item",
+								0.01);
+						if (i % 3 == 0) {
+							manager.handleItemRemoved(type + "-" + i);
+						}
+					}
+				}));
+			}
+			writers.forEach(Thread::start);
+			for (Thread writer : writers) {
+				writer.join();
+			}
+			manager.forgetItem(3);
+			// not logged, the storage rejects it
+			manager.handleItemAdded(1, null, "Milk", 0.1);
+			assertEquals(4 * (100 + 34) + 1, log.getDurableSequence());
+		}
+
+		SmartFridgeManager replayed = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		try (EventLogReader reader = new EventLogReader(path)) {
+			assertEquals(4 * (100 + 34) + 1, reader.replay(replayed));
+		}
+		for (long t = 0; t < 4; t++) {
+			assertEquals(fridge.getFillFactor(t), replayed.getFillFactor(t));
+		}
+		assertNull(replayed.getFillFactor(3));
+	}
+}
@@ -0,0 +1,264 @@
+package com.oleksandr.smartfridge.journal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.storage.BinLayout;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageConfig;
+
+class SegmentedJournalTest {
+	Logger logger = LoggerFactory.getLogger(SegmentedJournalTest.class);
+
+	Path dir;
+
+	SmartFridgeManager reference;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("segmented-journal");
+		reference = new SmartFridgeManagerImpl(new InMemoryStorage(), logger);
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		Files.walk(dir).sorted(Comparator.reverseOrder())
+				.forEach(p -> p.toFile().delete());
+	}
+
+	/**
+	 * Adds items and removes all but the last 20 of them, in the journal
+	 * and in the reference manager
+	 */
+	void churn(SegmentedJournal journal, int from, int count) {
+		for (int i = from; i < from + count; i++) {
+			long itemType = i % 5;
+			journal.itemAdded(i, itemType, "item-" + i, "Item " + itemType,
+					0.01);
+			reference.handleItemAdded(itemType, "item-" + i,
+					"Item " + itemType, 0.01);
+			if (i >= 20) {
+				journal.itemRemoved(i, "item-" + (i - 20));
+				reference.handleItemRemoved("item-" + (i - 20));
+			}
+		}
+	}
+
+	static Map<Long, Double> content(SmartFridgeManager manager) {
+		Map<Long, Double> content = new TreeMap<>();
+		for (Object item : manager.getItems(2.0)) {
+			double[] array = (double[]) item;
+			content.put((long) array[0], array[1]);
+		}
+		return content;
+	}
+
+	void assertReplaysReference(SegmentedJournal journal) throws IOException {
+		SmartFridgeManager replayed = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		journal.replay(replayed);
+		assertEquals(content(reference), content(replayed));
+	}
+
+	List<Path> files() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+
+	long size(List<Path> files) throws IOException {
+		long size = 0;
+		for (Path file : files) {
+			size += Files.size(file);
+		}
+		return size;
+	}
+
+	JournalCompactionPolicy manual(long segmentBytes) {
+		return JournalCompactionPolicy.builder().segmentBytes(segmentBytes)
+				.minSegments(Integer.MAX_VALUE)
+				.maxBytesPerSecond(JournalCompactionPolicy.UNLIMITED).build();
+	}
+
+	@Test
+	@DisplayName("Compaction keeps only the live items")
+	void testCompaction() throws IOException {
+		SegmentedJournal closed;
+		try (SegmentedJournal journal = new SegmentedJournal(dir,
+				manual(4096), logger)) {
+			closed = journal;
+			churn(journal, 0, 10_000);
+			// an empty type survives the compaction
+			journal.itemAdded(1, 7, "empty", "Empty", 0.1);
+			journal.itemRemoved(1, "empty");
+			reference.handleItemAdded(7L, "empty", "Empty", 0.1);
+			reference.handleItemRemoved("empty");
+			journal.itemForgotten(2, 4);
+			reference.forgetItem(4L);
+			journal.sync();
+			assertTrue(journal.getSealedCount() > 10);
+			long before = size(files());
+
+			assertTrue(journal.compact());
+			assertEquals(0, journal.getSealedCount());
+			assertEquals(1, journal.getCompactionCount());
+			assertFalse(journal.compact());
+			long after = size(files());
+			assertTrue(after < before / 10, after + " of " + before);
+			assertEquals(2, files().size());
+			assertReplaysReference(journal);
+
+			churn(journal, 10_000, 100);
+		}
+		assertThrows(IllegalStateException.class,
+				() -> closed.itemForgotten(3, 3));
+
+		try (SegmentedJournal journal = new SegmentedJournal(dir,
+				manual(4096), logger)) {
+			assertReplaysReference(journal);
+			assertTrue(journal.compact());
+			assertReplaysReference(journal);
+		}
+	}
+
+	@Test
+	@DisplayName("Compaction replays into the fridge's bin layout")
+	void testBinLayout() throws IOException {
+		StorageConfig config = StorageConfig.builder()
+				.binLayout(BinLayout.uniform(2, 1.0)).build();
+		try (SegmentedJournal journal = new SegmentedJournal(dir,
+				manual(16), logger)) {
+			// two items no single standard bin can hold
+			journal.itemAdded(1, 1, "item-1", "Melon", 0.8);
+			journal.itemAdded(2, 1, "item-2", "Melon", 0.8);
+			journal.sync();
+			List<Path> before = files();
+			assertThrows(IOException.class, journal::compact);
+			assertEquals(0, journal.getCompactionCount());
+			assertEquals(before, files());
+		}
+
+		try (SegmentedJournal journal = new SegmentedJournal(dir,
+				manual(16), config, logger)) {
+			journal.itemAdded(3, 1, "item-3", "Kiwi", 0.1);
+			journal.sync();
+			assertTrue(journal.compact());
+			SmartFridgeManager replayed = new SmartFridgeManagerImpl(
+					new InMemoryStorage(config), logger);
+			assertEquals(3, journal.replay(replayed));
+			assertEquals(0.85, replayed.getFillFactor(1), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("The compactor runs in the background while events arrive")
+	void testBackgroundCompaction() throws Exception {
+		JournalCompactionPolicy policy = JournalCompactionPolicy.builder()
+				.segmentBytes(2048).minSegments(4)
+				.checkInterval(5, TimeUnit.MILLISECONDS).build();
+		try (SegmentedJournal journal = new SegmentedJournal(dir, policy,
+				logger)) {
+			int from = 0;
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (journal.getCompactionCount() < 3
+					&& System.nanoTime() < deadline) {
+				churn(journal, from, 500);
+				from += 500;
+			}
+			assertTrue(journal.getCompactionCount() >= 3);
+			churn(journal, from, 500);
+		}
+		try (SegmentedJournal journal = new SegmentedJournal(dir,
+				JournalCompactionPolicy.defaults(), logger)) {
+			assertReplaysReference(journal);
+		}
+	}
+
+	@Test
+	@DisplayName("Files a crash left behind are ignored and deleted")
+	void testRecovery() throws IOException {
+		try (SegmentedJournal journal = new SegmentedJournal(dir,
+				manual(4096), logger)) {
+			churn(journal, 0, 2_000);
+			journal.compact();
+		}
+		// a segment the last compaction covered and a snapshot in progress
+		Path stale = dir.resolve(String.format("segment-%020d.log", 0));
+		try (EventLogWriter writer = new EventLogWriter(stale)) {
+			writer.itemAdded(1, 1, "ghost", "Ghost", 0.1);
+		}
+		Path temporary = dir.resolve(String.format("snapshot-%020d.log.tmp",
+				1000));
+		Files.write(temporary, new byte[] { 1, 2, 3 });
+
+		try (SegmentedJournal journal = new SegmentedJournal(dir,
+				manual(4096), logger)) {
+			assertReplaysReference(journal);
+		}
+		assertFalse(Files.exists(stale));
+		assertFalse(Files.exists(temporary));
+	}
+
+	@Test
+	@DisplayName("The compactor keeps to its byte rate")
+	void testThrottle() throws IOException {
+		long rate = 256 * 1024;
+		JournalCompactionPolicy policy = JournalCompactionPolicy.builder()
+				.segmentBytes(4096).minSegments(Integer.MAX_VALUE)
+				.maxBytesPerSecond(rate).build();
+		try (SegmentedJournal journal = new SegmentedJournal(dir, policy,
+				logger)) {
+			churn(journal, 0, 5_000);
+			journal.sync();
+			List<Path> files = files();
+			// everything but the active segment is read
+			long sealed = size(files.subList(0, files.size() - 1));
+
+			long start = System.nanoTime();
+			assertTrue(journal.compact());
+			long elapsed = System.nanoTime() - start;
+			long expected = TimeUnit.SECONDS.toNanos(1) * sealed / rate;
+			assertTrue(elapsed >= expected * 9 / 10,
+					elapsed + "ns for " + sealed + " bytes");
+			assertReplaysReference(journal);
+		}
+	}
+
+	@Test
+	@DisplayName("Invalid policies are rejected")
+	void testPolicy() {
+		assertThrows(IllegalArgumentException.class,
+				() -> JournalCompactionPolicy.builder().segmentBytes(5));
+		assertThrows(IllegalArgumentException.class,
+				() -> JournalCompactionPolicy.builder().minSegments(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> JournalCompactionPolicy.builder().maxBytesPerSecond(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> JournalCompactionPolicy.builder().checkInterval(0,
+						TimeUnit.SECONDS));
+		JournalCompactionPolicy policy = JournalCompactionPolicy.defaults();
+		assertEquals(4 << 20, policy.getSegmentBytes());
+		assertEquals(4, policy.getMinSegments());
+		assertEquals(1000, policy.getCheckIntervalMillis());
+		assertEquals(16 << 20, policy.getMaxBytesPerSecond());
+	}
+}
@@ -0,0 +1,190 @@
+package com.oleksandr.smartfridge.management;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.journal.EventLogReader;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+
+class ManagementTest {
+	Logger logger = LoggerFactory.getLogger(ManagementTest.class);
+
+	Path dir;
+
+	InMemoryStorage storage;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		dir = Files.createTempDirectory("management");
+		storage = new InMemoryStorage();
+		storage.addItem(1, "itemUUID1", "Milk", 0.2);
+		storage.addItem(2, "itemUUID2", "Yogurt", 0.3);
+		storage.addItem(2, "itemUUID3", "Beef", 0.1);
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		Files.walk(dir).sorted(Comparator.reverseOrder())
+				.forEach(p -> p.toFile().delete());
+	}
+
+	@Test
+	@DisplayName("The manager counts handled and rejected events")
+	void testManagerStatistics() {
+		SmartFridgeManagerImpl manager = new SmartFridgeManagerImpl(storage,
+				logger);
+		ManagerStatistics statistics = manager.getStatistics();
+		manager.handleItemAdded(3, "itemUUID4", "Salad", 0.4);
+		manager.handleItemAdded(3, "itemUUID4", "Salad", 0.4);
+		manager.handleItemAdded(3, "itemUUID5", "Salad", 0.7);
+		manager.handleItemAdded(3, "itemUUID6", "Salad", 1.5);
+		manager.handleItemRemoved("itemUUID1");
+		manager.handleItemRemoved("itemUUID1");
+		manager.forgetItem(2);
+
+		assertEquals(1, statistics.getAddedCount());
+		assertEquals(1, statistics.getRejectedDuplicateCount());
+		assertEquals(1, statistics.getRejectedOverflowCount());
+		assertEquals(1, statistics.getRejectedInvalidCount());
+		assertEquals(3, statistics.getRejectedCount());
+		assertEquals(1, statistics.getRemovedCount());
+		assertEquals(1, statistics.getUnknownRemovalCount());
+		assertEquals(1, statistics.getForgottenCount());
+
+		statistics.reset();
+		assertEquals(0, statistics.getAddedCount());
+		assertEquals(0, statistics.getRejectedCount());
+	}
+
+	@Test
+	@DisplayName("Storage statistics follow the storage")
+	void testStorageStatistics() throws Exception {
+		try (StorageStatistics statistics = new StorageStatistics(storage)) {
+			assertEquals(2, statistics.getItemTypeCount());
+			assertEquals(3, statistics.getItemCount());
+			assertEquals(0.6, statistics.getTotalFill(), 0.001);
+			assertEquals(0.3, statistics.getAverageFill(), 0.001);
+			assertEquals(storage.getBinCount(1) + storage.getBinCount(2),
+					statistics.getBinCount());
+			long heap = statistics.getEstimatedHeapBytes();
+			assertTrue(heap > 0);
+
+			storage.addItem(3, "itemUUID4", "Salad", 0.4);
+			storage.removeItem("itemUUID1");
+			assertEquals(3, statistics.getItemTypeCount());
+			assertEquals(1, statistics.getEmptyItemTypeCount());
+			assertEquals(3, statistics.getItemCount());
+			assertEquals(0.8, statistics.getTotalFill(), 0.001);
+			assertEquals(2, statistics.getMutationCount());
+			assertTrue(statistics.getEstimatedHeapBytes() > heap);
+
+			storage.forgetItem(1);
+			storage.forgetItem(2);
+			assertEquals(1, statistics.getItemTypeCount());
+			assertEquals(0, statistics.getEmptyItemTypeCount());
+			assertEquals(1, statistics.getItemCount());
+			assertEquals(0.4, statistics.getTotalFill(), 0.001);
+			assertEquals(storage.getBinCount(3), statistics.getBinCount());
+			assertEquals(1.0 / storage.getBinCount(3),
+					statistics.getAverageItemsPerBin(), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("A snapshot replays into the same content")
+	void testSnapshot() throws Exception {
+		storage.addItem(3, "itemUUID4", "Salad", 0.4);
+		storage.removeItem("itemUUID4");
+		Path path = dir.resolve("snapshot.log");
+		try (StorageStatistics statistics = new StorageStatistics(storage)) {
+			assertEquals(4, statistics.snapshotTo(path.toString()));
+		}
+
+		InMemoryStorage copy = new InMemoryStorage();
+		List<StorageEvent> events = new ArrayList<>();
+		copy.addListener(events::add);
+		try (EventLogReader reader = new EventLogReader(path)) {
+			reader.replay(new SmartFridgeManagerImpl(copy, logger));
+		}
+		assertEquals(storage.getItems(2.0), copy.getItems(2.0));
+		assertEquals(3, copy.getItemCount());
+		assertEquals(0.0, copy.getFillFactor(3), 0.001);
+		// the empty type is restored without any item events
+		assertEquals(3, events.size());
+		assertTrue(events.stream()
+				.allMatch(e -> e.getKind() == StorageEvent.Kind.ADDED
+						&& e.getItemType() != 3));
+
+		try (StorageStatistics statistics = new StorageStatistics(storage)) {
+			assertThrows(IllegalStateException.class, () -> statistics
+					.snapshotTo(dir.resolve("missing/snapshot.log").toString()));
+		}
+	}
+
+	@Test
+	@DisplayName("Compaction rebuilds the maps emptied by removals")
+	void testCompact() throws Exception {
+		for (int i = 0; i < 1000; i++) {
+			storage.addItem(10 + i % 10, "bulkUUID" + i, "Item", 0.001);
+		}
+		try (StorageStatistics statistics = new StorageStatistics(storage)) {
+			assertEquals(0, statistics.compact());
+			for (int i = 0; i < 1000; i++) {
+				storage.removeItem("bulkUUID" + i);
+			}
+			assertTrue(statistics.compact() > 0);
+			assertEquals(0, statistics.compact());
+			assertEquals(3, storage.getItemCount());
+			assertEquals(0.2, storage.getFillFactor(1), 0.001);
+			assertEquals(0.0, storage.getFillFactor(10), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("Statistics are registered with the platform MBean server")
+	void testRegistration() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		SmartFridgeManagerImpl manager = new SmartFridgeManagerImpl(storage,
+				logger);
+		manager.handleItemAdded(3, "itemUUID4", "Salad", 0.4);
+		try (StorageStatistics statistics = new StorageStatistics(storage)) {
+			ObjectName managerName = FridgeManagement.register("test",
+					manager.getStatistics());
+			ObjectName storageName = FridgeManagement.register("test",
+					statistics);
+			try {
+				assertEquals(FridgeManagement.managerName("test"), managerName);
+				assertEquals(1L,
+						server.getAttribute(managerName, "AddedCount"));
+				assertEquals(3, server.getAttribute(storageName,
+						"ItemTypeCount"));
+				assertEquals(0, server.invoke(storageName, "compact",
+						new Object[0], new String[0]));
+			} finally {
+				FridgeManagement.unregister(managerName);
+				FridgeManagement.unregister(storageName);
+			}
+			assertFalse(server.isRegistered(managerName));
+			FridgeManagement.unregister(storageName);
+		}
+	}
+}
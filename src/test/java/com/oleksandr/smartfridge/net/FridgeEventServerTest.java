@@ -0,0 +1,213 @@
+package com.oleksandr.smartfridge.net;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class FridgeEventServerTest {
+	Logger logger = LoggerFactory.getLogger(FridgeEventServerTest.class);
+
+	FridgeEventServer server;
+
+	InetSocketAddress address;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		SmartFridgeManager fManager = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger);
+		server = new FridgeEventServer(fManager, logger);
+		address = server.start(new InetSocketAddress("127.0.0.1", 0));
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.close();
+	}
+
+	@Test
+	@DisplayName("Events sent over loopback are applied to the manager")
+	void testRoundTrip() throws IOException {
+		try (FridgeEventClient client = new FridgeEventClient(address)) {
+			client.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+			client.handleItemAdded(2, "itemUUID2", "Beef", 0.3);
+			client.handleItemAdded(2, "itemUUID3", "Pork", 0.3);
+
+			assertEquals(0.2, client.getFillFactor(1), 0.001);
+			assertEquals(0.6, client.getFillFactor(2), 0.001);
+			assertNull(client.getFillFactor(3));
+
+			Object[] items = client.getItems(0.5);
+			assertEquals(1, items.length);
+			double[] array = (double[]) items[0];
+			assertEquals(1, array[0]);
+			assertEquals(0.2, array[1], 0.001);
+
+			client.handleItemRemoved("itemUUID2");
+			client.forgetItem(1);
+
+			assertNull(client.getFillFactor(1));
+			assertEquals(0.3, client.getFillFactor(2), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("Pipelined events are acknowledged in batches")
+	void testPipelining() throws IOException {
+		int types = 500;
+		int itemsPerType = 5;
+		try (FridgeEventClient client = new FridgeEventClient(address)) {
+			for (int t = 0; t < types; t++) {
+				for (int i = 0; i < itemsPerType; i++) {
+					client.handleItemAdded(t, "item-" + t + "-" + i,
+							"Item " + i, 0.1);
+				}
+			}
+			client.sync();
+
+			assertEquals(types * itemsPerType, client.getAckedCount());
+			assertEquals(client.getLastSentId(), client.getLastAckedId());
+			assertEquals(0.5, client.getFillFactor(0), 0.001);
+			assertEquals(0.5, client.getFillFactor(types - 1), 0.001);
+			assertEquals(types, client.getItems(0.6).length);
+		}
+	}
+
+	@Test
+	@DisplayName("A sync after a query waits only for the events")
+	void testSyncAfterQuery() throws IOException {
+		try (FridgeEventClient client = new FridgeEventClient(address)) {
+			client.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+			assertEquals(0.2, client.getFillFactor(1), 0.001);
+			assertTimeoutPreemptively(Duration.ofSeconds(5), client::sync);
+
+			client.handleItemAdded(1, "itemUUID2", "Yogurt", 0.3);
+			assertEquals(0.5, client.getFillFactor(1), 0.001);
+			assertEquals(0, client.getItems(0.1).length);
+			client.handleItemRemoved("itemUUID1");
+			assertTimeoutPreemptively(Duration.ofSeconds(5), client::sync);
+			assertEquals(3, client.getAckedCount());
+			assertEquals(6, client.getLastSentId());
+			assertEquals(6, client.getLastAckedId());
+		}
+	}
+
+	@Test
+	@DisplayName("Events of several clients are applied to the same manager")
+	void testSeveralClients() throws IOException {
+		try (FridgeEventClient client1 = new FridgeEventClient(address);
+				FridgeEventClient client2 = new FridgeEventClient(address)) {
+			client1.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+			client2.handleItemAdded(1, "itemUUID2", "Yogurt", 0.3);
+			client1.sync();
+			client2.sync();
+
+			assertEquals(0.5, client1.getFillFactor(1), 0.001);
+			assertEquals(0.5, client2.getFillFactor(1), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("A list of items larger than a frame comes in parts")
+	void testLargeItemList() throws IOException {
+		int types = Protocol.MAX_ITEMS_PER_FRAME * 2 + 10;
+		try (FridgeEventClient client = new FridgeEventClient(address)) {
+			for (int t = 0; t < types; t++) {
+				client.handleItemAdded(t, "item-" + t, "Item", 0.1);
+			}
+			assertEquals(types, client.getItems(0.5).length);
+			assertEquals(0, client.getItems(0.1).length);
+			// the connection stays usable
+			assertEquals(0.1, client.getFillFactor(types - 1), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("A string too long to encode leaves the pipeline intact")
+	void testTooLongString() throws IOException {
+		StringBuilder uuid = new StringBuilder();
+		while (uuid.length() <= 0xFFFF) {
+			uuid.append("itemUUID");
+		}
+		try (FridgeEventClient client = new FridgeEventClient(address)) {
+			client.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+			assertThrows(IllegalArgumentException.class,
+					() -> client.handleItemAdded(1, uuid.toString(), "Milk",
+							0.2));
+			assertThrows(IllegalArgumentException.class,
+					() -> client.handleItemRemoved(uuid.toString()));
+			client.handleItemAdded(1, "itemUUID2", "Yogurt", 0.3);
+			client.sync();
+			assertEquals(0.5, client.getFillFactor(1), 0.001);
+			assertEquals(3, client.getLastSentId());
+		}
+	}
+
+	@Test
+	@DisplayName("A failing manager closes only the connection of the request")
+	void testManagerFailure() throws IOException {
+		SmartFridgeManager failing = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger) {
+			@Override
+			public void handleItemAdded(long itemType, String itemUUID,
+					String name, Double fillFactor) {
+				if ("Poison".equals(name)) {
+					throw new IllegalStateException("Manager is closed");
+				}
+				super.handleItemAdded(itemType, itemUUID, name, fillFactor);
+			}
+		};
+		try (FridgeEventServer failingServer = new FridgeEventServer(failing,
+				logger)) {
+			InetSocketAddress failingAddress = failingServer
+					.start(new InetSocketAddress("127.0.0.1", 0));
+			try (FridgeEventClient client = new FridgeEventClient(
+					failingAddress)) {
+				client.handleItemAdded(1, "itemUUID1", "Poison", 0.2);
+				assertThrows(UncheckedIOException.class, client::sync);
+			}
+			try (FridgeEventClient client = new FridgeEventClient(
+					failingAddress)) {
+				client.handleItemAdded(1, "itemUUID2", "Milk", 0.2);
+				assertEquals(0.2, client.getFillFactor(1), 0.001);
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("A malformed frame closes only the offending connection")
+	void testMalformedFrame() throws IOException {
+		try (Socket socket = new Socket(address.getAddress(),
+				address.getPort())) {
+			DataOutputStream output = new DataOutputStream(
+					socket.getOutputStream());
+			output.writeInt(Protocol.MAX_FRAME_SIZE + 1);
+			output.flush();
+
+			InputStream input = socket.getInputStream();
+			assertEquals(-1, input.read());
+		}
+
+		try (FridgeEventClient client = new FridgeEventClient(address)) {
+			client.handleItemAdded(1, "itemUUID1", "Milk", 0.2);
+			assertEquals(0.2, client.getFillFactor(1), 0.001);
+		}
+	}
+
+}
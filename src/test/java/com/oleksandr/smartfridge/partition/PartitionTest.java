@@ -0,0 +1,217 @@
+package com.oleksandr.smartfridge.partition;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class PartitionTest {
+	Logger logger = LoggerFactory.getLogger(PartitionTest.class);
+
+	static final int FRIDGES = 200;
+
+	List<PartitionWorker> workers = new ArrayList<>();
+
+	int sequence;
+
+	@AfterEach
+	void stopWorkers() throws IOException {
+		for (PartitionWorker worker : workers) {
+			worker.close();
+		}
+	}
+
+	InetSocketAddress startWorker() throws IOException {
+		PartitionWorker worker = new PartitionWorker(logger);
+		workers.add(worker);
+		return worker.start(0);
+	}
+
+	static String fridgeId(int i) {
+		return "fridge-" + i;
+	}
+
+	/**
+	 * Sends the same events to the router and to local reference managers
+	 */
+	void feed(PartitionRouter router,
+			Map<String, SmartFridgeManager> reference, Random random,
+			int events) {
+		for (int i = 0; i < events; i++) {
+			int e = sequence++;
+			String fridgeId = fridgeId(random.nextInt(FRIDGES));
+			SmartFridgeManager expected = reference.get(fridgeId);
+			SmartFridgeManager actual = router.getManager(fridgeId);
+			long itemType = random.nextInt(5);
+			int choice = random.nextInt(10);
+			if (choice < 7) {
+				String uuid = fridgeId + "-" + e;
+				double fillFactor = 0.01 * (1 + random.nextInt(10));
+				expected.handleItemAdded(itemType, uuid, "item", fillFactor);
+				actual.handleItemAdded(itemType, uuid, "item", fillFactor);
+			} else if (choice < 9) {
+				String uuid = fridgeId + "-" + random.nextInt(e + 1);
+				expected.handleItemRemoved(uuid);
+				actual.handleItemRemoved(uuid);
+			} else {
+				expected.forgetItem(itemType);
+				actual.forgetItem(itemType);
+			}
+		}
+	}
+
+	static Map<Long, Double> content(SmartFridgeManager manager) {
+		Map<Long, Double> content = new TreeMap<>();
+		for (Object item : manager.getItems(2.0)) {
+			double[] array = (double[]) item;
+			content.put((long) array[0], array[1]);
+		}
+		return content;
+	}
+
+	static void assertSameState(PartitionRouter router,
+			Map<String, SmartFridgeManager> reference) {
+		for (int i = 0; i < FRIDGES; i++) {
+			String fridgeId = fridgeId(i);
+			SmartFridgeManager expected = reference.get(fridgeId);
+			SmartFridgeManager actual = router.getManager(fridgeId);
+			assertEquals(content(expected), content(actual), fridgeId);
+			for (long itemType = 0; itemType < 5; itemType++) {
+				assertEquals(expected.getFillFactor(itemType),
+						actual.getFillFactor(itemType), fridgeId);
+			}
+		}
+	}
+
+	Map<String, SmartFridgeManager> newReference() {
+		Map<String, SmartFridgeManager> reference = new HashMap<>();
+		for (int i = 0; i < FRIDGES; i++) {
+			reference.put(fridgeId(i),
+					new SmartFridgeManagerImpl(new InMemoryStorage(), logger));
+		}
+		return reference;
+	}
+
+	@Test
+	@DisplayName("Virtual nodes spread keys evenly")
+	void testRingBalance() {
+		ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+		for (int n = 0; n < 4; n++) {
+			ring.add("worker-" + n, "worker-" + n);
+		}
+		Map<String, Integer> counts = new HashMap<>();
+		int keys = 40_000;
+		for (int i = 0; i < keys; i++) {
+			counts.merge(ring.nameFor(fridgeId(i)), 1, Integer::sum);
+		}
+		assertEquals(4, counts.size());
+		for (int count : counts.values()) {
+			assertTrue(Math.abs(count - keys / 4) < keys / 4 * 0.2,
+					"Unbalanced node with " + count + " keys");
+		}
+		assertNull(new ConsistentHashRing<String>().nodeFor("key"));
+		assertThrows(IllegalArgumentException.class,
+				() -> ring.add("worker-0", "again"));
+	}
+
+	@Test
+	@DisplayName("Adding a node only moves keys to it")
+	void testRingMinimalMovement() {
+		ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+		for (int n = 0; n < 3; n++) {
+			ring.add("worker-" + n, "worker-" + n);
+		}
+		Map<String, String> before = new HashMap<>();
+		for (int i = 0; i < 10_000; i++) {
+			before.put(fridgeId(i), ring.nameFor(fridgeId(i)));
+		}
+		ring.add("worker-3", "worker-3");
+		int moved = 0;
+		for (Map.Entry<String, String> entry : before.entrySet()) {
+			String owner = ring.nameFor(entry.getKey());
+			if (!owner.equals(entry.getValue())) {
+				assertEquals("worker-3", owner);
+				moved++;
+			}
+		}
+		assertTrue(moved > 1_500 && moved < 3_500, "Moved " + moved);
+
+		ring.remove("worker-3");
+		for (Map.Entry<String, String> entry : before.entrySet()) {
+			assertEquals(entry.getValue(), ring.nameFor(entry.getKey()));
+		}
+	}
+
+	@Test
+	@DisplayName("Fridges keep their state when workers join and leave")
+	void testRebalance() throws IOException {
+		Map<String, SmartFridgeManager> reference = newReference();
+		Random random = new Random(47);
+		try (PartitionRouter router = new PartitionRouter()) {
+			assertEquals(0, router.addWorker("worker-0", startWorker()));
+			assertEquals(0, router.addWorker("worker-1", startWorker()));
+			assertThrows(IllegalArgumentException.class,
+					() -> router.addWorker("worker-1", startWorker()));
+			feed(router, reference, random, 5_000);
+			assertSameState(router, reference);
+
+			int moved = router.addWorker("worker-2", startWorker());
+			assertTrue(moved > 0);
+			router.sync();
+			int held = 0;
+			for (PartitionWorker worker : workers) {
+				held += worker.getFridgeCount();
+			}
+			assertEquals(FRIDGES, held);
+			assertEquals(moved, workers.get(3).getFridgeCount());
+			for (int i = 0; i < FRIDGES; i++) {
+				assertNotNull(router.getOwner(fridgeId(i)));
+			}
+			assertSameState(router, reference);
+
+			feed(router, reference, random, 2_000);
+			assertSameState(router, reference);
+
+			int removed = router.removeWorker("worker-0");
+			assertTrue(removed > 0);
+			assertEquals(0, workers.get(0).getFridgeCount());
+			assertEquals(2, router.getWorkers().size());
+			assertSameState(router, reference);
+			assertEquals(0, router.removeWorker("worker-0"));
+		}
+	}
+
+	@Test
+	@DisplayName("Router forwards to worker processes")
+	void testWorkerProcesses() throws IOException {
+		Map<String, SmartFridgeManager> reference = newReference();
+		Random random = new Random(11);
+		try (WorkerProcess first = new WorkerProcess("first");
+				WorkerProcess second = new WorkerProcess("second");
+				PartitionRouter router = new PartitionRouter()) {
+			router.addWorker("first", first.getAddress());
+			feed(router, reference, random, 2_000);
+			assertSameState(router, reference);
+
+			assertTrue(router.addWorker("second", second.getAddress()) > 0);
+			feed(router, reference, random, 1_000);
+			assertSameState(router, reference);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.oleksandr.smartfridge.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+
+class ChangeTrackerTest {
+
+	InMemoryStorage storage;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		storage = new InMemoryStorage();
+		storage.addItem(1, "itemUUID1", "Milk", 0.2);
+		storage.addItem(2, "itemUUID2", "Yogurt", 0.3);
+		storage.addItem(3, "itemUUID3", "Beef", 0.7);
+	}
+
+	@Test
+	@DisplayName("Deltas only carry the changed item types")
+	void testDelta() throws Exception {
+		try (ChangeTracker tracker = new ChangeTracker(storage)) {
+			ItemsDelta first = tracker.getItemsSince(null, 0.5);
+			assertTrue(first.isFull());
+			assertEquals(2, first.getUpdated().size());
+
+			ItemsDelta none = tracker.getItemsSince(first.getToken(), 0.5);
+			assertFalse(none.isFull());
+			assertTrue(none.getUpdated().isEmpty());
+			assertTrue(none.getRemoved().isEmpty());
+			assertEquals(first.getToken(), none.getToken());
+
+			storage.addItem(2, "itemUUID4", "Kefir", 0.3);
+			storage.removeItem("itemUUID3");
+			storage.forgetItem(1);
+			ItemsDelta delta = tracker.getItemsSince(none.getToken(), 0.5);
+			assertFalse(delta.isFull());
+			assertEquals(Collections.singletonMap(3L, 0.0),
+					delta.getUpdated());
+			assertEquals(2, delta.getRemoved().size());
+			assertTrue(delta.getRemoved().contains(1L));
+			assertTrue(delta.getRemoved().contains(2L));
+			assertEquals(3, tracker.getVersion());
+		}
+	}
+
+	@Test
+	@DisplayName("Unknown and outdated tokens get the full list")
+	void testFullRefresh() throws Exception {
+		try (ChangeTracker tracker = new ChangeTracker(storage, 2)) {
+			String token = tracker.getToken();
+			assertTrue(tracker.getItemsSince("junk", 0.5).isFull());
+			assertTrue(tracker.getItemsSince("1:2", 0.5).isFull());
+			try (ChangeTracker other = new ChangeTracker(storage)) {
+				assertTrue(other.getItemsSince(token, 0.5).isFull());
+			}
+
+			storage.forgetItem(1);
+			storage.forgetItem(2);
+			assertFalse(tracker.getItemsSince(token, 0.5).isFull());
+			// the third tombstone pushes out the first one
+			storage.forgetItem(3);
+			ItemsDelta delta = tracker.getItemsSince(token, 0.5);
+			assertTrue(delta.isFull());
+			assertTrue(delta.getUpdated().isEmpty());
+		}
+	}
+
+	@Test
+	@DisplayName("Revived types don't pile up as tombstones")
+	void testTombstoneBound() throws Exception {
+		try (ChangeTracker tracker = new ChangeTracker(storage, 4)) {
+			String token = tracker.getToken();
+			for (int i = 0; i < 100000; i++) {
+				storage.addItem(4, "itemUUID4", "Kefir", 0.1);
+				storage.forgetItem(4);
+				assertTrue(tracker.getTombstoneCount() <= 4);
+			}
+			assertEquals(1, tracker.getTombstoneCount());
+			ItemsDelta delta = tracker.getItemsSince(token, 0.5);
+			assertFalse(delta.isFull());
+			assertEquals(Collections.singleton(4L), delta.getRemoved());
+
+			storage.forgetItem(1);
+			storage.forgetItem(2);
+			storage.forgetItem(3);
+			storage.addItem(5, "itemUUID5", "Pork", 0.1);
+			storage.forgetItem(5);
+			assertEquals(4, tracker.getTombstoneCount());
+			assertTrue(tracker.getItemsSince(token, 0.5).isFull());
+		}
+	}
+
+	@Test
+	@DisplayName("Applying the deltas keeps a copy of the list up to date")
+	void testRandomChanges() throws Exception {
+		Random random = new Random(3);
+		try (ChangeTracker tracker = new ChangeTracker(storage, 8)) {
+			Map<Long, Double> copy = new HashMap<>();
+			String token = null;
+			int fullCount = 0;
+			for (int round = 0; round < 500; round++) {
+				for (int i = random.nextInt(10); i > 0; i--) {
+					long type = random.nextInt(30);
+					int op = random.nextInt(10);
+					if (op == 0) {
+						storage.forgetItem(type);
+					} else if (op < 5) {
+						storage.removeItem("r" + random.nextInt(200));
+					} else {
+						try {
+							storage.addItem(type, "r" + random.nextInt(200),
+									"Item", 0.05 + random.nextInt(30) / 100.0);
+						} catch (Exception e) {
+							// duplicates and full types are fine
+						}
+					}
+				}
+				ItemsDelta delta = tracker.getItemsSince(token, 0.4);
+				if (delta.isFull()) {
+					fullCount++;
+					copy.clear();
+				}
+				delta.getRemoved().forEach(copy::remove);
+				copy.putAll(delta.getUpdated());
+				token = delta.getToken();
+				assertEquals(storage.getItems(0.4), copy);
+			}
+			assertTrue(fullCount >= 1);
+		}
+	}
+}
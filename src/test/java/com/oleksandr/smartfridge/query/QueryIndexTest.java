@@ -0,0 +1,107 @@
+package com.oleksandr.smartfridge.query;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.Item;
+
+class QueryIndexTest {
+
+	InMemoryStorage storage;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		storage = new InMemoryStorage();
+		storage.addItem(1, "itemUUID1", "Milk", 0.2);
+		storage.addItem(2, "itemUUID2", "Yogurt", 0.3);
+		storage.addItem(2, "itemUUID3", "Yogurt Greek", 0.1);
+		storage.addItem(3, "itemUUID4", "Beef", 0.5);
+		storage.addItem(4, "itemUUID5", "yolk", 0.05);
+	}
+
+	@Test
+	@DisplayName("Range queries return types in fill order")
+	void testRange() throws Exception {
+		try (QueryIndex index = new QueryIndex(storage)) {
+			Map<Long, Double> result = index.getItemsBetween(0.1, 0.5);
+			assertEquals(Arrays.asList(1L, 2L),
+					result.keySet().stream().collect(Collectors.toList()));
+			assertEquals(0.4, result.get(2L), 0.001);
+
+			storage.addItem(3, "itemUUID6", "Pork", 0.1);
+			storage.removeItem("itemUUID2");
+			result = index.getItemsBetween(0.0, 0.2);
+			assertEquals(Arrays.asList(4L, 2L),
+					result.keySet().stream().collect(Collectors.toList()));
+			assertTrue(index.getItemsBetween(0.5, 0.5).isEmpty());
+			assertEquals(1, index.getItemsBetween(0.6, 1.0).size());
+		}
+	}
+
+	@Test
+	@DisplayName("Top-k returns the emptiest types first")
+	void testLowest() throws Exception {
+		try (QueryIndex index = new QueryIndex(storage)) {
+			assertEquals(Arrays.asList(4L, 1L),
+					index.getLowest(2).keySet().stream()
+							.collect(Collectors.toList()));
+
+			storage.removeItem("itemUUID4");
+			storage.forgetItem(4);
+			Map<Long, Double> result = index.getLowest(10);
+			assertEquals(Arrays.asList(3L, 1L, 2L),
+					result.keySet().stream().collect(Collectors.toList()));
+			assertEquals(0.0, result.get(3L), 0.001);
+			assertTrue(index.getLowest(0).isEmpty());
+		}
+	}
+
+	@Test
+	@DisplayName("Name prefix queries ignore case and follow the storage")
+	void testNamePrefix() throws Exception {
+		try (QueryIndex index = new QueryIndex(storage)) {
+			assertEquals(Arrays.asList("Yogurt", "Yogurt Greek"),
+					names(index.findByName("Yog")));
+			assertEquals(Arrays.asList("Yogurt", "Yogurt Greek", "yolk"),
+					names(index.findByName("yo")));
+			assertEquals(1, index.findByName("yo", 1).size());
+			assertEquals(5, index.findByName("").size());
+			assertTrue(index.findByName("Cheese").isEmpty());
+
+			storage.addItem(5, "itemUUID6", "Yogurt", 0.1);
+			assertEquals(3, index.findByName("yogurt").size());
+
+			storage.removeItem("itemUUID3");
+			assertEquals(Arrays.asList("Yogurt", "Yogurt"),
+					names(index.findByName("Yogurt")));
+
+			storage.forgetItem(2);
+			List<Item> items = index.findByName("Yog");
+			assertEquals(1, items.size());
+			assertEquals("itemUUID6", items.get(0).getUUID());
+		}
+	}
+
+	@Test
+	@DisplayName("Closed index no longer follows the storage")
+	void testClose() throws Exception {
+		QueryIndex index = new QueryIndex(storage);
+		index.close();
+		storage.addItem(6, "itemUUID6", "Cheese", 0.1);
+		assertTrue(index.findByName("Cheese").isEmpty());
+	}
+
+	private static List<String> names(List<Item> items) {
+		return items.stream().map(Item::getName).collect(Collectors.toList());
+	}
+
+}
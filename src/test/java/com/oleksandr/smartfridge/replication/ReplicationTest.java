@@ -0,0 +1,210 @@
+package com.oleksandr.smartfridge.replication;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.SmartFridgeManager;
+import com.oleksandr.smartfridge.SmartFridgeManagerImpl;
+import com.oleksandr.smartfridge.net.FridgeEventClient;
+import com.oleksandr.smartfridge.net.FridgeEventServer;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.Item;
+
+class ReplicationTest {
+	Logger logger = LoggerFactory.getLogger(ReplicationTest.class);
+
+	InMemoryStorage primary;
+
+	ReplicationSource source;
+
+	@BeforeEach
+	void setUp() {
+		primary = new InMemoryStorage();
+		source = new ReplicationSource(primary);
+	}
+
+	@AfterEach
+	void tearDown() {
+		source.close();
+	}
+
+	@Test
+	@DisplayName("In-process replicas converge to the primary")
+	void testInProcessReplicas() throws Exception {
+		try (InProcessReplica replica1 = new InProcessReplica(
+				new InMemoryStorage());
+				InProcessReplica replica2 = new InProcessReplica(
+						new InMemoryStorage())) {
+			source.addLink(replica1);
+			source.addLink(replica2);
+
+			for (int t = 0; t < 100; t++) {
+				for (int i = 0; i < 5; i++) {
+					primary.addItem(t, "item-" + t + "-" + i, "Item", 0.1);
+				}
+			}
+			primary.removeItem("item-1-0");
+			primary.forgetItem(2);
+
+			assertEquals(502, source.getSequence());
+			assertTrue(replica1.awaitSequence(502, 5, TimeUnit.SECONDS));
+			assertTrue(replica2.awaitSequence(502, 5, TimeUnit.SECONDS));
+			assertEquals(0, source.getMaxLag());
+			assertEquals(0, replica1.getFailedCount());
+
+			assertEquals(primary.getItems(0.5), replica1.getItems(0.5));
+			assertEquals(primary.getItems(1.0), replica2.getItems(1.0));
+			assertEquals(0.4, replica1.getFillFactor(1), 0.001);
+			assertNull(replica2.getFillFactor(2));
+		}
+	}
+
+	@Test
+	@DisplayName("A mutation failing on a replica doesn't stop it")
+	void testApplyFailure() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage() {
+			@Override
+			public Item removeItem(String itemUUID) {
+				throw new IllegalStateException("Replica is broken");
+			}
+		};
+		try (InProcessReplica replica = new InProcessReplica(storage)) {
+			source.addLink(replica);
+			primary.addItem(1, "itemUUID1", "Milk", 0.2);
+			primary.removeItem("itemUUID1");
+			primary.addItem(1, "itemUUID2", "Kefir", 0.3);
+
+			assertTrue(replica.awaitSequence(3, 5, TimeUnit.SECONDS));
+			assertEquals(1, replica.getFailedCount());
+			assertEquals(0.5, replica.getFillFactor(1), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("Replicas reject mutations")
+	void testReadOnly() {
+		try (InProcessReplica replica = new InProcessReplica(
+				new InMemoryStorage())) {
+			assertThrows(UnsupportedOperationException.class,
+					() -> replica.addItem(1, "itemUUID1", "Milk", 0.2));
+			assertThrows(UnsupportedOperationException.class,
+					() -> replica.removeItem("itemUUID1"));
+			assertThrows(UnsupportedOperationException.class,
+					() -> replica.forgetItem(1));
+		}
+	}
+
+	@Test
+	@DisplayName("Replicas are only attached to an empty primary")
+	void testAttachToEmptyPrimary() throws Exception {
+		primary.addItem(1, "itemUUID1", "Milk", 0.2);
+		try (InProcessReplica replica = new InProcessReplica(
+				new InMemoryStorage())) {
+			assertThrows(IllegalStateException.class,
+					() -> source.addLink(replica));
+		}
+	}
+
+	@Test
+	@DisplayName("The router writes to the primary and reads from replicas")
+	void testRouter() throws Exception {
+		try (InProcessReplica replica1 = new InProcessReplica(
+				new InMemoryStorage());
+				InProcessReplica replica2 = new InProcessReplica(
+						new InMemoryStorage())) {
+			source.addLink(replica1);
+			ReplicaRouter router = new ReplicaRouter(primary,
+					Arrays.asList(replica1, replica2));
+
+			router.addItem(1, "itemUUID1", "Milk", 0.2);
+			replica1.awaitSequence(source.getSequence(), 5, TimeUnit.SECONDS);
+
+			// replica2 is not attached, so reads alternate between the two
+			assertEquals(0.2, router.getFillFactor(1), 0.001);
+			assertNull(router.getFillFactor(1));
+			assertEquals(0.2, router.getFillFactor(1), 0.001);
+			assertEquals(0.2, primary.getFillFactor(1), 0.001);
+		}
+	}
+
+	@Test
+	@DisplayName("A replica behind a socket applies the shipped mutations")
+	void testSocketReplica() throws Exception {
+		InMemoryStorage replica = new InMemoryStorage();
+		try (FridgeEventServer server = new FridgeEventServer(
+				new SmartFridgeManagerImpl(replica, logger), logger)) {
+			InetSocketAddress address = server
+					.start(new InetSocketAddress("127.0.0.1", 0));
+			try (SocketReplicationLink link = new SocketReplicationLink(
+					address);
+					FridgeEventClient reader = new FridgeEventClient(
+							address)) {
+				source.addLink(link);
+				for (int i = 0; i < 1000; i++) {
+					primary.addItem(i % 10, "item-" + i, "Item", 0.001);
+				}
+				primary.forgetItem(9);
+
+				link.sync();
+				assertEquals(0, link.getLag());
+				assertEquals(0.1, reader.getFillFactor(0), 0.001);
+				assertNull(reader.getFillFactor(9));
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("A replica which falls behind is disconnected")
+	void testSlowSocketReplica() throws Exception {
+		CountDownLatch stalled = new CountDownLatch(1);
+		SmartFridgeManager slow = new SmartFridgeManagerImpl(
+				new InMemoryStorage(), logger) {
+			@Override
+			public void handleItemAdded(long itemType, String itemUUID,
+					String name, Double fillFactor) {
+				try {
+					stalled.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				super.handleItemAdded(itemType, itemUUID, name, fillFactor);
+			}
+		};
+		try (FridgeEventServer server = new FridgeEventServer(slow, logger)) {
+			InetSocketAddress address = server
+					.start(new InetSocketAddress("127.0.0.1", 0));
+			try (SocketReplicationLink link = new SocketReplicationLink(
+					address, 16, logger)) {
+				source.addLink(link);
+				// the primary goes on at full speed while the replica is
+				// stuck on its first mutation
+				assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+					for (int i = 0; !link.isFailed(); i++) {
+						primary.addItem(i / 500, "item-" + i, "Item", 0.001);
+					}
+				});
+				assertTrue(link.getLag() > 0);
+				assertThrows(IllegalStateException.class, link::sync);
+
+				long lag = link.getLag();
+				primary.addItem(-1, "itemUUID1", "Milk", 0.2);
+				assertEquals(lag, link.getLag());
+			} finally {
+				stalled.countDown();
+			}
+		}
+	}
+
+}
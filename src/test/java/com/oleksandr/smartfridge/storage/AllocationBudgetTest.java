@@ -0,0 +1,163 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checks the bytes allocated per storage operation against the budgets in
+ * allocation-budgets.properties. A hot path which starts allocating more
+ * than its budget fails the build. Update the budget file together with the
+ * change which legitimately needs more memory.
+ */
+class AllocationBudgetTest {
+	static Logger logger = LoggerFactory.getLogger(AllocationBudgetTest.class);
+
+	/**
+	 * Operations per measurement
+	 */
+	static final int OPERATIONS = 10000;
+
+	/**
+	 * Measurements per operation. The lowest one is compared to the budget,
+	 * which filters out JIT compilation and other background noise.
+	 */
+	static final int ROUNDS = 10;
+
+	static final int TYPES = 100;
+
+	static com.sun.management.ThreadMXBean threadBean;
+
+	static Properties budgets = new Properties();
+
+	String[] uuids = new String[OPERATIONS];
+
+	@BeforeAll
+	static void loadBudgets() throws IOException {
+		java.lang.management.ThreadMXBean bean = ManagementFactory
+				.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean,
+				"Thread allocation counters are not available");
+		threadBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported(),
+				"Thread allocation counters are not supported");
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		try (InputStream in = AllocationBudgetTest.class
+				.getResourceAsStream("/allocation-budgets.properties")) {
+			assertNotNull(in, "allocation-budgets.properties is missing");
+			budgets.load(in);
+		}
+	}
+
+	AllocationBudgetTest() {
+		for (int i = 0; i < OPERATIONS; i++) {
+			uuids[i] = "ItemUUID" + i;
+		}
+	}
+
+	@Test
+	@DisplayName("addItem and removeItem stay within their allocation budget")
+	void testAddRemove() {
+		InMemoryStorage storage = new InMemoryStorage();
+		long addBytes = Long.MAX_VALUE;
+		long removeBytes = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = allocatedBytes();
+			for (int i = 0; i < OPERATIONS; i++) {
+				try {
+					storage.addItem(i % TYPES, uuids[i], "Milk", 0.01);
+				} catch (Exception e) {
+					fail(e);
+				}
+			}
+			addBytes = Math.min(addBytes, allocatedBytes() - start);
+
+			start = allocatedBytes();
+			for (int i = 0; i < OPERATIONS; i++) {
+				storage.removeItem(uuids[i]);
+			}
+			removeBytes = Math.min(removeBytes, allocatedBytes() - start);
+		}
+		check("addItem", addBytes, OPERATIONS);
+		check("removeItem", removeBytes, OPERATIONS);
+	}
+
+	@Test
+	@DisplayName("getFillFactor stays within its allocation budget")
+	void testGetFillFactor() {
+		InMemoryStorage storage = populatedStorage();
+		long bytes = Long.MAX_VALUE;
+		double sum = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = allocatedBytes();
+			for (int i = 0; i < OPERATIONS; i++) {
+				sum += storage.getFillFactor(i % TYPES);
+			}
+			bytes = Math.min(bytes, allocatedBytes() - start);
+		}
+		assertTrue(sum > 0);
+		check("getFillFactor", bytes, OPERATIONS);
+	}
+
+	@Test
+	@DisplayName("getItems stays within its allocation budget")
+	void testGetItems() {
+		InMemoryStorage storage = populatedStorage();
+		int calls = OPERATIONS / 100;
+		long bytes = Long.MAX_VALUE;
+		int found = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			long start = allocatedBytes();
+			for (int i = 0; i < calls; i++) {
+				found += storage.getItems(0.5).size();
+			}
+			bytes = Math.min(bytes, allocatedBytes() - start);
+		}
+		assertTrue(found > 0);
+		check("getItems", bytes, calls);
+	}
+
+	/**
+	 * Returns a storage with {@link #TYPES} item types, half of them below
+	 * 50%
+	 */
+	InMemoryStorage populatedStorage() {
+		InMemoryStorage storage = new InMemoryStorage();
+		for (int t = 0; t < TYPES; t++) {
+			try {
+				storage.addItem(t, uuids[t], "Milk", t % 2 == 0 ? 0.2 : 0.8);
+			} catch (Exception e) {
+				fail(e);
+			}
+		}
+		return storage;
+	}
+
+	static long allocatedBytes() {
+		return threadBean.getThreadAllocatedBytes(
+				Thread.currentThread().getId());
+	}
+
+	static void check(String operation, long bytes, int operations) {
+		String budget = budgets.getProperty(operation);
+		assertNotNull(budget,
+				String.format("No allocation budget for %s", operation));
+		double perOperation = (double) bytes / operations;
+		logger.info(String.format("%s: %.1f bytes/op (budget %s)", operation,
+				perOperation, budget));
+		assertTrue(perOperation <= Double.parseDouble(budget),
+				String.format("%s allocates %.1f bytes/op, budget is %s",
+						operation, perOperation, budget));
+	}
+}
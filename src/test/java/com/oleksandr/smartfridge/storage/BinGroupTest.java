@@ -0,0 +1,104 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+
+class BinGroupTest {
+
+	final double delta = 0.001;
+
+	@Test
+	@DisplayName("A group needs at least one bin with positive capacity")
+	void testConstructor() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new BinGroup(1, new double[0], 0));
+		assertThrows(IllegalArgumentException.class,
+				() -> new BinGroup(1, new double[] { 1.0, 0.0 }, 0));
+
+		BinGroup group = new BinGroup(1, new double[] { 1.0, 2.0 }, 0);
+		assertEquals(2, group.getBins().length);
+		assertTrue(group.isEmpty());
+		assertEquals(0.0, group.getFillFactor(), delta);
+	}
+
+	@Test
+	@DisplayName("Items are placed into the bin with the least room that fits")
+	void testBestFit() {
+		BinGroup group = new BinGroup(1, new double[] { 1.0, 1.0, 1.0 }, 0);
+
+		assertDoesNotThrow(() -> {
+			Bin first = group.addItem(new Item(1, "ItemUUID1", "Milk", 0.6));
+			Bin second = group
+					.addItem(new Item(1, "ItemUUID2", "Milk", 0.3));
+			// 0.3 fits into the first bin, which has the least room left
+			assertSame(first, second);
+
+			Bin third = group.addItem(new Item(1, "ItemUUID3", "Milk", 0.5));
+			assertNotSame(first, third);
+
+			// 0.1 fits into the first bin (0.1 left) better than the second
+			Bin fourth = group
+					.addItem(new Item(1, "ItemUUID4", "Milk", 0.1));
+			assertSame(first, fourth);
+			assertEquals(1.0, first.getFillFactor(), delta);
+		});
+		assertEquals(4, group.getItemCount());
+	}
+
+	@Test
+	@DisplayName("Items spill over to other bins and overflow when none fits")
+	void testSpillOver() {
+		BinGroup group = new BinGroup(1, new double[] { 1.0, 1.0 }, 0);
+
+		assertDoesNotThrow(() -> {
+			group.addItem(new Item(1, "ItemUUID1", "Milk", 0.7));
+			group.addItem(new Item(1, "ItemUUID2", "Milk", 0.7));
+		});
+		assertThrows(BinOverflowException.class,
+				() -> group.addItem(new Item(1, "ItemUUID3", "Milk", 0.7)));
+		assertEquals(2, group.getItemCount());
+	}
+
+	@Test
+	@DisplayName("Removed items free room in their bin")
+	void testRemoveItem() {
+		BinGroup group = new BinGroup(1, new double[] { 1.0, 1.0 }, 0);
+
+		assertDoesNotThrow(() -> {
+			Bin bin = group.addItem(new Item(1, "ItemUUID1", "Milk", 0.7));
+			group.addItem(new Item(1, "ItemUUID2", "Milk", 0.7));
+
+			Item removed = group.removeItem(bin, "ItemUUID1");
+			assertEquals("ItemUUID1", removed.getUUID());
+			assertNull(group.removeItem(bin, "ItemUUID1"));
+
+			assertSame(bin,
+					group.addItem(new Item(1, "ItemUUID3", "Milk", 0.7)));
+		});
+		assertEquals(2, group.getItemCount());
+	}
+
+	@Test
+	@DisplayName("The fill factor averages the non-empty bins")
+	void testFillFactor() {
+		BinGroup group = new BinGroup(1, new double[] { 1.0, 1.0, 2.0 }, 0);
+
+		assertDoesNotThrow(() -> {
+			group.addItem(new Item(1, "ItemUUID1", "Milk", 0.8));
+			assertEquals(0.8, group.getFillFactor(), delta);
+
+			group.addItem(new Item(1, "ItemUUID2", "Milk", 0.4));
+			assertEquals(0.6, group.getFillFactor(), delta);
+
+			// the large bin is the only one with room, 0.9 of 2.0 is 0.45
+			group.addItem(new Item(1, "ItemUUID3", "Milk", 0.9));
+			assertEquals((0.8 + 0.4 + 0.45) / 3, group.getFillFactor(),
+					delta);
+		});
+	}
+
+}
@@ -0,0 +1,10 @@
+package com.oleksandr.smartfridge.storage;
+
+class CatalogStorageConformanceTest extends StorageConformanceTest {
+
+	@Override
+	protected Storage createStorage() {
+		return new CatalogStorage();
+	}
+
+}
@@ -0,0 +1,147 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CompactionPolicyTest {
+
+	long now;
+
+	List<StorageEvent> forgotten;
+
+	@BeforeEach
+	void setUp() {
+		now = 1000;
+		forgotten = new ArrayList<>();
+	}
+
+	InMemoryStorage storage(CompactionPolicy.Builder policy) {
+		InMemoryStorage storage = new InMemoryStorage(StorageConfig.builder()
+				.compactionPolicy(policy.clock(() -> now).build()).build());
+		storage.addListener(e -> {
+			if (e.getKind() == StorageEvent.Kind.FORGOTTEN) {
+				forgotten.add(e);
+			}
+		});
+		return storage;
+	}
+
+	@Test
+	@DisplayName("Without a policy empty types are kept")
+	void testNone() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.addItem(1, "itemUUID1", "Milk", 0.3);
+		storage.removeItem("itemUUID1");
+		assertEquals(0, storage.compactStep());
+		assertEquals(0, storage.compact());
+		assertEquals(0.0, storage.getFillFactor(1), 0.001);
+		assertFalse(CompactionPolicy.none().isEnabled());
+		assertFalse(CompactionPolicy.builder().build().isReclaiming());
+	}
+
+	@Test
+	@DisplayName("Types empty for the retention time are reclaimed")
+	void testReclaim() throws Exception {
+		InMemoryStorage storage = storage(CompactionPolicy.builder()
+				.emptyTypeRetention(100).stepInterval(1000));
+		storage.addItem(1, "itemUUID1", "Milk", 0.3);
+		storage.addItem(2, "itemUUID2", "Beef", 0.3);
+		storage.addItem(3, "itemUUID3", "Salad", 0.3);
+		storage.removeItem("itemUUID1");
+		storage.removeItem("itemUUID2");
+		now += 50;
+		storage.removeItem("itemUUID3");
+		// refilled before the retention time passed
+		storage.addItem(2, "itemUUID2", "Beef", 0.3);
+
+		now += 60;
+		assertEquals(1, storage.compactStep());
+		assertNull(storage.getFillFactor(1));
+		assertEquals(0.3, storage.getFillFactor(2), 0.001);
+		assertEquals(0.0, storage.getFillFactor(3), 0.001);
+		assertEquals(1, forgotten.size());
+		assertEquals(1, forgotten.get(0).getItemType());
+
+		now += 50;
+		assertEquals(1, storage.compact());
+		assertNull(storage.getFillFactor(3));
+		assertEquals(1, storage.getItems(1.0).size());
+
+		// a reclaimed type comes back with its next item
+		storage.addItem(1, "itemUUID1", "Milk", 0.4);
+		assertEquals(0.4, storage.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Steps run by themselves and examine a bounded number of types")
+	void testSteps() throws Exception {
+		InMemoryStorage storage = storage(CompactionPolicy.builder()
+				.emptyTypeRetention(0).stepInterval(10).stepSize(2));
+		for (int i = 0; i < 9; i++) {
+			storage.addItem(i, "itemUUID" + i, "Item", 0.1);
+		}
+		for (int i = 0; i < 5; i++) {
+			storage.removeItem("itemUUID" + i);
+		}
+		// the tenth mutation ran a step while only the first type was empty
+		assertEquals(1, forgotten.size());
+		assertEquals(8, storage.getItems(1.0).size());
+
+		// the next step reclaims two of the four empty types
+		for (int i = 0; i < 10; i++) {
+			storage.addItem(100, "otherUUID" + i, "Item", 0.01);
+		}
+		assertEquals(3, forgotten.size());
+		assertEquals(2, storage.compactStep());
+		assertEquals(0, storage.compactStep());
+		assertEquals(5, storage.getItems(1.0).size());
+	}
+
+	@Test
+	@DisplayName("Maps emptied by removals are rebuilt in steps")
+	void testRebuild() throws Exception {
+		InMemoryStorage storage = storage(
+				CompactionPolicy.builder().stepInterval(100));
+		for (int i = 0; i < 1000; i++) {
+			storage.addItem(i % 2, "itemUUID" + i, "Item", 0.001);
+		}
+		for (int i = 0; i < 900; i++) {
+			storage.removeItem("itemUUID" + i);
+		}
+		// the steps rebuilt the maps of both bins, the UUID map is copied
+		// only by an explicit step
+		assertEquals(1, storage.compactStep());
+		assertEquals(0, storage.compact());
+		assertEquals(100, storage.getItemCount());
+		assertEquals(0.05, storage.getFillFactor(0), 0.001);
+
+		InMemoryStorage manual = new InMemoryStorage();
+		for (int i = 0; i < 1000; i++) {
+			manual.addItem(i % 2, "itemUUID" + i, "Item", 0.001);
+		}
+		for (int i = 0; i < 900; i++) {
+			manual.removeItem("itemUUID" + i);
+		}
+		assertEquals(3, manual.compact());
+		assertTrue(forgotten.isEmpty());
+	}
+
+	@Test
+	@DisplayName("Invalid policies are rejected")
+	void testInvalid() {
+		assertThrows(IllegalArgumentException.class,
+				() -> CompactionPolicy.builder().emptyTypeRetention(-1));
+		assertThrows(IllegalArgumentException.class,
+				() -> CompactionPolicy.builder().stepInterval(0));
+		assertThrows(IllegalArgumentException.class,
+				() -> CompactionPolicy.builder().stepSize(0));
+		assertThrows(NullPointerException.class,
+				() -> CompactionPolicy.builder().clock(null));
+	}
+}
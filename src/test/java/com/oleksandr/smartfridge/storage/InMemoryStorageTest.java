@@ -2,6 +2,9 @@ package com.oleksandr.smartfridge.storage;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.DisplayName;
@@ -229,4 +232,148 @@ class InMemoryStorageTest {
 		assertNull(storage.getFillFactor(3));
 	}
 
+	@Test
+	@DisplayName("Items spill over to other bins of their type")
+	void testBinLayout() {
+		InMemoryStorage storage = new InMemoryStorage(
+				BinLayout.uniform(2, 1.0));
+
+		assertDoesNotThrow(() -> {
+			storage.addItem(1, "ItemUUID1", "Milk", 0.7);
+			storage.addItem(1, "ItemUUID2", "Milk", 0.7);
+		});
+		assertEquals(0.7, storage.getFillFactor(1), 0.001);
+
+		assertThrows(BinOverflowException.class, () -> {
+			storage.addItem(1, "ItemUUID3", "Milk", 0.7);
+		});
+
+		storage.removeItem("ItemUUID1");
+		assertEquals(0.7, storage.getFillFactor(1), 0.001);
+
+		assertDoesNotThrow(() -> {
+			storage.addItem(1, "ItemUUID3", "Milk", 0.2);
+		});
+		// best fit puts the item next to the remaining one
+		assertEquals(0.9, storage.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Storage configuration")
+	void testStorageConfig() {
+		StorageConfig config = StorageConfig.builder().expectedTypes(10)
+				.expectedItems(1000).binLayout(BinLayout.uniform(2, 1.0))
+				.build();
+		assertEquals(10, config.getExpectedTypes());
+		assertEquals(1000, config.getExpectedItems());
+
+		assertThrows(IllegalArgumentException.class,
+				() -> StorageConfig.builder().expectedItems(-1));
+		assertThrows(NullPointerException.class,
+				() -> StorageConfig.builder().binLayout(null));
+
+		InMemoryStorage storage = new InMemoryStorage(config);
+		assertDoesNotThrow(() -> {
+			storage.addItem(1, "ItemUUID1", "Milk", 0.7);
+			storage.addItem(1, "ItemUUID2", "Milk", 0.7);
+		});
+		assertEquals(0.7, storage.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Item types are listed with their fill, empty ones too")
+	void testForEachType() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.addItem(1, "ItemUUID1", "Milk", 0.3);
+		storage.addItem(1, "ItemUUID2", "Milk", 0.7);
+		storage.addItem(2, "ItemUUID3", "Beef", 0.5);
+		storage.removeItem("ItemUUID3");
+
+		Map<Long, Double> types = new HashMap<>();
+		storage.forEachType(types::put);
+		assertEquals(2, types.size());
+		assertEquals(1.0, types.get(1L), 0.001);
+		assertEquals(0.0, types.get(2L), 0.001);
+		assertEquals(2, storage.getTypeCount());
+
+		storage.forgetItem(2);
+		assertEquals(1, storage.getTypeCount());
+	}
+
+	@Test
+	@DisplayName("Bulk load builds the storage from items grouped by type")
+	void testBulkLoad() {
+		List<Item> items = new ArrayList<>();
+		for (int t = 0; t < 100; t++) {
+			for (int i = 0; i < 5; i++) {
+				items.add(new Item(t, "ItemUUID" + t + "-" + i, "Milk", 0.1));
+			}
+		}
+
+		InMemoryStorage storage = new InMemoryStorage(StorageConfig.builder()
+				.expectedTypes(100).expectedItems(500).build());
+		assertEquals(500, storage.bulkLoad(items.iterator()));
+
+		assertEquals(0.5, storage.getFillFactor(0), 0.001);
+		assertEquals(0.5, storage.getFillFactor(99), 0.001);
+		assertEquals(100, storage.getItems(0.6).size());
+
+		Item removed = storage.removeItem("ItemUUID7-3");
+		assertEquals(7, removed.getType());
+		assertEquals(0.4, storage.getFillFactor(7), 0.001);
+
+		// loaded storage accepts regular operations
+		assertThrows(DoublicateItemException.class,
+				() -> storage.addItem(1, "ItemUUID1-1", "Milk", 0.1));
+		assertThrows(BinOverflowException.class,
+				() -> storage.addItem(1, "ItemUUID1-5", "Milk", 0.6));
+
+		// only an empty storage can be bulk loaded
+		assertThrows(IllegalStateException.class,
+				() -> storage.bulkLoad(items.iterator()));
+	}
+
+	@Test
+	@DisplayName("Bulk load rejects items which are not grouped by type")
+	void testBulkLoadUngrouped() {
+		List<Item> items = new ArrayList<>();
+		items.add(new Item(1, "ItemUUID1", "Milk", 0.1));
+		items.add(new Item(2, "ItemUUID2", "Beef", 0.1));
+		items.add(new Item(1, "ItemUUID3", "Milk", 0.1));
+
+		InMemoryStorage storage = new InMemoryStorage();
+		List<StorageEvent> events = new ArrayList<>();
+		storage.addListener(events::add);
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.bulkLoad(items.iterator()));
+		assertRolledBack(storage, events);
+
+		// a UUID repeated under another type
+		items.set(2, new Item(3, "ItemUUID1", "Milk", 0.1));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.bulkLoad(items.iterator()));
+		assertRolledBack(storage, events);
+
+		// more than a bin holds
+		items.set(2, new Item(2, "ItemUUID3", "Beef", 0.7));
+		items.add(new Item(2, "ItemUUID4", "Beef", 0.7));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.bulkLoad(items.iterator()));
+		assertRolledBack(storage, events);
+		items.remove(3);
+
+		items.set(2, new Item(3, "ItemUUID3", "Milk", 0.1));
+		assertEquals(3, storage.bulkLoad(items.iterator()));
+		assertEquals(3, events.size());
+		assertEquals(0.1, events.get(2).getFillFactor(), 0.001);
+	}
+
+	static void assertRolledBack(InMemoryStorage storage,
+			List<StorageEvent> events) {
+		assertTrue(events.isEmpty());
+		assertNull(storage.getFillFactor(1));
+		assertNull(storage.removeItem("ItemUUID1"));
+		assertTrue(storage.getItems(1.0).isEmpty());
+	}
+
 }
@@ -0,0 +1,202 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+
+class ItemTypeCatalogTest {
+
+	@Test
+	@DisplayName("Types get dense ordinals in registration order")
+	void testRegister() {
+		ItemTypeCatalog catalog = new ItemTypeCatalog();
+		ItemTypeCatalog.ItemType dairy = catalog.register(10, "Dairy");
+		ItemTypeCatalog.ItemType meat = catalog.register(-3, "Meat",
+				new double[] { 1.0, 0.5 }, 0.3);
+
+		assertEquals(0, dairy.getOrdinal());
+		assertEquals(1, meat.getOrdinal());
+		assertEquals(2, catalog.size());
+		assertEquals(1, catalog.ordinalOf(-3));
+		assertEquals(-1, catalog.ordinalOf(3));
+		assertSame(dairy, catalog.get(10));
+		assertNull(catalog.get(11));
+		assertSame(meat, catalog.byOrdinal(1));
+		assertThrows(IndexOutOfBoundsException.class,
+				() -> catalog.byOrdinal(2));
+
+		assertEquals("Dairy", dairy.getName());
+		assertEquals(ItemTypeCatalog.DEFAULT_LOW_THRESHOLD,
+				dairy.getLowThreshold());
+		assertArrayEquals(new double[] { 1.0 }, dairy.getCapacities());
+		assertArrayEquals(new double[] { 1.0, 0.5 }, meat.getCapacities());
+		assertEquals(0.3, meat.getLowThreshold());
+
+		// the capacities can't be changed from outside
+		meat.getCapacities()[0] = 5.0;
+		assertEquals(1.0, meat.getCapacities()[0]);
+
+		assertEquals(2, catalog.getTypes().size());
+		assertSame(meat, catalog.getTypes().get(1));
+	}
+
+	@Test
+	@DisplayName("Invalid registrations are rejected")
+	void testInvalid() {
+		ItemTypeCatalog catalog = new ItemTypeCatalog();
+		catalog.register(1, "Dairy");
+
+		assertThrows(IllegalArgumentException.class,
+				() -> catalog.register(1, "Milk"));
+		assertThrows(IllegalArgumentException.class,
+				() -> catalog.register(2, null));
+		assertThrows(IllegalArgumentException.class,
+				() -> catalog.register(2, ""));
+		assertThrows(IllegalArgumentException.class,
+				() -> catalog.register(2, "Meat", new double[0], 0.5));
+		assertThrows(IllegalArgumentException.class,
+				() -> catalog.register(2, "Meat", new double[] { 0 }, 0.5));
+		assertThrows(IllegalArgumentException.class,
+				() -> catalog.register(2, "Meat", new double[] { 1 }, 0));
+		assertThrows(IllegalArgumentException.class,
+				() -> catalog.register(2, "Meat", new double[] { 1 }, 1.1));
+
+		assertEquals(1, catalog.size());
+		assertEquals(-1, catalog.ordinalOf(2));
+	}
+
+	@Test
+	@DisplayName("Lookups stay right while the table grows")
+	void testManyTypes() {
+		ItemTypeCatalog catalog = new ItemTypeCatalog();
+		Random random = new Random(45);
+		long[] types = random.longs(5000).distinct().toArray();
+		for (long type : types) {
+			assertEquals(catalog.size(), catalog.getOrRegister(type));
+		}
+		for (int i = 0; i < types.length; i++) {
+			assertEquals(i, catalog.ordinalOf(types[i]));
+			assertEquals(i, catalog.getOrRegister(types[i]));
+			assertEquals(String.valueOf(types[i]),
+					catalog.byOrdinal(i).getName());
+		}
+		assertEquals(types.length, catalog.size());
+	}
+
+	@Test
+	@DisplayName("The layout of the catalog sizes the bins of its types")
+	void testBinLayout() throws Exception {
+		ItemTypeCatalog catalog = new ItemTypeCatalog(
+				BinLayout.uniform(2, 1.0), 0.5);
+		catalog.register(1, "Dairy", new double[] { 0.5 }, 0.5);
+
+		InMemoryStorage storage = new InMemoryStorage(catalog.asBinLayout());
+		storage.addItem(1, "itemUUID1", "Milk", 0.4);
+		assertThrows(BinOverflowException.class,
+				() -> storage.addItem(1, "itemUUID2", "Milk", 0.2));
+		assertEquals(1, storage.getBinCount(1));
+		storage.addItem(2, "itemUUID3", "Beef", 0.4);
+		assertEquals(2, storage.getBinCount(2));
+	}
+
+	@Test
+	@DisplayName("The catalog storage uses the bins and thresholds of the "
+			+ "catalog")
+	void testCatalogStorage() throws Exception {
+		ItemTypeCatalog catalog = new ItemTypeCatalog();
+		catalog.register(1, "Dairy", new double[] { 1.0, 1.0 }, 0.4);
+		catalog.register(2, "Meat", new double[] { 1.0 }, 0.2);
+		CatalogStorage storage = new CatalogStorage(catalog);
+
+		storage.addItem(1, "itemUUID1", "Milk", 0.8);
+		storage.addItem(1, "itemUUID2", "Yogurt", 0.4);
+		storage.addItem(2, "itemUUID3", "Beef", 0.3);
+		assertEquals(2, storage.getItemCount(1));
+		assertEquals(0.6, storage.getFillFactor(1), 0.001);
+
+		// unknown types are registered on first use
+		storage.addItem(7, "itemUUID4", "Salt", 0.1);
+		assertEquals(2, catalog.ordinalOf(7));
+		assertEquals("7", catalog.get(7).getName());
+
+		storage.removeItem("itemUUID1");
+		Map<Long, Double> low = storage.getLowItems();
+		assertEquals(1, low.size());
+		assertEquals(0.1, low.get(7L), 0.001);
+
+		storage.removeItem("itemUUID2");
+		low = storage.getLowItems();
+		assertEquals(2, low.size());
+		assertEquals(0.0, low.get(1L), 0.001);
+
+		// forgetting a type keeps its catalog entry and only drops its items
+		storage.forgetItem(1);
+		assertNull(storage.getFillFactor(1));
+		assertEquals(0, storage.getItemCount(1));
+		assertEquals(0, catalog.ordinalOf(1));
+		assertEquals("Beef", storage.removeItem("itemUUID3").getName());
+		storage.addItem(1, "itemUUID1", "Milk", 0.3);
+		assertEquals(0.3, storage.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("The catalog storage answers like the hash map storage")
+	void testAgainstInMemoryStorage() throws Exception {
+		CatalogStorage catalogStorage = new CatalogStorage();
+		InMemoryStorage storage = new InMemoryStorage();
+		Random random = new Random(7);
+		for (int i = 0; i < 20000; i++) {
+			long type = random.nextInt(64) - 32;
+			String uuid = "itemUUID" + random.nextInt(400);
+			switch (random.nextInt(4)) {
+			case 0:
+			case 1:
+				double fill = (1 + random.nextInt(40)) / 100.0;
+				Exception expected = null;
+				try {
+					storage.addItem(type, uuid, "Item", fill);
+				} catch (Exception e) {
+					expected = e;
+				}
+				try {
+					catalogStorage.addItem(type, uuid, "Item", fill);
+					assertNull(expected);
+				} catch (Exception e) {
+					assertNotNull(expected);
+					assertEquals(expected.getClass(), e.getClass());
+				}
+				break;
+			case 2:
+				assertEquals(storage.removeItem(uuid) == null,
+						catalogStorage.removeItem(uuid) == null);
+				break;
+			default:
+				if (random.nextInt(20) == 0) {
+					storage.forgetItem(type);
+					catalogStorage.forgetItem(type);
+				}
+			}
+			assertEquals(storage.getFillFactor(type),
+					catalogStorage.getFillFactor(type));
+		}
+		// full types against thresholds just above 1, which round down
+		for (long type = 100; type < 103; type++) {
+			for (int i = 0; i < 4; i++) {
+				storage.addItem(type, type + "-" + i, "Item", 0.25);
+				catalogStorage.addItem(type, type + "-" + i, "Item", 0.25);
+			}
+		}
+		for (int step = 0; step <= 220; step++) {
+			double threshold = step * 0.005;
+			assertEquals(storage.getItems(threshold),
+					catalogStorage.getItems(threshold),
+					"threshold " + threshold);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.oleksandr.smartfridge.storage;
+
+class MappedStorageConformanceTest extends StorageConformanceTest {
+
+	@Override
+	protected Storage createStorage() throws Exception {
+		return MappedStorage.temporary(StorageConfig.defaults());
+	}
+
+	@Override
+	protected void releaseStorage(Storage storage) throws Exception {
+		((MappedStorage) storage).close();
+	}
+
+}
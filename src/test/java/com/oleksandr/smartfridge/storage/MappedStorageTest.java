@@ -0,0 +1,208 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.storage.MappedStorage.MappedTable;
+
+class MappedStorageTest {
+
+	Path dir;
+
+	@BeforeEach
+	void createDir() throws IOException {
+		dir = Files.createTempDirectory("mapped-storage");
+	}
+
+	@AfterEach
+	void deleteDir() throws IOException {
+		Files.walk(dir).sorted(Comparator.reverseOrder())
+				.forEach(p -> p.toFile().delete());
+	}
+
+	@Test
+	@DisplayName("State survives closing and reopening the storage")
+	void testReopen() throws Exception {
+		try (MappedStorage storage = new MappedStorage(dir)) {
+			storage.addItem(1, "itemUUID1", "Milk", 0.2);
+			storage.addItem(1, "itemUUID2", "Yogurt", 0.3);
+			storage.addItem(2, "itemUUID3", "Beef", 0.4);
+			storage.addItem(3, "itemUUID4", "Pork", 0.1);
+			storage.removeItem("itemUUID3");
+			storage.forgetItem(3);
+		}
+
+		try (MappedStorage storage = new MappedStorage(dir)) {
+			assertEquals(2, storage.getItemCount());
+			assertEquals(0.5, storage.getFillFactor(1), 0.001);
+			assertEquals(0.0, storage.getFillFactor(2), 0.001);
+			assertNull(storage.getFillFactor(3));
+
+			Item item = storage.removeItem("itemUUID2");
+			assertEquals("Yogurt", item.getName());
+			assertEquals(0.3, item.getFillFactor(), 0.001);
+			assertEquals(1, item.getType());
+		}
+	}
+
+	@Test
+	@DisplayName("Tables grow past their initial capacity")
+	void testGrowth() throws Exception {
+		int types = 300;
+		int itemsPerType = 10;
+		try (MappedStorage storage = new MappedStorage(dir,
+				StorageConfig.builder().expectedTypes(1).expectedItems(1)
+						.build())) {
+			for (int t = 0; t < types; t++) {
+				for (int i = 0; i < itemsPerType; i++) {
+					storage.addItem(t, "item-" + t + "-" + i, "Item", 0.05);
+				}
+			}
+			for (int t = 0; t < types; t += 2) {
+				storage.removeItem("item-" + t + "-0");
+			}
+		}
+
+		try (MappedStorage storage = new MappedStorage(dir)) {
+			assertEquals(types * itemsPerType - types / 2,
+					storage.getItemCount());
+			assertEquals(0.45, storage.getFillFactor(0), 0.001);
+			assertEquals(0.5, storage.getFillFactor(1), 0.001);
+			assertEquals(types / 2, storage.getItems(0.5).size());
+			for (int t = 0; t < types; t++) {
+				assertNotNull(storage.removeItem("item-" + t + "-9"));
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("Tables grow in place without a second file")
+	void testGrowthInPlace() throws Exception {
+		try (MappedStorage storage = new MappedStorage(dir,
+				StorageConfig.builder().expectedTypes(1).expectedItems(1)
+						.build())) {
+			for (int i = 0; i < 100; i++) {
+				storage.addItem(i % 2, "item-" + i, "Item", 0.01);
+			}
+			try (Stream<Path> files = Files.list(dir)) {
+				assertEquals(2, files.count());
+			}
+			assertEquals(MappedTable.HEADER_SIZE + 256 * MappedStorage.ITEM_SLOT,
+					Files.size(dir.resolve("items.tbl")));
+		}
+	}
+
+	@Test
+	@DisplayName("Entries are found after the growth of a wrapped table")
+	void testTableGrowth() throws Exception {
+		// slot: int state, int home, long key; homes crowd the end of the
+		// table so the probe runs wrap around
+		try (TestTable table = new TestTable(dir.resolve("test.tbl"))) {
+			int[] homes = { 14, 14, 15, 15, 15, 0, 3, 30 };
+			for (int key = 0; key < homes.length; key++) {
+				table.put(key, homes[key]);
+			}
+			table.grow();
+
+			assertEquals(32, table.table.capacity);
+			for (int key = 0; key < homes.length; key++) {
+				assertTrue(table.contains(key, homes[key]),
+						"Key " + key + " is lost");
+			}
+		}
+
+		try (TestTable table = new TestTable(dir.resolve("test.tbl"))) {
+			assertEquals(32, table.table.capacity);
+			assertEquals(8, table.table.count);
+		}
+	}
+
+	@Test
+	@DisplayName("A table which can't be remapped stays as it was")
+	void testFailedGrowth() throws Exception {
+		TestTable table = new TestTable(dir.resolve("test.tbl"));
+		table.put(1, 15);
+		table.put(2, 15);
+		table.close();
+
+		assertThrows(IOException.class, table::grow);
+		assertEquals(16, table.table.capacity);
+		assertTrue(table.contains(1, 15));
+		assertTrue(table.contains(2, 15));
+	}
+
+	/**
+	 * Table of 16 byte slots keyed by a long, with the home slot kept in
+	 * the slot
+	 */
+	static class TestTable implements AutoCloseable {
+
+		final MappedTable table;
+
+		TestTable(Path path) throws IOException {
+			table = MappedTable.open(path, 16, 16);
+		}
+
+		void put(long key, int home) {
+			int slot = table.freeSlot(home);
+			table.putInt(slot, 4, home);
+			table.putLong(slot, 8, key);
+			table.putInt(slot, 0, 1);
+			table.setCount(table.count + 1);
+		}
+
+		boolean contains(long key, int home) {
+			int mask = table.capacity - 1;
+			for (int slot = home & mask; table.getInt(slot, 0) != 0; slot = (slot
+					+ 1) & mask) {
+				if (table.getLong(slot, 8) == key) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		void grow() throws IOException {
+			table.grow(s -> table.getInt(s, 4));
+		}
+
+		@Override
+		public void close() throws IOException {
+			table.close();
+		}
+	}
+
+	@Test
+	@DisplayName("Strings longer than a slot are rejected")
+	void testLongStrings() throws Exception {
+		try (MappedStorage storage = new MappedStorage(dir)) {
+			char[] chars = new char[MappedStorage.MAX_STRING_LENGTH + 1];
+			Arrays.fill(chars, 'a');
+			String tooLong = new String(chars);
+			assertThrows(IllegalArgumentException.class,
+					() -> storage.addItem(1, tooLong, "Milk", 0.2));
+			assertThrows(IllegalArgumentException.class,
+					() -> storage.addItem(1, "itemUUID1", tooLong, 0.2));
+			assertNull(storage.getFillFactor(1));
+		}
+	}
+
+	@Test
+	@DisplayName("A file of another kind is not opened")
+	void testForeignFile() throws IOException {
+		Files.write(dir.resolve("types.tbl"), new byte[64]);
+		assertThrows(IOException.class, () -> new MappedStorage(dir));
+	}
+
+}
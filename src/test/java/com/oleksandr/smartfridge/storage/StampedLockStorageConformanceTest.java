@@ -0,0 +1,10 @@
+package com.oleksandr.smartfridge.storage;
+
+class StampedLockStorageConformanceTest extends StorageConformanceTest {
+
+	@Override
+	protected Storage createStorage() {
+		return new StampedLockStorage();
+	}
+
+}
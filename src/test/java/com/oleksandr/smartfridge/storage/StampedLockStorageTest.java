@@ -0,0 +1,121 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+
+class StampedLockStorageTest {
+
+	@Test
+	@DisplayName("The view starts from the content of the storage")
+	void testExistingContent() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage();
+		storage.addItem(1, "itemUUID1", "Milk", 0.3);
+		storage.addItem(2, "itemUUID2", "Beef", 0.4);
+		storage.removeItem("itemUUID2");
+
+		StampedLockStorage view = new StampedLockStorage(storage);
+		assertEquals(0.3, view.getFillFactor(1), 0.001);
+		assertEquals(0.0, view.getFillFactor(2), 0.001);
+		assertEquals(2, view.getItems(0.5).size());
+		assertEquals(0, view.getReadLockFallbackCount());
+	}
+
+	@Test
+	@DisplayName("Many types survive growth and removal of the fill table")
+	void testManyTypes() throws Exception {
+		StampedLockStorage storage = new StampedLockStorage();
+		for (int t = 0; t < 1000; t++) {
+			storage.addItem(t * 31L, "itemUUID" + t, "Item",
+					0.01 * (t % 99 + 1));
+		}
+		for (int t = 0; t < 1000; t += 2) {
+			storage.forgetItem(t * 31L);
+		}
+		for (int t = 0; t < 1000; t++) {
+			Double fill = storage.getFillFactor(t * 31L);
+			if (t % 2 == 0) {
+				assertNull(fill);
+			} else {
+				assertEquals(0.01 * (t % 99 + 1), fill, 0.001);
+			}
+		}
+		assertEquals(500, storage.getItems(1.0).size());
+	}
+
+	@Test
+	@DisplayName("Thresholds are compared like the storage compares them")
+	void testThresholds() throws Exception {
+		// averages of several bins aren't two digit decimals
+		InMemoryStorage storage = new InMemoryStorage(
+				BinLayout.uniform(3, 1.0));
+		StampedLockStorage view = new StampedLockStorage(storage);
+		Random random = new Random(11);
+		for (int i = 0; i < 300; i++) {
+			try {
+				view.addItem(random.nextInt(60), "itemUUID" + i, "Item",
+						(random.nextInt(98) + 1) / 100.0);
+			} catch (BinOverflowException e) {
+				// full types are fine
+			}
+		}
+		for (int i = 0; i <= 1000; i++) {
+			double threshold = i / 1000.0;
+			assertEquals(storage.getItems(threshold),
+					view.getItems(threshold));
+		}
+	}
+
+	@Test
+	@DisplayName("Readers never see a state the writer didn't leave behind")
+	void testConcurrentReads() throws Exception {
+		StampedLockStorage storage = new StampedLockStorage();
+		// the two types always hold 0.8 together
+		storage.addItem(1, "itemUUID1", "Milk", 0.4);
+		storage.addItem(2, "itemUUID2", "Yogurt", 0.4);
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<String> failure = new AtomicReference<>();
+		List<Thread> readers = new ArrayList<>();
+		for (int r = 0; r < 3; r++) {
+			Thread reader = new Thread(() -> {
+				while (running.get()) {
+					Map<Long, Double> items = storage.getItems(1.0);
+					Double first = items.get(1L);
+					Double second = items.get(2L);
+					double sum = (first == null ? 0 : first)
+							+ (second == null ? 0 : second);
+					if (Math.abs(sum - 0.8) > 0.001
+							&& Math.abs(sum - 0.4) > 0.001) {
+						failure.set("Inconsistent read " + items);
+					}
+					if (storage.getFillFactor(3) != null) {
+						failure.set("Unknown type was found");
+					}
+				}
+			});
+			reader.start();
+			readers.add(reader);
+		}
+		for (int i = 0; i < 20000; i++) {
+			storage.removeItem("itemUUID1");
+			storage.addItem(2, "itemUUID1", "Milk", 0.4);
+			storage.removeItem("itemUUID1");
+			storage.addItem(1, "itemUUID1", "Milk", 0.4);
+		}
+		running.set(false);
+		for (Thread reader : readers) {
+			reader.join();
+		}
+		assertNull(failure.get());
+	}
+}
@@ -0,0 +1,234 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+
+/**
+ * Behaviour every {@link Storage} backend must have. A backend passes the
+ * suite by extending it and creating its storage in
+ * {@link #createStorage()}.
+ */
+abstract class StorageConformanceTest {
+
+	Storage storage;
+
+	/**
+	 * Creates a new, empty storage of the backend under test
+	 * 
+	 * @return {@link Storage}
+	 */
+	protected abstract Storage createStorage() throws Exception;
+
+	/**
+	 * Releases the storage created by {@link #createStorage()}
+	 * 
+	 * @param storage storage to release
+	 */
+	protected void releaseStorage(Storage storage) throws Exception {
+	}
+
+	@BeforeEach
+	void setUp() throws Exception {
+		storage = createStorage();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		releaseStorage(storage);
+	}
+
+	@Test
+	@DisplayName("A new storage is empty")
+	void testEmpty() {
+		assertNull(storage.getFillFactor(1));
+		assertTrue(storage.getItems(1.0).isEmpty());
+		assertNull(storage.removeItem("ItemUUID1"));
+	}
+
+	@Test
+	@DisplayName("Added items are returned and fill their type")
+	void testAddItem() throws Exception {
+		Item item = storage.addItem(1, "ItemUUID1", "Milk", 0.3);
+		assertEquals("ItemUUID1", item.getUUID());
+		assertEquals(1, item.getType());
+		assertEquals("Milk", item.getName());
+		assertEquals(0.3, item.getFillFactor(), 0.001);
+
+		storage.addItem(1, "ItemUUID2", "Yogurt", 0.25);
+		storage.addItem(-2, "ItemUUID3", "Beef", 0.5);
+
+		assertEquals(0.55, storage.getFillFactor(1), 0.001);
+		assertEquals(0.5, storage.getFillFactor(-2), 0.001);
+		assertNull(storage.getFillFactor(3));
+	}
+
+	@Test
+	@DisplayName("Invalid items are rejected")
+	void testInvalidItems() {
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, null, "Milk", 0.3));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, "", "Milk", 0.3));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, "ItemUUID1", null, 0.3));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, "ItemUUID1", "", 0.3));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, "ItemUUID1", "Milk", 0.0));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, "ItemUUID1", "Milk", -0.1));
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, "ItemUUID1", "Milk", 1.0));
+
+		assertNull(storage.getFillFactor(1));
+	}
+
+	@Test
+	@DisplayName("UUIDs are unique across item types")
+	void testDuplicates() throws Exception {
+		storage.addItem(1, "ItemUUID1", "Milk", 0.3);
+		assertThrows(DoublicateItemException.class,
+				() -> storage.addItem(1, "ItemUUID1", "Milk", 0.3));
+		assertThrows(DoublicateItemException.class,
+				() -> storage.addItem(2, "ItemUUID1", "Beef", 0.3));
+
+		assertEquals(0.3, storage.getFillFactor(1), 0.001);
+		assertNull(storage.getFillFactor(2));
+	}
+
+	@Test
+	@DisplayName("An overflowing item leaves the storage unchanged")
+	void testOverflow() throws Exception {
+		storage.addItem(1, "ItemUUID1", "Milk", 0.7);
+		assertThrows(BinOverflowException.class,
+				() -> storage.addItem(1, "ItemUUID2", "Milk", 0.4));
+
+		assertEquals(0.7, storage.getFillFactor(1), 0.001);
+		assertNull(storage.removeItem("ItemUUID2"));
+
+		storage.addItem(1, "ItemUUID2", "Milk", 0.3);
+		assertEquals(1.0, storage.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Removed items free their room and may be added again")
+	void testRemoveItem() throws Exception {
+		storage.addItem(1, "ItemUUID1", "Milk", 0.3);
+		storage.addItem(1, "ItemUUID2", "Yogurt", 0.4);
+
+		Item removed = storage.removeItem("ItemUUID2");
+		assertEquals("ItemUUID2", removed.getUUID());
+		assertEquals("Yogurt", removed.getName());
+		assertEquals(0.4, removed.getFillFactor(), 0.001);
+		assertEquals(0.3, storage.getFillFactor(1), 0.001);
+
+		assertNull(storage.removeItem("ItemUUID2"));
+		assertNull(storage.removeItem(""));
+
+		storage.addItem(1, "ItemUUID2", "Yogurt", 0.4);
+		assertEquals(0.7, storage.getFillFactor(1), 0.001);
+
+		storage.removeItem("ItemUUID1");
+		storage.removeItem("ItemUUID2");
+		assertEquals(0.0, storage.getFillFactor(1), 0.001);
+	}
+
+	@Test
+	@DisplayName("Expiry times are kept with the items")
+	void testExpiry() throws Exception {
+		Item added = storage.addItem(1, "ItemUUID1", "Milk", 0.3,
+				1500000000000L);
+		assertEquals(1500000000000L, added.getExpiresAt());
+		assertTrue(added.isPerishable());
+		assertFalse(storage.addItem(1, "ItemUUID2", "Salt", 0.1)
+				.isPerishable());
+		assertThrows(IllegalArgumentException.class,
+				() -> storage.addItem(1, "ItemUUID3", "Yogurt", 0.1, 0));
+
+		assertEquals(1500000000000L,
+				storage.removeItem("ItemUUID1").getExpiresAt());
+		assertEquals(Item.NO_EXPIRY,
+				storage.removeItem("ItemUUID2").getExpiresAt());
+	}
+
+	@Test
+	@DisplayName("getItems returns the types strictly below the threshold")
+	void testGetItems() throws Exception {
+		storage.addItem(1, "ItemUUID1", "Milk", 0.3);
+		storage.addItem(2, "ItemUUID2", "Beef", 0.5);
+		storage.addItem(3, "ItemUUID3", "Salad", 0.6);
+		storage.addItem(4, "ItemUUID4", "Cheese", 0.2);
+		storage.removeItem("ItemUUID4");
+
+		Map<Long, Double> items = storage.getItems(0.5);
+		assertEquals(2, items.size());
+		assertEquals(0.3, items.get(1L), 0.001);
+		assertEquals(0.0, items.get(4L), 0.001);
+
+		assertEquals(4, storage.getItems(1.0).size());
+		assertTrue(storage.getItems(0.0).isEmpty());
+	}
+
+	@Test
+	@DisplayName("getItems compares at two significant digits")
+	void testGetItemsRounding() throws Exception {
+		storage.addItem(1, "ItemUUID1", "Milk", 0.5);
+		storage.addItem(1, "ItemUUID2", "Kefir", 0.5);
+		storage.addItem(2, "ItemUUID3", "Beef", 0.5);
+
+		// 1.04 rounds to 1.0, which a full type is not below
+		Map<Long, Double> items = storage.getItems(1.04);
+		assertEquals(1, items.size());
+		assertEquals(0.5, items.get(2L), 0.001);
+		assertEquals(2, storage.getItems(1.05).size());
+	}
+
+	@Test
+	@DisplayName("Forgotten types and their items are dropped")
+	void testForgetItem() throws Exception {
+		storage.addItem(1, "ItemUUID1", "Milk", 0.3);
+		storage.addItem(2, "ItemUUID2", "Beef", 0.3);
+		storage.addItem(2, "ItemUUID3", "Pork", 0.3);
+
+		storage.forgetItem(2);
+		storage.forgetItem(5);
+
+		assertNull(storage.getFillFactor(2));
+		assertNull(storage.removeItem("ItemUUID2"));
+		Map<Long, Double> items = storage.getItems(1.0);
+		assertEquals(1, items.size());
+		assertEquals(0.3, items.get(1L), 0.001);
+
+		// the UUIDs of a forgotten type can be used again
+		storage.addItem(3, "ItemUUID2", "Salad", 0.3);
+		assertEquals(0.3, storage.getFillFactor(3), 0.001);
+	}
+
+	@Test
+	@DisplayName("Many items and types")
+	void testManyItems() throws Exception {
+		for (int i = 0; i < 5000; i++) {
+			storage.addItem(i % 500, "ItemUUID" + i, "Item", 0.1);
+		}
+		// remove every other item of each type
+		for (int i = 0; i < 5000; i++) {
+			if ((i / 500) % 2 == 0) {
+				assertNotNull(storage.removeItem("ItemUUID" + i));
+			}
+		}
+		for (int t = 0; t < 500; t++) {
+			assertEquals(0.5, storage.getFillFactor(t), 0.001);
+		}
+		assertEquals(500, storage.getItems(0.6).size());
+	}
+
+}
@@ -0,0 +1,129 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs the same workload against every {@link StorageProvider} found on the
+ * class path and reports the throughput of each backend in one table.
+ */
+class StoragePerformanceTest {
+	Logger logger = LoggerFactory.getLogger(StoragePerformanceTest.class);
+
+	static final int ITEMS = 20000;
+
+	static final int TYPES = 200;
+
+	static final int ROUNDS = 3;
+
+	static final String[] OPERATIONS = { "addItem", "getFillFactor",
+			"getItems", "removeItem" };
+
+	@Test
+	@DisplayName("Every backend is discovered and can be looked up by name")
+	void testProviders() {
+		List<StorageProvider> providers = StorageProvider.providers();
+		assertFalse(providers.isEmpty());
+		for (StorageProvider provider : providers) {
+			assertSame(provider.getClass(),
+					StorageProvider.byName(provider.getName()).getClass());
+		}
+		assertTrue(StorageProvider.byName(
+				InMemoryStorageProvider.NAME) instanceof InMemoryStorageProvider);
+		assertTrue(StorageProvider.byName(StampedLockStorageProvider.NAME)
+				.create() instanceof StampedLockStorage);
+		assertTrue(StorageProvider.byName(CatalogStorageProvider.NAME)
+				.create() instanceof CatalogStorage);
+		assertThrows(IllegalArgumentException.class,
+				() -> StorageProvider.byName("no-such-backend"));
+	}
+
+	@Test
+	@DisplayName("Performance profile of every backend")
+	void testPerformanceProfile() throws Exception {
+		String[] uuids = new String[ITEMS];
+		for (int i = 0; i < ITEMS; i++) {
+			uuids[i] = "ItemUUID" + i;
+		}
+
+		List<String> rows = new ArrayList<>();
+		for (StorageProvider provider : StorageProvider.providers()) {
+			double[] best = new double[OPERATIONS.length];
+			for (int round = 0; round < ROUNDS; round++) {
+				double[] opsPerSecond = profile(provider, uuids);
+				for (int i = 0; i < best.length; i++) {
+					best[i] = Math.max(best[i], opsPerSecond[i]);
+				}
+			}
+			StringBuilder row = new StringBuilder(
+					String.format("%-16s", provider.getName()));
+			for (double value : best) {
+				row.append(String.format(" %14.0f", value));
+			}
+			rows.add(row.toString());
+		}
+
+		StringBuilder header = new StringBuilder(
+				String.format("%-16s", "backend (ops/s)"));
+		for (String operation : OPERATIONS) {
+			header.append(String.format(" %14s", operation));
+		}
+		logger.info(header.toString());
+		rows.forEach(logger::info);
+	}
+
+	/**
+	 * Runs the workload once and returns the throughput of every operation
+	 */
+	double[] profile(StorageProvider provider, String[] uuids)
+			throws Exception {
+		Storage storage = provider.create(StorageConfig.builder()
+				.expectedTypes(TYPES).expectedItems(ITEMS).build());
+		double[] result = new double[OPERATIONS.length];
+		try {
+			long start = System.nanoTime();
+			for (int i = 0; i < ITEMS; i++) {
+				storage.addItem(i % TYPES, uuids[i], "Item", 0.005);
+			}
+			result[0] = opsPerSecond(ITEMS, start);
+
+			start = System.nanoTime();
+			double sum = 0;
+			for (int i = 0; i < ITEMS; i++) {
+				sum += storage.getFillFactor(i % TYPES);
+			}
+			result[1] = opsPerSecond(ITEMS, start);
+			assertEquals(0.5 * ITEMS, sum, 0.01 * ITEMS);
+
+			int calls = ITEMS / TYPES;
+			start = System.nanoTime();
+			for (int i = 0; i < calls; i++) {
+				assertEquals(TYPES, storage.getItems(1.0).size());
+			}
+			result[2] = opsPerSecond(calls, start);
+
+			start = System.nanoTime();
+			for (int i = 0; i < ITEMS; i++) {
+				assertNotNull(storage.removeItem(uuids[i]));
+			}
+			result[3] = opsPerSecond(ITEMS, start);
+		} finally {
+			if (storage instanceof AutoCloseable) {
+				((AutoCloseable) storage).close();
+			}
+		}
+		return result;
+	}
+
+	static double opsPerSecond(int operations, long start) {
+		long elapsed = Math.max(1, System.nanoTime() - start);
+		return operations * 1e9 / elapsed;
+	}
+}
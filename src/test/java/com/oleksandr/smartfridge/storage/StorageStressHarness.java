@@ -0,0 +1,337 @@
+package com.oleksandr.smartfridge.storage;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs randomized concurrent histories of {@link Storage} calls and checks
+ * them for linearizability: there must be one order of the calls, which
+ * keeps the real-time order of calls that didn't overlap, in which a
+ * sequential {@link InMemoryStorage} returns exactly what the concurrent
+ * storage returned.
+ *
+ * The check is the search of Wing and Gong with the memoization of Lowe:
+ * it tries every call which may come next, and prunes a branch when the
+ * same calls linearized before led to the same storage content already.
+ * The search is exponential in the worst case, so histories are kept short
+ * and run on a small key space where calls collide often.
+ */
+class StorageStressHarness {
+
+	static final double[] FILL_FACTORS = { 0.1, 0.2, 0.3 };
+
+	static final double[] THRESHOLDS = { 0.15, 0.35, 1.0, 1.04 };
+
+	enum Kind {
+		ADD, REMOVE, FORGET, FILL_FACTOR, ITEMS
+	}
+
+	/**
+	 * One call of a history with the result it got
+	 */
+	static final class Operation {
+
+		final int thread;
+
+		final Kind kind;
+
+		final long itemType;
+
+		final String itemUUID;
+
+		final double value;
+
+		/**
+		 * Clock ticks right before the call and right after it returned
+		 */
+		long invoked;
+
+		long returned;
+
+		Object result;
+
+		Operation(int thread, Kind kind, long itemType, String itemUUID,
+				double value) {
+			this.thread = thread;
+			this.kind = kind;
+			this.itemType = itemType;
+			this.itemUUID = itemUUID;
+			this.value = value;
+		}
+
+		/**
+		 * Calls the storage and returns a result which can be compared with
+		 * the result of another storage
+		 */
+		Object apply(Storage storage) {
+			try {
+				switch (kind) {
+				case ADD:
+					storage.addItem(itemType, itemUUID, "Item", value);
+					return "added";
+				case REMOVE:
+					Item item = storage.removeItem(itemUUID);
+					return item == null ? null
+							: item.getUUID() + "/" + item.getType();
+				case FORGET:
+					storage.forgetItem(itemType);
+					return null;
+				case FILL_FACTOR:
+					return storage.getFillFactor(itemType);
+				default:
+					Map<Long, Double> items = storage.getItems(value);
+					return items == null ? null : new TreeMap<>(items);
+				}
+			} catch (Exception e) {
+				return e.getClass().getSimpleName();
+			}
+		}
+
+		@Override
+		public String toString() {
+			String call;
+			switch (kind) {
+			case ADD:
+				call = String.format("add(%d, %s, %s)", itemType, itemUUID,
+						value);
+				break;
+			case REMOVE:
+				call = String.format("remove(%s)", itemUUID);
+				break;
+			case FORGET:
+				call = String.format("forget(%d)", itemType);
+				break;
+			case FILL_FACTOR:
+				call = String.format("fillFactor(%d)", itemType);
+				break;
+			default:
+				call = String.format("items(%s)", value);
+			}
+			return String.format("T%d [%d, %d] %s = %s", thread, invoked,
+					returned, call, result);
+		}
+	}
+
+	/**
+	 * Returns a random call on a key space of six items of three types.
+	 * An item always has the same type, so removes and adds collide.
+	 */
+	static Operation randomOperation(int thread, Random random) {
+		int item = random.nextInt(6);
+		long itemType = item % 3;
+		String itemUUID = "ItemUUID" + item;
+		int choice = random.nextInt(100);
+		if (choice < 35) {
+			return new Operation(thread, Kind.ADD, itemType, itemUUID,
+					FILL_FACTORS[random.nextInt(FILL_FACTORS.length)]);
+		} else if (choice < 60) {
+			return new Operation(thread, Kind.REMOVE, itemType, itemUUID, 0);
+		} else if (choice < 68) {
+			return new Operation(thread, Kind.FORGET, itemType, null, 0);
+		} else if (choice < 88) {
+			return new Operation(thread, Kind.FILL_FACTOR, itemType, null, 0);
+		}
+		return new Operation(thread, Kind.ITEMS, 0, null,
+				THRESHOLDS[random.nextInt(THRESHOLDS.length)]);
+	}
+
+	/**
+	 * Runs random calls from several threads against the storage, all
+	 * threads released at once, and returns the recorded history
+	 *
+	 * @param storage    storage under test
+	 * @param threads    number of threads
+	 * @param operations calls per thread
+	 * @param seed       seed of the calls
+	 * @return history ordered by invocation
+	 */
+	static List<Operation> record(Storage storage, int threads,
+			int operations, long seed) throws InterruptedException {
+		AtomicLong clock = new AtomicLong();
+		CyclicBarrier start = new CyclicBarrier(threads);
+		List<List<Operation>> histories = new ArrayList<>();
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			List<Operation> history = new ArrayList<>(operations);
+			histories.add(history);
+			Random random = new Random(seed * 31 + t);
+			int thread = t;
+			workers.add(new Thread(() -> {
+				try {
+					start.await();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				for (int i = 0; i < operations; i++) {
+					Operation operation = randomOperation(thread, random);
+					operation.invoked = clock.incrementAndGet();
+					operation.result = operation.apply(storage);
+					operation.returned = clock.incrementAndGet();
+					history.add(operation);
+				}
+			}));
+		}
+		workers.forEach(Thread::start);
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		List<Operation> history = new ArrayList<>();
+		histories.forEach(history::addAll);
+		history.sort(Comparator.comparingLong(o -> o.invoked));
+		return history;
+	}
+
+	/**
+	 * Checks if a history is linearizable with respect to a sequential
+	 * {@link InMemoryStorage}
+	 *
+	 * @param history complete calls
+	 * @return true when a linearization exists
+	 */
+	static boolean isLinearizable(List<Operation> history) {
+		return search(history, new BitSet(history.size()), new ArrayList<>(),
+				new HashSet<>());
+	}
+
+	private static boolean search(List<Operation> history, BitSet done,
+			List<Operation> order, Set<String> seen) {
+		if (order.size() == history.size()) {
+			return true;
+		}
+		// a call may come next when no pending call returned before it
+		// was invoked
+		long firstReturn = Long.MAX_VALUE;
+		for (int i = done.nextClearBit(0); i < history.size(); i = done
+				.nextClearBit(i + 1)) {
+			firstReturn = Math.min(firstReturn, history.get(i).returned);
+		}
+		for (int i = done.nextClearBit(0); i < history.size(); i = done
+				.nextClearBit(i + 1)) {
+			Operation operation = history.get(i);
+			if (operation.invoked > firstReturn) {
+				break;
+			}
+			InMemoryStorage model = replay(order);
+			if (!Objects.equals(operation.apply(model), operation.result)) {
+				continue;
+			}
+			done.set(i);
+			order.add(operation);
+			if (seen.add(done + state(model))
+					&& search(history, done, order, seen)) {
+				return true;
+			}
+			order.remove(order.size() - 1);
+			done.clear(i);
+		}
+		return false;
+	}
+
+	private static InMemoryStorage replay(List<Operation> order) {
+		InMemoryStorage model = new InMemoryStorage();
+		for (Operation operation : order) {
+			operation.apply(model);
+		}
+		return model;
+	}
+
+	/**
+	 * Content of the model: the types with their fill factors and the items
+	 */
+	private static String state(InMemoryStorage model) {
+		TreeMap<String, Long> items = new TreeMap<>();
+		model.forEachItem(item -> items.put(item.getUUID(), item.getType()));
+		TreeMap<Long, Double> types = new TreeMap<>();
+		model.forEachType(types::put);
+		return types.toString() + items;
+	}
+
+	/**
+	 * Runs a mixed workload from the given number of threads for a while
+	 * and returns the calls completed per second. Every thread works on
+	 * its own items spread over shared types, so the threads contend for
+	 * the storage but their calls succeed.
+	 *
+	 * @param factory  creates the storage under test
+	 * @param threads  number of threads
+	 * @param millis   duration of the run
+	 * @return calls per second
+	 */
+	static double throughput(Supplier<Storage> factory, int threads,
+			long millis) throws InterruptedException {
+		Storage storage = factory.get();
+		CyclicBarrier start = new CyclicBarrier(threads + 1);
+		long[] counts = new long[threads];
+		AtomicBoolean stop = new AtomicBoolean();
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int thread = t;
+			workers.add(new Thread(() -> {
+				Random random = new Random(thread);
+				String[] uuids = new String[64];
+				for (int i = 0; i < uuids.length; i++) {
+					uuids[i] = "ItemUUID" + thread + "-" + i;
+				}
+				try {
+					start.await();
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+				long count = 0;
+				while (!stop.get()) {
+					for (int i = 0; i < 256; i++) {
+						int item = random.nextInt(uuids.length);
+						long itemType = item % 16;
+						int choice = random.nextInt(10);
+						try {
+							if (choice < 2) {
+								storage.addItem(itemType, uuids[item], "Item",
+										0.001);
+							} else if (choice < 4) {
+								storage.removeItem(uuids[item]);
+							} else if (choice < 9) {
+								storage.getFillFactor(itemType);
+							} else {
+								storage.getItems(0.5);
+							}
+						} catch (Exception e) {
+							// duplicates are part of the workload
+						}
+					}
+					count += 256;
+				}
+				counts[thread] = count;
+			}));
+		}
+		workers.forEach(Thread::start);
+		try {
+			start.await();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		long begin = System.nanoTime();
+		Thread.sleep(millis);
+		stop.set(true);
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		long elapsed = System.nanoTime() - begin;
+		long total = 0;
+		for (long count : counts) {
+			total += count;
+		}
+		return total * 1e9 / elapsed;
+	}
+}
@@ -0,0 +1,232 @@
+package com.oleksandr.smartfridge.storage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.exceptions.DoublicateItemException;
+import com.oleksandr.smartfridge.exceptions.WrongBinException;
+import com.oleksandr.smartfridge.storage.StorageStressHarness.Kind;
+import com.oleksandr.smartfridge.storage.StorageStressHarness.Operation;
+
+/**
+ * Runs concurrent histories against every thread-safe {@link Storage} and
+ * checks them with {@link StorageStressHarness}, then reports how the
+ * throughput of each one scales with the number of threads.
+ */
+class StorageStressTest {
+	Logger logger = LoggerFactory.getLogger(StorageStressTest.class);
+
+	static final int THREADS = 4;
+
+	static final int OPERATIONS = 15;
+
+	static final int HISTORIES = 200;
+
+	static Map<String, Supplier<Storage>> storages() {
+		Map<String, Supplier<Storage>> storages = new LinkedHashMap<>();
+		storages.put("synchronized",
+				() -> new SynchronizedStorage(new InMemoryStorage()));
+		storages.put("stamped-lock", StampedLockStorage::new);
+		storages.put("sync-catalog",
+				() -> new SynchronizedStorage(new CatalogStorage()));
+		return storages;
+	}
+
+	static Operation call(int thread, long invoked, long returned, Kind kind,
+			long itemType, String itemUUID, double value, Object result) {
+		Operation operation = new Operation(thread, kind, itemType, itemUUID,
+				value);
+		operation.invoked = invoked;
+		operation.returned = returned;
+		operation.result = result;
+		return operation;
+	}
+
+	static Map<Long, Double> items(Object... typesAndFills) {
+		Map<Long, Double> items = new TreeMap<>();
+		for (int i = 0; i < typesAndFills.length; i += 2) {
+			items.put(((Number) typesAndFills[i]).longValue(),
+					(Double) typesAndFills[i + 1]);
+		}
+		return items;
+	}
+
+	@Test
+	@DisplayName("Overlapping calls may take effect in either order")
+	void testLinearizableHistory() {
+		// the query overlaps the add, so it may see the item or not
+		List<Operation> history = Arrays.asList(
+				call(0, 1, 4, Kind.ADD, 1, "ItemUUID1", 0.3, "added"),
+				call(1, 2, 3, Kind.FILL_FACTOR, 1, null, 0, 0.3),
+				call(1, 5, 6, Kind.ITEMS, 0, null, 1.0, items(1, 0.3)));
+		assertTrue(StorageStressHarness.isLinearizable(history));
+
+		history = Arrays.asList(
+				call(0, 1, 4, Kind.ADD, 1, "ItemUUID1", 0.3, "added"),
+				call(1, 2, 3, Kind.FILL_FACTOR, 1, null, 0, null));
+		assertTrue(StorageStressHarness.isLinearizable(history));
+
+		// two adds of the same item race, one of them must fail
+		history = Arrays.asList(
+				call(0, 1, 3, Kind.ADD, 1, "ItemUUID1", 0.3, "added"),
+				call(1, 2, 4, Kind.ADD, 1, "ItemUUID1", 0.3,
+						"DoublicateItemException"),
+				call(0, 5, 6, Kind.REMOVE, 1, "ItemUUID1", 0,
+						"ItemUUID1/1"));
+		assertTrue(StorageStressHarness.isLinearizable(history));
+	}
+
+	@Test
+	@DisplayName("Results no order explains are rejected")
+	void testNonLinearizableHistory() {
+		// the add returned before the query started, so the query is stale
+		List<Operation> history = Arrays.asList(
+				call(0, 1, 2, Kind.ADD, 1, "ItemUUID1", 0.3, "added"),
+				call(1, 3, 4, Kind.FILL_FACTOR, 1, null, 0, null));
+		assertFalse(StorageStressHarness.isLinearizable(history));
+
+		// both racing adds claim to have succeeded
+		history = Arrays.asList(
+				call(0, 1, 3, Kind.ADD, 1, "ItemUUID1", 0.3, "added"),
+				call(1, 2, 4, Kind.ADD, 1, "ItemUUID1", 0.3, "added"));
+		assertFalse(StorageStressHarness.isLinearizable(history));
+
+		// a snapshot with one of two items no order of the adds produces
+		history = Arrays.asList(
+				call(0, 1, 2, Kind.ADD, 1, "ItemUUID1", 0.1, "added"),
+				call(0, 3, 4, Kind.ADD, 2, "ItemUUID2", 0.1, "added"),
+				call(1, 5, 6, Kind.ITEMS, 0, null, 1.0, items(2, 0.1)));
+		assertFalse(StorageStressHarness.isLinearizable(history));
+	}
+
+	@Test
+	@DisplayName("Concurrent histories of every thread-safe storage are linearizable")
+	void testLinearizability() throws Exception {
+		for (Map.Entry<String, Supplier<Storage>> entry : storages()
+				.entrySet()) {
+			for (int seed = 0; seed < HISTORIES; seed++) {
+				List<Operation> history = StorageStressHarness.record(
+						entry.getValue().get(), THREADS, OPERATIONS, seed);
+				if (!StorageStressHarness.isLinearizable(history)) {
+					StringBuilder message = new StringBuilder(String.format(
+							"%s history %d is not linearizable:",
+							entry.getKey(), seed));
+					history.forEach(o -> message.append('\n').append(o));
+					fail(message.toString());
+				}
+			}
+		}
+	}
+
+	@Test
+	@DisplayName("A storage whose listings can tear is caught")
+	void testTornListing() throws Exception {
+		int rejected = 0;
+		for (int seed = 0; seed < HISTORIES; seed++) {
+			// alone the storage is correct
+			assertTrue(StorageStressHarness.isLinearizable(StorageStressHarness
+					.record(new TornListingStorage(new SynchronizedStorage(
+							new InMemoryStorage())), 1, OPERATIONS, seed)));
+			if (!StorageStressHarness.isLinearizable(StorageStressHarness
+					.record(new TornListingStorage(new SynchronizedStorage(
+							new InMemoryStorage())), THREADS, OPERATIONS,
+							seed))) {
+				rejected++;
+			}
+		}
+		assertTrue(rejected > 0);
+		logger.info(String.format("%d of %d torn histories rejected",
+				rejected, HISTORIES));
+	}
+
+	@Test
+	@DisplayName("Throughput of every thread-safe storage from 1 to N threads")
+	void testScaling() throws Exception {
+		List<Integer> threadCounts = new ArrayList<>();
+		int maxThreads = Math.max(4,
+				Runtime.getRuntime().availableProcessors());
+		for (int threads = 1; threads < maxThreads; threads *= 2) {
+			threadCounts.add(threads);
+		}
+		threadCounts.add(maxThreads);
+
+		StringBuilder header = new StringBuilder(
+				String.format("%-16s", "storage (ops/s)"));
+		threadCounts.forEach(t -> header.append(String.format(" %12s",
+				t + (t == 1 ? " thread" : " threads"))));
+		logger.info(header.toString());
+		for (Map.Entry<String, Supplier<Storage>> entry : storages()
+				.entrySet()) {
+			StringBuilder row = new StringBuilder(
+					String.format("%-16s", entry.getKey()));
+			for (int threads : threadCounts) {
+				double opsPerSecond = StorageStressHarness
+						.throughput(entry.getValue(), threads, 200);
+				assertTrue(opsPerSecond > 0);
+				row.append(String.format(" %12.0f", opsPerSecond));
+			}
+			logger.info(row.toString());
+		}
+	}
+
+	/**
+	 * Storage which lists the item types one at a time instead of from one
+	 * state, as a storage with a racy snapshot would
+	 */
+	static final class TornListingStorage implements Storage {
+
+		private final Storage storage;
+
+		TornListingStorage(Storage storage) {
+			this.storage = storage;
+		}
+
+		@Override
+		public Item addItem(long itemType, String itemUUID, String name,
+				Double fillFactor) throws WrongBinException,
+				BinOverflowException, DoublicateItemException {
+			return storage.addItem(itemType, itemUUID, name, fillFactor);
+		}
+
+		@Override
+		public Item removeItem(String itemUUID) {
+			return storage.removeItem(itemUUID);
+		}
+
+		@Override
+		public Map<Long, Double> getItems(Double fillFactor) {
+			Map<Long, Double> items = new TreeMap<>();
+			for (long itemType = 0; itemType < 3; itemType++) {
+				Double value = storage.getFillFactor(itemType);
+				if (value != null && value < fillFactor) {
+					items.put(itemType, value);
+				}
+				Thread.yield();
+			}
+			return items;
+		}
+
+		@Override
+		public Double getFillFactor(long itemType) {
+			return storage.getFillFactor(itemType);
+		}
+
+		@Override
+		public void forgetItem(long itemType) {
+			storage.forgetItem(itemType);
+		}
+	}
+}
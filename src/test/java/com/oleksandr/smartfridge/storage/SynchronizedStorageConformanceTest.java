@@ -0,0 +1,10 @@
+package com.oleksandr.smartfridge.storage;
+
+class SynchronizedStorageConformanceTest extends StorageConformanceTest {
+
+	@Override
+	protected Storage createStorage() {
+		return new SynchronizedStorage(new InMemoryStorage());
+	}
+
+}
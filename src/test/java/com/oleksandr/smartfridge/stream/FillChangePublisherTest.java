@@ -0,0 +1,229 @@
+package com.oleksandr.smartfridge.stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageEvent;
+
+class FillChangePublisherTest {
+
+	/**
+	 * Subscriber which records the events and requests items only when
+	 * asked to
+	 */
+	static class RecordingSubscriber implements Flow.Subscriber<StorageEvent> {
+		final List<StorageEvent> events = new ArrayList<>();
+		final long initialRequest;
+		Flow.Subscription subscription;
+		boolean completed;
+		Throwable error;
+
+		RecordingSubscriber(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (initialRequest > 0) {
+				subscription.request(initialRequest);
+			}
+		}
+
+		@Override
+		public void onNext(StorageEvent item) {
+			events.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+
+	@Test
+	@DisplayName("Storage changes are published to subscribers")
+	void testPublish() {
+		InMemoryStorage storage = new InMemoryStorage();
+		FillChangePublisher publisher = new FillChangePublisher(Runnable::run,
+				16, OverflowPolicy.DROP_OLDEST);
+		storage.addListener(publisher);
+
+		RecordingSubscriber subscriber = new RecordingSubscriber(
+				Long.MAX_VALUE);
+		publisher.subscribe(subscriber);
+
+		assertDoesNotThrow(() -> {
+			storage.addItem(1, "ItemUUID1", "Milk", 0.2);
+			storage.addItem(1, "ItemUUID2", "Yogurt", 0.3);
+		});
+		storage.removeItem("ItemUUID1");
+		storage.forgetItem(1);
+
+		assertEquals(4, subscriber.events.size());
+
+		StorageEvent added = subscriber.events.get(1);
+		assertEquals(StorageEvent.Kind.ADDED, added.getKind());
+		assertEquals("ItemUUID2", added.getItem().getUUID());
+		assertEquals(0.2, added.getPreviousFillFactor(), 0.001);
+		assertEquals(0.5, added.getFillFactor(), 0.001);
+
+		StorageEvent removed = subscriber.events.get(2);
+		assertEquals(StorageEvent.Kind.REMOVED, removed.getKind());
+		assertEquals(0.3, removed.getFillFactor(), 0.001);
+
+		StorageEvent forgotten = subscriber.events.get(3);
+		assertEquals(StorageEvent.Kind.FORGOTTEN, forgotten.getKind());
+		assertNull(forgotten.getItem());
+		assertEquals(0.3, forgotten.getPreviousFillFactor(), 0.001);
+
+		publisher.close();
+		assertTrue(subscriber.completed);
+	}
+
+	@Test
+	@DisplayName("A full buffer drops its oldest events")
+	void testDropOldest() {
+		InMemoryStorage storage = new InMemoryStorage();
+		FillChangePublisher publisher = new FillChangePublisher(Runnable::run,
+				2, OverflowPolicy.DROP_OLDEST);
+		storage.addListener(publisher);
+
+		RecordingSubscriber subscriber = new RecordingSubscriber(0);
+		publisher.subscribe(subscriber);
+
+		assertDoesNotThrow(() -> {
+			for (int i = 0; i < 5; i++) {
+				storage.addItem(i, "ItemUUID" + i, "Milk", 0.1);
+			}
+		});
+		assertTrue(subscriber.events.isEmpty());
+		assertEquals(3, publisher.getDroppedCount());
+
+		subscriber.subscription.request(10);
+		assertEquals(2, subscriber.events.size());
+		assertEquals(3, subscriber.events.get(0).getItemType());
+		assertEquals(4, subscriber.events.get(1).getItemType());
+	}
+
+	@Test
+	@DisplayName("A conflating buffer keeps the latest event per type")
+	void testConflate() {
+		InMemoryStorage storage = new InMemoryStorage();
+		FillChangePublisher publisher = new FillChangePublisher(Runnable::run,
+				16, OverflowPolicy.CONFLATE);
+		storage.addListener(publisher);
+
+		RecordingSubscriber subscriber = new RecordingSubscriber(0);
+		publisher.subscribe(subscriber);
+
+		assertDoesNotThrow(() -> {
+			storage.addItem(1, "ItemUUID1", "Milk", 0.1);
+			storage.addItem(2, "ItemUUID2", "Beef", 0.1);
+			storage.addItem(1, "ItemUUID3", "Milk", 0.1);
+			storage.addItem(1, "ItemUUID4", "Milk", 0.1);
+		});
+
+		subscriber.subscription.request(10);
+		assertEquals(2, subscriber.events.size());
+		assertEquals(1, subscriber.events.get(0).getItemType());
+		assertEquals(0.3, subscriber.events.get(0).getFillFactor(), 0.001);
+		assertEquals(2, subscriber.events.get(1).getItemType());
+		assertEquals(2, publisher.getDroppedCount());
+	}
+
+	@Test
+	@DisplayName("A blocking subscriber receives every event")
+	void testBlock() throws InterruptedException {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			InMemoryStorage storage = new InMemoryStorage();
+			FillChangePublisher publisher = new FillChangePublisher(executor,
+					4, OverflowPolicy.BLOCK);
+			storage.addListener(publisher);
+
+			int count = 1000;
+			CountDownLatch done = new CountDownLatch(1);
+			List<StorageEvent> events = new ArrayList<>();
+			publisher.subscribe(new Flow.Subscriber<StorageEvent>() {
+				Flow.Subscription subscription;
+
+				@Override
+				public void onSubscribe(Flow.Subscription subscription) {
+					this.subscription = subscription;
+					subscription.request(1);
+				}
+
+				@Override
+				public void onNext(StorageEvent item) {
+					events.add(item);
+					subscription.request(1);
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+				}
+
+				@Override
+				public void onComplete() {
+					done.countDown();
+				}
+			});
+
+			assertDoesNotThrow(() -> {
+				for (int i = 0; i < count; i++) {
+					storage.addItem(i, "ItemUUID" + i, "Milk", 0.1);
+				}
+			});
+			publisher.close();
+
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(count, events.size());
+			assertEquals(0, publisher.getDroppedCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	@DisplayName("Cancelled and invalid subscriptions stop receiving events")
+	void testCancelAndInvalidRequest() {
+		InMemoryStorage storage = new InMemoryStorage();
+		FillChangePublisher publisher = new FillChangePublisher(Runnable::run,
+				16, OverflowPolicy.DROP_OLDEST);
+		storage.addListener(publisher);
+
+		RecordingSubscriber cancelled = new RecordingSubscriber(
+				Long.MAX_VALUE);
+		RecordingSubscriber invalid = new RecordingSubscriber(0);
+		publisher.subscribe(cancelled);
+		publisher.subscribe(invalid);
+		assertEquals(2, publisher.getSubscriberCount());
+
+		cancelled.subscription.cancel();
+		invalid.subscription.request(0);
+
+		assertTrue(invalid.error instanceof IllegalArgumentException);
+		assertEquals(0, publisher.getSubscriberCount());
+
+		assertDoesNotThrow(() -> storage.addItem(1, "ItemUUID1", "Milk", 0.1));
+		assertTrue(cancelled.events.isEmpty());
+		assertTrue(invalid.events.isEmpty());
+	}
+
+}
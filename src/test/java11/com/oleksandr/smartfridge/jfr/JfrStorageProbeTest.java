@@ -0,0 +1,73 @@
+package com.oleksandr.smartfridge.jfr;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.oleksandr.smartfridge.exceptions.BinOverflowException;
+import com.oleksandr.smartfridge.storage.InMemoryStorage;
+import com.oleksandr.smartfridge.storage.StorageProbe;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class JfrStorageProbeTest {
+
+	static final String EVENT = "com.oleksandr.smartfridge.StorageOperation";
+
+	@Test
+	@DisplayName("The system probe is the JFR probe")
+	void testSystemProbe() {
+		assertTrue(StorageProbe.system() instanceof JfrStorageProbe);
+		assertFalse(StorageProbe.system().isEnabled());
+	}
+
+	@Test
+	@DisplayName("Storage operations are recorded with their outcome")
+	void testRecording() throws Exception {
+		InMemoryStorage storage = new InMemoryStorage();
+		Path file = Files.createTempFile("storage", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable(EVENT);
+			recording.start();
+			assertTrue(StorageProbe.system().isEnabled());
+
+			storage.addItem(1, "itemUUID1", "Milk", 0.6);
+			assertThrows(BinOverflowException.class,
+					() -> storage.addItem(1, "itemUUID2", "Yogurt", 0.6));
+			storage.removeItem("itemUUID1");
+			storage.removeItem("itemUUID1");
+			storage.getFillFactor(1);
+			storage.getItems(0.5);
+			storage.forgetItem(1);
+
+			recording.stop();
+			recording.dump(file);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file)
+					.stream()
+					.filter(e -> e.getEventType().getName().equals(EVENT))
+					.collect(Collectors.toList());
+
+			assertEquals(7, events.size());
+			assertEquals("ADD", events.get(0).getString("operation"));
+			assertEquals("OK", events.get(0).getString("outcome"));
+			assertEquals(0.0, events.get(0).getDouble("fillBefore"));
+			assertEquals(0.6, events.get(0).getDouble("fillAfter"), 0.001);
+			assertEquals("REJECTED", events.get(1).getString("outcome"));
+			assertNotNull(events.get(1).getString("reason"));
+			assertEquals("NOT_FOUND", events.get(3).getString("outcome"));
+			assertEquals("FORGET", events.get(6).getString("operation"));
+			assertTrue(events.get(0).getLong("operationDuration") > 0);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+}